@@ -0,0 +1,156 @@
+package com.traffic.analysis;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// Each TrafficAnalysis aggregate over List<TrafficRecord> (groupingBy / loop versions)
+// and over TrafficDataset, plus the single-pass TrafficAggregates engine and stream
+// collector baselines. SimdAnalysisBenchmark runs the same methods with the vector
+// kernels switched on.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class AnalysisBenchmark {
+
+    @Param({"bundled", "1000000", "10000000"})
+    public String rows;
+
+    private List<TrafficRecord> records;
+    private TrafficDataset dataset;
+
+    @Setup
+    public void setup() throws IOException {
+        records = MappedTrafficDataLoader.loadParallel(BenchmarkData.csv(rows));
+        dataset = TrafficDataset.of(records);
+    }
+
+    /* Stream collectors */
+
+    @Benchmark
+    public Map<Integer, Double> averageVolumeByHour_stream() {
+        return records.stream().collect(Collectors.groupingBy(
+                r -> r.dateTime().getHour(), Collectors.averagingInt(TrafficRecord::trafficVolume)));
+    }
+
+    @Benchmark
+    public Map<Boolean, Map<Integer, Double>> averageVolumeByHourWeekdayVsWeekend_stream() {
+        return records.stream().collect(Collectors.partitioningBy(
+                r -> {
+                    DayOfWeek d = r.dateTime().getDayOfWeek();
+                    return d == DayOfWeek.SATURDAY || d == DayOfWeek.SUNDAY;
+                },
+                Collectors.groupingBy(r -> r.dateTime().getHour(),
+                        Collectors.averagingInt(TrafficRecord::trafficVolume))));
+    }
+
+    @Benchmark
+    public Map<String, Double> averageVolumeByWeatherMain_stream() {
+        return records.stream()
+                .filter(r -> r.weatherMain() != null && !r.weatherMain().isBlank())
+                .collect(Collectors.groupingBy(r -> r.weatherMain().trim(),
+                        Collectors.averagingInt(TrafficRecord::trafficVolume)));
+    }
+
+    /* List<TrafficRecord> */
+
+    @Benchmark
+    public Map<Integer, Double> averageVolumeByHour_list() {
+        return TrafficAnalysis.averageVolumeByHour(records);
+    }
+
+    @Benchmark
+    public Map<String, Double> averageWeekdayVsWeekend_list() {
+        return TrafficAnalysis.averageWeekdayVsWeekend(records);
+    }
+
+    @Benchmark
+    public Map<String, Map<Integer, Double>> averageVolumeByHourWeekdayVsWeekend_list() {
+        return TrafficAnalysis.averageVolumeByHourWeekdayVsWeekend(records);
+    }
+
+    @Benchmark
+    public Map<String, Double> averageVolumeByWeatherMain_list() {
+        return TrafficAnalysis.averageVolumeByWeatherMain(records);
+    }
+
+    @Benchmark
+    public TrafficAnalysis.PeakHour peakHourByAverage_list() {
+        return TrafficAnalysis.peakHourByAverage(records);
+    }
+
+    @Benchmark
+    public TrafficAnalysis.PeakHour peakHourWeekday_list() {
+        return TrafficAnalysis.peakHourWeekday(records);
+    }
+
+    @Benchmark
+    public TrafficAnalysis.PeakHour peakHourWeekend_list() {
+        return TrafficAnalysis.peakHourWeekend(records);
+    }
+
+    @Benchmark
+    public TrafficAggregates singlePass_list() {
+        return TrafficAggregates.compute(records);
+    }
+
+    /* TrafficDataset */
+
+    @Benchmark
+    public Map<Integer, Double> averageVolumeByHour_dataset() {
+        return TrafficAnalysis.averageVolumeByHour(dataset);
+    }
+
+    @Benchmark
+    public Map<String, Double> averageWeekdayVsWeekend_dataset() {
+        return TrafficAnalysis.averageWeekdayVsWeekend(dataset);
+    }
+
+    @Benchmark
+    public Map<String, Map<Integer, Double>> averageVolumeByHourWeekdayVsWeekend_dataset() {
+        return TrafficAnalysis.averageVolumeByHourWeekdayVsWeekend(dataset);
+    }
+
+    @Benchmark
+    public Map<String, Double> averageVolumeByWeatherMain_dataset() {
+        return TrafficAnalysis.averageVolumeByWeatherMain(dataset);
+    }
+
+    @Benchmark
+    public TrafficAnalysis.PeakHour peakHourByAverage_dataset() {
+        return TrafficAnalysis.peakHourByAverage(dataset);
+    }
+
+    @Benchmark
+    public TrafficAnalysis.PeakHour peakHourWeekday_dataset() {
+        return TrafficAnalysis.peakHourWeekday(dataset);
+    }
+
+    @Benchmark
+    public TrafficAnalysis.PeakHour peakHourWeekend_dataset() {
+        return TrafficAnalysis.peakHourWeekend(dataset);
+    }
+
+    @Benchmark
+    public TrafficAggregates singlePass_dataset() {
+        return TrafficAggregates.compute(dataset);
+    }
+}
@@ -0,0 +1,85 @@
+package com.traffic.analysis;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Year;
+import java.util.List;
+
+// Input files for the benchmarks: the bundled CSV, or a synthetic copy scaled to a
+// row count by repeating its data rows with the year shifted forward each pass
+// (the source spans under 7 years, so the result stays time-ordered). Leap-day rows
+// that a shift moves into a common year are left out.
+final class BenchmarkData {
+
+    private static final String RESOURCE = "/Metro_Interstate_Traffic_Volume.csv";
+    private static final int YEARS_PER_COPY = 7;
+
+    private BenchmarkData() {}
+
+    // "bundled" or a row count
+    static Path csv(String rows) throws IOException {
+        return "bundled".equals(rows) ? bundledCsv() : scaledCsv(Integer.parseInt(rows));
+    }
+
+    static Path bundledCsv() throws IOException {
+        Path out = cacheDir().resolve("bundled.csv");
+        if (Files.exists(out)) return out;
+
+        try (InputStream in = BenchmarkData.class.getResourceAsStream(RESOURCE)) {
+            if (in == null) throw new IOException("Missing classpath resource " + RESOURCE);
+            Files.copy(in, out, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return out;
+    }
+
+    static Path scaledCsv(int rows) throws IOException {
+        Path out = cacheDir().resolve("scaled-" + rows + ".csv");
+        if (Files.exists(out)) return out;
+
+        List<String> lines = Files.readAllLines(bundledCsv(), StandardCharsets.UTF_8);
+        Path tmp = Files.createTempFile(cacheDir(), "scaled", ".tmp");
+
+        try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            w.write(lines.get(0));
+            w.newLine();
+
+            int written = 0;
+            for (int copy = 0; written < rows; copy++) {
+                for (int i = 1; i < lines.size() && written < rows; i++) {
+                    String line = copy == 0 ? lines.get(i) : shiftYear(lines.get(i), copy * YEARS_PER_COPY);
+                    if (isInvalidLeapDay(line)) continue;
+                    w.write(line);
+                    w.newLine();
+                    written++;
+                }
+            }
+        }
+
+        Files.move(tmp, out, StandardCopyOption.REPLACE_EXISTING);
+        return out;
+    }
+
+    // date_time is the last column: dd-MM-yyyy HH:mm
+    private static String shiftYear(String line, int years) {
+        int at = line.length() - 10;
+        int year = Integer.parseInt(line.substring(at, at + 4)) + years;
+        return line.substring(0, at) + year + line.substring(at + 4);
+    }
+
+    private static boolean isInvalidLeapDay(String line) {
+        int at = line.length() - 16;
+        return line.startsWith("29-02", at)
+                && !Year.isLeap(Integer.parseInt(line.substring(at + 6, at + 10)));
+    }
+
+    private static Path cacheDir() throws IOException {
+        Path dir = Path.of(System.getProperty("java.io.tmpdir"), "traffic-jmh");
+        Files.createDirectories(dir);
+        return dir;
+    }
+}
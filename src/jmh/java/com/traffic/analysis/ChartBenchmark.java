@@ -0,0 +1,64 @@
+package com.traffic.analysis;
+
+import org.jfree.chart.ChartUtils;
+import org.jfree.chart.JFreeChart;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Building and JPEG-encoding each report figure at its report size, in memory
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 3)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ChartBenchmark {
+
+    private TrafficAggregates agg;
+
+    @Setup
+    public void setup() throws IOException {
+        agg = TrafficAggregates.compute(MappedTrafficDataLoader.load(BenchmarkData.bundledCsv()));
+    }
+
+    @Benchmark
+    public byte[] avgVolumeByHour() throws IOException {
+        var peak = agg.peakHourByAverage();
+        return jpeg(TrafficCharts.avgVolumeByHourChart(agg.averageVolumeByHour(), peak.hour(), peak.averageVolume()),
+                900, 600);
+    }
+
+    @Benchmark
+    public byte[] weekdayVsWeekend() throws IOException {
+        return jpeg(TrafficCharts.weekdayVsWeekendChart(agg.averageWeekdayVsWeekend()), 900, 600);
+    }
+
+    @Benchmark
+    public byte[] hourlyCurves() throws IOException {
+        var curves = agg.averageVolumeByHourWeekdayVsWeekend();
+        return jpeg(TrafficCharts.hourlyCurvesChart(curves.get("Weekday"), curves.get("Weekend")), 1000, 650);
+    }
+
+    @Benchmark
+    public byte[] weatherImpact() throws IOException {
+        return jpeg(TrafficCharts.avgVolumeByWeatherMainChart(agg.averageVolumeByWeatherMain()), 1000, 650);
+    }
+
+    private static byte[] jpeg(JFreeChart chart, int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256 * 1024);
+        ChartUtils.writeChartAsJPEG(out, chart, width, height);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,157 @@
+package com.traffic.analysis;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.util.DoubleSummaryStatistics;
+import java.util.IntSummaryStatistics;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// Grouped count / sum / min / max: stream collectors over List<TrafficRecord> against
+// the AggregationKernels scalar loops and the Vector API kernels, called directly so
+// both run in the same fork. The 48-group case takes the per-lane slot layout rather
+// than one sweep per group (VectorAggregationKernels.SWEEP_GROUPS).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "--add-modules", "jdk.incubator.vector"})
+public class KernelBenchmark {
+
+    @Param({"bundled", "1000000", "10000000"})
+    public String rows;
+
+    private List<TrafficRecord> records;
+    private TrafficDataset dataset;
+
+    // 0 for weather_main "Rain", -1 otherwise
+    private byte[] rainKeys;
+
+    // Quarter of the day (hour / 6)
+    private byte[] quarterKeys;
+
+    @Setup
+    public void setup() throws IOException {
+        records = MappedTrafficDataLoader.loadParallel(BenchmarkData.csv(rows));
+        dataset = TrafficDataset.of(records);
+
+        HourCalendar cal = dataset.calendar();
+        int[] hours = dataset.epochHourColumn();
+        rainKeys = new byte[dataset.size()];
+        quarterKeys = new byte[dataset.size()];
+        for (int i = 0; i < dataset.size(); i++) {
+            rainKeys[i] = (byte) ("Rain".equals(dataset.weatherMain(i)) ? 0 : -1);
+            quarterKeys[i] = (byte) (HourCalendar.hour(cal.fields(hours[i])) / 6);
+        }
+    }
+
+    /* Filtered: volume of rainy hours */
+
+    @Benchmark
+    public IntSummaryStatistics rainVolume_stream() {
+        return records.stream()
+                .filter(r -> "Rain".equals(r.weatherMain()))
+                .mapToInt(TrafficRecord::trafficVolume)
+                .summaryStatistics();
+    }
+
+    @Benchmark
+    public AggregationKernels.IntGroups rainVolume_scalar() {
+        AggregationKernels.IntGroups out = new AggregationKernels.IntGroups(1);
+        AggregationKernels.groupIntsScalar(rainKeys, dataset.volumeColumn(), 0, dataset.size(), out);
+        return out;
+    }
+
+    @Benchmark
+    public AggregationKernels.IntGroups rainVolume_vector() {
+        AggregationKernels.IntGroups out = new AggregationKernels.IntGroups(1);
+        VectorAggregationKernels.groupInts(rainKeys, dataset.volumeColumn(), 0, dataset.size(), out);
+        return out;
+    }
+
+    /* 4 groups: volume and temperature range by quarter of the day */
+
+    @Benchmark
+    public Map<Integer, IntSummaryStatistics> quarterVolume_stream() {
+        return records.stream().collect(Collectors.groupingBy(
+                r -> r.dateTime().getHour() / 6,
+                Collectors.summarizingInt(TrafficRecord::trafficVolume)));
+    }
+
+    @Benchmark
+    public AggregationKernels.IntGroups quarterVolume_scalar() {
+        AggregationKernels.IntGroups out = new AggregationKernels.IntGroups(4);
+        AggregationKernels.groupIntsScalar(quarterKeys, dataset.volumeColumn(), 0, dataset.size(), out);
+        return out;
+    }
+
+    @Benchmark
+    public AggregationKernels.IntGroups quarterVolume_vector() {
+        AggregationKernels.IntGroups out = new AggregationKernels.IntGroups(4);
+        VectorAggregationKernels.groupInts(quarterKeys, dataset.volumeColumn(), 0, dataset.size(), out);
+        return out;
+    }
+
+    @Benchmark
+    public Map<Integer, DoubleSummaryStatistics> quarterTemp_stream() {
+        return records.stream().collect(Collectors.groupingBy(
+                r -> r.dateTime().getHour() / 6,
+                Collectors.summarizingDouble(TrafficRecord::tempK)));
+    }
+
+    @Benchmark
+    public AggregationKernels.FloatGroups quarterTemp_scalar() {
+        AggregationKernels.FloatGroups out = new AggregationKernels.FloatGroups(4);
+        AggregationKernels.groupFloatsScalar(quarterKeys, dataset.tempColumn(), 0, dataset.size(), out);
+        return out;
+    }
+
+    @Benchmark
+    public AggregationKernels.FloatGroups quarterTemp_vector() {
+        AggregationKernels.FloatGroups out = new AggregationKernels.FloatGroups(4);
+        VectorAggregationKernels.groupFloats(quarterKeys, dataset.tempColumn(), 0, dataset.size(), out);
+        return out;
+    }
+
+    /* 48 groups: volume by hour and day type */
+
+    @Benchmark
+    public Map<Integer, IntSummaryStatistics> hourDayTypeVolume_stream() {
+        return records.stream().collect(Collectors.groupingBy(
+                r -> {
+                    DayOfWeek d = r.dateTime().getDayOfWeek();
+                    boolean weekend = d == DayOfWeek.SATURDAY || d == DayOfWeek.SUNDAY;
+                    return r.dateTime().getHour() * 2 + (weekend ? 1 : 0);
+                },
+                Collectors.summarizingInt(TrafficRecord::trafficVolume)));
+    }
+
+    @Benchmark
+    public AggregationKernels.IntGroups hourDayTypeVolume_scalar() {
+        AggregationKernels.IntGroups out = new AggregationKernels.IntGroups(48);
+        AggregationKernels.groupIntsScalar(dataset.hourDayTypeKeyColumn(), dataset.volumeColumn(), 0, dataset.size(), out);
+        return out;
+    }
+
+    @Benchmark
+    public AggregationKernels.IntGroups hourDayTypeVolume_vector() {
+        AggregationKernels.IntGroups out = new AggregationKernels.IntGroups(48);
+        VectorAggregationKernels.groupInts(dataset.hourDayTypeKeyColumn(), dataset.volumeColumn(), 0, dataset.size(), out);
+        return out;
+    }
+}
@@ -0,0 +1,62 @@
+package com.traffic.analysis;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// CSV ingestion: commons-csv vs the mapped byte parser (sequential and parallel)
+// vs reloading the binary snapshot.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class LoaderBenchmark {
+
+    @Param({"bundled", "1000000", "10000000"})
+    public String rows;
+
+    private Path csv;
+    private Path snapshot;
+
+    @Setup
+    public void setup() throws IOException {
+        csv = BenchmarkData.csv(rows);
+        snapshot = TrafficDataLoader.snapshotPathFor(csv);
+        TrafficSnapshot.write(MappedTrafficDataLoader.load(csv), TrafficSnapshot.stampOf(csv), snapshot);
+    }
+
+    @Benchmark
+    public List<TrafficRecord> commonsCsv() throws IOException {
+        return TrafficDataLoader.load(csv);
+    }
+
+    @Benchmark
+    public List<TrafficRecord> mapped() throws IOException {
+        return MappedTrafficDataLoader.load(csv);
+    }
+
+    @Benchmark
+    public List<TrafficRecord> mappedParallel() throws IOException {
+        return MappedTrafficDataLoader.loadParallel(csv);
+    }
+
+    @Benchmark
+    public List<TrafficRecord> snapshot() throws IOException {
+        return TrafficSnapshot.read(snapshot);
+    }
+}
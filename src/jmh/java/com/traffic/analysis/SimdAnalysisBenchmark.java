@@ -0,0 +1,10 @@
+package com.traffic.analysis;
+
+import org.openjdk.jmh.annotations.Fork;
+
+// AnalysisBenchmark with -Dtraffic.simd=true, so the TrafficDataset aggregates run on
+// VectorAggregationKernels. The List and stream rows do not use the kernels and repeat
+// the AnalysisBenchmark baselines in this fork.
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "--add-modules", "jdk.incubator.vector", "-Dtraffic.simd=true"})
+public class SimdAnalysisBenchmark extends AnalysisBenchmark {
+}
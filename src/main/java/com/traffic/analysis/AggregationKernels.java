@@ -0,0 +1,109 @@
+package com.traffic.analysis;
+
+import java.util.Arrays;
+
+// Grouped count / sum / min / max over the primitive columns of a TrafficDataset,
+// keyed by a byte column of small group numbers (hour x day type, weather code, ...).
+// Rows whose key is negative or not below the group count are skipped, which is how
+// a filter is applied: build the key column with -1 for the rows to leave out.
+//
+// The scalar loops here are the default. With -Dtraffic.simd=true and the incubating
+// vector module on the module path (--add-modules jdk.incubator.vector) the same
+// kernels run on jdk.incubator.vector instead (VectorAggregationKernels). Both give
+// identical results: integer sums are exact in any order, min / max are order-free,
+// and float columns get no sum for that reason (a reordered float sum rounds
+// differently).
+final class AggregationKernels {
+
+    static final boolean VECTOR = Boolean.getBoolean("traffic.simd")
+            && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private AggregationKernels() {}
+
+    static final class IntGroups {
+        final long[] count;
+        final long[] sum;
+        final int[] min;
+        final int[] max;
+
+        IntGroups(int groups) {
+            count = new long[groups];
+            sum = new long[groups];
+            min = new int[groups];
+            max = new int[groups];
+            Arrays.fill(min, Integer.MAX_VALUE);
+            Arrays.fill(max, Integer.MIN_VALUE);
+        }
+
+        int groups() {
+            return count.length;
+        }
+    }
+
+    static final class FloatGroups {
+        final long[] count;
+        final float[] min;
+        final float[] max;
+
+        FloatGroups(int groups) {
+            count = new long[groups];
+            min = new float[groups];
+            max = new float[groups];
+            Arrays.fill(min, Float.POSITIVE_INFINITY);
+            Arrays.fill(max, Float.NEGATIVE_INFINITY);
+        }
+
+        int groups() {
+            return count.length;
+        }
+    }
+
+    static IntGroups groupInts(byte[] keys, int[] values, int from, int to, int groups) {
+        IntGroups out = new IntGroups(groups);
+        if (VECTOR) {
+            VectorAggregationKernels.groupInts(keys, values, from, to, out);
+        } else {
+            groupIntsScalar(keys, values, from, to, out);
+        }
+        return out;
+    }
+
+    static FloatGroups groupFloats(byte[] keys, float[] values, int from, int to, int groups) {
+        FloatGroups out = new FloatGroups(groups);
+        if (VECTOR) {
+            VectorAggregationKernels.groupFloats(keys, values, from, to, out);
+        } else {
+            groupFloatsScalar(keys, values, from, to, out);
+        }
+        return out;
+    }
+
+    /* =======================
+       Scalar kernels (also the vector tails)
+       ======================= */
+
+    static void groupIntsScalar(byte[] keys, int[] values, int from, int to, IntGroups out) {
+        int groups = out.groups();
+        for (int i = from; i < to; i++) {
+            int g = keys[i];
+            if (g < 0 || g >= groups) continue;
+            int v = values[i];
+            out.count[g]++;
+            out.sum[g] += v;
+            if (v < out.min[g]) out.min[g] = v;
+            if (v > out.max[g]) out.max[g] = v;
+        }
+    }
+
+    static void groupFloatsScalar(byte[] keys, float[] values, int from, int to, FloatGroups out) {
+        int groups = out.groups();
+        for (int i = from; i < to; i++) {
+            int g = keys[i];
+            if (g < 0 || g >= groups) continue;
+            float v = values[i];
+            out.count[g]++;
+            out.min[g] = Math.min(out.min[g], v);
+            out.max[g] = Math.max(out.max[g], v);
+        }
+    }
+}
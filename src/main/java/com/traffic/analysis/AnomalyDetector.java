@@ -0,0 +1,217 @@
+package com.traffic.analysis;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Streaming detector for outage / incident hours. Each row is compared with the
+// median of the last few volumes seen at the same hour of week under the same
+// weather_main (or at the same hour of week in any weather while that weather has
+// too little history); it is flagged when it is more than `threshold` robust standard
+// deviations (1.4826 * MAD) away. The row is then added to that history, so a lasting
+// change becomes the new normal after about half the window.
+//
+// Memory is bounded: one ring of `window` ints per hour of week and per hour of week x
+// weather value actually seen, i.e. a few tens of KB per station. Rows must arrive in
+// time order; use one detector per station.
+public final class AnomalyDetector {
+
+    public static final int DEFAULT_WINDOW = 8;
+    public static final int DEFAULT_MIN_HISTORY = 4;
+    public static final double DEFAULT_THRESHOLD = 5.0;
+
+    // Spread floor as a fraction of the median, so very regular hours (MAD ~ 0)
+    // are not flagged for ordinary noise
+    private static final double MIN_RELATIVE_SPREAD = 0.05;
+    private static final double MAD_TO_SIGMA = 1.4826;
+
+    private static final int HOURS_PER_WEEK = 168;
+
+    // A flagged row: its volume, the expected (median) volume and the robust z-score
+    public record Anomaly(LocalDateTime dateTime, String weatherMain, int volume, double expected, double score) {
+
+        // Below (e.g. outage, closure) rather than above the expected volume
+        public boolean isDrop() {
+            return volume < expected;
+        }
+    }
+
+    // Anomalies of a batch run plus the row indexes they came from
+    public record Result(List<Anomaly> anomalies, BitSet flaggedRows) {}
+
+    private final int window;
+    private final int minHistory;
+    private final double threshold;
+    private final Consumer<Anomaly> sink;
+
+    private final Ring[] byHourOfWeek = new Ring[HOURS_PER_WEEK];
+
+    // weather_main (trimmed) -> rings by hour of week; raw values cached like the aggregates
+    private final Map<String, Ring[]> byWeather = new HashMap<>();
+    private final Map<String, Ring[]> weatherOfRaw = new HashMap<>();
+
+    // Scratch for the median / MAD of one ring
+    private final int[] scratch;
+    private final double[] deviations;
+
+    private long rows;
+    private long flagged;
+
+    public AnomalyDetector() {
+        this(DEFAULT_WINDOW, DEFAULT_MIN_HISTORY, DEFAULT_THRESHOLD, a -> {});
+    }
+
+    // sink receives every anomaly as it is detected
+    public AnomalyDetector(Consumer<Anomaly> sink) {
+        this(DEFAULT_WINDOW, DEFAULT_MIN_HISTORY, DEFAULT_THRESHOLD, sink);
+    }
+
+    public AnomalyDetector(int window, int minHistory, double threshold, Consumer<Anomaly> sink) {
+        if (window < 1 || minHistory < 1 || minHistory > window) {
+            throw new IllegalArgumentException("Need 1 <= minHistory <= window: " + minHistory + ", " + window);
+        }
+        if (!(threshold > 0)) throw new IllegalArgumentException("Threshold must be > 0: " + threshold);
+
+        this.window = window;
+        this.minHistory = minHistory;
+        this.threshold = threshold;
+        this.sink = sink;
+        this.scratch = new int[window];
+        this.deviations = new double[window];
+    }
+
+    // Runs a detector over the rows (in the order given) and collects the results
+    public static Result detect(List<TrafficRecord> rows) {
+        List<Anomaly> anomalies = new ArrayList<>();
+        AnomalyDetector d = new AnomalyDetector(anomalies::add);
+        BitSet flaggedRows = new BitSet(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            if (d.accept(rows.get(i)) != null) flaggedRows.set(i);
+        }
+        return new Result(anomalies, flaggedRows);
+    }
+
+    public static Result detect(TrafficDataset ds) {
+        List<Anomaly> anomalies = new ArrayList<>();
+        AnomalyDetector d = new AnomalyDetector(anomalies::add);
+        BitSet flaggedRows = new BitSet(ds.size());
+
+        int[] hours = ds.epochHourColumn();
+        int[] volumes = ds.volumeColumn();
+        short[] codes = ds.weatherMainCodeColumn();
+        String[] names = ds.weatherMainNames();
+        Ring[][] ringsOfCode = new Ring[names.length][];
+        for (int c = 0; c < names.length; c++) ringsOfCode[c] = d.weatherRings(names[c]);
+
+        for (int i = 0; i < ds.size(); i++) {
+            int eh = hours[i];
+            if (d.check(eh, ringsOfCode[codes[i]], volumes[i], names[codes[i]]) != null) flaggedRows.set(i);
+        }
+        return new Result(anomalies, flaggedRows);
+    }
+
+    // Scores the row, adds it to the history and returns the anomaly (also passed to
+    // the sink) or null when the row looks normal
+    public Anomaly accept(TrafficRecord r) {
+        LocalDateTime t = r.dateTime();
+        int eh = TrafficDataset.epochHour(t);
+        return check(eh, weatherRings(r.weatherMain()), r.trafficVolume(), r.weatherMain());
+    }
+
+    public long rowCount() {
+        return rows;
+    }
+
+    public long flaggedCount() {
+        return flagged;
+    }
+
+    // Forgets every ring and count, as if newly constructed
+    public void reset() {
+        Arrays.fill(byHourOfWeek, null);
+        byWeather.clear();
+        weatherOfRaw.clear();
+        rows = 0;
+        flagged = 0;
+    }
+
+    private Anomaly check(int epochHour, Ring[] weather, int volume, String weatherMain) {
+        int how = TrafficDataset.dayOfWeekIndex(epochHour) * 24 + TrafficDataset.hourOf(epochHour);
+
+        Ring all = byHourOfWeek[how];
+        if (all == null) all = byHourOfWeek[how] = new Ring(window);
+        Ring same = null;
+        if (weather != null) {
+            same = weather[how];
+            if (same == null) same = weather[how] = new Ring(window);
+        }
+
+        Ring basis = same != null && same.size >= minHistory ? same : all;
+        Anomaly anomaly = null;
+        if (basis.size >= minHistory) {
+            int n = basis.copyTo(scratch);
+            Arrays.sort(scratch, 0, n);
+            double median = median(scratch, n);
+
+            for (int i = 0; i < n; i++) deviations[i] = Math.abs(scratch[i] - median);
+            Arrays.sort(deviations, 0, n);
+            double mad = n % 2 == 1 ? deviations[n / 2] : (deviations[n / 2 - 1] + deviations[n / 2]) / 2;
+
+            double spread = Math.max(MAD_TO_SIGMA * mad, Math.max(1.0, MIN_RELATIVE_SPREAD * median));
+            double score = Math.abs(volume - median) / spread;
+            if (score > threshold) {
+                String name = weatherMain == null ? null : weatherMain.trim();
+                anomaly = new Anomaly(TrafficDataset.dateTimeOf(epochHour), name, volume, median, score);
+                flagged++;
+                sink.accept(anomaly);
+            }
+        }
+
+        all.add(volume);
+        if (same != null) same.add(volume);
+        rows++;
+        return anomaly;
+    }
+
+    private static double median(int[] sorted, int n) {
+        return n % 2 == 1 ? sorted[n / 2] : (sorted[n / 2 - 1] + sorted[n / 2]) / 2.0;
+    }
+
+    // Rings for a raw weather_main value, or null for null/blank values
+    private Ring[] weatherRings(String raw) {
+        if (raw == null) return null;
+        if (weatherOfRaw.containsKey(raw)) return weatherOfRaw.get(raw);
+
+        Ring[] rings = raw.isBlank() ? null
+                : byWeather.computeIfAbsent(raw.trim(), k -> new Ring[HOURS_PER_WEEK]);
+        weatherOfRaw.put(raw, rings);
+        return rings;
+    }
+
+    // The last `capacity` volumes for one key
+    private static final class Ring {
+        final int[] values;
+        int size;
+        int next;
+
+        Ring(int capacity) {
+            values = new int[capacity];
+        }
+
+        void add(int v) {
+            values[next] = v;
+            next = (next + 1) % values.length;
+            if (size < values.length) size++;
+        }
+
+        int copyTo(int[] out) {
+            System.arraycopy(values, 0, out, 0, size);
+            return size;
+        }
+    }
+}
@@ -1,56 +1,229 @@
 package com.traffic.analysis;
 
+import java.io.IOException;
 import java.nio.file.Path;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 public class App {
+    private static final String DEFAULT_CSV = "src/main/resources/Metro_Interstate_Traffic_Volume.csv";
+
+    private static final String USAGE =
+            "Usage: App [--headless] [--out <dir>] [--memory-budget <bytes>[k|m|g]] [csv | dir]\n"
+            + "       App [--headless] [--out <dir>] [--memory-budget <bytes>[k|m|g]] --network <stationDir | glob>\n"
+            + "       App --serve [port] [csv]";
+
     public static void main(String[] args) throws Exception {
-        Path csv = Path.of("C:/Users/merce/Downloads/traffic_volume_analysis/Metro_Interstate_Traffic_Volume.csv");
-
-        List<TrafficRecord> rows = TrafficDataLoader.load(csv);
-        System.out.println("Loaded rows: " + rows.size());
-        
-        var curves = TrafficAnalysis.averageVolumeByHourWeekdayVsWeekend(rows);
-        TrafficCharts.showHourlyCurvesWeekdayVsWeekend(curves.get("Weekday"), curves.get("Weekend"));
-        
-        var peakOverall = TrafficAnalysis.peakHourByAverage(rows);
-        var peakWeekday = TrafficAnalysis.peakHourWeekday(rows);
-        var peakWeekend = TrafficAnalysis.peakHourWeekend(rows);
-
-        System.out.printf("Peak hour (overall):  %02d:00  avg=%.0f%n", peakOverall.hour(), peakOverall.averageVolume());
-        System.out.printf("Peak hour (weekday):  %02d:00  avg=%.0f%n", peakWeekday.hour(), peakWeekday.averageVolume());
-        System.out.printf("Peak hour (weekend):  %02d:00  avg=%.0f%n", peakWeekend.hour(), peakWeekend.averageVolume());
-
-        var avgByHour = TrafficAnalysis.averageVolumeByHour(rows);
-        TrafficCharts.showAvgVolumeByHour(avgByHour, peakOverall.hour(), peakOverall.averageVolume());
-        
-        var avgByWeather = TrafficAnalysis.averageVolumeByWeatherMain(rows);
-
-     // Print sorted by highest avg volume
-     System.out.println("\nAverage Volume by weather_main (highest to lowest):");
-     avgByWeather.entrySet().stream()
-             .sorted((a, b) -> Double.compare(b.getValue(), a.getValue()))
-             .forEach(e -> System.out.printf("  %-12s  %.0f%n", e.getKey(), e.getValue()));
-
-     TrafficCharts.showAvgVolumeByWeatherMain(avgByWeather);
-     
-     Double clear = avgByWeather.get("Clear");
-     if (clear != null) {
-         System.out.println("\nRelative to Clear (percent change):");
-         avgByWeather.entrySet().stream()
-                 .sorted((a, b) -> Double.compare(b.getValue(), a.getValue()))
-                 .forEach(e -> {
-                     double pct = 100.0 * (e.getValue() - clear) / clear;
-                     System.out.printf("  %-12s  %+6.1f%%%n", e.getKey(), pct);
-                 });
-     }
-        
+        // --headless renders the figures to files on a worker pool, no windows
+        // --out sets where --headless writes them (default: reports)
+        // --memory-budget streams the input through OutOfCoreAnalysis within that much heap
+        // --network reads the directory (or glob) as one CSV per station; without it a
+        //   directory is one dataset split into monthly files
+        // -Dtraffic.metrics.file=<path> writes the Prometheus metrics dump on exit
+        TrafficMetrics.registerMBean();
+        String metricsFile = System.getProperty("traffic.metrics.file");
+        if (metricsFile != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    TrafficMetrics.writePrometheus(Path.of(metricsFile));
+                } catch (IOException e) {
+                    System.err.println("Could not write metrics to " + metricsFile + ": " + e.getMessage());
+                }
+            }));
+        }
+
+        if (args.length > 0 && args[0].equals("--serve")) {
+            serve(args.length > 1 ? Integer.parseInt(args[1]) : 8080,
+                    Path.of(args.length > 2 ? args[2] : DEFAULT_CSV));
+            return;
+        }
+
+        boolean headless = false;
+        Path outDir = Path.of("reports");
+        long memoryBudget = 0;
+        boolean network = false;
+        String input = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--headless" -> headless = true;
+                case "--out" -> outDir = Path.of(optionValue(args, ++i, "--out"));
+                case "--memory-budget" -> memoryBudget = parseBytes(optionValue(args, ++i, "--memory-budget"));
+                case "--network" -> network = true;
+                default -> {
+                    if (args[i].startsWith("--")) usageError("Unknown option: " + args[i]);
+                    if (input != null) usageError("Unexpected argument: " + args[i]);
+                    input = args[i];
+                }
+            }
+        }
+        if (headless) System.setProperty("java.awt.headless", "true");
+
+        Path csv = Path.of(input != null ? input : DEFAULT_CSV);
+
+        // A glob can only name stations; a directory is stations only when asked for
+        if (network || csv.getFileName().toString().contains("*")) {
+            if (input == null) usageError("--network needs a station directory or glob");
+            analyzeNetwork(csv, headless, outDir, memoryBudget);
+            return;
+        }
+
+        if (memoryBudget > 0) {
+            analyzeOutOfCore(csv, headless, outDir, memoryBudget);
+            return;
+        }
+
+        // Headless runs are memoized under outDir/.cache: unchanged data re-renders nothing
+        if (headless) {
+            TrafficReport.run(csv, outDir, outDir.resolve(".cache"),
+                    EnumSet.allOf(ChartBatchRenderer.Format.class), 1, 2).print(System.out);
+            return;
+        }
+
+        List<TrafficRecord> rows = TrafficDataLoader.loadCached(csv);
+        System.out.print(TrafficReport.loadedRows(rows.size()));
+
+        // Hour, day-type and weather aggregates in one scan, percentile sketches in another
+        TrafficAggregates agg = TrafficAggregates.compute(rows);
+        VolumeQuantiles quantiles = VolumeQuantiles.compute(rows);
+
+        // Figures are numbered as in the headless report
+        var curves = agg.averageVolumeByHourWeekdayVsWeekend();
+        TrafficCharts.showHourlyCurvesWeekdayVsWeekend(1, curves.get("Weekday"), curves.get("Weekend"));
+
+        System.out.print(TrafficReport.peakHours(agg));
+
+        TrafficDataset ds = TrafficDataset.of(rows);
+        System.out.print(TrafficReport.anomalies(ds));
+
+        var peakOverall = agg.peakHourByAverage();
+        var avgByHour = agg.averageVolumeByHour();
+        TrafficCharts.showAvgVolumeByHour(2, avgByHour, peakOverall.hour(), peakOverall.averageVolume());
+
+        System.out.print(TrafficReport.percentiles(agg, quantiles));
+        TrafficCharts.showPercentilesByHour(3, avgByHour, quantiles.percentilesByHour(VolumeQuantiles.REPORT_QUANTILES));
+
+        System.out.print(TrafficReport.weatherRanking(agg));
+        TrafficCharts.showAvgVolumeByWeatherMain(4, agg.averageVolumeByWeatherMain());
+        System.out.print(TrafficReport.weatherRelativeToClear(agg));
+
+        System.out.print(TrafficReport.regression(rows));
+        System.out.print(TrafficReport.backtest(ds));
+
         // NEW: weekday vs weekend
-        Map<String, Double> avgWeek = TrafficAnalysis.averageWeekdayVsWeekend(rows);
-        TrafficCharts.showWeekdayVsWeekend(avgWeek);
+        Map<String, Double> avgWeek = agg.averageWeekdayVsWeekend();
+        TrafficCharts.showWeekdayVsWeekend(5, avgWeek);
     }
-    
-    
-}
 
+    private static String optionValue(String[] args, int i, String option) {
+        if (i >= args.length || args[i].startsWith("--")) usageError(option + " needs a value");
+        return args[i];
+    }
+
+    // "512m", "2g", "65536k" or plain bytes
+    private static long parseBytes(String value) {
+        String v = value.trim().toLowerCase();
+        long unit = 1;
+        if (v.endsWith("k")) unit = 1L << 10;
+        else if (v.endsWith("m")) unit = 1L << 20;
+        else if (v.endsWith("g")) unit = 1L << 30;
+
+        long n = -1;
+        try {
+            n = Long.parseLong(unit == 1 ? v : v.substring(0, v.length() - 1));
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        if (n <= 0 || n > Long.MAX_VALUE / unit) usageError("Invalid --memory-budget: " + value);
+        return n * unit;
+    }
+
+    private static void usageError(String message) {
+        System.err.println(message);
+        System.err.println(USAGE);
+        System.exit(2);
+    }
+
+    // Serves the JSON query endpoints until the process is stopped, reloading the
+    // data whenever the CSV changes
+    private static void serve(int port, Path csv) throws Exception {
+        DatasetHolder holder = DatasetHolder.open(csv).watch();
+        TrafficServer server = TrafficServer.builder().port(port).start(holder);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        System.out.println("Serving " + holder.dataset().size() + " rows on http://localhost:" + server.port() + "/api/");
+    }
+
+    // The report sections that need only aggregates and sketches, over an input that is
+    // streamed in batches rather than loaded (no anomaly, regression or backtest section)
+    private static void analyzeOutOfCore(Path csv, boolean headless, Path outDir, long memoryBudget) throws Exception {
+        OutOfCoreAnalysis ooc = OutOfCoreAnalysis.builder().memoryBudget(memoryBudget).build();
+        try (OutOfCoreAnalysis.Result r = ooc.run(csv)) {
+            TrafficAggregates agg = r.aggregates();
+            VolumeQuantiles quantiles = r.quantiles();
+            System.out.printf("Rows: %d (%d batches of up to %d rows)%n", r.rows(), r.batches(), ooc.batchRows());
+
+            System.out.print(TrafficReport.peakHours(agg));
+            System.out.print(TrafficReport.percentiles(agg, quantiles));
+            System.out.print(TrafficReport.weatherRanking(agg));
+            System.out.print(TrafficReport.weatherRelativeToClear(agg));
+
+            if (headless) {
+                try (ChartBatchRenderer renderer = new ChartBatchRenderer()) {
+                    var formats = EnumSet.allOf(ChartBatchRenderer.Format.class);
+                    for (Path p : renderer.render(ChartBatchRenderer.reportFigures(agg, quantiles), outDir, formats, 1, 2)) {
+                        System.out.println("Saved chart to: " + p.toAbsolutePath());
+                    }
+                }
+                return;
+            }
+
+            var curves = agg.averageVolumeByHourWeekdayVsWeekend();
+            TrafficCharts.showHourlyCurvesWeekdayVsWeekend(1, curves.get("Weekday"), curves.get("Weekend"));
+            var peak = agg.peakHourByAverage();
+            var avgByHour = agg.averageVolumeByHour();
+            TrafficCharts.showAvgVolumeByHour(2, avgByHour, peak.hour(), peak.averageVolume());
+            TrafficCharts.showPercentilesByHour(3, avgByHour, quantiles.percentilesByHour(VolumeQuantiles.REPORT_QUANTILES));
+            TrafficCharts.showAvgVolumeByWeatherMain(4, agg.averageVolumeByWeatherMain());
+            TrafficCharts.showWeekdayVsWeekend(5, agg.averageWeekdayVsWeekend());
+        }
+    }
+
+    private static void analyzeNetwork(Path stations, boolean headless, Path outDir, long memoryBudget) throws Exception {
+        TrafficNetwork network = TrafficNetwork.open(stations);
+        System.out.println("Stations: " + network.stationIds().size());
+
+        TrafficNetwork.Summary summary = memoryBudget > 0
+                ? network.analyze(OutOfCoreAnalysis.builder().memoryBudget(memoryBudget).build())
+                : network.analyze();
+        var peaks = summary.peakHourByStation();
+        for (String id : network.stationIds()) {
+            var peak = peaks.get(id);
+            if (peak == null) System.out.printf("  %-24s  no rows%n", id);
+            else System.out.printf("  %-24s  peak %02d:00  avg=%.0f%n", id, peak.hour(), peak.averageVolume());
+        }
+        if (peaks.isEmpty()) {
+            System.out.println("No station has any rows");
+            return;
+        }
+
+        var networkPeak = summary.networkPeakHour();
+        System.out.printf("Peak hour (network):  %02d:00  total avg=%.0f%n", networkPeak.hour(), networkPeak.averageVolume());
+
+        if (headless) {
+            Map<String, TrafficAggregates> withRows = new TreeMap<>(summary.byStation());
+            withRows.keySet().removeAll(summary.emptyStations());
+            try (ChartBatchRenderer renderer = new ChartBatchRenderer()) {
+                var formats = EnumSet.allOf(ChartBatchRenderer.Format.class);
+                for (Path p : renderer.renderStations(withRows, outDir, formats, 1, 2)) {
+                    System.out.println("Saved chart to: " + p.toAbsolutePath());
+                }
+            }
+            return;
+        }
+
+        var pooled = summary.pooled();
+        var peak = pooled.peakHourByAverage();
+        TrafficCharts.showAvgVolumeByHour(1, pooled.averageVolumeByHour(), peak.hour(), peak.averageVolume());
+    }
+}
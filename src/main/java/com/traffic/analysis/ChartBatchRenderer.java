@@ -0,0 +1,249 @@
+package com.traffic.analysis;
+
+import org.jfree.chart.ChartUtils;
+import org.jfree.chart.JFreeChart;
+import org.jfree.svg.SVGGraphics2D;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+// Renders the report figures straight to files on a worker pool, without Swing:
+// no ChartFrame and no event-dispatch thread, so it runs with java.awt.headless=true.
+// Each task builds its own JFreeChart (charts are not safe to draw concurrently).
+public final class ChartBatchRenderer implements AutoCloseable {
+
+    public enum Format {
+        PNG("png"),
+        JPEG("jpg"),
+        SVG("svg");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String extension() {
+            return extension;
+        }
+    }
+
+    // A figure to render: file stem, chart factory and base (1x) size
+    public record Figure(String name, Supplier<JFreeChart> chart, int width, int height) {}
+
+    private static final float JPEG_QUALITY = 0.9f;
+
+    private final ExecutorService pool;
+
+    public ChartBatchRenderer() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ChartBatchRenderer(int threads) {
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "chart-render");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // The four report figures, with the same names and sizes as the TrafficCharts.show* output
+    public static List<Figure> reportFigures(TrafficAggregates agg) {
+        return List.of(trafficVolume(agg), weekdayVsWeekend(agg), hourlyCurves(agg), weatherImpact(agg));
+    }
+
+    // The report figures plus the hourly percentile chart
+    public static List<Figure> reportFigures(TrafficAggregates agg, VolumeQuantiles quantiles) {
+        List<Figure> figures = new ArrayList<>(reportFigures(agg));
+        figures.add(volumePercentiles(agg, quantiles));
+        return figures;
+    }
+
+    public static Figure trafficVolume(TrafficAggregates agg) {
+        var peak = agg.peakHourByAverage();
+        var avgByHour = agg.averageVolumeByHour();
+        return new Figure("traffic-volume",
+                () -> TrafficCharts.avgVolumeByHourChart(avgByHour, peak.hour(), peak.averageVolume()),
+                900, 600);
+    }
+
+    public static Figure weekdayVsWeekend(TrafficAggregates agg) {
+        var avgWeek = agg.averageWeekdayVsWeekend();
+        return new Figure("weekday-vs-weekend",
+                () -> TrafficCharts.weekdayVsWeekendChart(avgWeek),
+                900, 600);
+    }
+
+    public static Figure hourlyCurves(TrafficAggregates agg) {
+        var curves = agg.averageVolumeByHourWeekdayVsWeekend();
+        return new Figure("hourly-curves",
+                () -> TrafficCharts.hourlyCurvesChart(curves.get("Weekday"), curves.get("Weekend")),
+                1000, 650);
+    }
+
+    public static Figure weatherImpact(TrafficAggregates agg) {
+        var avgByWeather = agg.averageVolumeByWeatherMain();
+        return new Figure("weather-impact",
+                () -> TrafficCharts.avgVolumeByWeatherMainChart(avgByWeather),
+                1000, 650);
+    }
+
+    public static Figure volumePercentiles(TrafficAggregates agg, VolumeQuantiles quantiles) {
+        var avgByHour = agg.averageVolumeByHour();
+        var percentiles = quantiles.percentilesByHour(VolumeQuantiles.REPORT_QUANTILES);
+        return new Figure("volume-percentiles",
+                () -> TrafficCharts.percentilesByHourChart(avgByHour, percentiles),
+                1000, 650);
+    }
+
+    public List<Path> renderReport(TrafficAggregates agg, Path outDir, Set<Format> formats, int... scales)
+            throws IOException {
+        return render(reportFigures(agg), outDir, formats, scales);
+    }
+
+    // Renders the report figures of every station into outDir/<station>/ as one batch
+    public List<Path> renderStations(Map<String, TrafficAggregates> byStation, Path outDir,
+                                     Set<Format> formats, int... scales) throws IOException {
+        List<Callable<Path>> tasks = new ArrayList<>();
+        for (var e : byStation.entrySet()) {
+            tasks.addAll(tasks(reportFigures(e.getValue()), outDir.resolve(e.getKey()), formats, scales));
+        }
+        return runAll(tasks);
+    }
+
+    // Every figure x format x scale as its own task. Raster files get an "@2x"-style
+    // suffix for scales above 1; SVG is resolution-independent and written once.
+    // Returns the written paths in figure / format / scale order.
+    public List<Path> render(List<Figure> figures, Path outDir, Set<Format> formats, int... scales)
+            throws IOException {
+        return runAll(tasks(figures, outDir, formats, scales));
+    }
+
+    // Renders one figure on the calling thread, for callers that schedule figures themselves
+    static List<Path> renderInline(Figure figure, Path outDir, Set<Format> formats, int... scales)
+            throws IOException {
+        List<Path> out = new ArrayList<>();
+        for (Callable<Path> task : tasks(List.of(figure), outDir, formats, scales)) {
+            try {
+                out.add(task.call());
+            } catch (IOException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException("Chart rendering failed", e);
+            }
+        }
+        return out;
+    }
+
+    private static List<Callable<Path>> tasks(List<Figure> figures, Path outDir, Set<Format> formats, int... scales)
+            throws IOException {
+        int[] s = scales.length == 0 ? new int[]{1} : scales;
+        Files.createDirectories(outDir);
+
+        List<Callable<Path>> tasks = new ArrayList<>();
+        for (Figure f : figures) {
+            for (Format format : Format.values()) {
+                if (!formats.contains(format)) continue;
+                if (format == Format.SVG) {
+                    Path out = outDir.resolve(f.name() + ".svg");
+                    tasks.add(() -> writeSvg(f, out));
+                    continue;
+                }
+                for (int scale : s) {
+                    if (scale < 1) throw new IllegalArgumentException("Scale must be >= 1: " + scale);
+                    String suffix = scale == 1 ? "" : "@" + scale + "x";
+                    Path out = outDir.resolve(f.name() + suffix + "." + format.extension());
+                    tasks.add(() -> writeRaster(f, format, scale, out));
+                }
+            }
+        }
+        return tasks;
+    }
+
+    private List<Path> runAll(List<Callable<Path>> tasks) throws IOException {
+        List<Future<Path>> futures;
+        try {
+            futures = pool.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while rendering charts", e);
+        }
+
+        List<Path> out = new ArrayList<>(futures.size());
+        for (Future<Path> f : futures) {
+            try {
+                out.add(f.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while rendering charts", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException io) throw io;
+                throw new IOException("Chart rendering failed", e.getCause());
+            }
+        }
+        return out;
+    }
+
+    private static Path writeRaster(Figure f, Format format, int scale, Path out) throws IOException {
+        String label = scale == 1 ? format.extension() : format.extension() + "@" + scale + "x";
+        TrafficMetrics.ChartEvent ev = TrafficMetrics.startChart(f.name(), label);
+        int w = f.width() * scale;
+        int h = f.height() * scale;
+        boolean jpeg = format == Format.JPEG;
+        BufferedImage image = new BufferedImage(w, h, jpeg ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+
+        // Lay out at the base size and scale the drawing, so fonts grow with resolution
+        Graphics2D g2 = image.createGraphics();
+        try {
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g2.scale(scale, scale);
+            f.chart().get().draw(g2, new Rectangle(f.width(), f.height()));
+        } finally {
+            g2.dispose();
+        }
+
+        TrafficMetrics.chartDrawn(ev);
+        try (OutputStream os = Files.newOutputStream(out)) {
+            if (jpeg) {
+                ChartUtils.writeBufferedImageAsJPEG(os, JPEG_QUALITY, image);
+            } else {
+                ChartUtils.writeBufferedImageAsPNG(os, image);
+            }
+        }
+        TrafficMetrics.endChart(ev, Files.size(out));
+        return out;
+    }
+
+    private static Path writeSvg(Figure f, Path out) throws IOException {
+        TrafficMetrics.ChartEvent ev = TrafficMetrics.startChart(f.name(), "svg");
+        SVGGraphics2D g2 = new SVGGraphics2D(f.width(), f.height());
+        f.chart().get().draw(g2, new Rectangle(f.width(), f.height()));
+        TrafficMetrics.chartDrawn(ev);
+        Files.writeString(out, g2.getSVGDocument(), StandardCharsets.UTF_8);
+        TrafficMetrics.endChart(ev, Files.size(out));
+        return out;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,60 @@
+package com.traffic.analysis;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Column positions resolved once from the CSV header (-1 when a column is absent)
+record CsvColumns(
+        int trafficVolume,
+        int holiday,
+        int temp,
+        int rain1h,
+        int snow1h,
+        int cloudsAll,
+        int weatherMain,
+        int weatherDescription,
+        int dateTime,
+        int fieldCount
+) {
+
+    static CsvColumns fromHeader(ByteBuffer buf, int start, int end) {
+        int[] idx = {-1, -1, -1, -1, -1, -1, -1, -1, -1};
+        int field = 0;
+        int fieldStart = start;
+
+        for (int i = start; i <= end; i++) {
+            if (i == end || buf.get(i) == ',') {
+                int s = fieldStart;
+                int e = i;
+                while (s < e && (buf.get(s) & 0xFF) <= ' ') s++;
+                while (e > s && (buf.get(e - 1) & 0xFF) <= ' ') e--;
+
+                byte[] name = new byte[e - s];
+                buf.get(s, name);
+                int col = columnOf(new String(name, StandardCharsets.UTF_8));
+                if (col >= 0 && idx[col] < 0) idx[col] = field;
+
+                field++;
+                fieldStart = i + 1;
+            }
+        }
+
+        return new CsvColumns(idx[0], idx[1], idx[2], idx[3], idx[4],
+                idx[5], idx[6], idx[7], idx[8], field);
+    }
+
+    private static int columnOf(String name) {
+        return switch (name) {
+            case "traffic_volume" -> 0;
+            case "holiday" -> 1;
+            case "temp" -> 2;
+            case "rain_1h" -> 3;
+            case "snow_1h" -> 4;
+            case "clouds_all" -> 5;
+            case "weather_main" -> 6;
+            case "weather_description" -> 7;
+            case "date_time" -> 8;
+            default -> -1;
+        };
+    }
+}
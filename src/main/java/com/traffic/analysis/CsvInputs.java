@@ -0,0 +1,296 @@
+package com.traffic.analysis;
+
+import com.github.luben.zstd.ZstdInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+// What the loaders accept as a CSV input: a plain file, a gzip- or zstd-compressed one,
+// or a directory of such files (e.g. one export per month), read as their concatenation
+// in file name order. Compression is recognized by the file's magic bytes, not its name.
+//
+// Compressed files are never inflated to disk. A decompression thread fills a fixed pool
+// of buffers, each cut at a line boundary, and hands them to the parser through a bounded
+// queue (LinePipe), so inflating the next buffer overlaps parsing the current one and at
+// most POOL_BUFFERS buffers are held per file.
+public final class CsvInputs {
+
+    public enum Compression { NONE, GZIP, ZSTD }
+
+    private static final int CHUNK_BYTES = 1 << 20;
+    private static final int POOL_BUFFERS = 4;
+    private static final int INFLATE_BUFFER = 1 << 16;
+
+    private CsvInputs() {}
+
+    // The input itself, or a directory's CSV files (.csv plus .gz / .zst variants) by name
+    public static List<Path> files(Path input) throws IOException {
+        if (!Files.exists(input)) {
+            throw new IOException("CSV not found at: " + input.toAbsolutePath());
+        }
+        if (!Files.isDirectory(input)) return List.of(input);
+
+        List<Path> files;
+        try (Stream<Path> s = Files.list(input)) {
+            files = s.filter(Files::isRegularFile)
+                    .filter(CsvInputs::isCsvName)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        if (files.isEmpty()) {
+            throw new IOException("No CSV files in: " + input.toAbsolutePath());
+        }
+        return files;
+    }
+
+    static boolean isCsvName(Path file) {
+        return csvBaseName(file) != null;
+    }
+
+    // The file name without ".csv" and any compression extension after it
+    // ("june.csv.gz" -> "june"), or null when it is not a CSV name
+    static String csvBaseName(Path file) {
+        String name = file.getFileName().toString();
+        int end = name.length();
+        for (String ext : new String[]{".gz", ".gzip", ".zst", ".zstd"}) {
+            if (name.regionMatches(true, end - ext.length(), ext, 0, ext.length())) {
+                end -= ext.length();
+                break;
+            }
+        }
+        return name.regionMatches(true, end - 4, ".csv", 0, 4) ? name.substring(0, end - 4) : null;
+    }
+
+    public static Compression compressionOf(Path file) throws IOException {
+        byte[] magic = new byte[4];
+        int n;
+        try (InputStream in = Files.newInputStream(file)) {
+            n = in.readNBytes(magic, 0, magic.length);
+        }
+        if (n >= 2 && (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b) return Compression.GZIP;
+        if (n == 4 && (magic[0] & 0xff) == 0x28 && (magic[1] & 0xff) == 0xb5
+                && (magic[2] & 0xff) == 0x2f && (magic[3] & 0xff) == 0xfd) {
+            return Compression.ZSTD;
+        }
+        return Compression.NONE;
+    }
+
+    // A single uncompressed file, which the loaders can map instead of stream
+    static boolean isPlainFile(Path input) throws IOException {
+        return !Files.isDirectory(input) && compressionOf(input) == Compression.NONE;
+    }
+
+    // The file's CSV text, inflated on a separate thread when it is compressed
+    public static InputStream open(Path file) throws IOException {
+        return new PipeInputStream(new LinePipe(file));
+    }
+
+    // Decompressing stream on the calling thread
+    static InputStream decompressed(Path file) throws IOException {
+        Compression c = compressionOf(file);
+        InputStream raw = Files.newInputStream(file);
+        try {
+            return switch (c) {
+                case GZIP -> new GZIPInputStream(raw, INFLATE_BUFFER);
+                case ZSTD -> Zstd.open(raw, file);
+                case NONE -> raw;
+            };
+        } catch (IOException | RuntimeException e) {
+            raw.close();
+            throw e;
+        }
+    }
+
+    // Apart from CsvInputs so zstd-jni and its native library load only for zstd input
+    private static final class Zstd {
+        static InputStream open(InputStream raw, Path file) throws IOException {
+            try {
+                return new ZstdInputStream(new BufferedInputStream(raw, INFLATE_BUFFER));
+            } catch (LinkageError e) {
+                throw new IOException("zstd input needs zstd-jni and its native library: " + file, e);
+            }
+        }
+    }
+
+    /* =======================
+       Decompression pipeline
+       ======================= */
+
+    // A file's decompressed bytes as a series of buffers that each end on a line
+    // boundary (the last one at end of file), produced ahead of the reader. Buffers
+    // cycle between the free and full queues; when the reader falls behind, the
+    // decompression thread blocks on an empty free queue.
+    static final class LinePipe implements AutoCloseable {
+
+        static final class Chunk {
+            byte[] bytes;
+            int length;
+
+            Chunk(int capacity) {
+                bytes = new byte[capacity];
+            }
+        }
+
+        private static final Chunk END = new Chunk(0);
+
+        private final Path file;
+        private final InputStream in;
+        private final BlockingQueue<Chunk> free = new ArrayBlockingQueue<>(POOL_BUFFERS);
+        // One extra slot, so END always fits behind every buffer of the pool
+        private final BlockingQueue<Chunk> full = new ArrayBlockingQueue<>(POOL_BUFFERS + 1);
+        private final Thread thread;
+        private volatile IOException failure;
+        private boolean done;
+
+        LinePipe(Path file) throws IOException {
+            this.file = file;
+            this.in = decompressed(file);
+            for (int i = 0; i < POOL_BUFFERS; i++) free.add(new Chunk(CHUNK_BYTES));
+
+            this.thread = new Thread(this::run, "csv-inflate-" + file.getFileName());
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        private void run() {
+            // The partial line at the end of the previous buffer
+            byte[] tail = new byte[256];
+            int tailLen = 0;
+
+            try (in) {
+                while (true) {
+                    Chunk c = free.take();
+                    if (c.bytes.length < tailLen * 2) c.bytes = new byte[tailLen * 2];
+                    System.arraycopy(tail, 0, c.bytes, 0, tailLen);
+
+                    int len = tailLen;
+                    int cut;
+                    boolean eof = false;
+                    while (true) {
+                        if (len == c.bytes.length) {
+                            cut = lastLineEnd(c.bytes, len);
+                            if (cut > 0) break;
+                            // A line longer than the buffer
+                            c.bytes = Arrays.copyOf(c.bytes, c.bytes.length * 2);
+                        }
+                        int n = in.read(c.bytes, len, c.bytes.length - len);
+                        if (n < 0) {
+                            eof = true;
+                            cut = len;
+                            break;
+                        }
+                        len += n;
+                    }
+
+                    tailLen = len - cut;
+                    if (tail.length < tailLen) tail = new byte[tailLen * 2];
+                    System.arraycopy(c.bytes, cut, tail, 0, tailLen);
+
+                    c.length = cut;
+                    if (cut > 0) full.put(c); else free.put(c);
+                    if (eof) break;
+                }
+            } catch (InterruptedException e) {
+                // Closed by the reader
+            } catch (IOException e) {
+                failure = e;
+            } catch (Throwable t) {
+                // A corrupt stream can surface as an unchecked exception or an error from
+                // the decompressor; the reader must see it rather than wait forever
+                failure = new IOException("Could not decompress " + file + ": " + t, t);
+            } finally {
+                full.offer(END);
+            }
+        }
+
+        // Offset just past the last '\n' in bytes[0, len), or 0 when there is none
+        private static int lastLineEnd(byte[] bytes, int len) {
+            for (int i = len - 1; i >= 0; i--) {
+                if (bytes[i] == '\n') return i + 1;
+            }
+            return 0;
+        }
+
+        // Next buffer of whole lines, or null at end of file; hand it back with recycle()
+        Chunk next() throws IOException {
+            if (done) return null;
+            Chunk c;
+            try {
+                c = full.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while reading a compressed CSV");
+            }
+            if (c != END) return c;
+
+            done = true;
+            if (failure != null) throw failure;
+            return null;
+        }
+
+        void recycle(Chunk c) {
+            free.offer(c);
+        }
+
+        // Stops the decompression thread if the file was not read to the end
+        @Override
+        public void close() {
+            done = true;
+            thread.interrupt();
+        }
+    }
+
+    // InputStream over a LinePipe, for readers that want a stream (commons-csv)
+    private static final class PipeInputStream extends InputStream {
+        private final LinePipe pipe;
+        private LinePipe.Chunk chunk;
+        private int pos;
+
+        PipeInputStream(LinePipe pipe) {
+            this.pipe = pipe;
+        }
+
+        // False at end of file
+        private boolean fill() throws IOException {
+            while (chunk == null || pos == chunk.length) {
+                if (chunk != null) pipe.recycle(chunk);
+                chunk = pipe.next();
+                pos = 0;
+                if (chunk == null) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? chunk.bytes[pos++] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (!fill()) return -1;
+            int n = Math.min(len, chunk.length - pos);
+            System.arraycopy(chunk.bytes, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+            pipe.close();
+        }
+    }
+}
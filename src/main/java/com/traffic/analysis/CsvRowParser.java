@@ -0,0 +1,390 @@
+package com.traffic.analysis;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+// Parses traffic CSV rows straight from bytes. One instance per thread: it reuses
+// its field offset arrays and keeps a small cache of the repeated text values.
+class CsvRowParser {
+
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final CsvColumns cols;
+    private final int[] fieldStart;
+    private final int[] fieldEnd;
+    private final StringCache strings = new StringCache();
+
+    CsvRowParser(CsvColumns cols) {
+        this.cols = cols;
+        this.fieldStart = new int[cols.fieldCount()];
+        this.fieldEnd = new int[cols.fieldCount()];
+    }
+
+    // Parses every complete line in [from, to). When atEof is false a trailing line
+    // without '\n' is left alone. Returns the position just past the last line consumed.
+    int parseRows(ByteBuffer buf, int from, int to, boolean atEof, List<TrafficRecord> out)
+            throws IOException {
+        return parseRows(buf, from, to, atEof, out, null);
+    }
+
+    // Same, with every line going through validator (when not null): rows that fail
+    // to parse or break one of its rules are quarantined instead of returned
+    int parseRows(ByteBuffer buf, int from, int to, boolean atEof, List<TrafficRecord> out,
+                  LoadValidator validator) throws IOException {
+        int lineStart = from;
+
+        while (lineStart < to) {
+            int nl = lineStart;
+            while (nl < to && buf.get(nl) != '\n') nl++;
+            if (nl == to && !atEof) break;
+
+            int lineEnd = nl;
+            if (lineEnd > lineStart && buf.get(lineEnd - 1) == '\r') lineEnd--;
+            if (lineEnd > lineStart) {
+                if (validator == null) {
+                    out.add(parseLine(buf, lineStart, lineEnd));
+                } else {
+                    parseValidated(buf, lineStart, lineEnd, validator, out);
+                }
+            }
+
+            lineStart = Math.min(nl + 1, to);
+        }
+
+        return lineStart;
+    }
+
+    // Columnar variant: each row goes straight into the builder with its date_time as an
+    // epoch hour. Text values come from the string cache and numbers are parsed in place,
+    // so nothing is allocated per row. No validation; a bad row fails the load.
+    int parseRows(ByteBuffer buf, int from, int to, boolean atEof, TrafficDataset.Builder out)
+            throws IOException {
+        int lineStart = from;
+
+        while (lineStart < to) {
+            int nl = lineStart;
+            while (nl < to && buf.get(nl) != '\n') nl++;
+            if (nl == to && !atEof) break;
+
+            int lineEnd = nl;
+            if (lineEnd > lineStart && buf.get(lineEnd - 1) == '\r') lineEnd--;
+            if (lineEnd > lineStart) {
+                splitFields(buf, lineStart, lineEnd);
+                addRow(buf, out);
+            }
+
+            lineStart = Math.min(nl + 1, to);
+        }
+
+        return lineStart;
+    }
+
+    TrafficRecord parseLine(ByteBuffer buf, int start, int end) throws IOException {
+        splitFields(buf, start, end);
+        return record(buf);
+    }
+
+    private void parseValidated(ByteBuffer buf, int start, int end, LoadValidator validator,
+                                List<TrafficRecord> out) throws IOException {
+        long row = validator.startRow();
+        splitFields(buf, start, end);
+
+        LoadValidator.Rule failed;
+        TrafficRecord r = null;
+        if (validator.checksMissingValues() && hasMissingValue()) {
+            failed = LoadValidator.Rule.MISSING_VALUE;
+        } else {
+            try {
+                r = record(buf);
+                failed = validator.check(r);
+            } catch (NumberFormatException e) {
+                failed = LoadValidator.Rule.BAD_NUMBER;
+            } catch (IllegalArgumentException | DateTimeException e) {
+                failed = LoadValidator.Rule.MALFORMED_DATE_TIME;
+            }
+        }
+
+        if (failed == null) {
+            out.add(r);
+        } else {
+            validator.quarantine(row, failed, utf8(buf, start, end));
+        }
+    }
+
+    // An absent or empty numeric / date_time field (these would otherwise read as 0)
+    private boolean hasMissingValue() {
+        return isEmpty(cols.trafficVolume()) || isEmpty(cols.temp()) || isEmpty(cols.rain1h())
+                || isEmpty(cols.snow1h()) || isEmpty(cols.cloudsAll()) || isEmpty(cols.dateTime());
+    }
+
+    private boolean isEmpty(int col) {
+        return col < 0 || fieldStart[col] == fieldEnd[col];
+    }
+
+    private TrafficRecord record(ByteBuffer buf) {
+        String holiday = text(buf, cols.holiday());
+        if (holiday.isBlank()) holiday = "None";
+
+        double tempK = number(buf, cols.temp());
+        double rain1hMm = number(buf, cols.rain1h());
+        double snow1hMm = number(buf, cols.snow1h());
+        int cloudsAllPct = (int) Math.round(number(buf, cols.cloudsAll()));
+
+        String weatherMain = text(buf, cols.weatherMain());
+        String weatherDescription = text(buf, cols.weatherDescription());
+
+        LocalDateTime dateTime = dateTime(buf, cols.dateTime());
+
+        int trafficVolume = (int) Math.round(number(buf, cols.trafficVolume()));
+
+        return new TrafficRecord(
+                holiday,
+                tempK,
+                rain1hMm,
+                snow1hMm,
+                cloudsAllPct,
+                weatherMain,
+                weatherDescription,
+                dateTime,
+                trafficVolume
+        );
+    }
+
+    private void addRow(ByteBuffer buf, TrafficDataset.Builder out) {
+        String holiday = text(buf, cols.holiday());
+        if (holiday.isBlank()) holiday = "None";
+
+        out.add(
+                epochHour(buf, cols.dateTime()),
+                (int) Math.round(number(buf, cols.trafficVolume())),
+                number(buf, cols.temp()),
+                number(buf, cols.rain1h()),
+                number(buf, cols.snow1h()),
+                (int) Math.round(number(buf, cols.cloudsAll())),
+                holiday,
+                text(buf, cols.weatherMain()),
+                text(buf, cols.weatherDescription())
+        );
+    }
+
+    // Records trimmed [start, end) offsets of each field; missing trailing fields are empty.
+    private void splitFields(ByteBuffer buf, int start, int end) throws IOException {
+        int field = 0;
+        int s = start;
+
+        for (int i = start; i <= end && field < fieldStart.length; i++) {
+            byte b = i < end ? buf.get(i) : (byte) ',';
+            if (b == '"') {
+                throw new IOException("Quoted CSV fields are not supported by the mapped loader"
+                        + " (use TrafficDataLoader.load)");
+            }
+            if (b == ',') {
+                int e = i;
+                while (s < e && (buf.get(s) & 0xFF) <= ' ') s++;
+                while (e > s && (buf.get(e - 1) & 0xFF) <= ' ') e--;
+                fieldStart[field] = s;
+                fieldEnd[field] = e;
+                field++;
+                s = i + 1;
+            }
+        }
+
+        for (; field < fieldStart.length; field++) {
+            fieldStart[field] = end;
+            fieldEnd[field] = end;
+        }
+    }
+
+    private String text(ByteBuffer buf, int col) {
+        if (col < 0) return "";
+        return strings.get(buf, fieldStart[col], fieldEnd[col]);
+    }
+
+    private double number(ByteBuffer buf, int col) {
+        if (col < 0) return 0.0;
+        return parseDouble(buf, fieldStart[col], fieldEnd[col]);
+    }
+
+    private LocalDateTime dateTime(ByteBuffer buf, int col) {
+        int s = dateTimeStart(buf, col);
+        int day = digits(buf, s, 2);
+        int month = digits(buf, s + 3, 2);
+        int year = digits(buf, s + 6, 4);
+        int hour = digits(buf, s + 11, 2);
+        int minute = digits(buf, s + 14, 2);
+
+        if ((day | month | year | hour | minute) < 0) throw unparseableDateTime(buf, s);
+        return LocalDateTime.of(year, month, day, hour, minute);
+    }
+
+    // The same field as hours since the epoch, without a LocalDateTime (minutes are
+    // checked but dropped, as in TrafficDataset)
+    private int epochHour(ByteBuffer buf, int col) {
+        int s = dateTimeStart(buf, col);
+        int day = digits(buf, s, 2);
+        int month = digits(buf, s + 3, 2);
+        int year = digits(buf, s + 6, 4);
+        int hour = digits(buf, s + 11, 2);
+        int minute = digits(buf, s + 14, 2);
+
+        if ((day | month | year | hour | minute) < 0 || minute > 59) throw unparseableDateTime(buf, s);
+        return HourCalendar.epochHour(year, month, day, hour);
+    }
+
+    // Start of a dd-MM-yyyy HH:mm shaped field
+    private int dateTimeStart(ByteBuffer buf, int col) {
+        int s = col < 0 ? 0 : fieldStart[col];
+        int e = col < 0 ? 0 : fieldEnd[col];
+
+        if (e - s != 16
+                || buf.get(s + 2) != '-' || buf.get(s + 5) != '-'
+                || buf.get(s + 10) != ' ' || buf.get(s + 13) != ':') {
+            throw new IllegalArgumentException("Unparseable date_time: " + ascii(buf, s, e));
+        }
+        return s;
+    }
+
+    private static IllegalArgumentException unparseableDateTime(ByteBuffer buf, int start) {
+        return new IllegalArgumentException("Unparseable date_time: " + ascii(buf, start, start + 16));
+    }
+
+    private static int digits(ByteBuffer buf, int at, int n) {
+        int v = 0;
+        for (int i = at; i < at + n; i++) {
+            int d = buf.get(i) - '0';
+            if (d < 0 || d > 9) return -1;
+            v = v * 10 + d;
+        }
+        return v;
+    }
+
+    // Fast path for plain decimals: an exact mantissa below 2^53 divided by an exact
+    // power of ten rounds the same way Double.parseDouble does. Anything else
+    // (exponents, very long digit runs) falls back to the JDK parser.
+    static double parseDouble(ByteBuffer buf, int start, int end) {
+        if (start == end) return 0.0;
+
+        int i = start;
+        boolean negative = false;
+        byte first = buf.get(i);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int significant = 0;
+        int scale = 0;
+        boolean seenDot = false;
+        boolean seenDigit = false;
+
+        for (; i < end; i++) {
+            byte b = buf.get(i);
+            if (b >= '0' && b <= '9') {
+                seenDigit = true;
+                if (mantissa != 0 || b != '0') significant++;
+                if (significant > 15) return slowParseDouble(buf, start, end);
+                mantissa = mantissa * 10 + (b - '0');
+                if (seenDot) scale++;
+            } else if (b == '.' && !seenDot) {
+                seenDot = true;
+            } else {
+                return slowParseDouble(buf, start, end);
+            }
+        }
+
+        if (!seenDigit || scale >= POW10.length) return slowParseDouble(buf, start, end);
+
+        double v = scale == 0 ? mantissa : mantissa / POW10[scale];
+        return negative ? -v : v;
+    }
+
+    private static double slowParseDouble(ByteBuffer buf, int start, int end) {
+        return Double.parseDouble(ascii(buf, start, end));
+    }
+
+    private static String utf8(ByteBuffer buf, int start, int end) {
+        byte[] b = new byte[end - start];
+        buf.get(start, b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static String ascii(ByteBuffer buf, int start, int end) {
+        byte[] b = new byte[end - start];
+        buf.get(start, b);
+        return new String(b, StandardCharsets.ISO_8859_1);
+    }
+
+    // Open-addressing map from field bytes to a shared String, so repeated
+    // weather/holiday values are decoded once instead of once per row.
+    private static final class StringCache {
+        private static final int MAX_ENTRIES = 4096;
+
+        private byte[][] keys = new byte[64][];
+        private String[] values = new String[64];
+        private int size;
+
+        String get(ByteBuffer buf, int start, int end) {
+            int len = end - start;
+            if (len == 0) return "";
+
+            int h = 1;
+            for (int i = start; i < end; i++) h = 31 * h + buf.get(i);
+
+            int mask = keys.length - 1;
+            int slot = mix(h) & mask;
+            while (keys[slot] != null) {
+                if (matches(keys[slot], buf, start, len)) return values[slot];
+                slot = (slot + 1) & mask;
+            }
+
+            byte[] key = new byte[len];
+            buf.get(start, key);
+            String value = new String(key, StandardCharsets.UTF_8);
+
+            // Free-text columns can be high-cardinality; stop caching rather than grow without bound.
+            if (size >= MAX_ENTRIES) return value;
+
+            keys[slot] = key;
+            values[slot] = value;
+            if (++size * 2 > keys.length) rehash();
+            return value;
+        }
+
+        private static boolean matches(byte[] key, ByteBuffer buf, int start, int len) {
+            if (key.length != len) return false;
+            for (int i = 0; i < len; i++) {
+                if (key[i] != buf.get(start + i)) return false;
+            }
+            return true;
+        }
+
+        private static int mix(int h) {
+            return h ^ (h >>> 16);
+        }
+
+        private void rehash() {
+            byte[][] oldKeys = keys;
+            String[] oldValues = values;
+            keys = new byte[oldKeys.length * 2][];
+            values = new String[oldKeys.length * 2];
+
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == null) continue;
+                int slot = mix(Arrays.hashCode(oldKeys[i])) & mask;
+                while (keys[slot] != null) slot = (slot + 1) & mask;
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.traffic.analysis;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+// Holds the current TrafficDataset for one CSV and replaces it when the file changes.
+// Readers call current() and keep using the Snapshot they got for the whole request:
+// a reload builds the new dataset completely on the watcher thread and publishes it
+// with one reference swap, so nobody waits on a load or sees a partly loaded file.
+// Nothing else keeps old snapshots, so they are collected once the last reader drops
+// them.
+//
+// Each snapshot also carries a RollupCube built from the snapshot's own dataset, so the
+// cube and the dataset always describe the same version of the file, which is read
+// once per reload; rollups(false) leaves it out.
+//
+// Change events are debounced (a copy or an editor save fires several) and a load that
+// fails, e.g. on a file that is still being written, keeps the previous snapshot and
+// is retried on the next event.
+public final class DatasetHolder implements AutoCloseable {
+
+    // An immutable published version of the data
+    // cube is null when the holder was built with rollups(false)
+    public record Snapshot(TrafficDataset dataset, long version, Instant loadedAt, RollupCube cube) {}
+
+    public record Metrics(long reloads,
+                          long failedReloads,
+                          long version,
+                          int rows,
+                          long fileBytes,
+                          Duration lastLoadDuration,
+                          Instant lastLoadedAt,
+                          String lastError) {}
+
+    @FunctionalInterface
+    public interface Loader {
+        TrafficDataset load(Path csv) throws IOException;
+    }
+
+    private final Path csv;
+    private final Loader loader;
+    private final Duration debounce;
+    private final boolean rollups;
+
+    private final AtomicReference<Snapshot> current = new AtomicReference<>();
+    private final AtomicReference<Metrics> metrics = new AtomicReference<>();
+    private final List<Consumer<Snapshot>> listeners = new CopyOnWriteArrayList<>();
+
+    private WatchService watcher;
+    private Thread watchThread;
+
+    private DatasetHolder(Builder b) {
+        this.csv = b.csv.toAbsolutePath().normalize();
+        this.loader = b.loader;
+        this.debounce = b.debounce;
+        this.rollups = b.rollups;
+    }
+
+    public static Builder builder(Path csv) {
+        return new Builder(csv);
+    }
+
+    // Default loader (TrafficDataLoader.loadCached), not watching yet
+    public static DatasetHolder open(Path csv) throws IOException {
+        return builder(csv).open();
+    }
+
+    public static final class Builder {
+        private final Path csv;
+        private Loader loader = p -> TrafficDataset.of(TrafficDataLoader.loadCached(p));
+        private Duration debounce = Duration.ofMillis(500);
+        private boolean rollups = true;
+
+        private Builder(Path csv) {
+            this.csv = csv;
+        }
+
+        public Builder loader(Loader loader) {
+            this.loader = loader;
+            return this;
+        }
+
+        // Quiet period after the last change event before the file is reloaded
+        public Builder debounce(Duration debounce) {
+            this.debounce = debounce;
+            return this;
+        }
+
+        // Whether snapshots carry the file's RollupCube (on by default)
+        public Builder rollups(boolean rollups) {
+            this.rollups = rollups;
+            return this;
+        }
+
+        // Loads the file once; a failure here is thrown rather than retried
+        public DatasetHolder open() throws IOException {
+            DatasetHolder h = new DatasetHolder(this);
+            h.metrics.set(new Metrics(0, 0, 0, 0, 0, Duration.ZERO, null, null));
+            h.reload();
+            return h;
+        }
+    }
+
+    public Snapshot current() {
+        return current.get();
+    }
+
+    public TrafficDataset dataset() {
+        return current.get().dataset();
+    }
+
+    public Path source() {
+        return csv;
+    }
+
+    public Metrics metrics() {
+        return metrics.get();
+    }
+
+    // Called on the loading thread after each successful reload (not for the initial load)
+    public void onReload(Consumer<Snapshot> listener) {
+        listeners.add(listener);
+    }
+
+    // Undoes onReload for the same listener instance
+    public void removeReloadListener(Consumer<Snapshot> listener) {
+        listeners.remove(listener);
+    }
+
+    // Loads the file now and publishes it; on failure the current snapshot stays
+    public synchronized Snapshot reload() throws IOException {
+        long start = System.nanoTime();
+        Metrics m = metrics.get();
+        TrafficDataset ds;
+        RollupCube cube = null;
+        long bytes;
+        try {
+            if (!Files.exists(csv)) throw new IOException("CSV not found at: " + csv);
+            bytes = Files.size(csv);
+            ds = loader.load(csv);
+            if (rollups) {
+                cube = RollupCube.build(ds);
+                cube.buildViews();
+            }
+        } catch (IOException | RuntimeException e) {
+            metrics.set(new Metrics(m.reloads(), m.failedReloads() + 1, m.version(), m.rows(), m.fileBytes(),
+                    m.lastLoadDuration(), m.lastLoadedAt(), e.toString()));
+            throw e;
+        }
+
+        Snapshot previous = current.get();
+        long version = previous == null ? 1 : previous.version() + 1;
+        Snapshot next = new Snapshot(ds, version, Instant.now(), cube);
+        current.set(next);
+        metrics.set(new Metrics(previous == null ? 0 : m.reloads() + 1, m.failedReloads(), version, ds.size(),
+                bytes, Duration.ofNanos(System.nanoTime() - start), next.loadedAt(), null));
+
+        if (previous != null) {
+            for (Consumer<Snapshot> l : listeners) l.accept(next);
+        }
+        return next;
+    }
+
+    /* =======================
+       File watching
+       ======================= */
+
+    // Starts the background watcher thread (idempotent)
+    public synchronized DatasetHolder watch() throws IOException {
+        if (watchThread != null) return this;
+
+        watcher = FileSystems.getDefault().newWatchService();
+        csv.getParent().register(watcher,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        watchThread = new Thread(this::watchLoop, "dataset-watch-" + csv.getFileName());
+        watchThread.setDaemon(true);
+        watchThread.start();
+        return this;
+    }
+
+    private void watchLoop() {
+        Path name = csv.getFileName();
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                boolean changed = drain(key, name);
+
+                // Wait for the writer to go quiet before loading
+                while (changed) {
+                    WatchKey more = watcher.poll(debounce.toMillis(), TimeUnit.MILLISECONDS);
+                    if (more == null) break;
+                    drain(more, name);
+                }
+
+                if (changed) {
+                    try {
+                        reload();
+                    } catch (IOException | RuntimeException e) {
+                        System.err.println("Keeping previous data, reload of " + csv + " failed: " + e);
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    // True when any pending event of the key concerns the watched file
+    private static boolean drain(WatchKey key, Path name) {
+        boolean hit = false;
+        for (WatchEvent<?> e : key.pollEvents()) {
+            if (e.kind() == StandardWatchEventKinds.OVERFLOW || name.equals(e.context())) hit = true;
+        }
+        key.reset();
+        return hit;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (watchThread == null) return;
+        watcher.close();
+        watchThread.interrupt();
+        watchThread = null;
+    }
+}
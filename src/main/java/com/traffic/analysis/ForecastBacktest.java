@@ -0,0 +1,150 @@
+package com.traffic.analysis;
+
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Rolling-origin evaluation of a ForecastModel.Method over an hourly series. Origin o
+// trains on buckets [0, o) and forecasts [o, o + horizon); origins start at
+// minTrainHours and advance by stepHours. Missing (NaN) actuals are not scored and
+// MAPE only uses hours with a non-zero actual.
+//
+// Origins are split into contiguous blocks on a fork/join pool. Each block fits one
+// model up to its first origin and then advances it incrementally from origin to
+// origin, so a block costs one pass over the history rather than one fit per origin.
+public final class ForecastBacktest {
+
+    private static final int ORIGINS_PER_TASK = 64;
+
+    private ForecastBacktest() {}
+
+    // maeByLead[k] is the MAE of forecasts k + 1 hours ahead (NaN when never scored)
+    public record Result(ForecastModel.Method method,
+                         int horizonHours,
+                         int origins,
+                         long points,
+                         double mae,
+                         double mape,
+                         double[] maeByLead) {}
+
+    public static Result run(TimeSeries hourly, Set<LocalDate> holidays, ForecastModel.Method method,
+                             int horizonHours, int stepHours, int minTrainHours) {
+        return run(hourly, holidays, method, horizonHours, stepHours, minTrainHours, ForkJoinPool.commonPool());
+    }
+
+    public static Result run(TimeSeries hourly, Set<LocalDate> holidays, ForecastModel.Method method,
+                             int horizonHours, int stepHours, int minTrainHours, ForkJoinPool pool) {
+        if (hourly.strideHours() != 1) throw new IllegalArgumentException("Series must be hourly");
+        if (horizonHours < 1 || stepHours < 1 || minTrainHours < 1) {
+            throw new IllegalArgumentException("Horizon, step and training hours must be positive");
+        }
+
+        int last = hourly.size() - horizonHours;
+        int origins = last < minTrainHours ? 0 : (last - minTrainHours) / stepHours + 1;
+
+        Errors e = origins == 0
+                ? new Errors(horizonHours)
+                : pool.invoke(new EvaluateOrigins(hourly, holidays, method, horizonHours, stepHours,
+                        minTrainHours, 0, origins));
+
+        double[] maeByLead = new double[horizonHours];
+        for (int k = 0; k < horizonHours; k++) {
+            maeByLead[k] = e.leadCount[k] == 0 ? Double.NaN : e.leadAbs[k] / e.leadCount[k];
+        }
+        return new Result(method, horizonHours, origins, e.points,
+                e.points == 0 ? Double.NaN : e.abs / e.points,
+                e.pctPoints == 0 ? Double.NaN : 100.0 * e.pct / e.pctPoints,
+                maeByLead);
+    }
+
+    // Error sums for a block of origins
+    private static final class Errors {
+        final double[] leadAbs;
+        final long[] leadCount;
+        double abs;
+        long points;
+        double pct;
+        long pctPoints;
+
+        Errors(int horizon) {
+            leadAbs = new double[horizon];
+            leadCount = new long[horizon];
+        }
+
+        Errors merge(Errors o) {
+            for (int k = 0; k < leadAbs.length; k++) {
+                leadAbs[k] += o.leadAbs[k];
+                leadCount[k] += o.leadCount[k];
+            }
+            abs += o.abs;
+            points += o.points;
+            pct += o.pct;
+            pctPoints += o.pctPoints;
+            return this;
+        }
+    }
+
+    private static final class EvaluateOrigins extends RecursiveTask<Errors> {
+        private static final long serialVersionUID = 1L;
+
+        private final TimeSeries hourly;
+        private final Set<LocalDate> holidays;
+        private final ForecastModel.Method method;
+        private final int horizon;
+        private final int step;
+        private final int minTrain;
+        private final int fromOrigin;
+        private final int toOrigin;
+
+        EvaluateOrigins(TimeSeries hourly, Set<LocalDate> holidays, ForecastModel.Method method,
+                        int horizon, int step, int minTrain, int fromOrigin, int toOrigin) {
+            this.hourly = hourly;
+            this.holidays = holidays;
+            this.method = method;
+            this.horizon = horizon;
+            this.step = step;
+            this.minTrain = minTrain;
+            this.fromOrigin = fromOrigin;
+            this.toOrigin = toOrigin;
+        }
+
+        @Override
+        protected Errors compute() {
+            if (toOrigin - fromOrigin > ORIGINS_PER_TASK) {
+                int mid = (fromOrigin + toOrigin) >>> 1;
+                EvaluateOrigins right = new EvaluateOrigins(hourly, holidays, method, horizon, step, minTrain, mid, toOrigin);
+                right.fork();
+                Errors left = new EvaluateOrigins(hourly, holidays, method, horizon, step, minTrain, fromOrigin, mid).compute();
+                return left.merge(right.join());
+            }
+
+            Errors e = new Errors(horizon);
+            ForecastModel model = method.create(holidays);
+            int trained = 0;
+            for (int i = fromOrigin; i < toOrigin; i++) {
+                int origin = minTrain + i * step;
+                model.observe(hourly, trained, origin);
+                trained = origin;
+
+                TimeSeries f = model.forecast(horizon);
+                for (int k = 0; k < horizon; k++) {
+                    double actual = hourly.valueAt(origin + k);
+                    double predicted = f.valueAt(k);
+                    if (Double.isNaN(actual) || Double.isNaN(predicted)) continue;
+
+                    double err = Math.abs(actual - predicted);
+                    e.abs += err;
+                    e.points++;
+                    e.leadAbs[k] += err;
+                    e.leadCount[k]++;
+                    if (actual != 0) {
+                        e.pct += err / Math.abs(actual);
+                        e.pctPoints++;
+                    }
+                }
+            }
+            return e;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.traffic.analysis;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+// Incrementally fitted hourly volume forecaster. Observations arrive one hour at a
+// time in increasing order (one value per hour, e.g. from TrafficWindows.hourly);
+// skipped hours are stepped through as missing, so a model only ever moves forward
+// and never refits its history. forecast(h) predicts the h hours after the last
+// observation without changing the model.
+//
+// Holidays are whole days: a model that uses them treats every hour of a holiday
+// date as a holiday hour, for both observations and forecasts. Dates can be added
+// after creation (addHoliday), e.g. upcoming holidays before forecasting over them.
+public abstract class ForecastModel {
+
+    public enum Method {
+        SEASONAL_NAIVE,
+        SEASONAL_PROFILE,
+        HOLT_WINTERS;
+
+        public ForecastModel create(Set<LocalDate> holidays) {
+            return switch (this) {
+                case SEASONAL_NAIVE -> seasonalNaive();
+                case SEASONAL_PROFILE -> seasonalProfile(holidays);
+                case HOLT_WINTERS -> holtWinters(holidays);
+            };
+        }
+    }
+
+    static final int HOURS_PER_WEEK = 168;
+
+    // Epoch hour after the last observation; MIN_VALUE before the first one
+    private int nextEpochHour = Integer.MIN_VALUE;
+
+    // Epoch days of the holiday dates
+    private final Set<Integer> holidayDays;
+
+    ForecastModel(Set<LocalDate> holidays) {
+        this.holidayDays = epochDays(holidays);
+    }
+
+    // Treats the date as a holiday from now on; hours already observed are not revisited
+    final void addHoliday(LocalDate date) {
+        holidayDays.add((int) date.toEpochDay());
+    }
+
+    public final void observe(int epochHour, double volume) {
+        if (nextEpochHour == Integer.MIN_VALUE) {
+            nextEpochHour = epochHour;
+        } else if (epochHour < nextEpochHour) {
+            throw new IllegalArgumentException("Observation for "
+                    + TrafficDataset.dateTimeOf(epochHour) + " is not after "
+                    + TrafficDataset.dateTimeOf(nextEpochHour - 1));
+        }
+
+        while (nextEpochHour < epochHour) step(nextEpochHour++, Double.NaN);
+        step(epochHour, volume);
+        nextEpochHour = epochHour + 1;
+    }
+
+    // Feeds every hour of the series; NaN buckets are missing hours
+    public final void observe(TimeSeries hourly) {
+        observe(hourly, 0, hourly.size());
+    }
+
+    final void observe(TimeSeries hourly, int from, int to) {
+        if (hourly.strideHours() != 1) throw new IllegalArgumentException("Series must be hourly");
+        for (int i = from; i < to; i++) observe(hourly.epochHourAt(i), hourly.valueAt(i));
+    }
+
+    public final boolean hasObservations() {
+        return nextEpochHour != Integer.MIN_VALUE;
+    }
+
+    // First hour that forecast() predicts
+    public final int nextEpochHour() {
+        if (!hasObservations()) throw new IllegalStateException("Model has no observations");
+        return nextEpochHour;
+    }
+
+    public final TimeSeries forecast(int horizonHours) {
+        int start = nextEpochHour();
+        double[] values = new double[horizonHours];
+        for (int k = 0; k < horizonHours; k++) values[k] = predict(start + k, k + 1);
+        return new TimeSeries(start, 1, values);
+    }
+
+    public TimeSeries forecastNextDay() {
+        return forecast(24);
+    }
+
+    public TimeSeries forecastNextWeek() {
+        return forecast(HOURS_PER_WEEK);
+    }
+
+    // One hour of input (NaN for a missing hour), always the hour after the previous call
+    abstract void step(int epochHour, double volume);
+
+    // Prediction for epochHour, lead hours after the last observation (NaN if unknown)
+    abstract double predict(int epochHour, int lead);
+
+    /* =======================
+       Models
+       ======================= */
+
+    // Volume at the same hour of week, last time it was observed
+    public static ForecastModel seasonalNaive() {
+        return new ForecastModel(Set.of()) {
+            private final double[] last = filledNaN(HOURS_PER_WEEK);
+
+            @Override
+            void step(int epochHour, double volume) {
+                if (!Double.isNaN(volume)) last[hourOfWeek(epochHour)] = volume;
+            }
+
+            @Override
+            double predict(int epochHour, int lead) {
+                return last[hourOfWeek(epochHour)];
+            }
+        };
+    }
+
+    // Mean volume per hour of week, with a separate hour-of-day profile for holidays
+    // (falling back to the hour-of-week mean until a holiday has been seen at that hour)
+    public static ForecastModel seasonalProfile(Set<LocalDate> holidays) {
+        return new ForecastModel(holidays) {
+            // slot = hour of week, or 168 + hour of day on holidays
+            private final double[] sum = new double[HOURS_PER_WEEK + 24];
+            private final long[] count = new long[HOURS_PER_WEEK + 24];
+
+            @Override
+            void step(int epochHour, double volume) {
+                if (Double.isNaN(volume)) return;
+                int slot = slotOf(epochHour);
+                sum[slot] += volume;
+                count[slot]++;
+            }
+
+            @Override
+            double predict(int epochHour, int lead) {
+                int slot = slotOf(epochHour);
+                if (count[slot] == 0) slot = hourOfWeek(epochHour);
+                return count[slot] == 0 ? Double.NaN : sum[slot] / count[slot];
+            }
+
+            private int slotOf(int epochHour) {
+                return isHoliday(epochHour)
+                        ? HOURS_PER_WEEK + TrafficDataset.hourOf(epochHour)
+                        : hourOfWeek(epochHour);
+            }
+        };
+    }
+
+    // Defaults picked by rolling-origin backtest (24 h horizon) on the bundled Metro data
+    public static ForecastModel holtWinters(Set<LocalDate> holidays) {
+        return holtWinters(holidays, 0.02, 0.01, 0.2, 0.9);
+    }
+
+    // Additive Holt-Winters with a weekly (168 h) season and damped trend:
+    //   forecast(t + k) = level + (phi + ... + phi^k) * trend + season[how] + holiday[hour]
+    // The holiday term is a per-hour-of-day offset learned from holiday residuals (with
+    // the season's smoothing factor); holiday hours do not update the weekly season.
+    // The first week of observations initialises level and season.
+    public static ForecastModel holtWinters(Set<LocalDate> holidays,
+                                            double alpha, double beta, double gamma, double phi) {
+        return new ForecastModel(holidays) {
+            private final double[] season = new double[HOURS_PER_WEEK];
+            private final double[] holidayOffset = new double[24];
+            private double level;
+            private double trend;
+
+            // Warm-up: the first week is buffered, then turned into level + season
+            private double[] warmUp = filledNaN(HOURS_PER_WEEK);
+            private int warmUpHours;
+
+            @Override
+            void step(int epochHour, double volume) {
+                boolean holiday = isHoliday(epochHour);
+                if (warmUp != null) {
+                    if (!holiday) warmUp[hourOfWeek(epochHour)] = volume;
+                    if (++warmUpHours == HOURS_PER_WEEK) initialise();
+                    return;
+                }
+
+                int how = hourOfWeek(epochHour);
+                double previous = level;
+                if (Double.isNaN(volume)) {
+                    level = previous + phi * trend;
+                    trend = phi * trend;
+                    return;
+                }
+
+                double offset = holiday ? holidayOffset[TrafficDataset.hourOf(epochHour)] : 0.0;
+                level = alpha * (volume - offset - season[how]) + (1 - alpha) * (previous + phi * trend);
+                trend = beta * (level - previous) + (1 - beta) * phi * trend;
+                if (holiday) {
+                    int h = TrafficDataset.hourOf(epochHour);
+                    holidayOffset[h] = gamma * (volume - level - season[how]) + (1 - gamma) * holidayOffset[h];
+                } else {
+                    season[how] = gamma * (volume - level) + (1 - gamma) * season[how];
+                }
+            }
+
+            private void initialise() {
+                double sum = 0;
+                int n = 0;
+                for (double v : warmUp) {
+                    if (!Double.isNaN(v)) {
+                        sum += v;
+                        n++;
+                    }
+                }
+                level = n == 0 ? 0.0 : sum / n;
+                for (int i = 0; i < HOURS_PER_WEEK; i++) {
+                    season[i] = Double.isNaN(warmUp[i]) ? 0.0 : warmUp[i] - level;
+                }
+                warmUp = null;
+            }
+
+            @Override
+            double predict(int epochHour, int lead) {
+                if (warmUp != null) return Double.NaN;
+
+                double damped = 0;
+                double p = 1;
+                for (int k = 0; k < lead; k++) {
+                    p *= phi;
+                    damped += p;
+                }
+                double offset = isHoliday(epochHour) ? holidayOffset[TrafficDataset.hourOf(epochHour)] : 0.0;
+                return level + damped * trend + season[hourOfWeek(epochHour)] + offset;
+            }
+        };
+    }
+
+    /* =======================
+       Helpers
+       ======================= */
+
+    // Dates whose rows carry a holiday name other than "None"
+    public static Set<LocalDate> holidaysOf(TrafficDataset ds) {
+        String[] names = ds.holidayNames();
+        boolean[] isHoliday = new boolean[names.length];
+        for (int c = 0; c < names.length; c++) isHoliday[c] = HourCalendar.isHolidayName(names[c]);
+
+        Set<LocalDate> out = new HashSet<>();
+        short[] codes = ds.holidayCodeColumn();
+        int[] hours = ds.epochHourColumn();
+        for (int i = 0; i < ds.size(); i++) {
+            if (isHoliday[codes[i]]) out.add(TrafficDataset.dateTimeOf(hours[i]).toLocalDate());
+        }
+        return out;
+    }
+
+    // 0 = Monday 00:00 .. 167 = Sunday 23:00
+    static int hourOfWeek(int epochHour) {
+        return TrafficDataset.dayOfWeekIndex(epochHour) * 24 + TrafficDataset.hourOf(epochHour);
+    }
+
+    private static Set<Integer> epochDays(Set<LocalDate> dates) {
+        Set<Integer> out = new HashSet<>();
+        for (LocalDate d : dates) out.add((int) d.toEpochDay());
+        return out;
+    }
+
+    final boolean isHoliday(int epochHour) {
+        return !holidayDays.isEmpty() && holidayDays.contains(Math.floorDiv(epochHour, 24));
+    }
+
+    private static double[] filledNaN(int n) {
+        double[] a = new double[n];
+        Arrays.fill(a, Double.NaN);
+        return a;
+    }
+}
@@ -0,0 +1,176 @@
+package com.traffic.analysis;
+
+// Calendar fields of epoch hours (hours since 1970-01-01T00:00, see TrafficDataset),
+// precomputed into one packed int per hour of a range:
+//
+//   bits  0-4   hour of day (0-23)
+//   bits  5-7   day of week (0 = Monday ... 6 = Sunday)
+//   bits  8-11  month (1-12)
+//   bit   12    holiday (the whole date, as in ForecastModel)
+//   bit   13    weekend
+//   bits 14-31  year (signed)
+//
+// so a hot loop pays one array load per row for all of them and never builds a
+// LocalDateTime. Hours outside the range are computed arithmetically (not a holiday).
+// Nothing here allocates after construction.
+public final class HourCalendar {
+
+    private static final int DOW_SHIFT = 5;
+    private static final int MONTH_SHIFT = 8;
+    private static final int HOLIDAY_BIT = 1 << 12;
+    private static final int WEEKEND_BIT = 1 << 13;
+    private static final int YEAR_SHIFT = 14;
+
+    // Beyond this many hours (~480 years) a range is not tabulated
+    private static final int MAX_TABLE_HOURS = 1 << 22;
+
+    private final int first;
+    private final int[] table;
+
+    private HourCalendar(int first, int[] table) {
+        this.first = first;
+        this.table = table;
+    }
+
+    // Hours [fromEpochHour, toEpochHour), with no holidays
+    public static HourCalendar covering(int fromEpochHour, int toEpochHour) {
+        long span = (long) toEpochHour - fromEpochHour;
+        if (span <= 0 || span > MAX_TABLE_HOURS) return new HourCalendar(0, new int[0]);
+
+        int[] table = new int[(int) span];
+        int eh = fromEpochHour;
+        for (int i = 0; i < table.length; ) {
+            // One date at a time; the hours of a day differ only in the hour bits
+            int day = decode(eh) & ~31;
+            int h = Math.floorMod(eh, 24);
+            for (; h < 24 && i < table.length; h++, i++, eh++) table[i] = day | h;
+        }
+        return new HourCalendar(fromEpochHour, table);
+    }
+
+    // The hours spanned by the dataset, with every date that has a holiday-named row
+    // flagged as a holiday
+    public static HourCalendar of(TrafficDataset ds) {
+        int[] hours = ds.epochHourColumn();
+        if (ds.size() == 0) return covering(0, 0);
+
+        int lo = Integer.MAX_VALUE;
+        int hi = Integer.MIN_VALUE;
+        for (int i = 0; i < ds.size(); i++) {
+            lo = Math.min(lo, hours[i]);
+            hi = Math.max(hi, hours[i]);
+        }
+
+        // Whole days, so a holiday can be flagged for all 24 of its hours
+        HourCalendar cal = covering(Math.floorDiv(lo, 24) * 24, (Math.floorDiv(hi, 24) + 1) * 24);
+        if (cal.table.length == 0) return cal;
+
+        String[] names = ds.holidayNames();
+        boolean[] isHoliday = new boolean[names.length];
+        for (int c = 0; c < names.length; c++) isHoliday[c] = isHolidayName(names[c]);
+
+        short[] codes = ds.holidayCodeColumn();
+        for (int i = 0; i < ds.size(); i++) {
+            if (!isHoliday[codes[i]]) continue;
+            int start = (Math.floorDiv(hours[i], 24) * 24) - cal.first;
+            if ((cal.table[start] & HOLIDAY_BIT) != 0) continue;
+            for (int h = 0; h < 24; h++) cal.table[start + h] |= HOLIDAY_BIT;
+        }
+        return cal;
+    }
+
+    // True for a holiday column value that names a holiday (not blank, not "None")
+    static boolean isHolidayName(String name) {
+        return name != null && !name.isBlank() && !name.trim().equals("None");
+    }
+
+    // Packed fields of the hour: one table load inside the range
+    public int fields(int epochHour) {
+        int i = epochHour - first;
+        return i >= 0 && i < table.length ? table[i] : decode(epochHour);
+    }
+
+    public boolean covers(int epochHour) {
+        int i = epochHour - first;
+        return i >= 0 && i < table.length;
+    }
+
+    /* =======================
+       Field decoding
+       ======================= */
+
+    public static int hour(int fields) {
+        return fields & 31;
+    }
+
+    // 0 = Monday ... 6 = Sunday
+    public static int dayOfWeek(int fields) {
+        return fields >>> DOW_SHIFT & 7;
+    }
+
+    public static int month(int fields) {
+        return fields >>> MONTH_SHIFT & 15;
+    }
+
+    public static int year(int fields) {
+        return fields >> YEAR_SHIFT;
+    }
+
+    public static boolean isHoliday(int fields) {
+        return (fields & HOLIDAY_BIT) != 0;
+    }
+
+    public static boolean isWeekend(int fields) {
+        return (fields & WEEKEND_BIT) != 0;
+    }
+
+    /* =======================
+       Arithmetic (no table)
+       ======================= */
+
+    // Packed fields of any epoch hour, holiday bit clear (proleptic Gregorian, as java.time)
+    public static int decode(int epochHour) {
+        long day = Math.floorDiv(epochHour, 24);
+        int dow = Math.floorMod(day + 3, 7);
+
+        // Days to civil date, with March-based years so the leap day comes last
+        long z = day + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        int year = (int) (yoe + era * 400 + (month <= 2 ? 1 : 0));
+
+        return year << YEAR_SHIFT
+                | (dow >= 5 ? WEEKEND_BIT : 0)
+                | month << MONTH_SHIFT
+                | dow << DOW_SHIFT
+                | Math.floorMod(epochHour, 24);
+    }
+
+    // Epoch hour of a civil date and hour; rejects impossible dates as LocalDateTime.of does
+    public static int epochHour(int year, int month, int day, int hour) {
+        if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month) || hour < 0 || hour > 23) {
+            throw new IllegalArgumentException("Invalid date: " + year + "-" + month + "-" + day + " " + hour + "h");
+        }
+
+        long y = month <= 2 ? year - 1L : year;
+        long era = Math.floorDiv(y, 400);
+        long yoe = y - era * 400;
+        long doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return Math.toIntExact((era * 146097 + doe - 719468) * 24 + hour);
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        if (month == 2) return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    @Override
+    public String toString() {
+        return "HourCalendar[" + first + ", " + (first + table.length) + ")";
+    }
+}
@@ -0,0 +1,87 @@
+package com.traffic.analysis;
+
+import java.util.Map;
+
+// Minimal JSON writer for the HTTP endpoints: maps become objects (keys via
+// String.valueOf), iterables and double[] become arrays, non-finite numbers null.
+final class Json {
+
+    private Json() {}
+
+    static String write(Object value) {
+        StringBuilder sb = new StringBuilder(256);
+        append(sb, value);
+        return sb.toString();
+    }
+
+    static void append(StringBuilder sb, Object value) {
+        if (value == null) {
+            sb.append("null");
+        } else if (value instanceof Map<?, ?> map) {
+            sb.append('{');
+            boolean first = true;
+            for (var e : map.entrySet()) {
+                if (!first) sb.append(',');
+                first = false;
+                string(sb, String.valueOf(e.getKey()));
+                sb.append(':');
+                append(sb, e.getValue());
+            }
+            sb.append('}');
+        } else if (value instanceof Iterable<?> items) {
+            sb.append('[');
+            boolean first = true;
+            for (Object item : items) {
+                if (!first) sb.append(',');
+                first = false;
+                append(sb, item);
+            }
+            sb.append(']');
+        } else if (value instanceof double[] items) {
+            sb.append('[');
+            for (int i = 0; i < items.length; i++) {
+                if (i > 0) sb.append(',');
+                number(sb, items[i]);
+            }
+            sb.append(']');
+        } else if (value instanceof Double || value instanceof Float) {
+            number(sb, ((Number) value).doubleValue());
+        } else if (value instanceof Number || value instanceof Boolean) {
+            sb.append(value);
+        } else {
+            string(sb, value.toString());
+        }
+    }
+
+    private static void number(StringBuilder sb, double v) {
+        if (!Double.isFinite(v)) {
+            sb.append("null");
+        } else if (v == Math.rint(v) && Math.abs(v) < 1e15) {
+            sb.append((long) v);
+        } else {
+            sb.append(v);
+        }
+    }
+
+    private static void string(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        sb.append('"');
+    }
+}
@@ -0,0 +1,287 @@
+package com.traffic.analysis;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Data-quality stage for the loaders (TrafficDataLoader.load / MappedTrafficDataLoader.load
+// with a validator). Every row is checked as it is parsed: rows that fail a rule are
+// counted per rule and quarantined instead of being returned (the load is aborted only
+// past an optional limit on rejected rows, see Builder.failAfter),
+// repeated timestamps are dropped using a bitset over epoch-hours, and runs of missing
+// hours between accepted rows are recorded as gaps. Nothing is buffered besides the
+// bitset (one bit per hour since 1970, ~60 KB for current dates) and a capped sample
+// of quarantined rows, so validation keeps the loaders' streaming footprint.
+//
+// A validator holds the state of one load. Rows must arrive in time order for the
+// gap report; dedup keeps the first row seen for each hour whatever the order.
+public final class LoadValidator implements Closeable {
+
+    public enum Rule {
+        // Structural: the row cannot be turned into a record, so these are always on
+        MALFORMED_DATE_TIME,
+        BAD_NUMBER,
+
+        // Content rules, each of which can be disabled
+        MISSING_VALUE,
+        TEMP_OUT_OF_RANGE,
+        PRECIPITATION_OUT_OF_RANGE,
+        CLOUDS_OUT_OF_RANGE,
+        VOLUME_OUT_OF_RANGE,
+        DUPLICATE_HOUR
+    }
+
+    public record QuarantinedRow(long row, Rule rule, String line) {}
+
+    // missingHours consecutive hours with no accepted row, starting at `from`
+    public record Gap(LocalDateTime from, int missingHours) {}
+
+    public record Report(long rowsRead,
+                         long rowsAccepted,
+                         Map<Rule, Long> rejectedByRule,
+                         long gapCount,
+                         long missingHours,
+                         List<Gap> gaps,
+                         List<QuarantinedRow> quarantineSample) {
+
+        public long rowsRejected() {
+            return rowsRead - rowsAccepted;
+        }
+    }
+
+    private static final int MAX_REPORTED_GAPS = 10_000;
+
+    private final EnumSet<Rule> enabled;
+    private final double minTempK;
+    private final double maxTempK;
+    private final double maxPrecipitationMm;
+    private final int maxVolume;
+    private final int reportGapHours;
+    private final int quarantineSampleSize;
+    private final long maxRejected;
+    private final CSVPrinter quarantineOut;
+
+    private final long[] rejected = new long[Rule.values().length];
+    private long rowsRead;
+    private long rowsAccepted;
+
+    // Epoch-hours already accepted (negative hours, pre-1970, in their own set)
+    private final BitSet seenHours = new BitSet();
+    private final BitSet seenNegativeHours = new BitSet();
+
+    private int lastHour = Integer.MIN_VALUE;
+    private long gapCount;
+    private long missingHours;
+    private final List<Gap> gaps = new ArrayList<>();
+    private final List<QuarantinedRow> sample = new ArrayList<>();
+
+    private LoadValidator(Builder b) throws IOException {
+        this.enabled = EnumSet.copyOf(b.enabled);
+        this.minTempK = b.minTempK;
+        this.maxTempK = b.maxTempK;
+        this.maxPrecipitationMm = b.maxPrecipitationMm;
+        this.maxVolume = b.maxVolume;
+        this.reportGapHours = b.reportGapHours;
+        this.quarantineSampleSize = b.quarantineSampleSize;
+        this.maxRejected = b.maxRejected;
+        this.quarantineOut = b.quarantineFile == null ? null
+                : QUARANTINE_FORMAT.print(Files.newBufferedWriter(b.quarantineFile, StandardCharsets.UTF_8));
+    }
+
+    // The line is one quoted field, so commas and quotes in it survive a read back
+    private static final CSVFormat QUARANTINE_FORMAT = CSVFormat.DEFAULT.builder()
+            .setHeader("row", "rule", "line")
+            .setRecordSeparator('\n')
+            .build();
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // Every rule with the default limits, no quarantine file
+    public static LoadValidator defaults() {
+        try {
+            return builder().build();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static final class Builder {
+        private final EnumSet<Rule> enabled = EnumSet.allOf(Rule.class);
+        private double minTempK = 200.0;
+        private double maxTempK = 340.0;
+        private double maxPrecipitationMm = 305.0;
+        private int maxVolume = 20_000;
+        private int reportGapHours = 6;
+        private int quarantineSampleSize = 100;
+        private long maxRejected = Long.MAX_VALUE;
+        private Path quarantineFile;
+
+        private Builder() {}
+
+        public Builder disable(Rule... rules) {
+            for (Rule r : rules) {
+                if (r == Rule.MALFORMED_DATE_TIME || r == Rule.BAD_NUMBER) {
+                    throw new IllegalArgumentException(r + " cannot be disabled");
+                }
+                enabled.remove(r);
+            }
+            return this;
+        }
+
+        // Keep every row of a repeated hour (the unvalidated loaders' behaviour)
+        public Builder keepDuplicateHours() {
+            return disable(Rule.DUPLICATE_HOUR);
+        }
+
+        public Builder tempRangeK(double min, double max) {
+            this.minTempK = min;
+            this.maxTempK = max;
+            return this;
+        }
+
+        // Upper limit for rain_1h and snow_1h (both must also be >= 0)
+        public Builder maxPrecipitationMm(double max) {
+            this.maxPrecipitationMm = max;
+            return this;
+        }
+
+        public Builder maxVolume(int max) {
+            this.maxVolume = max;
+            return this;
+        }
+
+        // Gaps of at least this many hours are listed in the report (all are counted)
+        public Builder reportGapsOf(int hours) {
+            if (hours < 1) throw new IllegalArgumentException("Gap length must be >= 1: " + hours);
+            this.reportGapHours = hours;
+            return this;
+        }
+
+        // Number of quarantined rows kept in memory for the report
+        public Builder quarantineSample(int rows) {
+            this.quarantineSampleSize = rows;
+            return this;
+        }
+
+        // Aborts the load with an IOException once more than this many rows are rejected
+        public Builder failAfter(long rejectedRows) {
+            if (rejectedRows < 0) throw new IllegalArgumentException("Limit must be >= 0: " + rejectedRows);
+            this.maxRejected = rejectedRows;
+            return this;
+        }
+
+        // Also write every quarantined row to this file, as a CSV of row number, rule
+        // and the original line
+        public Builder quarantineTo(Path file) {
+            this.quarantineFile = file;
+            return this;
+        }
+
+        public LoadValidator build() throws IOException {
+            return new LoadValidator(this);
+        }
+    }
+
+    /* =======================
+       Loader hooks
+       ======================= */
+
+    boolean checksMissingValues() {
+        return enabled.contains(Rule.MISSING_VALUE);
+    }
+
+    // Called once per data row, before parsing it; returns the 1-based row number
+    long startRow() {
+        return ++rowsRead;
+    }
+
+    // Content rules, dedup and gap tracking for a parsed row; null when it is accepted
+    Rule check(TrafficRecord r) {
+        if (enabled.contains(Rule.TEMP_OUT_OF_RANGE) && !(r.tempK() >= minTempK && r.tempK() <= maxTempK)) {
+            return Rule.TEMP_OUT_OF_RANGE;
+        }
+        if (enabled.contains(Rule.PRECIPITATION_OUT_OF_RANGE)
+                && !(r.rain1hMm() >= 0 && r.rain1hMm() <= maxPrecipitationMm
+                && r.snow1hMm() >= 0 && r.snow1hMm() <= maxPrecipitationMm)) {
+            return Rule.PRECIPITATION_OUT_OF_RANGE;
+        }
+        if (enabled.contains(Rule.CLOUDS_OUT_OF_RANGE) && (r.cloudsAllPct() < 0 || r.cloudsAllPct() > 100)) {
+            return Rule.CLOUDS_OUT_OF_RANGE;
+        }
+        if (enabled.contains(Rule.VOLUME_OUT_OF_RANGE) && (r.trafficVolume() < 0 || r.trafficVolume() > maxVolume)) {
+            return Rule.VOLUME_OUT_OF_RANGE;
+        }
+
+        int hour = TrafficDataset.epochHour(r.dateTime());
+        if (enabled.contains(Rule.DUPLICATE_HOUR)) {
+            BitSet seen = hour >= 0 ? seenHours : seenNegativeHours;
+            int bit = hour >= 0 ? hour : -(hour + 1);
+            if (seen.get(bit)) return Rule.DUPLICATE_HOUR;
+            seen.set(bit);
+        }
+
+        trackGap(hour);
+        rowsAccepted++;
+        return null;
+    }
+
+    private void trackGap(int hour) {
+        if (lastHour != Integer.MIN_VALUE && hour > lastHour + 1) {
+            int missing = hour - lastHour - 1;
+            gapCount++;
+            missingHours += missing;
+            if (missing >= reportGapHours && gaps.size() < MAX_REPORTED_GAPS) {
+                gaps.add(new Gap(TrafficDataset.dateTimeOf(lastHour + 1), missing));
+            }
+        }
+        if (hour > lastHour) lastHour = hour;
+    }
+
+    void quarantine(long row, Rule rule, String line) throws IOException {
+        rejected[rule.ordinal()]++;
+        if (sample.size() < quarantineSampleSize) sample.add(new QuarantinedRow(row, rule, line));
+        if (quarantineOut != null) quarantineOut.printRecord(row, rule.name(), line);
+
+        long total = rowsRead - rowsAccepted;
+        if (total > maxRejected) {
+            throw new IOException("Too many rejected rows: " + total + " of " + rowsRead
+                    + " (limit " + maxRejected + "), last at row " + row + ": " + rule);
+        }
+    }
+
+    /* =======================
+       Results
+       ======================= */
+
+    public Report report() {
+        Map<Rule, Long> byRule = new EnumMap<>(Rule.class);
+        for (Rule r : Rule.values()) byRule.put(r, rejected[r.ordinal()]);
+        return new Report(rowsRead, rowsAccepted, Collections.unmodifiableMap(byRule),
+                gapCount, missingHours, List.copyOf(gaps), List.copyOf(sample));
+    }
+
+    public Set<Rule> enabledRules() {
+        return Collections.unmodifiableSet(enabled);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (quarantineOut != null) quarantineOut.close();
+    }
+}
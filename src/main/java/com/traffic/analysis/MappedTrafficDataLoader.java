@@ -0,0 +1,352 @@
+package com.traffic.analysis;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Memory-mapped alternative to TrafficDataLoader.load: same records, parsed from
+// the mapped bytes without going through a Reader, CSVRecord or per-field Strings.
+// Expects the unquoted comma-separated layout of the Metro Interstate exports.
+// Compressed files and directories of files (see CsvInputs) cannot be mapped; they
+// are parsed from the buffers of a decompression thread instead.
+public class MappedTrafficDataLoader {
+
+    // A single mapping is limited to 2 GB; larger files are walked in windows
+    // that always start on a line boundary.
+    private static final long MAX_WINDOW = Integer.MAX_VALUE;
+
+    // Lower estimate of a row's length, for sizing loadDataset's columns
+    private static final long MIN_ROW_BYTES = 48;
+
+    // Smallest byte range handed to a worker in parallel mode
+    private static final long MIN_CHUNK = 4L << 20;
+
+    public static List<TrafficRecord> load(Path csvPath) throws IOException {
+        return load(csvPath, null);
+    }
+
+    // Validating load: each row goes through validator as it is parsed (see LoadValidator)
+    public static List<TrafficRecord> load(Path csvPath, LoadValidator validator) throws IOException {
+        if (!Files.exists(csvPath)) {
+            throw new IOException("CSV not found at: " + csvPath.toAbsolutePath());
+        }
+
+        if (!CsvInputs.isPlainFile(csvPath)) return loadStreamed(csvPath, validator);
+
+        TrafficMetrics.LoadEvent ev = TrafficMetrics.startLoad("mapped", csvPath);
+        List<TrafficRecord> out = new ArrayList<>();
+
+        try (FileChannel ch = FileChannel.open(csvPath, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size == 0) return out;
+
+            long pos = 0;
+            CsvRowParser parser = null;
+
+            while (pos < size) {
+                int len = (int) Math.min(MAX_WINDOW, size - pos);
+                boolean atEof = pos + len == size;
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, pos, len);
+
+                int start = 0;
+                if (parser == null) {
+                    int headerEnd = lineEnd(buf, 0, len);
+                    if (headerEnd == len && !atEof) {
+                        throw new IOException("CSV header is not terminated: " + csvPath);
+                    }
+                    parser = new CsvRowParser(CsvColumns.fromHeader(buf, 0, trimCr(buf, 0, headerEnd)));
+                    start = Math.min(headerEnd + 1, len);
+                }
+
+                int consumed = parser.parseRows(buf, start, len, atEof, out, validator);
+                if (consumed == 0 && !atEof) {
+                    throw new IOException("CSV line longer than " + MAX_WINDOW + " bytes in " + csvPath);
+                }
+                pos += consumed;
+            }
+        }
+
+        TrafficMetrics.endLoad(ev, out.size());
+        return out;
+    }
+
+    // Loads straight into the columnar form: no TrafficRecord and no LocalDateTime per
+    // row, the date_time is decoded to an epoch hour in place (see CsvRowParser).
+    // Rows are not validated; use load(csvPath, validator) for quarantining.
+    public static TrafficDataset loadDataset(Path csvPath) throws IOException {
+        if (!Files.exists(csvPath)) {
+            throw new IOException("CSV not found at: " + csvPath.toAbsolutePath());
+        }
+
+        if (!CsvInputs.isPlainFile(csvPath)) return loadDatasetStreamed(csvPath);
+
+        TrafficMetrics.LoadEvent ev = TrafficMetrics.startLoad("mapped-dataset", csvPath);
+        TrafficDataset.Builder out;
+
+        try (FileChannel ch = FileChannel.open(csvPath, StandardOpenOption.READ)) {
+            long size = ch.size();
+            long pos = 0;
+
+            // Export rows are ~60 bytes; sizing for slightly shorter ones avoids regrowing
+            out = TrafficDataset.builder((int) Math.min(size / MIN_ROW_BYTES + 16, 1 << 28));
+            CsvRowParser parser = null;
+
+            while (pos < size) {
+                int len = (int) Math.min(MAX_WINDOW, size - pos);
+                boolean atEof = pos + len == size;
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, pos, len);
+
+                int start = 0;
+                if (parser == null) {
+                    int headerEnd = lineEnd(buf, 0, len);
+                    if (headerEnd == len && !atEof) {
+                        throw new IOException("CSV header is not terminated: " + csvPath);
+                    }
+                    parser = new CsvRowParser(CsvColumns.fromHeader(buf, 0, trimCr(buf, 0, headerEnd)));
+                    start = Math.min(headerEnd + 1, len);
+                }
+
+                int consumed = parser.parseRows(buf, start, len, atEof, out);
+                if (consumed == 0 && !atEof) {
+                    throw new IOException("CSV line longer than " + MAX_WINDOW + " bytes in " + csvPath);
+                }
+                pos += consumed;
+            }
+        }
+
+        TrafficDataset ds = out.build();
+        TrafficMetrics.endLoad(ev, ds.size());
+        return ds;
+    }
+
+    // Rows in the byte range [from, to) of a plain CSV, which must start and end on line
+    // boundaries (e.g. what was appended since a RollupCube was stamped). The header is
+    // still read from the start of the file.
+    static List<TrafficRecord> loadRange(Path csvPath, long from, long to) throws IOException {
+        List<TrafficRecord> out = new ArrayList<>();
+        try (FileChannel ch = FileChannel.open(csvPath, StandardOpenOption.READ)) {
+            long dataStart = nextLineStart(ch, 0, ch.size());
+            if (dataStart > MAX_WINDOW) throw new IOException("CSV header is not terminated: " + csvPath);
+            MappedByteBuffer head = ch.map(FileChannel.MapMode.READ_ONLY, 0, dataStart);
+            int headerEnd = lineEnd(head, 0, (int) dataStart);
+            CsvRowParser parser = new CsvRowParser(CsvColumns.fromHeader(head, 0, trimCr(head, 0, headerEnd)));
+
+            long pos = Math.max(from, dataStart);
+            while (pos < to) {
+                int len = (int) Math.min(MAX_WINDOW, to - pos);
+                boolean atEnd = pos + len == to;
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, pos, len);
+                int consumed = parser.parseRows(buf, 0, len, atEnd, out);
+                if (consumed == 0 && !atEnd) {
+                    throw new IOException("CSV line longer than " + MAX_WINDOW + " bytes in " + csvPath);
+                }
+                pos += consumed;
+            }
+        }
+        return out;
+    }
+
+    public static List<TrafficRecord> loadParallel(Path csvPath) throws IOException {
+        return loadParallel(csvPath, ForkJoinPool.commonPool());
+    }
+
+    // Splits the file into line-aligned byte ranges, parses them on the given pool and
+    // concatenates the per-range results in file order, so the output is identical to load().
+    public static List<TrafficRecord> loadParallel(Path csvPath, ForkJoinPool pool) throws IOException {
+        if (!Files.exists(csvPath)) {
+            throw new IOException("CSV not found at: " + csvPath.toAbsolutePath());
+        }
+
+        // A compressed stream cannot be split; it is inflated and parsed as a pipeline
+        if (!CsvInputs.isPlainFile(csvPath)) return loadStreamed(csvPath, null);
+
+        TrafficMetrics.LoadEvent ev = TrafficMetrics.startLoad("mapped-parallel", csvPath);
+        try (FileChannel ch = FileChannel.open(csvPath, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size == 0) return new ArrayList<>();
+
+            long headerEnd = nextLineStart(ch, 0, size);
+            int headerLen = (int) Math.min(headerEnd, MAX_WINDOW);
+            MappedByteBuffer head = ch.map(FileChannel.MapMode.READ_ONLY, 0, headerLen);
+            int nameEnd = lineEnd(head, 0, headerLen);
+            CsvColumns cols = CsvColumns.fromHeader(head, 0, trimCr(head, 0, nameEnd));
+
+            long[] bounds = chunkBounds(ch, headerEnd, size, pool.getParallelism());
+            List<List<TrafficRecord>> parts = new ArrayList<>(Collections.nCopies(bounds.length - 1, null));
+
+            try {
+                pool.invoke(new ParseChunks(ch, cols, bounds, parts, 0, parts.size()));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            int total = 0;
+            for (List<TrafficRecord> part : parts) total += part.size();
+
+            List<TrafficRecord> out = new ArrayList<>(total);
+            for (List<TrafficRecord> part : parts) out.addAll(part);
+            TrafficMetrics.endLoad(ev, out.size());
+            return out;
+        }
+    }
+
+    // Range start offsets (plus size as the final entry), each snapped forward to the
+    // start of the next line so no row is split between two workers.
+    private static long[] chunkBounds(FileChannel ch, long dataStart, long size, int parallelism)
+            throws IOException {
+        long dataLen = size - dataStart;
+        long chunk = Math.max(MIN_CHUNK, dataLen / (parallelism * 4L));
+        return chunkBounds(ch, dataStart, size, chunk);
+    }
+
+    // Same, for ranges of about chunk bytes
+    static long[] chunkBounds(FileChannel ch, long dataStart, long size, long chunk) throws IOException {
+        chunk = Math.min(chunk, MAX_WINDOW / 2);
+
+        List<Long> starts = new ArrayList<>();
+        starts.add(dataStart);
+        long pos = dataStart;
+        while (pos + chunk < size) {
+            long next = nextLineStart(ch, pos + chunk, size);
+            if (next >= size) break;
+            if (next - pos > MAX_WINDOW) {
+                throw new IOException("CSV line longer than " + MAX_WINDOW + " bytes");
+            }
+            starts.add(next);
+            pos = next;
+        }
+
+        long[] bounds = new long[starts.size() + 1];
+        for (int i = 0; i < starts.size(); i++) bounds[i] = starts.get(i);
+        bounds[starts.size()] = size;
+        return bounds;
+    }
+
+    // Offset just past the first '\n' at or after pos (or size when there is none)
+    static long nextLineStart(FileChannel ch, long pos, long size) throws IOException {
+        ByteBuffer scan = ByteBuffer.allocate(8192);
+        while (pos < size) {
+            scan.clear();
+            int n = ch.read(scan, pos);
+            if (n <= 0) break;
+            for (int i = 0; i < n; i++) {
+                if (scan.get(i) == '\n') return pos + i + 1;
+            }
+            pos += n;
+        }
+        return size;
+    }
+
+    private static final class ParseChunks extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel ch;
+        private final CsvColumns cols;
+        private final long[] bounds;
+        private final List<List<TrafficRecord>> parts;
+        private final int lo;
+        private final int hi;
+
+        ParseChunks(FileChannel ch, CsvColumns cols, long[] bounds,
+                    List<List<TrafficRecord>> parts, int lo, int hi) {
+            this.ch = ch;
+            this.cols = cols;
+            this.bounds = bounds;
+            this.parts = parts;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new ParseChunks(ch, cols, bounds, parts, lo, mid),
+                        new ParseChunks(ch, cols, bounds, parts, mid, hi));
+                return;
+            }
+
+            try {
+                long start = bounds[lo];
+                int len = (int) (bounds[lo + 1] - start);
+                List<TrafficRecord> out = new ArrayList<>(len / 64 + 16);
+                if (len > 0) {
+                    MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, start, len);
+                    new CsvRowParser(cols).parseRows(buf, 0, len, true, out);
+                }
+                parts.set(lo, out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /* =======================
+       Compressed files and directories
+       ======================= */
+
+    private static List<TrafficRecord> loadStreamed(Path input, LoadValidator validator) throws IOException {
+        List<TrafficRecord> out = new ArrayList<>();
+        for (Path file : CsvInputs.files(input)) {
+            TrafficMetrics.LoadEvent ev = TrafficMetrics.startLoad("streamed", file);
+            int before = out.size();
+            streamRows(file, (parser, buf, from, to) -> parser.parseRows(buf, from, to, true, out, validator));
+            TrafficMetrics.endLoad(ev, out.size() - before);
+        }
+        return out;
+    }
+
+    private static TrafficDataset loadDatasetStreamed(Path input) throws IOException {
+        TrafficDataset.Builder out = TrafficDataset.builder(1 << 16);
+        for (Path file : CsvInputs.files(input)) {
+            TrafficMetrics.LoadEvent ev = TrafficMetrics.startLoad("streamed-dataset", file);
+            int before = out.size();
+            streamRows(file, (parser, buf, from, to) -> parser.parseRows(buf, from, to, true, out));
+            TrafficMetrics.endLoad(ev, out.size() - before);
+        }
+        return out.build();
+    }
+
+    private interface ChunkParser {
+        void parse(CsvRowParser parser, ByteBuffer buf, int from, int to) throws IOException;
+    }
+
+    // Parses the file's buffers as the decompression thread delivers them. Each buffer
+    // ends on a line boundary, so no row spans two; the first line is the header.
+    private static void streamRows(Path file, ChunkParser rows) throws IOException {
+        try (CsvInputs.LinePipe pipe = new CsvInputs.LinePipe(file)) {
+            CsvRowParser parser = null;
+            for (CsvInputs.LinePipe.Chunk c = pipe.next(); c != null; c = pipe.next()) {
+                ByteBuffer buf = ByteBuffer.wrap(c.bytes, 0, c.length);
+                int start = 0;
+                if (parser == null) {
+                    int headerEnd = lineEnd(buf, 0, c.length);
+                    parser = new CsvRowParser(CsvColumns.fromHeader(buf, 0, trimCr(buf, 0, headerEnd)));
+                    start = Math.min(headerEnd + 1, c.length);
+                }
+                rows.parse(parser, buf, start, c.length);
+                pipe.recycle(c);
+            }
+        }
+    }
+
+    static int lineEnd(ByteBuffer buf, int from, int to) {
+        int i = from;
+        while (i < to && buf.get(i) != '\n') i++;
+        return i;
+    }
+
+    static int trimCr(ByteBuffer buf, int start, int end) {
+        return end > start && buf.get(end - 1) == '\r' ? end - 1 : end;
+    }
+}
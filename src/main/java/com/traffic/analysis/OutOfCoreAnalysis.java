@@ -0,0 +1,392 @@
+package com.traffic.analysis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Report aggregates (hour / day type / weather averages, peak hours) and volume
+// percentile sketches over inputs that do not fit in the heap, e.g. years of hourly
+// data from every sensor in the network. No input is ever held as a whole: each file
+// is cut into line-aligned byte ranges, each range is mapped and parsed in fixed-size
+// batches into one reused columnar buffer, and every batch is folded into mergeable
+// partials (TrafficAggregates + VolumeQuantiles) and dropped. Ranges run on a
+// ForkJoinPool; their partials are merged per input and into a pooled result.
+//
+// The per-input partials are the only state that grows with the input (a set of
+// sketches per sensor file). They stay in memory while they fit in the budget and are
+// spilled to a temp file otherwise, to be read back on request. The budget covers the
+// batch buffers of every worker plus the retained partials; mapped file pages live
+// outside the heap and are left to the OS page cache.
+public final class OutOfCoreAnalysis {
+
+    // Heap bytes per buffered row: the builder's columns plus the built batch
+    private static final int BYTES_PER_ROW = 64;
+
+    // Lower estimate of a CSV row's length, to turn a batch's rows into bytes
+    private static final int MIN_ROW_BYTES = 48;
+
+    private static final int MIN_BATCH_ROWS = 1024;
+
+    // Each worker task covers this many batches of the file
+    private static final int BATCHES_PER_RANGE = 8;
+
+    private static final int SPILL_MAGIC = 0x54565031; // "TVP1"
+
+    private final long memoryBudget;
+    private final Path tempDir;
+    private final ForkJoinPool pool;
+    private final int batchRows;
+
+    private OutOfCoreAnalysis(Builder b) {
+        this.memoryBudget = b.memoryBudget;
+        this.tempDir = b.tempDir;
+        this.pool = b.pool;
+
+        // Half the budget for the batches of all workers, half for retained partials
+        long perWorker = memoryBudget / 2 / pool.getParallelism();
+        this.batchRows = (int) Math.max(MIN_BATCH_ROWS, Math.min(Integer.MAX_VALUE / 2, perWorker / BYTES_PER_ROW));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        private long memoryBudget = 64L << 20;
+        private Path tempDir = Path.of(System.getProperty("java.io.tmpdir"));
+        private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        private Builder() {}
+
+        // Heap bytes the analysis may hold at once (batch buffers + retained partials)
+        public Builder memoryBudget(long bytes) {
+            if (bytes <= 0) throw new IllegalArgumentException("Memory budget must be positive: " + bytes);
+            this.memoryBudget = bytes;
+            return this;
+        }
+
+        // Where partials are spilled (a fresh subdirectory per run)
+        public Builder tempDir(Path tempDir) {
+            this.tempDir = tempDir;
+            return this;
+        }
+
+        public Builder pool(ForkJoinPool pool) {
+            this.pool = pool;
+            return this;
+        }
+
+        public OutOfCoreAnalysis build() {
+            return new OutOfCoreAnalysis(this);
+        }
+    }
+
+    public long memoryBudget() {
+        return memoryBudget;
+    }
+
+    // Rows parsed per batch by each worker
+    public int batchRows() {
+        return batchRows;
+    }
+
+    public Result run(Path csv) throws IOException {
+        return run(List.of(csv));
+    }
+
+    // Inputs are analyzed one after another, each on all workers. Close the result to
+    // delete its spill files.
+    public Result run(List<Path> csvs) throws IOException {
+        Result result = new Result(memoryBudget - memoryBudget / 2);
+        try {
+            for (Path csv : csvs) result.add(csv, analyze(csv));
+        } catch (IOException | RuntimeException e) {
+            result.close();
+            throw e;
+        }
+        return result;
+    }
+
+    private Partial analyze(Path csv) throws IOException {
+        if (!Files.exists(csv)) {
+            throw new IOException("CSV not found at: " + csv.toAbsolutePath());
+        }
+
+        TrafficMetrics.LoadEvent ev = TrafficMetrics.startLoad("out-of-core", csv);
+        Partial p;
+        if (!CsvInputs.isPlainFile(csv)) {
+            p = analyzeStreamed(csv);
+            TrafficMetrics.endLoad(ev, (int) Math.min(Integer.MAX_VALUE, p.rows));
+            return p;
+        }
+        try (FileChannel ch = FileChannel.open(csv, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size == 0) {
+                p = new Partial();
+            } else {
+                long headerEnd = MappedTrafficDataLoader.nextLineStart(ch, 0, size);
+                int headerLen = (int) Math.min(headerEnd, Integer.MAX_VALUE);
+                MappedByteBuffer head = ch.map(FileChannel.MapMode.READ_ONLY, 0, headerLen);
+                int nameEnd = MappedTrafficDataLoader.lineEnd(head, 0, headerLen);
+                CsvColumns cols = CsvColumns.fromHeader(head, 0, MappedTrafficDataLoader.trimCr(head, 0, nameEnd));
+
+                long rangeBytes = (long) batchRows * MIN_ROW_BYTES * BATCHES_PER_RANGE;
+                long[] bounds = MappedTrafficDataLoader.chunkBounds(ch, headerEnd, size, rangeBytes);
+                try {
+                    p = pool.invoke(new AnalyzeRanges(ch, cols, bounds, 0, bounds.length - 1));
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            }
+        }
+        TrafficMetrics.endLoad(ev, (int) Math.min(Integer.MAX_VALUE, p.rows));
+        return p;
+    }
+
+    // Compressed files and directories cannot be mapped or split, so their line-aligned
+    // buffers (CsvInputs.LinePipe) are parsed in batches on the calling thread; the
+    // pipe's few fixed buffers come on top of the batch
+    private Partial analyzeStreamed(Path input) throws IOException {
+        Partial p = new Partial();
+        for (Path file : CsvInputs.files(input)) {
+            try (CsvInputs.LinePipe pipe = new CsvInputs.LinePipe(file)) {
+                CsvColumns cols = null;
+                for (CsvInputs.LinePipe.Chunk c = pipe.next(); c != null; c = pipe.next()) {
+                    ByteBuffer buf = ByteBuffer.wrap(c.bytes, 0, c.length);
+                    int start = 0;
+                    if (cols == null) {
+                        int headerEnd = MappedTrafficDataLoader.lineEnd(buf, 0, c.length);
+                        cols = CsvColumns.fromHeader(buf, 0, MappedTrafficDataLoader.trimCr(buf, 0, headerEnd));
+                        start = Math.min(headerEnd + 1, c.length);
+                    }
+                    analyzeRange(cols, buf, start, c.length, p);
+                    pipe.recycle(c);
+                }
+            }
+        }
+        return p;
+    }
+
+    // Parses buf[from, len) in batches of batchRows, folding each into p
+    private void analyzeRange(CsvColumns cols, ByteBuffer buf, int from, int len, Partial p) throws IOException {
+        CsvRowParser parser = new CsvRowParser(cols);
+        TrafficDataset.Builder batch = TrafficDataset.builder(batchRows);
+        int batchBytes = (int) Math.min(Integer.MAX_VALUE, (long) batchRows * MIN_ROW_BYTES);
+
+        int pos = from;
+        while (pos < len) {
+            int to = (int) Math.min(len, (long) pos + batchBytes);
+            int next = parser.parseRows(buf, pos, to, to == len, batch);
+            if (next == pos) {
+                // A line longer than a whole batch: take it on its own
+                int end = Math.min(len, MappedTrafficDataLoader.lineEnd(buf, pos, len) + 1);
+                next = parser.parseRows(buf, pos, end, true, batch);
+            }
+            p.add(batch.build());
+            batch.clear();
+            pos = next;
+        }
+    }
+
+    private final class AnalyzeRanges extends RecursiveTask<Partial> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel ch;
+        private final CsvColumns cols;
+        private final long[] bounds;
+        private final int lo;
+        private final int hi;
+
+        AnalyzeRanges(FileChannel ch, CsvColumns cols, long[] bounds, int lo, int hi) {
+            this.ch = ch;
+            this.cols = cols;
+            this.bounds = bounds;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                AnalyzeRanges right = new AnalyzeRanges(ch, cols, bounds, mid, hi);
+                right.fork();
+                Partial left = new AnalyzeRanges(ch, cols, bounds, lo, mid).compute();
+                return left.merge(right.join());
+            }
+
+            Partial p = new Partial();
+            if (hi == lo) return p;
+            try {
+                long start = bounds[lo];
+                int len = (int) (bounds[lo + 1] - start);
+                if (len > 0) analyzeRange(cols, ch.map(FileChannel.MapMode.READ_ONLY, start, len), 0, len, p);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return p;
+        }
+    }
+
+    /* =======================
+       Partial results
+       ======================= */
+
+    private static final class Partial {
+        final TrafficAggregates aggregates;
+        final VolumeQuantiles quantiles;
+        long rows;
+        long batches;
+
+        Partial() {
+            this(TrafficAggregates.empty(), new VolumeQuantiles());
+        }
+
+        private Partial(TrafficAggregates aggregates, VolumeQuantiles quantiles) {
+            this.aggregates = aggregates;
+            this.quantiles = quantiles;
+        }
+
+        void add(TrafficDataset batch) {
+            if (batch.size() == 0) return;
+            aggregates.merge(TrafficAggregates.compute(batch));
+            quantiles.merge(VolumeQuantiles.compute(batch));
+            rows += batch.size();
+            batches++;
+        }
+
+        Partial merge(Partial other) {
+            aggregates.merge(other.aggregates);
+            quantiles.merge(other.quantiles);
+            rows += other.rows;
+            batches += other.batches;
+            return this;
+        }
+
+        long estimatedBytes() {
+            return aggregates.estimatedBytes() + quantiles.estimatedBytes();
+        }
+
+        void writeTo(Path file) throws IOException {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+                out.writeInt(SPILL_MAGIC);
+                out.writeLong(rows);
+                out.writeLong(batches);
+                aggregates.writeTo(out);
+                quantiles.writeTo(out);
+            }
+        }
+
+        static Partial readFrom(Path file) throws IOException {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                if (in.readInt() != SPILL_MAGIC) throw new IOException("Not a spilled partial: " + file);
+                long rows = in.readLong();
+                long batches = in.readLong();
+                Partial p = new Partial(TrafficAggregates.readFrom(in), VolumeQuantiles.readFrom(in));
+                p.rows = rows;
+                p.batches = batches;
+                return p;
+            }
+        }
+    }
+
+    // Pooled results over every input, plus per-input results that are either held
+    // in memory or spilled
+    public final class Result implements AutoCloseable {
+        private final long retainBudget;
+        private final Partial pooled = new Partial();
+
+        // input -> Partial, or the Path of its spill file
+        private final Map<Path, Object> byInput = new LinkedHashMap<>();
+        private long retainedBytes;
+        private int spills;
+        private Path spillDir;
+
+        private Result(long retainBudget) {
+            this.retainBudget = retainBudget;
+        }
+
+        private void add(Path csv, Partial p) throws IOException {
+            pooled.merge(p);
+
+            long bytes = p.estimatedBytes();
+            if (retainedBytes + pooled.estimatedBytes() + bytes <= retainBudget) {
+                byInput.put(csv, p);
+                retainedBytes += bytes;
+                return;
+            }
+
+            if (spillDir == null) spillDir = Files.createTempDirectory(tempDir, "traffic-spill-");
+            Path file = spillDir.resolve("partial-" + byInput.size() + ".bin");
+            p.writeTo(file);
+            byInput.put(csv, file);
+            spills++;
+        }
+
+        public TrafficAggregates aggregates() {
+            return pooled.aggregates;
+        }
+
+        public VolumeQuantiles quantiles() {
+            return pooled.quantiles;
+        }
+
+        public long rows() {
+            return pooled.rows;
+        }
+
+        public long batches() {
+            return pooled.batches;
+        }
+
+        // Inputs whose partials went to disk
+        public int spilledInputs() {
+            return spills;
+        }
+
+        public Set<Path> inputs() {
+            return Collections.unmodifiableSet(byInput.keySet());
+        }
+
+        public TrafficAggregates aggregates(Path input) throws IOException {
+            return partial(input).aggregates;
+        }
+
+        public VolumeQuantiles quantiles(Path input) throws IOException {
+            return partial(input).quantiles;
+        }
+
+        private Partial partial(Path input) throws IOException {
+            Object p = byInput.get(input);
+            if (p == null) throw new IllegalArgumentException("Not an input of this run: " + input);
+            return p instanceof Partial held ? held : Partial.readFrom((Path) p);
+        }
+
+        // Deletes the spill files; spilled per-input results are gone afterwards
+        @Override
+        public void close() throws IOException {
+            if (spillDir == null) return;
+            for (Object p : byInput.values()) {
+                if (p instanceof Path file) Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(spillDir);
+            spillDir = null;
+        }
+    }
+}
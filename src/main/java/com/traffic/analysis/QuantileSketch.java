@@ -0,0 +1,210 @@
+package com.traffic.analysis;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+// Mergeable quantile sketch with a relative-error guarantee (DDSketch-style log buckets).
+// A positive value v is counted in bucket i = ceil(log_gamma(v)), gamma = (1 + a) / (1 - a),
+// so every value in a bucket is within a factor of (1 +- a) of the bucket's midpoint; zeros
+// have their own counter and negative values are rejected.
+//
+// Error bound: for 0 <= q <= 1, quantile(q) estimates x = the value at 0-based rank
+// floor(q * (n - 1)) of the sorted input and returns x' with |x' - x| <= a * x (zero when
+// x is zero), as long as the sketch has not collapsed (see below). min and max are exact.
+//
+// Memory is one long per bucket between the smallest and largest non-zero value:
+// about ln(max / min) / (2a) buckets, e.g. ~450 for volumes 1..8000 at a = 1%. When that
+// would exceed maxBuckets the lowest buckets are folded together, which only degrades
+// the quantiles that fall in them. Merging adds bucket counts, so below that limit a
+// merged sketch is identical to one built from the concatenated input, in any order.
+public final class QuantileSketch {
+
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+    public static final int DEFAULT_MAX_BUCKETS = 2048;
+
+    private final double relativeAccuracy;
+    private final int maxBuckets;
+    private final double gamma;
+    private final double logGamma;
+
+    // counts[k] is bucket (offset + k); empty until the first positive value
+    private long[] counts = new long[0];
+    private int offset;
+    private long zeroCount;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY, DEFAULT_MAX_BUCKETS);
+    }
+
+    public QuantileSketch(double relativeAccuracy, int maxBuckets) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+            throw new IllegalArgumentException("Relative accuracy must be in (0, 1): " + relativeAccuracy);
+        }
+        if (maxBuckets < 1) throw new IllegalArgumentException("maxBuckets must be >= 1: " + maxBuckets);
+
+        this.relativeAccuracy = relativeAccuracy;
+        this.maxBuckets = maxBuckets;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    // An empty sketch with the same accuracy and bucket limit
+    public QuantileSketch emptyCopy() {
+        return new QuantileSketch(relativeAccuracy, maxBuckets);
+    }
+
+    public void add(double value) {
+        if (!(value >= 0)) throw new IllegalArgumentException("Sketch values must be >= 0: " + value);
+
+        if (value == 0) {
+            zeroCount++;
+        } else {
+            int k = slotOf(bucketOf(value));
+            counts[k]++;
+        }
+        count++;
+        if (value < min) min = value;
+        if (value > max) max = value;
+    }
+
+    // Folds other's counts into this sketch; both must use the same relative accuracy
+    public QuantileSketch merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Cannot merge sketches with different accuracy: "
+                    + relativeAccuracy + " vs " + other.relativeAccuracy);
+        }
+        if (other.count == 0) return this;
+
+        for (int k = 0; k < other.counts.length; k++) {
+            long c = other.counts[k];
+            if (c == 0) continue;
+            int slot = slotOf(other.offset + k);
+            counts[slot] += c;
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    // NaN when empty
+    public double min() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    public double max() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    public double relativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    // Estimate of the value at rank floor(q * (n - 1)); NaN when empty
+    public double quantile(double q) {
+        if (!(q >= 0 && q <= 1)) throw new IllegalArgumentException("Quantile must be within [0, 1]: " + q);
+        if (count == 0) return Double.NaN;
+
+        long rank = (long) Math.floor(q * (count - 1));
+        if (rank < zeroCount) return 0.0;
+
+        long seen = zeroCount;
+        for (int k = 0; k < counts.length; k++) {
+            seen += counts[k];
+            if (seen > rank) {
+                double estimate = 2 * Math.pow(gamma, offset + k) / (gamma + 1);
+                return Math.max(min, Math.min(max, estimate));
+            }
+        }
+        return max;
+    }
+
+    public double[] quantiles(double... qs) {
+        double[] out = new double[qs.length];
+        for (int i = 0; i < qs.length; i++) out[i] = quantile(qs[i]);
+        return out;
+    }
+
+    /* =======================
+       Spilling (OutOfCoreAnalysis)
+       ======================= */
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeDouble(relativeAccuracy);
+        out.writeInt(maxBuckets);
+        out.writeInt(offset);
+        out.writeInt(counts.length);
+        for (long c : counts) out.writeLong(c);
+        out.writeLong(zeroCount);
+        out.writeLong(count);
+        out.writeDouble(min);
+        out.writeDouble(max);
+    }
+
+    static QuantileSketch readFrom(DataInput in) throws IOException {
+        QuantileSketch s = new QuantileSketch(in.readDouble(), in.readInt());
+        s.offset = in.readInt();
+        s.counts = new long[in.readInt()];
+        for (int k = 0; k < s.counts.length; k++) s.counts[k] = in.readLong();
+        s.zeroCount = in.readLong();
+        s.count = in.readLong();
+        s.min = in.readDouble();
+        s.max = in.readDouble();
+        return s;
+    }
+
+    // Approximate heap footprint
+    long estimatedBytes() {
+        return 96 + 8L * counts.length;
+    }
+
+    private int bucketOf(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    // Array slot for a bucket index, growing or collapsing the array as needed
+    private int slotOf(int bucket) {
+        if (counts.length == 0) {
+            counts = new long[Math.min(16, maxBuckets)];
+            offset = bucket - counts.length / 2;
+        }
+
+        int k = bucket - offset;
+        if (k >= 0 && k < counts.length) return k;
+
+        int lo = Math.min(offset, bucket);
+        int hi = Math.max(offset + counts.length - 1, bucket);
+
+        // Keep the top maxBuckets buckets; anything below lands in the lowest kept one
+        if (hi - lo + 1 > maxBuckets) lo = hi - maxBuckets + 1;
+
+        // Double the array when there is room, leaving the headroom on the side that grew
+        int size = Math.min(maxBuckets, Math.max(hi - lo + 1, 2 * counts.length));
+        int newOffset = bucket < offset ? hi - size + 1 : lo;
+
+        long[] grown = new long[size];
+        for (int i = 0; i < counts.length; i++) {
+            long c = counts[i];
+            if (c == 0) continue;
+            grown[Math.max(offset + i, newOffset) - newOffset] += c;
+        }
+        counts = grown;
+        offset = newOffset;
+        return Math.max(bucket, newOffset) - newOffset;
+    }
+
+    @Override
+    public String toString() {
+        return "QuantileSketch[n=" + count + ", buckets=" + counts.length
+                + ", relativeAccuracy=" + relativeAccuracy + "]";
+    }
+}
@@ -0,0 +1,480 @@
+package com.traffic.analysis;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Report steps (loads, aggregates, text sections, figures) as a dependency graph that
+// runs on a thread pool: every step starts as soon as its inputs are ready.
+//
+// Steps built with a Codec are memoized on disk. A step's key is a SHA-256 over its
+// name, the pipeline settings and the result hashes of its inputs; an input file's
+// result hash is the hash of its content, and a cached step's result hash is the hash
+// of its serialized result. So a step whose inputs come out the same is read back
+// rather than recomputed, even when something further up did change, and evaluation is
+// demand-driven: when every cached step hits, nothing upstream (not even the CSV load)
+// runs at all. Figures are numbered in the order they are declared, whatever order
+// they finish in.
+public final class ReportPipeline {
+
+    // Bump when the cache entry layout changes
+    private static final int CACHE_MAGIC = 0x54525031; // "TRP1"
+
+    // How a step's result is stored in the cache
+    public interface Codec<T> {
+        void write(T value, DataOutput out) throws IOException;
+
+        // The stored result, or null when it can no longer be used (e.g. a rendered
+        // file is gone), which makes the step run again
+        T read(DataInput in) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface Step<T> {
+        T compute(Inputs in) throws Exception;
+    }
+
+    // Results of a step's inputs
+    public static final class Inputs {
+        private final Map<Node<?>, CompletableFuture<Object>> values;
+
+        private Inputs(Map<Node<?>, CompletableFuture<Object>> values) {
+            this.values = values;
+        }
+
+        @SuppressWarnings("unchecked")
+        public <T> T get(Node<T> node) {
+            return (T) values.get(node).join();
+        }
+    }
+
+    public static final Codec<String> TEXT = new Codec<>() {
+        @Override
+        public void write(String value, DataOutput out) throws IOException {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(utf8.length);
+            out.write(utf8);
+        }
+
+        @Override
+        public String read(DataInput in) throws IOException {
+            byte[] utf8 = new byte[in.readInt()];
+            in.readFully(utf8);
+            return new String(utf8, StandardCharsets.UTF_8);
+        }
+    };
+
+    public static final class Node<T> {
+        private final String name;
+        private final int index;
+        private final List<Node<?>> inputs;
+        private final Step<T> step;
+        private final Codec<T> codec;
+        private final Path source;
+        private final int figureNumber;
+
+        private Node(String name, int index, List<Node<?>> inputs, Step<T> step, Codec<T> codec,
+                     Path source, int figureNumber) {
+            this.name = name;
+            this.index = index;
+            this.inputs = inputs;
+            this.step = step;
+            this.codec = codec;
+            this.source = source;
+            this.figureNumber = figureNumber;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        // 1, 2, ... for figures in declaration order; 0 for other steps
+        public int figureNumber() {
+            return figureNumber;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private final List<Node<?>> nodes;
+    private final Path cacheDir;
+    private final int threads;
+    private final String settings;
+
+    private ReportPipeline(Builder b) {
+        this.nodes = List.copyOf(b.nodes);
+        this.cacheDir = b.cacheDir;
+        this.threads = b.threads;
+        this.settings = b.settings;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        private final List<Node<?>> nodes = new ArrayList<>();
+        private Path cacheDir;
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private String settings = "";
+        private int figures;
+
+        private Builder() {}
+
+        // Where memoized results are kept; without one nothing is cached
+        public Builder cacheDir(Path cacheDir) {
+            this.cacheDir = cacheDir;
+            return this;
+        }
+
+        public Builder threads(int threads) {
+            if (threads < 1) throw new IllegalArgumentException("Threads must be >= 1: " + threads);
+            this.threads = threads;
+            return this;
+        }
+
+        // Mixed into every key: whatever outside the inputs changes results (output
+        // directory, formats, a version to bump when a step's code changes)
+        public Builder settings(String settings) {
+            this.settings = settings;
+            return this;
+        }
+
+        // A step reading a CSV input (file or directory, see CsvInputs); its result hash
+        // is the hash of the files' content. Not cached itself.
+        public <T> Node<T> input(String name, Path csv, Step<T> step) {
+            return add(name, List.of(), step, null, csv, 0);
+        }
+
+        // A step that always runs when a step depending on it runs
+        public <T> Node<T> node(String name, Step<T> step, Node<?>... inputs) {
+            return add(name, List.of(inputs), step, null, null, 0);
+        }
+
+        public <T> Node<T> cached(String name, Codec<T> codec, Step<T> step, Node<?>... inputs) {
+            return add(name, List.of(inputs), step, codec, null, 0);
+        }
+
+        // A cached step that produces a figure; numbered in declaration order
+        public <T> Node<T> figure(String name, Codec<T> codec, Step<T> step, Node<?>... inputs) {
+            return add(name, List.of(inputs), step, codec, null, ++figures);
+        }
+
+        private <T> Node<T> add(String name, List<Node<?>> inputs, Step<T> step, Codec<T> codec,
+                                Path source, int figureNumber) {
+            for (Node<?> n : nodes) {
+                if (n.name.equals(name)) throw new IllegalArgumentException("Duplicate step name: " + name);
+            }
+            // Inputs must already be declared here, so the graph has no cycles
+            for (Node<?> in : inputs) {
+                if (in.index >= nodes.size() || nodes.get(in.index) != in) {
+                    throw new IllegalArgumentException("Input " + in.name + " of " + name + " is not part of this pipeline");
+                }
+            }
+            Node<T> n = new Node<>(name, nodes.size(), inputs, step, codec, source, figureNumber);
+            nodes.add(n);
+            return n;
+        }
+
+        public ReportPipeline build() {
+            return new ReportPipeline(this);
+        }
+    }
+
+    /* =======================
+       Running
+       ======================= */
+
+    // Brings every cached step up to date and returns their results, plus the results
+    // of any uncached step that had to run on the way
+    public Run run() throws IOException {
+        if (cacheDir != null) Files.createDirectories(cacheDir);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "report-step");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            Evaluation ev = new Evaluation(pool);
+            List<CompletableFuture<?>> pending = new ArrayList<>();
+            for (Node<?> n : nodes) {
+                pending.add(ev.hash(n));
+                if (n.codec != null) pending.add(ev.hash(n).thenCompose(h -> ev.value(n)));
+            }
+            try {
+                CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof StepFailure f) {
+                    if (f.getCause() instanceof IOException io) throw io;
+                    throw new IOException("Report step failed: " + f.step, f.getCause());
+                }
+                throw e;
+            }
+            return ev.toRun();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public static final class Run {
+        private final Map<Node<?>, Object> values;
+        private final List<String> computed;
+        private final List<String> fromCache;
+        private final List<String> skipped;
+
+        private Run(Map<Node<?>, Object> values, List<String> computed, List<String> fromCache, List<String> skipped) {
+            this.values = values;
+            this.computed = computed;
+            this.fromCache = fromCache;
+            this.skipped = skipped;
+        }
+
+        @SuppressWarnings("unchecked")
+        public <T> T get(Node<T> node) {
+            if (!values.containsKey(node)) throw new IllegalStateException("Not evaluated in this run: " + node.name);
+            return (T) values.get(node);
+        }
+
+        // Step names in declaration order
+        public List<String> computed() {
+            return computed;
+        }
+
+        public List<String> fromCache() {
+            return fromCache;
+        }
+
+        // Uncached steps nothing needed this time
+        public List<String> skipped() {
+            return skipped;
+        }
+    }
+
+    private static final class StepFailure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final String step;
+
+        StepFailure(String step, Throwable cause) {
+            super(cause);
+            this.step = step;
+        }
+    }
+
+    // One run's futures. key(n) awaits the result hashes of n's inputs, so by the time
+    // anything asks for a value, the hash step of every node above it has settled and
+    // cache hits have already left their decoded value in values.
+    private final class Evaluation {
+        private final ExecutorService pool;
+        private final Map<Node<?>, CompletableFuture<byte[]>> keys = new HashMap<>();
+        private final Map<Node<?>, CompletableFuture<byte[]>> hashes = new HashMap<>();
+        private final Map<Node<?>, CompletableFuture<Object>> values = new HashMap<>();
+        private final boolean[] computed = new boolean[nodes.size()];
+        private final boolean[] cached = new boolean[nodes.size()];
+
+        Evaluation(ExecutorService pool) {
+            this.pool = pool;
+        }
+
+        synchronized CompletableFuture<byte[]> key(Node<?> n) {
+            CompletableFuture<byte[]> f = keys.get(n);
+            if (f != null) return f;
+
+            if (n.source != null) {
+                f = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return digest(n, List.of(contentHash(n.source)));
+                    } catch (IOException e) {
+                        throw new StepFailure(n.name, e);
+                    }
+                }, pool);
+            } else {
+                List<CompletableFuture<byte[]>> in = new ArrayList<>();
+                for (Node<?> i : n.inputs) in.add(hash(i));
+                f = CompletableFuture.allOf(in.toArray(new CompletableFuture<?>[0]))
+                        .thenApply(x -> digest(n, in.stream().map(CompletableFuture::join).toList()));
+            }
+            keys.put(n, f);
+            return f;
+        }
+
+        synchronized CompletableFuture<byte[]> hash(Node<?> n) {
+            CompletableFuture<byte[]> f = hashes.get(n);
+            if (f != null) return f;
+
+            f = n.codec == null ? key(n) : key(n).thenComposeAsync(k -> cachedHash(n, k), pool);
+            hashes.put(n, f);
+            return f;
+        }
+
+        private <T> CompletableFuture<byte[]> cachedHash(Node<T> n, byte[] key) {
+            Path file = cacheDir == null ? null : cacheDir.resolve(HexFormat.of().formatHex(key) + ".bin");
+            if (file != null && Files.exists(file)) {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                    if (in.readInt() == CACHE_MAGIC) {
+                        byte[] resultHash = new byte[32];
+                        in.readFully(resultHash);
+                        T value = n.codec.read(in);
+                        if (value != null) {
+                            synchronized (this) {
+                                cached[n.index] = true;
+                                values.put(n, CompletableFuture.completedFuture(value));
+                            }
+                            return CompletableFuture.completedFuture(resultHash);
+                        }
+                    }
+                } catch (IOException e) {
+                    // Unreadable entry: recompute and overwrite it
+                }
+            }
+
+            return value(n).thenApplyAsync(v -> {
+                try {
+                    @SuppressWarnings("unchecked")
+                    T value = (T) v;
+                    return store(n, value, file);
+                } catch (IOException e) {
+                    throw new StepFailure(n.name, e);
+                }
+            }, pool);
+        }
+
+        synchronized CompletableFuture<Object> value(Node<?> n) {
+            CompletableFuture<Object> f = values.get(n);
+            if (f != null) return f;
+
+            List<CompletableFuture<Object>> in = new ArrayList<>();
+            for (Node<?> i : n.inputs) in.add(value(i));
+            f = CompletableFuture.allOf(in.toArray(new CompletableFuture<?>[0]))
+                    .thenApplyAsync(x -> compute(n), pool);
+            values.put(n, f);
+            return f;
+        }
+
+        private Object compute(Node<?> n) {
+            try {
+                Object v = n.step.compute(new Inputs(snapshot()));
+                synchronized (this) {
+                    computed[n.index] = true;
+                }
+                return v;
+            } catch (Exception e) {
+                throw new StepFailure(n.name, e);
+            }
+        }
+
+        private synchronized Map<Node<?>, CompletableFuture<Object>> snapshot() {
+            return new HashMap<>(values);
+        }
+
+        private <T> byte[] store(Node<T> n, T value, Path file) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                n.codec.write(value, out);
+            }
+            byte[] payload = bytes.toByteArray();
+            byte[] resultHash = sha256().digest(payload);
+            if (file == null) return resultHash;
+
+            // Written aside and moved in, so a concurrent or interrupted run never sees half an entry
+            try {
+                Path tmp = Files.createTempFile(cacheDir, "entry-", ".tmp");
+                try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(tmp))) {
+                    out.writeInt(CACHE_MAGIC);
+                    out.write(resultHash);
+                    out.write(payload);
+                }
+                try {
+                    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                // A read-only cache directory should not fail the report itself
+                System.err.println("Could not cache report step " + n.name + ": " + e.getMessage());
+            }
+            return resultHash;
+        }
+
+        private byte[] digest(Node<?> n, List<byte[]> inputHashes) {
+            MessageDigest md = sha256();
+            md.update(ByteBuffer.allocate(4).putInt(CACHE_MAGIC).array());
+            md.update((n.name + "\n" + settings + "\n").getBytes(StandardCharsets.UTF_8));
+            for (byte[] h : inputHashes) md.update(h);
+            return md.digest();
+        }
+
+        synchronized Run toRun() {
+            Map<Node<?>, Object> done = new HashMap<>();
+            List<String> ran = new ArrayList<>();
+            List<String> hit = new ArrayList<>();
+            List<String> skipped = new ArrayList<>();
+            for (Node<?> n : nodes) {
+                CompletableFuture<Object> v = values.get(n);
+                if (v != null) done.put(n, v.join());
+                if (computed[n.index]) {
+                    ran.add(n.name);
+                } else if (cached[n.index]) {
+                    hit.add(n.name);
+                } else {
+                    skipped.add(n.name);
+                }
+            }
+            return new Run(done, Collections.unmodifiableList(ran), Collections.unmodifiableList(hit),
+                    Collections.unmodifiableList(skipped));
+        }
+    }
+
+    // SHA-256 over the content of the input's files, in CsvInputs order
+    private static byte[] contentHash(Path input) throws IOException {
+        MessageDigest md = sha256();
+        ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+        for (Path file : CsvInputs.files(input)) {
+            md.update(file.getFileName().toString().getBytes(StandardCharsets.UTF_8));
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                while (ch.read(buf) > 0) {
+                    buf.flip();
+                    md.update(buf);
+                    buf.clear();
+                }
+            }
+        }
+        return md.digest();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.traffic.analysis;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+// Bounded LRU cache with a time-to-live. Callers pass the generation of the data they
+// compute from (e.g. a snapshot version), and a value is stored only while that is
+// still the current generation; invalidate() moves to a newer one. So a value computed
+// from old data is never served, even when the computation started before the
+// invalidation and finishes after it.
+final class ResultCache<K, V> {
+
+    private record Entry<V>(V value, long generation, long expiresAtNanos) {}
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LinkedHashMap<K, Entry<V>> map;
+
+    private long generation;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    ResultCache(int maxEntries, Duration ttl) {
+        if (maxEntries < 1) throw new IllegalArgumentException("Cache needs at least one entry: " + maxEntries);
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.map = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > ResultCache.this.maxEntries;
+            }
+        };
+    }
+
+    // Cached value for key computed from data of the given generation, or compute(key),
+    // kept only if generation is still current once it is done. compute runs outside
+    // the lock, so concurrent misses on one key may compute it more than once.
+    V get(K key, long generation, Function<K, V> compute) {
+        synchronized (this) {
+            Entry<V> e = map.get(key);
+            if (e != null && e.generation == generation && System.nanoTime() - e.expiresAtNanos < 0) {
+                hits.incrementAndGet();
+                return e.value;
+            }
+        }
+
+        misses.incrementAndGet();
+        V value = compute.apply(key);
+        synchronized (this) {
+            if (generation == this.generation) {
+                map.put(key, new Entry<>(value, generation, System.nanoTime() + ttlNanos));
+            }
+        }
+        return value;
+    }
+
+    // Drops every entry and makes generation current (generations only move forward)
+    synchronized void invalidate(long generation) {
+        this.generation = Math.max(this.generation, generation);
+        map.clear();
+    }
+
+    synchronized int size() {
+        return map.size();
+    }
+
+    long hits() {
+        return hits.get();
+    }
+
+    long misses() {
+        return misses.get();
+    }
+}
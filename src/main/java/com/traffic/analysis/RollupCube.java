@@ -0,0 +1,845 @@
+package com.traffic.analysis;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DayOfWeek;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.CRC32C;
+
+// Precomputed rollup of traffic volume over
+//
+//   hour (24) x day of week (7) x weather_main x holiday x year-month
+//
+// Each occupied cell keeps count / sum / min / max / sum of squares, so any grouped
+// average, extreme or spread along those dimensions is answered by summing cells: the
+// cost depends on the number of occupied cells (bounded by the dimension sizes), not on
+// the number of rows. Cells are exact integer sums, so merging cubes built from parts
+// of the data gives the same cube as building from all of it.
+//
+// A row counts as a holiday when its date has a holiday row (the source marks only the
+// midnight row), as in ForecastModel.holidaysOf. Cubes are mutable and not thread-safe:
+// build or update on one thread, then share read-only. add() expects rows in time order
+// so that a date's holiday row arrives before the rest of that day.
+//
+// Persisted beside the CSV as "<name>.cube" (see loadCached), stamped like TrafficSnapshot.
+public final class RollupCube {
+
+    // Volume statistics of one cell or of a sum of cells
+    public record Stats(long count, long sum, int min, int max, long sumSquares) {
+
+        static final Stats EMPTY = new Stats(0, 0, Integer.MAX_VALUE, Integer.MIN_VALUE, 0);
+
+        public double mean() {
+            return count == 0 ? Double.NaN : (double) sum / count;
+        }
+
+        // Population variance
+        public double variance() {
+            if (count == 0) return Double.NaN;
+            double m = mean();
+            return Math.max(0.0, (double) sumSquares / count - m * m);
+        }
+
+        public double stdDev() {
+            return Math.sqrt(variance());
+        }
+    }
+
+    /* =======================
+       Cell layout
+       ======================= */
+
+    // key = yearMonth (year * 12 + month - 1) << 21 | weather << 9 | holiday << 8 | dow << 5 | hour
+    private static final int DOW_SHIFT = 5;
+    private static final int HOLIDAY_SHIFT = 8;
+    private static final int WEATHER_SHIFT = 9;
+    private static final int MONTH_SHIFT = 21;
+    private static final int MAX_WEATHER = 1 << (MONTH_SHIFT - WEATHER_SHIFT);
+
+    private static final int MAGIC = 0x54564331; // "TVC1"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 4 + 4 + 4;
+
+    // Weather code 0 is the null / blank value
+    private final List<String> weatherNames = new ArrayList<>(List.of(""));
+    private final Map<String, Integer> weatherCodes = new HashMap<>();
+    private final Map<String, Integer> weatherOfRaw = new HashMap<>();
+
+    private final Set<Integer> holidayDays = new HashSet<>();
+    private int lastDay = Integer.MIN_VALUE;
+    private int lastDayHoliday;
+
+    private final CellIndex index = new CellIndex();
+    private int cells;
+    private long[] keys = new long[256];
+    private long[] count = new long[256];
+    private long[] sum = new long[256];
+    private int[] min = new int[256];
+    private int[] max = new int[256];
+    private long[] sumSquares = new long[256];
+
+    public RollupCube() {
+        weatherCodes.put("", 0);
+    }
+
+    public static RollupCube build(TrafficDataset ds) {
+        RollupCube cube = new RollupCube();
+        cube.add(ds);
+        return cube;
+    }
+
+    public static RollupCube build(List<TrafficRecord> rows) {
+        RollupCube cube = new RollupCube();
+        for (TrafficRecord r : rows) cube.markHoliday(TrafficDataset.epochHour(r.dateTime()), r.holiday());
+        for (TrafficRecord r : rows) cube.add(r);
+        return cube;
+    }
+
+    /* =======================
+       Updates
+       ======================= */
+
+    public void add(TrafficRecord r) {
+        int eh = TrafficDataset.epochHour(r.dateTime());
+        markHoliday(eh, r.holiday());
+        add(eh, weatherCode(r.weatherMain()), r.trafficVolume());
+    }
+
+    // Adds every row of the dataset (holiday dates are collected first, so any row order works)
+    public void add(TrafficDataset ds) {
+        int[] hours = ds.epochHourColumn();
+        int[] volumes = ds.volumeColumn();
+
+        String[] holidays = ds.holidayNames();
+        short[] holidayCodes = ds.holidayCodeColumn();
+        boolean[] isHoliday = new boolean[holidays.length];
+        for (int c = 0; c < holidays.length; c++) isHoliday[c] = HourCalendar.isHolidayName(holidays[c]);
+        for (int i = 0; i < ds.size(); i++) {
+            if (isHoliday[holidayCodes[i]]) markHolidayDay(Math.floorDiv(hours[i], 24));
+        }
+
+        String[] names = ds.weatherMainNames();
+        int[] codeOf = new int[names.length];
+        for (int c = 0; c < names.length; c++) codeOf[c] = weatherCode(names[c]);
+
+        short[] weather = ds.weatherMainCodeColumn();
+        for (int i = 0; i < ds.size(); i++) add(hours[i], codeOf[weather[i]], volumes[i]);
+    }
+
+    // Folds another cube into this one
+    public RollupCube merge(RollupCube other) {
+        int[] codeOf = new int[other.weatherNames.size()];
+        for (int c = 0; c < codeOf.length; c++) codeOf[c] = weatherCode(other.weatherNames.get(c));
+        for (int d : other.holidayDays) markHolidayDay(d);
+        invalidateViews();
+
+        for (int i = 0; i < other.cells; i++) {
+            long k = other.keys[i];
+            int w = (int) (k >>> WEATHER_SHIFT) & (MAX_WEATHER - 1);
+            long key = k & ~((long) (MAX_WEATHER - 1) << WEATHER_SHIFT) | (long) codeOf[w] << WEATHER_SHIFT;
+            int c = cellFor(key);
+            count[c] += other.count[i];
+            sum[c] += other.sum[i];
+            min[c] = Math.min(min[c], other.min[i]);
+            max[c] = Math.max(max[c], other.max[i]);
+            sumSquares[c] += other.sumSquares[i];
+        }
+        return this;
+    }
+
+    private void add(int epochHour, int weather, int volume) {
+        invalidateViews();
+        int f = HourCalendar.decode(epochHour);
+        int day = Math.floorDiv(epochHour, 24);
+        if (day != lastDay) {
+            lastDay = day;
+            lastDayHoliday = holidayDays.contains(day) ? 1 : 0;
+        }
+
+        long key = (long) (HourCalendar.year(f) * 12 + HourCalendar.month(f) - 1) << MONTH_SHIFT
+                | (long) weather << WEATHER_SHIFT
+                | lastDayHoliday << HOLIDAY_SHIFT
+                | HourCalendar.dayOfWeek(f) << DOW_SHIFT
+                | HourCalendar.hour(f);
+        int c = cellFor(key);
+        count[c]++;
+        sum[c] += volume;
+        if (volume < min[c]) min[c] = volume;
+        if (volume > max[c]) max[c] = volume;
+        sumSquares[c] += (long) volume * volume;
+    }
+
+    private void markHoliday(int epochHour, String holiday) {
+        if (HourCalendar.isHolidayName(holiday)) markHolidayDay(Math.floorDiv(epochHour, 24));
+    }
+
+    private void markHolidayDay(int day) {
+        if (holidayDays.add(day) && day == lastDay) lastDayHoliday = 1;
+    }
+
+    private int weatherCode(String raw) {
+        if (raw == null) return 0;
+        Integer cached = weatherOfRaw.get(raw);
+        if (cached != null) return cached;
+
+        String name = raw.trim();
+        Integer code = weatherCodes.get(name);
+        if (code == null) {
+            if (weatherNames.size() == MAX_WEATHER) {
+                throw new IllegalStateException("More than " + (MAX_WEATHER - 1) + " weather_main values");
+            }
+            code = weatherNames.size();
+            weatherNames.add(name);
+            weatherCodes.put(name, code);
+        }
+        weatherOfRaw.put(raw, code);
+        return code;
+    }
+
+    private int cellFor(long key) {
+        int c = index.get(key);
+        if (c >= 0) return c;
+
+        if (cells == keys.length) {
+            int n = cells * 2;
+            keys = Arrays.copyOf(keys, n);
+            count = Arrays.copyOf(count, n);
+            sum = Arrays.copyOf(sum, n);
+            min = Arrays.copyOf(min, n);
+            max = Arrays.copyOf(max, n);
+            sumSquares = Arrays.copyOf(sumSquares, n);
+        }
+        c = cells++;
+        keys[c] = key;
+        min[c] = Integer.MAX_VALUE;
+        max[c] = Integer.MIN_VALUE;
+        index.put(key, c);
+        return c;
+    }
+
+    /* =======================
+       Queries
+       ======================= */
+
+    // Which cells a query covers; every dimension is unrestricted until narrowed.
+    // Slices are immutable, each narrowing returns a new one.
+    public static final class Slice {
+        private final long hourMask;
+        private final int dayMask;
+        private final Set<String> weather;
+        private final int holidayMask;
+        private final int fromMonth;
+        private final int toMonth;
+
+        private Slice(long hourMask, int dayMask, Set<String> weather, int holidayMask, int fromMonth, int toMonth) {
+            this.hourMask = hourMask;
+            this.dayMask = dayMask;
+            this.weather = weather;
+            this.holidayMask = holidayMask;
+            this.fromMonth = fromMonth;
+            this.toMonth = toMonth;
+        }
+
+        public static Slice all() {
+            return new Slice((1L << 24) - 1, 0x7F, null, 0b11, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        }
+
+        // Hours in [fromHour, toHourExclusive), wrapping past midnight when from > to.
+        // hours(0, 24) is every hour; an empty range such as hours(5, 5) is rejected
+        public Slice hours(int fromHour, int toHourExclusive) {
+            if (fromHour < 0 || fromHour > 23 || toHourExclusive < 0 || toHourExclusive > 24) {
+                throw new IllegalArgumentException("Hours must be within 0-24");
+            }
+            if (fromHour == toHourExclusive) {
+                throw new IllegalArgumentException("Empty hour range: " + fromHour + "-" + toHourExclusive);
+            }
+            long mask = 0;
+            int h = fromHour;
+            do {
+                mask |= 1L << h;
+                h = (h + 1) % 24;
+            } while (h != toHourExclusive % 24);
+            return new Slice(hourMask & mask, dayMask, weather, holidayMask, fromMonth, toMonth);
+        }
+
+        public Slice days(DayOfWeek... days) {
+            int mask = 0;
+            for (DayOfWeek d : days) mask |= 1 << (d.getValue() - 1);
+            return new Slice(hourMask, dayMask & mask, weather, holidayMask, fromMonth, toMonth);
+        }
+
+        public Slice weekdays() {
+            return days(DayOfWeek.MONDAY, DayOfWeek.TUESDAY, DayOfWeek.WEDNESDAY, DayOfWeek.THURSDAY, DayOfWeek.FRIDAY);
+        }
+
+        public Slice weekends() {
+            return days(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY);
+        }
+
+        public Slice weatherMain(String... names) {
+            Set<String> wanted = new HashSet<>();
+            for (String n : names) wanted.add(n.trim());
+            if (weather != null) wanted.retainAll(weather);
+            return new Slice(hourMask, dayMask, Set.copyOf(wanted), holidayMask, fromMonth, toMonth);
+        }
+
+        public Slice holiday(boolean holiday) {
+            return new Slice(hourMask, dayMask, weather, holidayMask & (holiday ? 0b10 : 0b01), fromMonth, toMonth);
+        }
+
+        // Months in [from, toExclusive)
+        public Slice months(YearMonth from, YearMonth toExclusive) {
+            return new Slice(hourMask, dayMask, weather, holidayMask,
+                    Math.max(fromMonth, monthIndex(from)), Math.min(toMonth, monthIndex(toExclusive)));
+        }
+    }
+
+    public Stats total() {
+        return total(Slice.all());
+    }
+
+    public Stats total(Slice slice) {
+        return group(slice, BY_NONE, 1, 0).stats(0);
+    }
+
+    public Map<Integer, Stats> byHour(Slice slice) {
+        Acc g = group(slice, BY_HOUR, 24, 0);
+        Map<Integer, Stats> out = new TreeMap<>();
+        for (int h = 0; h < 24; h++) if (g.n[h] > 0) out.put(h, g.stats(h));
+        return out;
+    }
+
+    public Map<DayOfWeek, Stats> byDayOfWeek(Slice slice) {
+        Acc g = group(slice, BY_DOW, 7, 0);
+        Map<DayOfWeek, Stats> out = new TreeMap<>();
+        for (int d = 0; d < 7; d++) if (g.n[d] > 0) out.put(DayOfWeek.of(d + 1), g.stats(d));
+        return out;
+    }
+
+    // Null / blank weather is left out, as in TrafficAnalysis.averageVolumeByWeatherMain
+    public Map<String, Stats> byWeatherMain(Slice slice) {
+        Acc g = group(slice, BY_WEATHER, weatherNames.size(), 0);
+        Map<String, Stats> out = new TreeMap<>();
+        for (int w = 1; w < weatherNames.size(); w++) if (g.n[w] > 0) out.put(weatherNames.get(w), g.stats(w));
+        return out;
+    }
+
+    public Map<Boolean, Stats> byHoliday(Slice slice) {
+        Acc g = group(slice, BY_HOLIDAY, 2, 0);
+        Map<Boolean, Stats> out = new TreeMap<>();
+        if (g.n[0] > 0) out.put(false, g.stats(0));
+        if (g.n[1] > 0) out.put(true, g.stats(1));
+        return out;
+    }
+
+    public Map<YearMonth, Stats> byYearMonth(Slice slice) {
+        Map<YearMonth, Stats> out = new TreeMap<>();
+        if (cells == 0) return out;
+
+        int first = firstMonth();
+        Acc g = group(slice, BY_MONTH, lastMonth() - first + 1, first);
+        for (int m = 0; m < g.n.length; m++) {
+            if (g.n[m] > 0) out.put(YearMonth.of(Math.floorDiv(first + m, 12), Math.floorMod(first + m, 12) + 1), g.stats(m));
+        }
+        return out;
+    }
+
+    public Map<Integer, Stats> byYear(Slice slice) {
+        Map<Integer, Stats> out = new TreeMap<>();
+        if (cells == 0) return out;
+
+        int first = Math.floorDiv(firstMonth(), 12);
+        Acc g = group(slice, BY_YEAR, Math.floorDiv(lastMonth(), 12) - first + 1, first);
+        for (int y = 0; y < g.n.length; y++) if (g.n[y] > 0) out.put(first + y, g.stats(y));
+        return out;
+    }
+
+    // "Weekday" / "Weekend" -> hour -> stats
+    public Map<String, Map<Integer, Stats>> byHourWeekdayVsWeekend(Slice slice) {
+        Acc g = group(slice, BY_DAY_TYPE_HOUR, 48, 0);
+        Map<Integer, Stats> weekday = new TreeMap<>();
+        Map<Integer, Stats> weekend = new TreeMap<>();
+        for (int h = 0; h < 24; h++) {
+            if (g.n[h * 2] > 0) weekday.put(h, g.stats(h * 2));
+            if (g.n[h * 2 + 1] > 0) weekend.put(h, g.stats(h * 2 + 1));
+        }
+        return dayTypes(weekday, weekend);
+    }
+
+    // Weekday first, so the JSON key order is the same on every run
+    private static <V> Map<String, V> dayTypes(V weekday, V weekend) {
+        Map<String, V> out = new LinkedHashMap<>();
+        out.put("Weekday", weekday);
+        out.put("Weekend", weekend);
+        return out;
+    }
+
+    /* =======================
+       TrafficAnalysis equivalents
+       ======================= */
+
+    public Map<Integer, Double> averageVolumeByHour() {
+        return means(byHour(Slice.all()));
+    }
+
+    public Map<String, Double> averageWeekdayVsWeekend() {
+        return dayTypes(total(Slice.all().weekdays()).mean(), total(Slice.all().weekends()).mean());
+    }
+
+    public Map<String, Map<Integer, Double>> averageVolumeByHourWeekdayVsWeekend() {
+        Map<String, Map<Integer, Stats>> g = byHourWeekdayVsWeekend(Slice.all());
+        return dayTypes(means(g.get("Weekday")), means(g.get("Weekend")));
+    }
+
+    public Map<String, Double> averageVolumeByWeatherMain() {
+        return means(byWeatherMain(Slice.all()));
+    }
+
+    public TrafficAnalysis.PeakHour peakHourByAverage(Slice slice) {
+        return TrafficAnalysis.peakOf(means(byHour(slice)));
+    }
+
+    private static <K> Map<K, Double> means(Map<K, Stats> stats) {
+        Map<K, Double> out = new TreeMap<>();
+        for (var e : stats.entrySet()) out.put(e.getKey(), e.getValue().mean());
+        return out;
+    }
+
+    public int cellCount() {
+        return cells;
+    }
+
+    public List<String> weatherMainDictionary() {
+        return List.copyOf(weatherNames.subList(1, weatherNames.size()));
+    }
+
+    /* =======================
+       Query evaluation
+       ======================= */
+
+    private static final int BY_NONE = 0;
+    private static final int BY_HOUR = 1;
+    private static final int BY_DOW = 2;
+    private static final int BY_WEATHER = 3;
+    private static final int BY_HOLIDAY = 4;
+    private static final int BY_DAY_TYPE_HOUR = 5;
+    private static final int BY_MONTH = 6;
+    private static final int BY_YEAR = 7;
+
+    // Sums of the slice's cells per group. Queries over all months read a dense
+    // weather x holiday x day x hour profile (a few thousand cells, months folded in);
+    // the rest walk the cells in key order, which is month-major, from the first month
+    // of the slice to the last.
+    private Acc group(Slice s, int by, int groups, int base) {
+        Acc out = new Acc(groups);
+        boolean[] weatherOk = weatherMask(s);
+
+        if (s.fromMonth == Integer.MIN_VALUE && s.toMonth == Integer.MAX_VALUE && by != BY_MONTH && by != BY_YEAR) {
+            Acc p = profile();
+            for (int w = 0; w < weatherNames.size(); w++) {
+                if (weatherOk != null && !weatherOk[w]) continue;
+                for (int hol = 0; hol < 2; hol++) {
+                    if ((s.holidayMask >>> hol & 1) == 0) continue;
+                    for (int d = 0; d < 7; d++) {
+                        if ((s.dayMask >>> d & 1) == 0) continue;
+                        int cell = ((w * 2 + hol) * 7 + d) * 24;
+                        for (int h = 0; h < 24; h++, cell++) {
+                            if ((s.hourMask >>> h & 1) == 0 || p.n[cell] == 0) continue;
+                            out.add(groupOf(by, h, d, w, hol, 0, base), p.n[cell], p.s[cell], p.lo[cell], p.hi[cell], p.sq[cell]);
+                        }
+                    }
+                }
+            }
+            return out;
+        }
+
+        int[] order = sortedCells();
+        long fromKey = (long) Math.max(0, s.fromMonth) << MONTH_SHIFT;
+        int lo = 0;
+        int hi = order.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[order[mid]] < fromKey) lo = mid + 1;
+            else hi = mid;
+        }
+
+        for (int i = lo; i < order.length; i++) {
+            int c = order[i];
+            long k = keys[c];
+            int month = (int) (k >>> MONTH_SHIFT);
+            if (month >= s.toMonth) break;
+
+            int h = (int) (k & 31);
+            int d = (int) (k >>> DOW_SHIFT) & 7;
+            int hol = (int) (k >>> HOLIDAY_SHIFT) & 1;
+            int w = (int) (k >>> WEATHER_SHIFT) & (MAX_WEATHER - 1);
+            if ((s.hourMask >>> h & 1) == 0 || (s.dayMask >>> d & 1) == 0 || (s.holidayMask >>> hol & 1) == 0
+                    || (weatherOk != null && !weatherOk[w])) {
+                continue;
+            }
+            out.add(groupOf(by, h, d, w, hol, month, base), count[c], sum[c], min[c], max[c], sumSquares[c]);
+        }
+        return out;
+    }
+
+    private static int groupOf(int by, int hour, int dow, int weather, int holiday, int month, int base) {
+        switch (by) {
+            case BY_HOUR:
+                return hour;
+            case BY_DOW:
+                return dow;
+            case BY_WEATHER:
+                return weather;
+            case BY_HOLIDAY:
+                return holiday;
+            case BY_DAY_TYPE_HOUR:
+                return hour * 2 + (dow >= 5 ? 1 : 0);
+            case BY_MONTH:
+                return month - base;
+            case BY_YEAR:
+                return Math.floorDiv(month, 12) - base;
+            default:
+                return 0;
+        }
+    }
+
+    private boolean[] weatherMask(Slice s) {
+        if (s.weather == null) return null;
+        boolean[] ok = new boolean[weatherNames.size()];
+        for (int w = 1; w < ok.length; w++) ok[w] = s.weather.contains(weatherNames.get(w));
+        return ok;
+    }
+
+    // Query views, built on first use after an update
+    private Acc profile;
+    private int[] sortedCells;
+
+    private void invalidateViews() {
+        profile = null;
+        sortedCells = null;
+    }
+
+    // Builds the views now, so threads that are handed the cube afterwards only read it
+    void buildViews() {
+        profile();
+        sortedCells();
+    }
+
+    private Acc profile() {
+        Acc p = profile;
+        if (p != null) return p;
+
+        p = new Acc(weatherNames.size() * 2 * 7 * 24);
+        for (int c = 0; c < cells; c++) {
+            long k = keys[c];
+            int w = (int) (k >>> WEATHER_SHIFT) & (MAX_WEATHER - 1);
+            int hol = (int) (k >>> HOLIDAY_SHIFT) & 1;
+            int cell = ((w * 2 + hol) * 7 + ((int) (k >>> DOW_SHIFT) & 7)) * 24 + (int) (k & 31);
+            p.add(cell, count[c], sum[c], min[c], max[c], sumSquares[c]);
+        }
+        return profile = p;
+    }
+
+    private int[] sortedCells() {
+        int[] order = sortedCells;
+        if (order != null) return order;
+
+        // Keys are unique, so sort them and look each cell back up
+        long[] sortedKeys = Arrays.copyOf(keys, cells);
+        Arrays.sort(sortedKeys);
+        order = new int[cells];
+        for (int i = 0; i < cells; i++) order[i] = index.get(sortedKeys[i]);
+        return sortedCells = order;
+    }
+
+    private int firstMonth() {
+        return (int) (keys[sortedCells()[0]] >>> MONTH_SHIFT);
+    }
+
+    private int lastMonth() {
+        int[] order = sortedCells();
+        return (int) (keys[order[order.length - 1]] >>> MONTH_SHIFT);
+    }
+
+    // Per-group count / sum / min / max / sum of squares
+    private static final class Acc {
+        final long[] n;
+        final long[] s;
+        final int[] lo;
+        final int[] hi;
+        final long[] sq;
+
+        Acc(int groups) {
+            n = new long[groups];
+            s = new long[groups];
+            lo = new int[groups];
+            hi = new int[groups];
+            sq = new long[groups];
+            Arrays.fill(lo, Integer.MAX_VALUE);
+            Arrays.fill(hi, Integer.MIN_VALUE);
+        }
+
+        void add(int g, long count, long sum, int min, int max, long sumSquares) {
+            n[g] += count;
+            s[g] += sum;
+            if (min < lo[g]) lo[g] = min;
+            if (max > hi[g]) hi[g] = max;
+            sq[g] += sumSquares;
+        }
+
+        Stats stats(int g) {
+            return n[g] == 0 ? Stats.EMPTY : new Stats(n[g], s[g], lo[g], hi[g], sq[g]);
+        }
+    }
+
+    private static int monthIndex(YearMonth ym) {
+        return ym.getYear() * 12 + ym.getMonthValue() - 1;
+    }
+
+    /* =======================
+       Persistence
+       ======================= */
+
+    public static Path cubePathFor(Path csvPath) {
+        return csvPath.resolveSibling(csvPath.getFileName() + ".cube");
+    }
+
+    // The cube for csvPath from its "<name>.cube" file while that matches the CSV, or
+    // built from the data (through TrafficDataLoader.loadCached) and written there. When
+    // rows were only appended since the cube was stamped, just those rows are added.
+    public static RollupCube loadCached(Path csvPath) throws IOException {
+        if (!Files.exists(csvPath)) {
+            throw new IOException("CSV not found at: " + csvPath.toAbsolutePath());
+        }
+
+        // A directory has no single file to stamp; its files are loaded as they are
+        if (Files.isDirectory(csvPath)) return build(TrafficDataLoader.load(csvPath));
+
+        Path cubePath = cubePathFor(csvPath);
+        TrafficSnapshot.SourceStamp stored = readStamp(cubePath);
+        if (stored != null && TrafficSnapshot.matches(stored, csvPath)) {
+            try {
+                return read(cubePath);
+            } catch (IOException e) {
+                System.err.println("Ignoring unreadable cube " + cubePath + ": " + e.getMessage());
+            }
+        }
+
+        TrafficSnapshot.SourceStamp stamp = TrafficSnapshot.stampOf(csvPath);
+        RollupCube cube = null;
+        if (stored != null && CsvInputs.isPlainFile(csvPath) && TrafficSnapshot.isAppendOf(stored, csvPath)
+                && isLineEnd(csvPath, stamp.size())) {
+            try {
+                cube = read(cubePath);
+                for (TrafficRecord r : MappedTrafficDataLoader.loadRange(csvPath, stored.size(), stamp.size())) {
+                    cube.add(r);
+                }
+            } catch (IOException e) {
+                System.err.println("Rebuilding cube " + cubePath + ": " + e.getMessage());
+                cube = null;
+            }
+        }
+        if (cube == null) cube = build(TrafficDataLoader.loadCached(csvPath));
+
+        try {
+            cube.write(stamp, cubePath);
+        } catch (IOException e) {
+            System.err.println("Could not write cube " + cubePath + ": " + e.getMessage());
+        }
+        return cube;
+    }
+
+    // True when the file's first size bytes end with a newline, i.e. no row is cut off there
+    private static boolean isLineEnd(Path file, long size) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            return size > 0 && ch.read(last, size - 1) == 1 && last.get(0) == '\n';
+        }
+    }
+
+    // Layout (big-endian), header as in TrafficSnapshot:
+    //   int magic, int version, long sourceSize, long sourceMtimeMillis, int sourceCrc,
+    //   int cellCount, int crc (CRC32C of the header fields before it, then the payload)
+    //   payload: int weatherCount, then int byteLength + UTF-8 bytes each (code 0 first),
+    //            int holidayDayCount, int[] epochDays,
+    //            long[] key, long[] count, long[] sum, int[] min, int[] max, long[] sumSquares
+    public void write(TrafficSnapshot.SourceStamp source, Path cubePath) throws IOException {
+        List<byte[]> names = new ArrayList<>();
+        long dictBytes = 4;
+        for (String n : weatherNames) {
+            byte[] b = n.getBytes(StandardCharsets.UTF_8);
+            names.add(b);
+            dictBytes += 4 + b.length;
+        }
+
+        long payloadBytes = dictBytes + 4 + 4L * holidayDays.size() + (long) cells * (8 + 8 + 8 + 4 + 4 + 8);
+        if (HEADER_BYTES + payloadBytes > Integer.MAX_VALUE) {
+            throw new IOException("Cube would exceed 2 GB (" + cells + " cells)");
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate((int) (HEADER_BYTES + payloadBytes));
+        buf.position(HEADER_BYTES);
+
+        buf.putInt(names.size());
+        for (byte[] b : names) buf.putInt(b.length).put(b);
+
+        int[] days = holidayDays.stream().mapToInt(Integer::intValue).sorted().toArray();
+        buf.putInt(days.length);
+        for (int d : days) buf.putInt(d);
+
+        for (int i = 0; i < cells; i++) buf.putLong(keys[i]);
+        for (int i = 0; i < cells; i++) buf.putLong(count[i]);
+        for (int i = 0; i < cells; i++) buf.putLong(sum[i]);
+        for (int i = 0; i < cells; i++) buf.putInt(min[i]);
+        for (int i = 0; i < cells; i++) buf.putInt(max[i]);
+        for (int i = 0; i < cells; i++) buf.putLong(sumSquares[i]);
+
+        int end = buf.position();
+        buf.position(0);
+        buf.putInt(MAGIC)
+                .putInt(VERSION)
+                .putLong(source.size())
+                .putLong(source.mtimeMillis())
+                .putInt(source.crc())
+                .putInt(cells);
+
+        // The checksum covers the header fields before it as well as the payload
+        CRC32C crc = new CRC32C();
+        crc.update(buf.array(), 0, HEADER_BYTES - 4);
+        crc.update(buf.array(), HEADER_BYTES, end - HEADER_BYTES);
+        buf.putInt((int) crc.getValue());
+
+        Path dir = cubePath.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, cubePath.getFileName().toString(), ".tmp");
+        try {
+            Files.write(tmp, buf.array());
+            Files.move(tmp, cubePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    // Stored stamp of an existing cube file, or null if it is missing or not a cube
+    public static TrafficSnapshot.SourceStamp readStamp(Path cubePath) throws IOException {
+        if (!Files.exists(cubePath)) return null;
+        try (FileChannel ch = FileChannel.open(cubePath, StandardOpenOption.READ)) {
+            if (ch.size() < HEADER_BYTES) return null;
+            ByteBuffer head = ByteBuffer.allocate(HEADER_BYTES);
+            ch.read(head, 0);
+            head.flip();
+            if (head.getInt() != MAGIC || head.getInt() != VERSION) return null;
+            return new TrafficSnapshot.SourceStamp(head.getLong(), head.getLong(), head.getInt());
+        }
+    }
+
+    public static RollupCube read(Path cubePath) throws IOException {
+        try (FileChannel ch = FileChannel.open(cubePath, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a rollup cube: " + cubePath);
+            }
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            if (buf.getInt() != MAGIC) throw new IOException("Not a rollup cube: " + cubePath);
+            int version = buf.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported cube version " + version + ": " + cubePath);
+            }
+            buf.position(buf.position() + 8 + 8 + 4);
+            int n = buf.getInt();
+            int expectedCrc = buf.getInt();
+
+            CRC32C crc = new CRC32C();
+            crc.update(buf.duplicate().position(0).limit(HEADER_BYTES - 4));
+            crc.update(buf.duplicate());
+            if ((int) crc.getValue() != expectedCrc) {
+                throw new IOException("Cube checksum mismatch: " + cubePath);
+            }
+
+            RollupCube cube = new RollupCube();
+            int names = buf.getInt();
+            for (int c = 0; c < names; c++) {
+                byte[] b = new byte[buf.getInt()];
+                buf.get(b);
+                String name = new String(b, StandardCharsets.UTF_8);
+                if (c == 0) continue;
+                cube.weatherCodes.put(name, cube.weatherNames.size());
+                cube.weatherNames.add(name);
+            }
+            int days = buf.getInt();
+            for (int d = 0; d < days; d++) cube.holidayDays.add(buf.getInt());
+
+            long[] keys = new long[n];
+            for (int i = 0; i < n; i++) keys[i] = buf.getLong();
+            for (int i = 0; i < n; i++) cube.cellFor(keys[i]);
+            for (int i = 0; i < n; i++) cube.count[i] = buf.getLong();
+            for (int i = 0; i < n; i++) cube.sum[i] = buf.getLong();
+            for (int i = 0; i < n; i++) cube.min[i] = buf.getInt();
+            for (int i = 0; i < n; i++) cube.max[i] = buf.getInt();
+            for (int i = 0; i < n; i++) cube.sumSquares[i] = buf.getLong();
+            return cube;
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt rollup cube: " + cubePath, e);
+        }
+    }
+
+    // Open-addressing map from cell key to cell number
+    private static final class CellIndex {
+        private long[] keys = new long[512];
+        private int[] values = new int[512];
+        private boolean[] used = new boolean[512];
+        private int size;
+
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask); used[i]; i = (i + 1) & mask) {
+                if (keys[i] == key) return values[i];
+            }
+            return -1;
+        }
+
+        void put(long key, int value) {
+            if ((size + 1) * 2 > keys.length) grow();
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (used[i]) i = (i + 1) & mask;
+            keys[i] = key;
+            values[i] = value;
+            used[i] = true;
+            size++;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            boolean[] oldUsed = used;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            used = new boolean[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) if (oldUsed[i]) put(oldKeys[i], oldValues[i]);
+        }
+
+        private static int slot(long key, int mask) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h >>> 40) & mask;
+        }
+    }
+}
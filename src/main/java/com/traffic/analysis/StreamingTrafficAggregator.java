@@ -0,0 +1,338 @@
+package com.traffic.analysis;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Map;
+
+// Incremental version of the report aggregates for live hourly feeds. Rows are
+// folded into fixed hour x day-type cells and per-weather sums as they arrive, so
+// memory does not grow with history and every query reads a constant number of cells.
+// Safe for one writer and any number of concurrent readers.
+public final class StreamingTrafficAggregator {
+
+    private static final String DEFAULT_HEADER =
+            "traffic_volume,holiday,temp,rain_1h,snow_1h,clouds_all,weather_main,weather_description,date_time";
+
+    private TrafficAggregates agg = new TrafficAggregates(EnumSet.allOf(TrafficAggregates.Aggregate.class));
+    private final CsvRowParser lineParser;
+
+    // When set, rows it flags are left out of the aggregates
+    private final AnomalyDetector detector;
+    private long excludedRows;
+
+    public StreamingTrafficAggregator() {
+        this(DEFAULT_HEADER);
+    }
+
+    // headerLine gives the column order used by acceptCsvLine
+    public StreamingTrafficAggregator(String headerLine) {
+        this(headerLine, null);
+    }
+
+    // Runs every row through detector first and skips the anomalous ones
+    public StreamingTrafficAggregator(String headerLine, AnomalyDetector detector) {
+        this.lineParser = new CsvRowParser(columnsOf(headerLine));
+        this.detector = detector;
+    }
+
+    /* =======================
+       Ingest
+       ======================= */
+
+    public synchronized void accept(TrafficRecord r) {
+        if (detector != null && detector.accept(r) != null) {
+            excludedRows++;
+            return;
+        }
+        agg.add(r);
+    }
+
+    // Parses and folds in one data line (no header, no line terminator)
+    public synchronized void acceptCsvLine(String line) throws IOException {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        accept(lineParser.parseLine(ByteBuffer.wrap(bytes), 0, bytes.length));
+    }
+
+    // Drops everything folded in so far (and the detector's history)
+    public synchronized void reset() {
+        agg = new TrafficAggregates(EnumSet.allOf(TrafficAggregates.Aggregate.class));
+        excludedRows = 0;
+        if (detector != null) detector.reset();
+    }
+
+    /* =======================
+       Queries
+       ======================= */
+
+    public synchronized long rowCount() {
+        return agg.rowCount();
+    }
+
+    // Rows left out because the anomaly detector flagged them
+    public synchronized long excludedRowCount() {
+        return excludedRows;
+    }
+
+    public synchronized double averageVolumeForHour(int hour) {
+        return agg.averageForHour(hour, true, true);
+    }
+
+    public synchronized double averageVolumeForHour(int hour, boolean weekend) {
+        return agg.averageForHour(hour, !weekend, weekend);
+    }
+
+    public synchronized double averageVolumeForWeatherMain(String weatherMain) {
+        return agg.averageForWeather(weatherMain);
+    }
+
+    public synchronized Map<Integer, Double> averageVolumeByHour() {
+        return agg.averageVolumeByHour();
+    }
+
+    public synchronized Map<String, Double> averageWeekdayVsWeekend() {
+        return agg.averageWeekdayVsWeekend();
+    }
+
+    public synchronized Map<String, Map<Integer, Double>> averageVolumeByHourWeekdayVsWeekend() {
+        return agg.averageVolumeByHourWeekdayVsWeekend();
+    }
+
+    public synchronized Map<String, Double> averageVolumeByWeatherMain() {
+        return agg.averageVolumeByWeatherMain();
+    }
+
+    public synchronized TrafficAnalysis.PeakHour peakHourByAverage() {
+        return agg.peakHourByAverage();
+    }
+
+    public synchronized TrafficAnalysis.PeakHour peakHourWeekday() {
+        return agg.peakHourWeekday();
+    }
+
+    public synchronized TrafficAnalysis.PeakHour peakHourWeekend() {
+        return agg.peakHourWeekend();
+    }
+
+    /* =======================
+       Tailing a growing CSV
+       ======================= */
+
+    // Follows csvPath on a daemon thread, feeding each newly appended complete line
+    // into this aggregator. The first line of the file is taken as its header.
+    // When the file is replaced (a different file key, e.g. a re-export moved into
+    // place), truncated, or rewritten in place to the same or a larger size (the bytes
+    // at its start or just before the read position differ from what was read), the
+    // aggregator is reset and the new file is read from its header, so the aggregates
+    // always describe the file as it is now and rows of a re-export are not counted
+    // twice.
+    public Tailer tail(Path csvPath, Duration pollInterval) throws IOException {
+        if (!Files.exists(csvPath)) {
+            throw new IOException("CSV not found at: " + csvPath.toAbsolutePath());
+        }
+        Tailer t = new Tailer(this, csvPath, pollInterval);
+        t.thread.start();
+        return t;
+    }
+
+    private static CsvColumns columnsOf(String headerLine) {
+        byte[] bytes = headerLine.getBytes(StandardCharsets.UTF_8);
+        return CsvColumns.fromHeader(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    public static final class Tailer implements Closeable {
+        private static final int MAX_LINE = 1 << 20;
+        private static final int CHECK_BYTES = 4096;
+
+        private final StreamingTrafficAggregator target;
+        private final Path csvPath;
+        private final long pollMillis;
+        private final Thread thread;
+        private final ByteBuffer readBuf = ByteBuffer.allocate(64 * 1024);
+
+        // Bytes of the current, not yet terminated line
+        private byte[] pending = new byte[256];
+        private int pendingLen;
+        private boolean discarding;
+
+        private long offset;
+        // fileKey() of the file being read, or its creation time where there is none
+        private Object identity;
+
+        // Up to CHECK_BYTES of the file's start and of the bytes just before offset, as
+        // read; re-read each poll to tell an append from a rewrite in place
+        private final byte[] head = new byte[CHECK_BYTES];
+        private int headLen;
+        private final byte[] recent = new byte[CHECK_BYTES];
+        private int recentLen;
+        private final ByteBuffer checkBuf = ByteBuffer.allocate(CHECK_BYTES);
+        private CsvRowParser parser;
+        private volatile boolean running = true;
+        private volatile long rejectedLines;
+        private volatile IOException lastError;
+
+        private Tailer(StreamingTrafficAggregator target, Path csvPath, Duration pollInterval) {
+            this.target = target;
+            this.csvPath = csvPath;
+            this.pollMillis = Math.max(1, pollInterval.toMillis());
+            this.thread = new Thread(this::run, "csv-tail-" + csvPath.getFileName());
+            this.thread.setDaemon(true);
+        }
+
+        public long rejectedLines() {
+            return rejectedLines;
+        }
+
+        public IOException lastError() {
+            return lastError;
+        }
+
+        @Override
+        public void close() {
+            running = false;
+            thread.interrupt();
+            try {
+                thread.join(pollMillis * 2 + 1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void run() {
+            while (running) {
+                try {
+                    poll();
+                    lastError = null;
+                } catch (IOException e) {
+                    lastError = e;
+                }
+                try {
+                    Thread.sleep(pollMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        // Reads whatever was appended since the last poll
+        private void poll() throws IOException {
+            BasicFileAttributes attrs = Files.readAttributes(csvPath, BasicFileAttributes.class);
+            Object id = attrs.fileKey() != null ? attrs.fileKey() : attrs.creationTime();
+
+            try (FileChannel ch = FileChannel.open(csvPath, StandardOpenOption.READ)) {
+                long size = ch.size();
+                if (identity != null && (!identity.equals(id) || size < offset || !unchanged(ch))) {
+                    // Replaced, truncated or rewritten: what was folded in no longer
+                    // matches the file
+                    target.reset();
+                    offset = 0;
+                    pendingLen = 0;
+                    discarding = false;
+                    parser = null;
+                    headLen = 0;
+                    recentLen = 0;
+                }
+                identity = id;
+
+                while (offset < size) {
+                    readBuf.clear();
+                    int n = ch.read(readBuf, offset);
+                    if (n <= 0) break;
+                    remember(readBuf.array(), n);
+                    offset += n;
+                    consume(readBuf.array(), n);
+                }
+            }
+        }
+
+        // Keeps the check bytes up to date with buf[0, n), read at offset
+        private void remember(byte[] buf, int n) {
+            if (offset < CHECK_BYTES) {
+                int len = (int) Math.min(n, CHECK_BYTES - offset);
+                System.arraycopy(buf, 0, head, (int) offset, len);
+                headLen = (int) offset + len;
+            }
+            if (n >= CHECK_BYTES) {
+                System.arraycopy(buf, n - CHECK_BYTES, recent, 0, CHECK_BYTES);
+                recentLen = CHECK_BYTES;
+            } else {
+                int keep = Math.min(recentLen, CHECK_BYTES - n);
+                System.arraycopy(recent, recentLen - keep, recent, 0, keep);
+                System.arraycopy(buf, 0, recent, keep, n);
+                recentLen = keep + n;
+            }
+        }
+
+        // True when the file still holds the check bytes where they were read
+        private boolean unchanged(FileChannel ch) throws IOException {
+            return sameBytes(ch, 0, head, headLen) && sameBytes(ch, offset - recentLen, recent, recentLen);
+        }
+
+        private boolean sameBytes(FileChannel ch, long at, byte[] expected, int len) throws IOException {
+            checkBuf.clear().limit(len);
+            while (checkBuf.hasRemaining()) {
+                if (ch.read(checkBuf, at + checkBuf.position()) < 0) return false;
+            }
+            return Arrays.equals(checkBuf.array(), 0, len, expected, 0, len);
+        }
+
+        private void consume(byte[] buf, int n) {
+            int lineStart = 0;
+            for (int i = 0; i < n; i++) {
+                if (buf[i] != '\n') continue;
+                append(buf, lineStart, i);
+                line();
+                lineStart = i + 1;
+            }
+            append(buf, lineStart, n);
+        }
+
+        private void append(byte[] buf, int from, int to) {
+            int len = to - from;
+            if (len == 0 || discarding) return;
+            if (pendingLen + len > MAX_LINE) {
+                // Runaway line: drop the rest of it rather than let the buffer grow without bound
+                pendingLen = 0;
+                discarding = true;
+                rejectedLines++;
+                return;
+            }
+            if (pendingLen + len > pending.length) {
+                pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingLen + len));
+            }
+            System.arraycopy(buf, from, pending, pendingLen, len);
+            pendingLen += len;
+        }
+
+        private void line() {
+            if (discarding) {
+                discarding = false;
+                return;
+            }
+            int end = pendingLen;
+            if (end > 0 && pending[end - 1] == '\r') end--;
+            ByteBuffer line = ByteBuffer.wrap(pending, 0, end);
+
+            if (parser == null) {
+                parser = new CsvRowParser(CsvColumns.fromHeader(line, 0, end));
+            } else if (end > 0) {
+                try {
+                    TrafficRecord r = parser.parseLine(line, 0, end);
+                    target.accept(r);
+                } catch (IOException | RuntimeException e) {
+                    rejectedLines++;
+                }
+            }
+            pendingLen = 0;
+        }
+    }
+}
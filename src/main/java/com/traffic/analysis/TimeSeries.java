@@ -0,0 +1,35 @@
+package com.traffic.analysis;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Regularly spaced series: values[i] belongs to the bucket starting at
+// startEpochHour + i * strideHours. Buckets with no observations hold NaN.
+public record TimeSeries(int startEpochHour, int strideHours, double[] values) {
+
+    public int size() {
+        return values.length;
+    }
+
+    public double valueAt(int i) {
+        return values[i];
+    }
+
+    public int epochHourAt(int i) {
+        return startEpochHour + i * strideHours;
+    }
+
+    public LocalDateTime timeAt(int i) {
+        return TrafficDataset.dateTimeOf(epochHourAt(i));
+    }
+
+    // Bucket start -> value, skipping empty buckets (for charting and printing)
+    public Map<LocalDateTime, Double> toMap() {
+        Map<LocalDateTime, Double> out = new TreeMap<>();
+        for (int i = 0; i < values.length; i++) {
+            if (!Double.isNaN(values[i])) out.put(timeAt(i), values[i]);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,375 @@
+package com.traffic.analysis;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Computes any set of the TrafficAnalysis aggregates in a single pass. Volumes are
+// summed into primitive cells keyed by hour x day type (and by weather_main when
+// asked for); every result is then derived from those cells and matches what the
+// corresponding TrafficAnalysis method returns.
+public final class TrafficAggregates {
+
+    public enum Aggregate {
+        AVERAGE_BY_HOUR,
+        WEEKDAY_VS_WEEKEND,
+        HOURLY_CURVES_WEEKDAY_VS_WEEKEND,
+        PEAK_HOUR,
+        PEAK_HOUR_WEEKDAY,
+        PEAK_HOUR_WEEKEND,
+        AVERAGE_BY_WEATHER_MAIN
+    }
+
+    private static final TrafficMetrics.AggregateTimer TIMED_RECORDS = TrafficMetrics.aggregateTimer("TrafficAggregates", "records");
+    private static final TrafficMetrics.AggregateTimer TIMED_DATASET = TrafficMetrics.aggregateTimer("TrafficAggregates", "dataset");
+
+    private final EnumSet<Aggregate> requested;
+    private final boolean byWeather;
+
+    // cell = hour * 2 + (weekend ? 1 : 0)
+    private final long[] sum = new long[48];
+    private final long[] count = new long[48];
+
+    // weather_main (trimmed) -> slot in weatherSum/weatherCount
+    private final Map<String, Integer> weatherSlots = new HashMap<>();
+    private int weatherSlotCount;
+    private String[] weatherNames = new String[16];
+    private long[] weatherSum = new long[16];
+    private long[] weatherCount = new long[16];
+
+    TrafficAggregates(Set<Aggregate> requested) {
+        this.requested = requested.isEmpty() ? EnumSet.noneOf(Aggregate.class) : EnumSet.copyOf(requested);
+        this.byWeather = requested.contains(Aggregate.AVERAGE_BY_WEATHER_MAIN);
+    }
+
+    // Every aggregate over no rows yet, to merge() or add() into; records no metrics
+    public static TrafficAggregates empty() {
+        return new TrafficAggregates(EnumSet.allOf(Aggregate.class));
+    }
+
+    public static TrafficAggregates compute(List<TrafficRecord> rows) {
+        return compute(rows, EnumSet.allOf(Aggregate.class));
+    }
+
+    public static TrafficAggregates compute(List<TrafficRecord> rows, Set<Aggregate> requested) {
+        return TIMED_RECORDS.time(() -> {
+            TrafficAggregates agg = new TrafficAggregates(requested);
+            for (TrafficRecord r : rows) agg.add(r);
+            return agg;
+        });
+    }
+
+    public static TrafficAggregates compute(TrafficDataset ds) {
+        return compute(ds, EnumSet.allOf(Aggregate.class));
+    }
+
+    public static TrafficAggregates compute(TrafficDataset ds, Set<Aggregate> requested) {
+        return compute(ds, requested, new BitSet());
+    }
+
+    // Same, leaving out the rows whose index is set in excludedRows (e.g. the
+    // flaggedRows of AnomalyDetector.detect)
+    public static TrafficAggregates compute(TrafficDataset ds, Set<Aggregate> requested, BitSet excludedRows) {
+        return TIMED_DATASET.time(() -> excludedRows.isEmpty()
+                ? computeAll(ds, requested) : computeExcluding(ds, requested, excludedRows));
+    }
+
+    private static TrafficAggregates computeAll(TrafficDataset ds, Set<Aggregate> requested) {
+        TrafficAggregates agg = new TrafficAggregates(requested);
+        int[] hours = ds.epochHourColumn();
+        int[] volumes = ds.volumeColumn();
+        HourCalendar cal = ds.calendar();
+
+        if (!agg.byWeather) {
+            for (int i = 0; i < ds.size(); i++) {
+                int f = cal.fields(hours[i]);
+                agg.addCell(HourCalendar.hour(f), HourCalendar.isWeekend(f), volumes[i]);
+            }
+            return agg;
+        }
+
+        // Resolve each dictionary code to a weather slot once, then index by code per row
+        String[] names = ds.weatherMainNames();
+        int[] slotOfCode = new int[names.length];
+        for (int c = 0; c < names.length; c++) slotOfCode[c] = agg.weatherSlot(names[c]);
+
+        short[] codes = ds.weatherMainCodeColumn();
+        for (int i = 0; i < ds.size(); i++) {
+            int f = cal.fields(hours[i]);
+            agg.addCell(HourCalendar.hour(f), HourCalendar.isWeekend(f), volumes[i]);
+            int slot = slotOfCode[codes[i]];
+            if (slot >= 0) {
+                agg.weatherSum[slot] += volumes[i];
+                agg.weatherCount[slot]++;
+            }
+        }
+        return agg;
+    }
+
+    private static TrafficAggregates computeExcluding(TrafficDataset ds, Set<Aggregate> requested, BitSet excludedRows) {
+        TrafficAggregates agg = new TrafficAggregates(requested);
+        int[] hours = ds.epochHourColumn();
+        int[] volumes = ds.volumeColumn();
+        HourCalendar cal = ds.calendar();
+        short[] codes = ds.weatherMainCodeColumn();
+
+        String[] names = ds.weatherMainNames();
+        int[] slotOfCode = new int[names.length];
+        for (int c = 0; c < names.length; c++) slotOfCode[c] = agg.byWeather ? agg.weatherSlot(names[c]) : -1;
+
+        // Walk the kept runs between excluded rows
+        int n = ds.size();
+        for (int from = excludedRows.nextClearBit(0); from < n; ) {
+            int to = Math.min(n, excludedRows.nextSetBit(from) < 0 ? n : excludedRows.nextSetBit(from));
+            for (int i = from; i < to; i++) {
+                int f = cal.fields(hours[i]);
+                agg.addCell(HourCalendar.hour(f), HourCalendar.isWeekend(f), volumes[i]);
+                int slot = slotOfCode[codes[i]];
+                if (slot >= 0) {
+                    agg.weatherSum[slot] += volumes[i];
+                    agg.weatherCount[slot]++;
+                }
+            }
+            from = excludedRows.nextClearBit(to);
+        }
+        return agg;
+    }
+
+    // Folds another accumulator's cells into this one (e.g. partial results from
+    // other threads or stations); the requested aggregates of this instance are kept.
+    public TrafficAggregates merge(TrafficAggregates other) {
+        for (int k = 0; k < sum.length; k++) {
+            sum[k] += other.sum[k];
+            count[k] += other.count[k];
+        }
+        if (byWeather) {
+            for (int s = 0; s < other.weatherSlotCount; s++) {
+                int slot = weatherSlot(other.weatherNames[s]);
+                weatherSum[slot] += other.weatherSum[s];
+                weatherCount[slot] += other.weatherCount[s];
+            }
+        }
+        return this;
+    }
+
+    // Cells and weather sums; the raw-value cache is rebuilt as rows arrive
+    void writeTo(DataOutput out) throws IOException {
+        int mask = 0;
+        for (Aggregate a : requested) mask |= 1 << a.ordinal();
+        out.writeInt(mask);
+        for (int k = 0; k < sum.length; k++) {
+            out.writeLong(sum[k]);
+            out.writeLong(count[k]);
+        }
+        out.writeInt(weatherSlotCount);
+        for (int s = 0; s < weatherSlotCount; s++) {
+            out.writeUTF(weatherNames[s]);
+            out.writeLong(weatherSum[s]);
+            out.writeLong(weatherCount[s]);
+        }
+    }
+
+    static TrafficAggregates readFrom(DataInput in) throws IOException {
+        int mask = in.readInt();
+        EnumSet<Aggregate> requested = EnumSet.noneOf(Aggregate.class);
+        for (Aggregate a : Aggregate.values()) if ((mask & 1 << a.ordinal()) != 0) requested.add(a);
+
+        TrafficAggregates agg = new TrafficAggregates(requested);
+        for (int k = 0; k < agg.sum.length; k++) {
+            agg.sum[k] = in.readLong();
+            agg.count[k] = in.readLong();
+        }
+        int slots = in.readInt();
+        for (int i = 0; i < slots; i++) {
+            int s = agg.weatherSlot(in.readUTF());
+            agg.weatherSum[s] = in.readLong();
+            agg.weatherCount[s] = in.readLong();
+        }
+        return agg;
+    }
+
+    long estimatedBytes() {
+        return 1024 + 96L * weatherSlots.size();
+    }
+
+    void add(TrafficRecord r) {
+        DayOfWeek d = r.dateTime().getDayOfWeek();
+        boolean weekend = (d == DayOfWeek.SATURDAY || d == DayOfWeek.SUNDAY);
+        addCell(r.dateTime().getHour(), weekend, r.trafficVolume());
+
+        if (byWeather) {
+            int slot = weatherSlot(r.weatherMain());
+            if (slot >= 0) {
+                weatherSum[slot] += r.trafficVolume();
+                weatherCount[slot]++;
+            }
+        }
+    }
+
+    private void addCell(int hour, boolean weekend, int volume) {
+        int k = hour * 2 + (weekend ? 1 : 0);
+        sum[k] += volume;
+        count[k]++;
+    }
+
+    // Slot for a raw weather_main value, or -1 for null/blank values (which the
+    // grouped average skips). Raw values are cached so trim() runs once per value.
+    private int weatherSlot(String raw) {
+        if (raw == null) return -1;
+
+        Integer slot = weatherSlots.get(raw);
+        if (slot != null) return slot;
+
+        int s = -1;
+        if (!raw.isBlank()) {
+            String name = raw.trim();
+            Integer existing = weatherSlots.get(name);
+            s = existing != null ? existing : newWeatherSlot(name);
+            weatherSlots.putIfAbsent(name, s);
+        }
+        weatherSlots.put(raw, s);
+        return s;
+    }
+
+    private int newWeatherSlot(String name) {
+        int s = weatherSlotCount++;
+        if (s == weatherNames.length) {
+            weatherNames = Arrays.copyOf(weatherNames, s * 2);
+            weatherSum = Arrays.copyOf(weatherSum, s * 2);
+            weatherCount = Arrays.copyOf(weatherCount, s * 2);
+        }
+        weatherNames[s] = name;
+        return s;
+    }
+
+    /* =======================
+       Results
+       ======================= */
+
+    public Set<Aggregate> requested() {
+        return EnumSet.copyOf(requested);
+    }
+
+    public Map<Integer, Double> averageVolumeByHour() {
+        require(Aggregate.AVERAGE_BY_HOUR);
+        return averageByHour(true, true);
+    }
+
+    public Map<String, Double> averageWeekdayVsWeekend() {
+        require(Aggregate.WEEKDAY_VS_WEEKEND);
+
+        long weekdaySum = 0;
+        long weekdayCount = 0;
+        long weekendSum = 0;
+        long weekendCount = 0;
+
+        for (int h = 0; h < 24; h++) {
+            weekdaySum += sum[h * 2];
+            weekdayCount += count[h * 2];
+            weekendSum += sum[h * 2 + 1];
+            weekendCount += count[h * 2 + 1];
+        }
+
+        return Map.of(
+                "Weekday", (double) weekdaySum / weekdayCount,
+                "Weekend", (double) weekendSum / weekendCount
+        );
+    }
+
+    public Map<String, Map<Integer, Double>> averageVolumeByHourWeekdayVsWeekend() {
+        require(Aggregate.HOURLY_CURVES_WEEKDAY_VS_WEEKEND);
+
+        Map<Integer, Double> weekdayAvg = new TreeMap<>();
+        Map<Integer, Double> weekendAvg = new TreeMap<>();
+
+        for (int h = 0; h < 24; h++) {
+            weekdayAvg.put(h, count[h * 2] == 0 ? 0.0 : (double) sum[h * 2] / count[h * 2]);
+            weekendAvg.put(h, count[h * 2 + 1] == 0 ? 0.0 : (double) sum[h * 2 + 1] / count[h * 2 + 1]);
+        }
+
+        return Map.of(
+                "Weekday", weekdayAvg,
+                "Weekend", weekendAvg
+        );
+    }
+
+    public TrafficAnalysis.PeakHour peakHourByAverage() {
+        require(Aggregate.PEAK_HOUR);
+        return TrafficAnalysis.peakOf(averageByHour(true, true));
+    }
+
+    public TrafficAnalysis.PeakHour peakHourWeekday() {
+        require(Aggregate.PEAK_HOUR_WEEKDAY);
+        return TrafficAnalysis.peakOf(averageByHour(true, false));
+    }
+
+    public TrafficAnalysis.PeakHour peakHourWeekend() {
+        require(Aggregate.PEAK_HOUR_WEEKEND);
+        return TrafficAnalysis.peakOf(averageByHour(false, true));
+    }
+
+    public Map<String, Double> averageVolumeByWeatherMain() {
+        require(Aggregate.AVERAGE_BY_WEATHER_MAIN);
+
+        Map<String, Double> out = new TreeMap<>();
+        for (int s = 0; s < weatherSlotCount; s++) {
+            if (weatherCount[s] == 0) continue;
+            out.put(weatherNames[s], (double) weatherSum[s] / weatherCount[s]);
+        }
+        return out;
+    }
+
+    // Hour -> average over the chosen day types; hours with no rows are left out
+    private Map<Integer, Double> averageByHour(boolean weekdays, boolean weekends) {
+        Map<Integer, Double> out = new TreeMap<>();
+        for (int h = 0; h < 24; h++) {
+            long s = 0;
+            long c = 0;
+            if (weekdays) {
+                s += sum[h * 2];
+                c += count[h * 2];
+            }
+            if (weekends) {
+                s += sum[h * 2 + 1];
+                c += count[h * 2 + 1];
+            }
+            if (c > 0) out.put(h, (double) s / c);
+        }
+        return out;
+    }
+
+    // Average for a single hour over the chosen day types (NaN when there are no rows)
+    double averageForHour(int hour, boolean weekdays, boolean weekends) {
+        long s = (weekdays ? sum[hour * 2] : 0) + (weekends ? sum[hour * 2 + 1] : 0);
+        long c = (weekdays ? count[hour * 2] : 0) + (weekends ? count[hour * 2 + 1] : 0);
+        return c == 0 ? Double.NaN : (double) s / c;
+    }
+
+    // Average for one weather_main value (NaN when it has not been seen)
+    double averageForWeather(String weatherMain) {
+        Integer slot = weatherMain == null ? null : weatherSlots.get(weatherMain.trim());
+        if (slot == null || slot < 0 || weatherCount[slot] == 0) return Double.NaN;
+        return (double) weatherSum[slot] / weatherCount[slot];
+    }
+
+    long rowCount() {
+        long n = 0;
+        for (long c : count) n += c;
+        return n;
+    }
+
+    private void require(Aggregate a) {
+        if (!requested.contains(a)) {
+            throw new IllegalStateException(a + " was not requested");
+        }
+    }
+}
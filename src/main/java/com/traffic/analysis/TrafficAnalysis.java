@@ -2,32 +2,61 @@ package com.traffic.analysis;
 
 import java.time.DayOfWeek;
 import java.util.Comparator;
-import java.util.DoubleSummaryStatistics;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
-import java.util.stream.Collectors;
 
 public class TrafficAnalysis {
 
+    // Input labels for the per-aggregate latency metrics (TrafficMetrics)
+    private static final String RECORDS = "records";
+    private static final String DATASET = "dataset";
+
+    // Latency handles, resolved once per aggregate and input
+    private static final TrafficMetrics.AggregateTimer BY_HOUR_RECORDS = TrafficMetrics.aggregateTimer("averageVolumeByHour", RECORDS);
+    private static final TrafficMetrics.AggregateTimer WEEKDAY_VS_WEEKEND_RECORDS = TrafficMetrics.aggregateTimer("averageWeekdayVsWeekend", RECORDS);
+    private static final TrafficMetrics.AggregateTimer HOURLY_CURVES_RECORDS = TrafficMetrics.aggregateTimer("averageVolumeByHourWeekdayVsWeekend", RECORDS);
+    private static final TrafficMetrics.AggregateTimer PEAK_HOUR_RECORDS = TrafficMetrics.aggregateTimer("peakHourByAverage", RECORDS);
+    private static final TrafficMetrics.AggregateTimer PEAK_WEEKDAY_RECORDS = TrafficMetrics.aggregateTimer("peakHourWeekday", RECORDS);
+    private static final TrafficMetrics.AggregateTimer PEAK_WEEKEND_RECORDS = TrafficMetrics.aggregateTimer("peakHourWeekend", RECORDS);
+    private static final TrafficMetrics.AggregateTimer BY_WEATHER_RECORDS = TrafficMetrics.aggregateTimer("averageVolumeByWeatherMain", RECORDS);
+    private static final TrafficMetrics.AggregateTimer BY_HOUR_DATASET = TrafficMetrics.aggregateTimer("averageVolumeByHour", DATASET);
+    private static final TrafficMetrics.AggregateTimer WEEKDAY_VS_WEEKEND_DATASET = TrafficMetrics.aggregateTimer("averageWeekdayVsWeekend", DATASET);
+    private static final TrafficMetrics.AggregateTimer HOURLY_CURVES_DATASET = TrafficMetrics.aggregateTimer("averageVolumeByHourWeekdayVsWeekend", DATASET);
+    private static final TrafficMetrics.AggregateTimer PEAK_HOUR_DATASET = TrafficMetrics.aggregateTimer("peakHourByAverage", DATASET);
+    private static final TrafficMetrics.AggregateTimer PEAK_WEEKDAY_DATASET = TrafficMetrics.aggregateTimer("peakHourWeekday", DATASET);
+    private static final TrafficMetrics.AggregateTimer PEAK_WEEKEND_DATASET = TrafficMetrics.aggregateTimer("peakHourWeekend", DATASET);
+    private static final TrafficMetrics.AggregateTimer BY_WEATHER_DATASET = TrafficMetrics.aggregateTimer("averageVolumeByWeatherMain", DATASET);
+
     // Average traffic volume by hour (0–23)
     public static Map<Integer, Double> averageVolumeByHour(List<TrafficRecord> rows) {
-        Map<Integer, DoubleSummaryStatistics> stats = rows.stream()
-                .collect(Collectors.groupingBy(
-                        r -> r.dateTime().getHour(),
-                        TreeMap::new,
-                        Collectors.summarizingDouble(TrafficRecord::trafficVolume)
-                ));
+        return BY_HOUR_RECORDS.time(() -> hourlyAverages(rows));
+    }
 
+    private static Map<Integer, Double> hourlyAverages(List<TrafficRecord> rows) {
+        long[] sum = new long[24];
+        int[] count = new int[24];
+        for (TrafficRecord r : rows) {
+            int h = r.dateTime().getHour();
+            sum[h] += r.trafficVolume();
+            count[h]++;
+        }
+
+        // Same doubles as an averaging collector: the sums are exact integers
         Map<Integer, Double> out = new TreeMap<>();
-        for (var e : stats.entrySet()) {
-            out.put(e.getKey(), e.getValue().getAverage());
+        for (int h = 0; h < 24; h++) {
+            if (count[h] > 0) out.put(h, (double) sum[h] / count[h]);
         }
         return out;
     }
 
     // Weekday vs weekend overall averages
     public static Map<String, Double> averageWeekdayVsWeekend(List<TrafficRecord> rows) {
+        return WEEKDAY_VS_WEEKEND_RECORDS.time(() -> weekdayVsWeekend(rows));
+    }
+
+    private static Map<String, Double> weekdayVsWeekend(List<TrafficRecord> rows) {
         double weekdaySum = 0;
         int weekdayCount = 0;
 
@@ -55,6 +84,10 @@ public class TrafficAnalysis {
 
     // Hourly curves (weekday vs weekend): hour -> average volume
     public static Map<String, Map<Integer, Double>> averageVolumeByHourWeekdayVsWeekend(List<TrafficRecord> rows) {
+        return HOURLY_CURVES_RECORDS.time(() -> hourlyWeekdayVsWeekend(rows));
+    }
+
+    private static Map<String, Map<Integer, Double>> hourlyWeekdayVsWeekend(List<TrafficRecord> rows) {
         double[] weekdaySum = new double[24];
         int[] weekdayCount = new int[24];
         double[] weekendSum = new double[24];
@@ -93,8 +126,11 @@ public class TrafficAnalysis {
 
     // Peak hour by average volume from a list of records
     public static PeakHour peakHourByAverage(List<TrafficRecord> rows) {
-        var avgByHour = averageVolumeByHour(rows);
+        return PEAK_HOUR_RECORDS.time(() -> peakOf(hourlyAverages(rows)));
+    }
 
+    // Highest-average entry of an hour -> average map (earliest hour wins ties)
+    static PeakHour peakOf(Map<Integer, Double> avgByHour) {
         return avgByHour.entrySet().stream()
                 .max(Comparator.comparingDouble(Map.Entry::getValue))
                 .map(e -> new PeakHour(e.getKey(), e.getValue()))
@@ -102,6 +138,10 @@ public class TrafficAnalysis {
     }
 
     public static PeakHour peakHourWeekday(List<TrafficRecord> rows) {
+        return PEAK_WEEKDAY_RECORDS.time(() -> weekdayPeak(rows));
+    }
+
+    private static PeakHour weekdayPeak(List<TrafficRecord> rows) {
         List<TrafficRecord> weekdayRows = rows.stream()
                 .filter(r -> {
                     DayOfWeek d = r.dateTime().getDayOfWeek();
@@ -109,10 +149,14 @@ public class TrafficAnalysis {
                 })
                 .toList();
 
-        return peakHourByAverage(weekdayRows);
+        return peakOf(hourlyAverages(weekdayRows));
     }
 
     public static PeakHour peakHourWeekend(List<TrafficRecord> rows) {
+        return PEAK_WEEKEND_RECORDS.time(() -> weekendPeak(rows));
+    }
+
+    private static PeakHour weekendPeak(List<TrafficRecord> rows) {
         List<TrafficRecord> weekendRows = rows.stream()
                 .filter(r -> {
                     DayOfWeek d = r.dateTime().getDayOfWeek();
@@ -120,18 +164,172 @@ public class TrafficAnalysis {
                 })
                 .toList();
 
-        return peakHourByAverage(weekendRows);
+        return peakOf(hourlyAverages(weekendRows));
     }
     
     public static Map<String, Double> averageVolumeByWeatherMain(List<TrafficRecord> rows) {
-        // weather_main -> average traffic volume
-        return rows.stream()
-                .filter(r -> r.weatherMain() != null && !r.weatherMain().isBlank())
-                .collect(Collectors.groupingBy(
-                        r -> r.weatherMain().trim(),
-                        TreeMap::new,
-                        Collectors.averagingDouble(TrafficRecord::trafficVolume)
-                ));
+        return BY_WEATHER_RECORDS.time(() -> weatherAverages(rows));
+    }
+
+    private static Map<String, Double> weatherAverages(List<TrafficRecord> rows) {
+        // weather_main -> {sum, count}; trim() once per distinct raw value
+        Map<String, long[]> byRaw = new HashMap<>();
+        for (TrafficRecord r : rows) {
+            String w = r.weatherMain();
+            if (w == null) continue;
+            long[] acc = byRaw.computeIfAbsent(w, k -> new long[2]);
+            acc[0] += r.trafficVolume();
+            acc[1]++;
+        }
+        return averagesByTrimmedName(byRaw);
+    }
+
+    // Folds raw values by trimmed name, skipping blank ones, into name -> average
+    private static Map<String, Double> averagesByTrimmedName(Map<String, long[]> byRaw) {
+        Map<String, long[]> byName = new TreeMap<>();
+        for (var e : byRaw.entrySet()) {
+            if (e.getKey() == null || e.getKey().isBlank()) continue;
+            long[] acc = byName.computeIfAbsent(e.getKey().trim(), k -> new long[2]);
+            acc[0] += e.getValue()[0];
+            acc[1] += e.getValue()[1];
+        }
+
+        Map<String, Double> out = new TreeMap<>();
+        for (var e : byName.entrySet()) {
+            out.put(e.getKey(), (double) e.getValue()[0] / e.getValue()[1]);
+        }
+        return out;
+    }
+
+    /* =======================
+       TrafficDataset overloads
+       ======================= */
+
+    private static final int ALL_DAYS = 0;
+    private static final int WEEKDAYS = 1;
+    private static final int WEEKENDS = 2;
+
+    public static Map<Integer, Double> averageVolumeByHour(TrafficDataset ds) {
+        return BY_HOUR_DATASET.time(() -> averageByHour(ds, ALL_DAYS));
+    }
+
+    public static Map<String, Double> averageWeekdayVsWeekend(TrafficDataset ds) {
+        return WEEKDAY_VS_WEEKEND_DATASET.time(() -> weekdayVsWeekend(ds));
+    }
+
+    private static Map<String, Double> weekdayVsWeekend(TrafficDataset ds) {
+        AggregationKernels.IntGroups g = byHourAndDayType(ds);
+
+        long weekdaySum = 0;
+        long weekdayCount = 0;
+
+        long weekendSum = 0;
+        long weekendCount = 0;
+
+        for (int h = 0; h < 24; h++) {
+            weekdaySum += g.sum[h * 2];
+            weekdayCount += g.count[h * 2];
+            weekendSum += g.sum[h * 2 + 1];
+            weekendCount += g.count[h * 2 + 1];
+        }
+
+        return Map.of(
+                "Weekday", (double) weekdaySum / weekdayCount,
+                "Weekend", (double) weekendSum / weekendCount
+        );
+    }
+
+    public static Map<String, Map<Integer, Double>> averageVolumeByHourWeekdayVsWeekend(TrafficDataset ds) {
+        return HOURLY_CURVES_DATASET.time(() -> hourlyWeekdayVsWeekend(ds));
+    }
+
+    private static Map<String, Map<Integer, Double>> hourlyWeekdayVsWeekend(TrafficDataset ds) {
+        // index = hour * 2 + (weekend ? 1 : 0)
+        AggregationKernels.IntGroups g = byHourAndDayType(ds);
+        long[] sum = g.sum;
+        long[] count = g.count;
+
+        Map<Integer, Double> weekdayAvg = new TreeMap<>();
+        Map<Integer, Double> weekendAvg = new TreeMap<>();
+
+        for (int h = 0; h < 24; h++) {
+            weekdayAvg.put(h, count[h * 2] == 0 ? 0.0 : (double) sum[h * 2] / count[h * 2]);
+            weekendAvg.put(h, count[h * 2 + 1] == 0 ? 0.0 : (double) sum[h * 2 + 1] / count[h * 2 + 1]);
+        }
+
+        return Map.of(
+                "Weekday", weekdayAvg,
+                "Weekend", weekendAvg
+        );
+    }
+
+    public static PeakHour peakHourByAverage(TrafficDataset ds) {
+        return PEAK_HOUR_DATASET.time(() -> peakOf(averageByHour(ds, ALL_DAYS)));
+    }
+
+    public static PeakHour peakHourWeekday(TrafficDataset ds) {
+        return PEAK_WEEKDAY_DATASET.time(() -> peakOf(averageByHour(ds, WEEKDAYS)));
+    }
+
+    public static PeakHour peakHourWeekend(TrafficDataset ds) {
+        return PEAK_WEEKEND_DATASET.time(() -> peakOf(averageByHour(ds, WEEKENDS)));
     }
-}
 
+    public static Map<String, Double> averageVolumeByWeatherMain(TrafficDataset ds) {
+        return BY_WEATHER_DATASET.time(() -> weatherAverages(ds));
+    }
+
+    private static Map<String, Double> weatherAverages(TrafficDataset ds) {
+        String[] names = ds.weatherMainNames();
+        short[] codes = ds.weatherMainCodeColumn();
+        int[] volumes = ds.volumeColumn();
+
+        long[] sum = new long[names.length];
+        long[] count = new long[names.length];
+
+        if (names.length <= Byte.MAX_VALUE) {
+            AggregationKernels.IntGroups g =
+                    AggregationKernels.groupInts(ds.weatherMainKeyColumn(), volumes, 0, ds.size(), names.length);
+            sum = g.sum;
+            count = g.count;
+        } else {
+            for (int i = 0; i < ds.size(); i++) {
+                sum[codes[i]] += volumes[i];
+                count[codes[i]]++;
+            }
+        }
+
+        // Codes are per raw value; fold them by trimmed name like the List version does
+        Map<String, long[]> byRaw = new HashMap<>();
+        for (int c = 0; c < names.length; c++) {
+            if (count[c] > 0) byRaw.put(names[c], new long[]{sum[c], count[c]});
+        }
+        return averagesByTrimmedName(byRaw);
+    }
+
+    // Hour -> average over the selected day type; hours with no rows are left out
+    private static Map<Integer, Double> averageByHour(TrafficDataset ds, int days) {
+        AggregationKernels.IntGroups g = byHourAndDayType(ds);
+
+        Map<Integer, Double> out = new TreeMap<>();
+        for (int h = 0; h < 24; h++) {
+            long sum = 0;
+            long count = 0;
+            if (days != WEEKENDS) {
+                sum += g.sum[h * 2];
+                count += g.count[h * 2];
+            }
+            if (days != WEEKDAYS) {
+                sum += g.sum[h * 2 + 1];
+                count += g.count[h * 2 + 1];
+            }
+            if (count > 0) out.put(h, (double) sum / count);
+        }
+        return out;
+    }
+
+    // Volume count / sum / min / max per hour * 2 + (weekend ? 1 : 0)
+    private static AggregationKernels.IntGroups byHourAndDayType(TrafficDataset ds) {
+        return AggregationKernels.groupInts(ds.hourDayTypeKeyColumn(), ds.volumeColumn(), 0, ds.size(), 48);
+    }
+}
@@ -2,10 +2,11 @@ package com.traffic.analysis;
 
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.ChartFrame;
-import org.jfree.chart.ChartUtils;
 import org.jfree.chart.JFreeChart;
 
 import org.jfree.chart.annotations.XYPointerAnnotation;
+import org.jfree.chart.encoders.EncoderUtil;
+import org.jfree.chart.encoders.ImageFormat;
 import org.jfree.chart.axis.NumberAxis;
 import org.jfree.chart.labels.StandardCategoryItemLabelGenerator;
 import org.jfree.chart.plot.CategoryPlot;
@@ -23,15 +24,18 @@ import javax.swing.SwingUtilities;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Font;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.text.NumberFormat;
 import java.util.Map;
 
 public class TrafficCharts {
 
     private static final String REPORTS_DIR = "reports";
-    private static int FIGURE_NO = 1;
 
     /* =======================
        Colors
@@ -59,7 +63,14 @@ public class TrafficCharts {
 
         Runnable task = () -> {
             try {
-                ChartUtils.saveChartAsJPEG(out, chart, width, height);
+                // Same steps as ChartUtils.saveChartAsJPEG, split so draw and encode are timed apart
+                TrafficMetrics.ChartEvent ev = TrafficMetrics.startChart(fileName.replaceFirst("\\.[^.]*$", ""), "jpg");
+                BufferedImage image = chart.createBufferedImage(width, height, BufferedImage.TYPE_INT_RGB, null);
+                TrafficMetrics.chartDrawn(ev);
+                try (OutputStream os = new BufferedOutputStream(new FileOutputStream(out))) {
+                    EncoderUtil.writeBufferedImage(image, ImageFormat.JPEG, os);
+                }
+                TrafficMetrics.endChart(ev, out.length());
                 System.out.println("Saved chart to:");
                 System.out.println(out.getAbsolutePath());
             } catch (IOException e) {
@@ -117,18 +128,83 @@ public class TrafficCharts {
         return String.format("%02d:00", h);
     }
 
-    private static String captionLine(String title, String body) {
-        return "Figure " + (FIGURE_NO++) + ". " + title + " " + body;
+    // Figure numbers are passed in by the caller rather than counted here, so they
+    // follow the report's order and not the order the charts happen to be shown in
+    static String captionLine(int figureNo, String caption) {
+        return "Figure " + figureNo + ". " + caption;
     }
 
-    private static void printLatexFigureBlock(String fileName, String caption, String label) {
+    static String latexFigureBlock(String fileName, String caption, String label) {
+        return "\\begin{figure}[ht]\n"
+                + "  \\centering\n"
+                + "  \\includegraphics[width=0.95\\linewidth]{" + fileName + "}\n"
+                + "  \\caption{" + caption.replace("%", "\\%") + "}\n"
+                + "  \\label{" + label + "}\n"
+                + "\\end{figure}";
+    }
+
+    private static void printFigureText(int figureNo, String fileName, String caption, String label) {
+        String line = captionLine(figureNo, caption);
+        System.out.println("\nCaption:\n" + line);
         System.out.println("\nLaTeX figure:");
-        System.out.println("\\begin{figure}[ht]");
-        System.out.println("  \\centering");
-        System.out.println("  \\includegraphics[width=0.95\\linewidth]{" + fileName + "}");
-        System.out.println("  \\caption{" + caption.replace("%", "\\%") + "}");
-        System.out.println("  \\label{" + label + "}");
-        System.out.println("\\end{figure}");
+        System.out.println(latexFigureBlock(REPORTS_DIR + "/" + fileName, line, label));
+    }
+
+    /* =======================
+       Captions
+       ======================= */
+
+    static String avgVolumeByHourCaption(int peakHour, double peakAvgVolume) {
+        NumberFormat fmt = NumberFormat.getIntegerInstance();
+        return "Average hourly traffic volume. Peak demand occurs at " + formatHour(peakHour) +
+                " (avg " + fmt.format(Math.round(peakAvgVolume)) + ").";
+    }
+
+    static String weekdayVsWeekendCaption(Map<String, Double> avg) {
+        NumberFormat fmt = NumberFormat.getIntegerInstance();
+        return "Average traffic volume by day type. Weekday mean is " + fmt.format(Math.round(avg.get("Weekday"))) +
+                " vs weekend mean " + fmt.format(Math.round(avg.get("Weekend"))) + ".";
+    }
+
+    static String hourlyCurvesCaption(Map<Integer, Double> weekdayAvg, Map<Integer, Double> weekendAvg) {
+        int weekdayPeak = findPeakHour(weekdayAvg);
+        int weekendPeak = findPeakHour(weekendAvg);
+
+        NumberFormat fmt = NumberFormat.getIntegerInstance();
+        return "Hourly traffic volume curves for weekday vs weekend. The weekday peak occurs at " +
+                formatHour(weekdayPeak) + " (~" + fmt.format(Math.round(weekdayAvg.get(weekdayPeak))) +
+                "), while the weekend peak occurs at " + formatHour(weekendPeak) +
+                " (~" + fmt.format(Math.round(weekendAvg.get(weekendPeak))) + ").";
+    }
+
+    static String avgVolumeByWeatherMainCaption(Map<String, Double> avgByWeather) {
+        String bestWeather = null;
+        double bestVal = Double.NEGATIVE_INFINITY;
+        for (var e : avgByWeather.entrySet()) {
+            double v = e.getValue();
+            if (!Double.isFinite(v)) continue;
+            if (v > bestVal) {
+                bestVal = v;
+                bestWeather = e.getKey();
+            }
+        }
+
+        NumberFormat fmt = NumberFormat.getIntegerInstance();
+        return "Average traffic volume by weather condition. Highest mean volume occurs under " + bestWeather +
+                " (~" + fmt.format(Math.round(bestVal)) + ").";
+    }
+
+    static String percentilesByHourCaption(Map<Integer, Double> avgByHour,
+                                           Map<String, Map<Integer, Double>> percentilesByHour) {
+        int peak = findPeakHour(avgByHour);
+        NumberFormat fmt = NumberFormat.getIntegerInstance();
+        StringBuilder body = new StringBuilder("At " + formatHour(peak) + " the mean is "
+                + fmt.format(Math.round(avgByHour.get(peak))));
+        for (var e : percentilesByHour.entrySet()) {
+            Double v = e.getValue().get(peak);
+            if (v != null) body.append(", ").append(e.getKey()).append(" ").append(fmt.format(Math.round(v)));
+        }
+        return "Hourly traffic volume percentiles and mean. " + body + ".";
     }
 
     /* =======================
@@ -136,7 +212,23 @@ public class TrafficCharts {
        ======================= */
 
     // 1) Average Traffic Volume by Hour
-    public static void showAvgVolumeByHour(Map<Integer, Double> avgByHour,
+    public static void showAvgVolumeByHour(int figureNo,
+                                           Map<Integer, Double> avgByHour,
+                                           int peakHour,
+                                           double peakAvgVolume) {
+
+        JFreeChart chart = avgVolumeByHourChart(avgByHour, peakHour, peakAvgVolume);
+
+        String fileName = "docs/images/traffic-volume.jpg";
+        saveChart(chart, fileName, 900, 600);
+
+        printFigureText(figureNo, fileName, avgVolumeByHourCaption(peakHour, peakAvgVolume),
+                "fig:traffic-volume-hour");
+
+        showChart("Traffic Volume", chart);
+    }
+
+    static JFreeChart avgVolumeByHourChart(Map<Integer, Double> avgByHour,
                                            int peakHour,
                                            double peakAvgVolume) {
 
@@ -161,23 +253,23 @@ public class TrafficCharts {
         ));
 
         applyBarLabels(chart);
+        return chart;
+    }
 
-        String fileName = "docs/images/traffic-volume.jpg";
+    // 2) Weekday vs Weekend
+    public static void showWeekdayVsWeekend(int figureNo, Map<String, Double> avg) {
+
+        JFreeChart chart = weekdayVsWeekendChart(avg);
+
+        String fileName = "docs/images/weekday-vs-weekend.jpg";
         saveChart(chart, fileName, 900, 600);
 
-        String caption = captionLine(
-                "Average hourly traffic volume.",
-                "Peak demand occurs at " + formatHour(peakHour) +
-                        " (avg " + fmt.format(Math.round(peakAvgVolume)) + ")."
-        );
-        System.out.println("\nCaption:\n" + caption);
-        printLatexFigureBlock(REPORTS_DIR + "/" + fileName, caption, "fig:traffic-volume-hour");
+        printFigureText(figureNo, fileName, weekdayVsWeekendCaption(avg), "fig:weekday-vs-weekend");
 
-        showChart("Traffic Volume", chart);
+        showChart("Weekday vs Weekend", chart);
     }
 
-    // 2) Weekday vs Weekend
-    public static void showWeekdayVsWeekend(Map<String, Double> avg) {
+    static JFreeChart weekdayVsWeekendChart(Map<String, Double> avg) {
 
         DefaultCategoryDataset ds = new DefaultCategoryDataset();
         ds.addValue(avg.get("Weekday"), "Avg Volume", "Weekday");
@@ -191,24 +283,26 @@ public class TrafficCharts {
         );
 
         applyBarLabels(chart);
+        return chart;
+    }
 
-        String fileName = "docs/images/weekday-vs-weekend.jpg";
-        saveChart(chart, fileName, 900, 600);
+    // 3) Hourly Curves with darker annotations
+    public static void showHourlyCurvesWeekdayVsWeekend(
+            int figureNo,
+            Map<Integer, Double> weekdayAvg,
+            Map<Integer, Double> weekendAvg) {
 
-        NumberFormat fmt = NumberFormat.getIntegerInstance();
-        String caption = captionLine(
-                "Average traffic volume by day type.",
-                "Weekday mean is " + fmt.format(Math.round(avg.get("Weekday"))) +
-                        " vs weekend mean " + fmt.format(Math.round(avg.get("Weekend"))) + "."
-        );
-        System.out.println("\nCaption:\n" + caption);
-        printLatexFigureBlock(REPORTS_DIR + "/" + fileName, caption, "fig:weekday-vs-weekend");
+        JFreeChart chart = hourlyCurvesChart(weekdayAvg, weekendAvg);
 
-        showChart("Weekday vs Weekend", chart);
+        String fileName = "docs/images/hourly-curves.jpg";
+        saveChart(chart, fileName, 1000, 650);
+
+        printFigureText(figureNo, fileName, hourlyCurvesCaption(weekdayAvg, weekendAvg), "fig:hourly-curves");
+
+        showChart("Hourly Curves", chart);
     }
 
-    // 3) Hourly Curves with darker annotations
-    public static void showHourlyCurvesWeekdayVsWeekend(
+    static JFreeChart hourlyCurvesChart(
             Map<Integer, Double> weekdayAvg,
             Map<Integer, Double> weekendAvg) {
 
@@ -286,25 +380,23 @@ public class TrafficCharts {
 
         plot.addAnnotation(wdAnno);
         plot.addAnnotation(weAnno);
+        return chart;
+    }
 
-        String fileName = "docs/images/hourly-curves.jpg";
+    // 4) Weather Impact
+    public static void showAvgVolumeByWeatherMain(int figureNo, Map<String, Double> avgByWeather) {
+
+        JFreeChart chart = avgVolumeByWeatherMainChart(avgByWeather);
+
+        String fileName = "docs/images/weather-impact.jpg";
         saveChart(chart, fileName, 1000, 650);
 
-        String caption = captionLine(
-                "Hourly traffic volume curves for weekday vs weekend.",
-                "The weekday peak occurs at " + formatHour(weekdayPeak) +
-                        " (~" + fmt.format(Math.round(weekdayPeakVal)) +
-                        "), while the weekend peak occurs at " + formatHour(weekendPeak) +
-                        " (~" + fmt.format(Math.round(weekendPeakVal)) + ")."
-        );
-        System.out.println("\nCaption:\n" + caption);
-        printLatexFigureBlock(REPORTS_DIR + "/" + fileName, caption, "fig:hourly-curves");
+        printFigureText(figureNo, fileName, avgVolumeByWeatherMainCaption(avgByWeather), "fig:weather-impact");
 
-        showChart("Hourly Curves", chart);
+        showChart("Weather Impact", chart);
     }
 
-    // 4) Weather Impact
-    public static void showAvgVolumeByWeatherMain(Map<String, Double> avgByWeather) {
+    static JFreeChart avgVolumeByWeatherMainChart(Map<String, Double> avgByWeather) {
 
         DefaultCategoryDataset ds = new DefaultCategoryDataset();
         for (var e : avgByWeather.entrySet()) {
@@ -319,38 +411,62 @@ public class TrafficCharts {
         );
 
         applyBarLabels(chart);
+        return chart;
+    }
 
-        String fileName = "docs/images/weather-impact.jpg";
-        saveChart(chart, fileName, 1000, 650);
+    // 5) Volume percentiles by hour, next to the average
+    public static void showPercentilesByHour(int figureNo,
+                                             Map<Integer, Double> avgByHour,
+                                             Map<String, Map<Integer, Double>> percentilesByHour) {
 
-        String bestWeather = null;
-        double bestVal = Double.NEGATIVE_INFINITY;
-        for (var e : avgByWeather.entrySet()) {
-            double v = e.getValue();
-            if (!Double.isFinite(v)) continue;
-            if (v > bestVal) {
-                bestVal = v;
-                bestWeather = e.getKey();
-            }
-        }
+        JFreeChart chart = percentilesByHourChart(avgByHour, percentilesByHour);
 
-        NumberFormat fmt = NumberFormat.getIntegerInstance();
-        String caption = captionLine(
-                "Average traffic volume by weather condition.",
-                "Highest mean volume occurs under " + bestWeather +
-                        " (~" + fmt.format(Math.round(bestVal)) + ")."
-        );
-        System.out.println("\nCaption:\n" + caption);
-        printLatexFigureBlock(REPORTS_DIR + "/" + fileName, caption, "fig:weather-impact");
+        String fileName = "docs/images/volume-percentiles.jpg";
+        saveChart(chart, fileName, 1000, 650);
 
-        showChart("Weather Impact", chart);
+        printFigureText(figureNo, fileName, percentilesByHourCaption(avgByHour, percentilesByHour),
+                "fig:volume-percentiles");
+
+        showChart("Volume Percentiles", chart);
     }
-}
 
+    static JFreeChart percentilesByHourChart(Map<Integer, Double> avgByHour,
+                                             Map<String, Map<Integer, Double>> percentilesByHour) {
 
+        XYSeriesCollection ds = new XYSeriesCollection();
 
+        XYSeries mean = new XYSeries("Mean");
+        for (var e : avgByHour.entrySet()) mean.add(e.getKey(), e.getValue());
+        ds.addSeries(mean);
 
+        for (var p : percentilesByHour.entrySet()) {
+            XYSeries s = new XYSeries(p.getKey());
+            for (var e : p.getValue().entrySet()) s.add(e.getKey(), e.getValue());
+            ds.addSeries(s);
+        }
 
+        JFreeChart chart = ChartFactory.createXYLineChart(
+                "Traffic Volume Percentiles by Hour of Day",
+                "Hour (0–23)",
+                "Volume",
+                ds
+        );
 
+        XYPlot plot = chart.getXYPlot();
 
+        NumberAxis rangeAxis = (NumberAxis) plot.getRangeAxis();
+        rangeAxis.setAutoRangeIncludesZero(true);
+        rangeAxis.setStandardTickUnits(NumberAxis.createIntegerTickUnits());
 
+        // Mean as a thick dark line, percentiles lighter and dashed
+        XYLineAndShapeRenderer r = (XYLineAndShapeRenderer) plot.getRenderer();
+        r.setDefaultShapesVisible(false);
+        r.setSeriesPaint(0, Color.DARK_GRAY);
+        r.setSeriesStroke(0, new BasicStroke(2.5f));
+        for (int i = 1; i < ds.getSeriesCount(); i++) {
+            r.setSeriesStroke(i, new BasicStroke(1.5f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND,
+                    1.0f, new float[]{6.0f, 4.0f}, 0.0f));
+        }
+        return chart;
+    }
+}
@@ -6,8 +6,12 @@ import org.apache.commons.csv.CSVRecord;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.DateTimeException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
@@ -19,57 +23,158 @@ public class TrafficDataLoader {
 	private static final DateTimeFormatter DT_FMT =
 	        DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm");
 
+    private static final String[] NUMERIC_AND_TIME_COLUMNS =
+            {"traffic_volume", "temp", "rain_1h", "snow_1h", "clouds_all", "date_time"};
+
 
     public static List<TrafficRecord> load(Path csvPath) throws IOException {
-        if (!Files.exists(csvPath)) {
-            throw new IOException("CSV not found at: " + csvPath.toAbsolutePath());
-        }
+        return load(csvPath, null);
+    }
 
+    // Validating load: each row goes through validator as it is parsed, and rows that
+    // fail are quarantined there instead of being returned (see LoadValidator).
+    // csvPath may also be gzip / zstd compressed or a directory of CSV files, whose rows
+    // are returned in file name order (see CsvInputs).
+    public static List<TrafficRecord> load(Path csvPath, LoadValidator validator) throws IOException {
         List<TrafficRecord> out = new ArrayList<>();
+        for (Path file : CsvInputs.files(csvPath)) {
+            boolean plain = CsvInputs.compressionOf(file) == CsvInputs.Compression.NONE;
+            TrafficMetrics.LoadEvent ev = TrafficMetrics.startLoad(plain ? "commons-csv" : "commons-csv-compressed", file);
+            int before = out.size();
+
+            // A compressed file is inflated on a separate thread while this one parses
+            try (BufferedReader reader = plain
+                    ? Files.newBufferedReader(file)
+                    : new BufferedReader(new InputStreamReader(CsvInputs.open(file), StandardCharsets.UTF_8))) {
+                parse(reader, validator, out);
+            }
+            TrafficMetrics.endLoad(ev, out.size() - before);
+        }
+        return out;
+    }
 
-        try (BufferedReader reader = Files.newBufferedReader(csvPath);
-             CSVParser parser = CSVFormat.DEFAULT
-                     .builder()
-                     .setHeader()
-                     .setSkipHeaderRecord(true)
-                     .setTrim(true)
-                     .build()
-                     .parse(reader)) {
+    private static void parse(Reader reader, LoadValidator validator, List<TrafficRecord> out)
+            throws IOException {
+        try (CSVParser parser = CSVFormat.DEFAULT
+                .builder()
+                .setHeader()
+                .setSkipHeaderRecord(true)
+                .setTrim(true)
+                .build()
+                .parse(reader)) {
 
             for (CSVRecord r : parser) {
-                String holiday = safeString(r, "holiday");
-                if (holiday.isBlank()) holiday = "None";
-
-                double tempK = parseDouble(r, "temp");
-                double rain1hMm = parseDouble(r, "rain_1h");
-                double snow1hMm = parseDouble(r, "snow_1h");
-                int cloudsAllPct = (int) Math.round(parseDouble(r, "clouds_all"));
-
-                String weatherMain = safeString(r, "weather_main");
-                String weatherDescription = safeString(r, "weather_description");
-
-                LocalDateTime dateTime = LocalDateTime.parse(
-                        safeString(r, "date_time"),
-                        DT_FMT
-                );
-
-                int trafficVolume = (int) Math.round(parseDouble(r, "traffic_volume"));
-
-                out.add(new TrafficRecord(
-                        holiday,
-                        tempK,
-                        rain1hMm,
-                        snow1hMm,
-                        cloudsAllPct,
-                        weatherMain,
-                        weatherDescription,
-                        dateTime,
-                        trafficVolume
-                ));
+                if (validator != null) {
+                    validate(r, validator, out);
+                    continue;
+                }
+                out.add(toRecord(r));
             }
         }
+    }
 
-        return out;
+    private static void validate(CSVRecord r, LoadValidator validator, List<TrafficRecord> out)
+            throws IOException {
+        long row = validator.startRow();
+
+        LoadValidator.Rule failed;
+        TrafficRecord rec = null;
+        if (validator.checksMissingValues() && hasMissingValue(r)) {
+            failed = LoadValidator.Rule.MISSING_VALUE;
+        } else {
+            try {
+                rec = toRecord(r);
+                failed = validator.check(rec);
+            } catch (NumberFormatException e) {
+                failed = LoadValidator.Rule.BAD_NUMBER;
+            } catch (DateTimeException e) {
+                failed = LoadValidator.Rule.MALFORMED_DATE_TIME;
+            }
+        }
+
+        if (failed == null) {
+            out.add(rec);
+        } else {
+            // Re-quoted, so fields with commas or quotes keep their boundaries
+            validator.quarantine(row, failed, CSVFormat.DEFAULT.format((Object[]) r.values()));
+        }
+    }
+
+    private static boolean hasMissingValue(CSVRecord r) {
+        for (String col : NUMERIC_AND_TIME_COLUMNS) {
+            if (safeString(r, col).isEmpty()) return true;
+        }
+        return false;
+    }
+
+    private static TrafficRecord toRecord(CSVRecord r) {
+        String holiday = safeString(r, "holiday");
+        if (holiday.isBlank()) holiday = "None";
+
+        double tempK = parseDouble(r, "temp");
+        double rain1hMm = parseDouble(r, "rain_1h");
+        double snow1hMm = parseDouble(r, "snow_1h");
+        int cloudsAllPct = (int) Math.round(parseDouble(r, "clouds_all"));
+
+        String weatherMain = safeString(r, "weather_main");
+        String weatherDescription = safeString(r, "weather_description");
+
+        LocalDateTime dateTime = LocalDateTime.parse(
+                safeString(r, "date_time"),
+                DT_FMT
+        );
+
+        int trafficVolume = (int) Math.round(parseDouble(r, "traffic_volume"));
+
+        return new TrafficRecord(
+                holiday,
+                tempK,
+                rain1hMm,
+                snow1hMm,
+                cloudsAllPct,
+                weatherMain,
+                weatherDescription,
+                dateTime,
+                trafficVolume
+        );
+    }
+
+    // Loads csvPath through a binary snapshot kept beside it as "<name>.snap".
+    // The snapshot is reused while it matches the CSV's size/mtime (or content CRC)
+    // and rebuilt from the CSV otherwise.
+    public static List<TrafficRecord> loadCached(Path csvPath) throws IOException {
+        return loadCached(csvPath, snapshotPathFor(csvPath));
+    }
+
+    public static List<TrafficRecord> loadCached(Path csvPath, Path snapshotPath) throws IOException {
+        if (!Files.exists(csvPath)) {
+            throw new IOException("CSV not found at: " + csvPath.toAbsolutePath());
+        }
+
+        // A directory has no single file to stamp; its files are loaded as they are
+        if (Files.isDirectory(csvPath)) return load(csvPath);
+
+        if (TrafficSnapshot.isCurrent(snapshotPath, csvPath)) {
+            try {
+                return TrafficSnapshot.read(snapshotPath);
+            } catch (IOException e) {
+                System.err.println("Ignoring unreadable snapshot " + snapshotPath + ": " + e.getMessage());
+            }
+        }
+
+        TrafficSnapshot.SourceStamp stamp = TrafficSnapshot.stampOf(csvPath);
+        List<TrafficRecord> rows = load(csvPath);
+        try {
+            TrafficSnapshot.write(rows, stamp, snapshotPath);
+        } catch (IOException e) {
+            // A read-only data directory should not fail the load itself
+            System.err.println("Could not write snapshot " + snapshotPath + ": " + e.getMessage());
+        }
+        return rows;
+    }
+
+    public static Path snapshotPathFor(Path csvPath) {
+        return csvPath.resolveSibling(csvPath.getFileName() + ".snap");
     }
 
     private static String safeString(CSVRecord r, String col) {
@@ -0,0 +1,396 @@
+package com.traffic.analysis;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Columnar, primitive-array form of the traffic data. Timestamps are stored as hours
+// since 1970-01-01T00:00 (the source is hourly, so minutes are not kept), the weather
+// measurements as floats, and the three text columns as dictionary codes.
+// Instances are immutable; records() gives TrafficRecord views for existing callers.
+public final class TrafficDataset {
+
+    private final int size;
+    private final int[] epochHours;
+    private final int[] volumes;
+    private final float[] tempK;
+    private final float[] rain1hMm;
+    private final float[] snow1hMm;
+    private final byte[] cloudsAllPct;
+    private final short[] holidayCodes;
+    private final short[] weatherMainCodes;
+    private final short[] weatherDescriptionCodes;
+    private final String[] holidayNames;
+    private final String[] weatherMainNames;
+    private final String[] weatherDescriptionNames;
+
+    // Built on first use; racing threads build equal tables
+    private volatile HourCalendar calendar;
+    private volatile byte[] hourDayTypeKeys;
+    private volatile byte[] weatherMainKeys;
+
+    private TrafficDataset(Builder b) {
+        this.size = b.size;
+        this.epochHours = Arrays.copyOf(b.epochHours, b.size);
+        this.volumes = Arrays.copyOf(b.volumes, b.size);
+        this.tempK = Arrays.copyOf(b.tempK, b.size);
+        this.rain1hMm = Arrays.copyOf(b.rain1hMm, b.size);
+        this.snow1hMm = Arrays.copyOf(b.snow1hMm, b.size);
+        this.cloudsAllPct = Arrays.copyOf(b.cloudsAllPct, b.size);
+        this.holidayCodes = Arrays.copyOf(b.holidayCodes, b.size);
+        this.weatherMainCodes = Arrays.copyOf(b.weatherMainCodes, b.size);
+        this.weatherDescriptionCodes = Arrays.copyOf(b.weatherDescriptionCodes, b.size);
+        this.holidayNames = b.holidays.names();
+        this.weatherMainNames = b.weatherMains.names();
+        this.weatherDescriptionNames = b.weatherDescriptions.names();
+    }
+
+    public static TrafficDataset of(List<TrafficRecord> rows) {
+        Builder b = new Builder(rows.size());
+        for (TrafficRecord r : rows) b.add(r);
+        return b.build();
+    }
+
+    public static Builder builder() {
+        return new Builder(1024);
+    }
+
+    public static Builder builder(int expectedRows) {
+        return new Builder(expectedRows);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /* =======================
+       Per-row access
+       ======================= */
+
+    public int epochHour(int i) {
+        return epochHours[i];
+    }
+
+    public int trafficVolume(int i) {
+        return volumes[i];
+    }
+
+    public float tempK(int i) {
+        return tempK[i];
+    }
+
+    public float rain1hMm(int i) {
+        return rain1hMm[i];
+    }
+
+    public float snow1hMm(int i) {
+        return snow1hMm[i];
+    }
+
+    public int cloudsAllPct(int i) {
+        return cloudsAllPct[i];
+    }
+
+    public String holiday(int i) {
+        return holidayNames[holidayCodes[i]];
+    }
+
+    public String weatherMain(int i) {
+        return weatherMainNames[weatherMainCodes[i]];
+    }
+
+    public String weatherDescription(int i) {
+        return weatherDescriptionNames[weatherDescriptionCodes[i]];
+    }
+
+    public int hourOfDay(int i) {
+        return hourOf(epochHours[i]);
+    }
+
+    public DayOfWeek dayOfWeek(int i) {
+        return DayOfWeek.of(dayOfWeekIndex(epochHours[i]) + 1);
+    }
+
+    public boolean isWeekend(int i) {
+        return dayOfWeekIndex(epochHours[i]) >= 5;
+    }
+
+    public LocalDateTime dateTime(int i) {
+        return dateTimeOf(epochHours[i]);
+    }
+
+    // Hour / weekday / month / year / holiday of every hour this dataset spans, for
+    // loops that would otherwise decode the epoch hour of each row
+    public HourCalendar calendar() {
+        HourCalendar c = calendar;
+        if (c == null) calendar = c = HourCalendar.of(this);
+        return c;
+    }
+
+    // Materializes row i; the doubles carry the float precision of the columns
+    public TrafficRecord record(int i) {
+        return new TrafficRecord(
+                holiday(i),
+                tempK[i],
+                rain1hMm[i],
+                snow1hMm[i],
+                cloudsAllPct[i],
+                weatherMain(i),
+                weatherDescription(i),
+                dateTime(i),
+                volumes[i]
+        );
+    }
+
+    // Read-only List view; each get() builds a fresh TrafficRecord
+    public List<TrafficRecord> records() {
+        return new AbstractList<>() {
+            @Override
+            public TrafficRecord get(int index) {
+                if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+                return record(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /* =======================
+       Dictionaries
+       ======================= */
+
+    public List<String> holidayDictionary() {
+        return Collections.unmodifiableList(Arrays.asList(holidayNames));
+    }
+
+    public List<String> weatherMainDictionary() {
+        return Collections.unmodifiableList(Arrays.asList(weatherMainNames));
+    }
+
+    public List<String> weatherDescriptionDictionary() {
+        return Collections.unmodifiableList(Arrays.asList(weatherDescriptionNames));
+    }
+
+    /* =======================
+       Raw columns (package use; never modified after build)
+       ======================= */
+
+    int[] epochHourColumn() {
+        return epochHours;
+    }
+
+    int[] volumeColumn() {
+        return volumes;
+    }
+
+    float[] tempColumn() {
+        return tempK;
+    }
+
+    float[] rainColumn() {
+        return rain1hMm;
+    }
+
+    float[] snowColumn() {
+        return snow1hMm;
+    }
+
+    byte[] cloudsColumn() {
+        return cloudsAllPct;
+    }
+
+    short[] holidayCodeColumn() {
+        return holidayCodes;
+    }
+
+    short[] weatherMainCodeColumn() {
+        return weatherMainCodes;
+    }
+
+    short[] weatherDescriptionCodeColumn() {
+        return weatherDescriptionCodes;
+    }
+
+    // hour * 2 + (weekend ? 1 : 0) per row: the group key of the hourly AggregationKernels
+    byte[] hourDayTypeKeyColumn() {
+        byte[] keys = hourDayTypeKeys;
+        if (keys != null) return keys;
+
+        HourCalendar cal = calendar();
+        keys = new byte[size];
+        for (int i = 0; i < size; i++) {
+            int f = cal.fields(epochHours[i]);
+            keys[i] = (byte) (HourCalendar.hour(f) * 2 + (HourCalendar.isWeekend(f) ? 1 : 0));
+        }
+        return hourDayTypeKeys = keys;
+    }
+
+    // weather_main code per row as a kernel key; only for dictionaries of up to 127 values
+    byte[] weatherMainKeyColumn() {
+        byte[] keys = weatherMainKeys;
+        if (keys != null) return keys;
+        if (weatherMainNames.length > Byte.MAX_VALUE) {
+            throw new IllegalStateException("Too many weather_main values for byte keys: " + weatherMainNames.length);
+        }
+
+        keys = new byte[size];
+        for (int i = 0; i < size; i++) keys[i] = (byte) weatherMainCodes[i];
+        return weatherMainKeys = keys;
+    }
+
+    String[] holidayNames() {
+        return holidayNames;
+    }
+
+    String[] weatherMainNames() {
+        return weatherMainNames;
+    }
+
+    String[] weatherDescriptionNames() {
+        return weatherDescriptionNames;
+    }
+
+    /* =======================
+       Epoch-hour helpers
+       ======================= */
+
+    public static int epochHour(LocalDateTime dt) {
+        return Math.toIntExact(dt.toLocalDate().toEpochDay() * 24 + dt.getHour());
+    }
+
+    public static LocalDateTime dateTimeOf(int epochHour) {
+        return LocalDate.ofEpochDay(Math.floorDiv(epochHour, 24))
+                .atTime(Math.floorMod(epochHour, 24), 0);
+    }
+
+    static int hourOf(int epochHour) {
+        return Math.floorMod(epochHour, 24);
+    }
+
+    // 0 = Monday ... 6 = Sunday (1970-01-01 was a Thursday)
+    static int dayOfWeekIndex(int epochHour) {
+        return Math.floorMod(Math.floorDiv(epochHour, 24) + 3, 7);
+    }
+
+    /* =======================
+       Builder
+       ======================= */
+
+    public static final class Builder {
+        private int size;
+        private int[] epochHours;
+        private int[] volumes;
+        private float[] tempK;
+        private float[] rain1hMm;
+        private float[] snow1hMm;
+        private byte[] cloudsAllPct;
+        private short[] holidayCodes;
+        private short[] weatherMainCodes;
+        private short[] weatherDescriptionCodes;
+
+        private final Dictionary holidays = new Dictionary("holiday");
+        private final Dictionary weatherMains = new Dictionary("weather_main");
+        private final Dictionary weatherDescriptions = new Dictionary("weather_description");
+
+        private Builder(int capacity) {
+            int c = Math.max(capacity, 16);
+            epochHours = new int[c];
+            volumes = new int[c];
+            tempK = new float[c];
+            rain1hMm = new float[c];
+            snow1hMm = new float[c];
+            cloudsAllPct = new byte[c];
+            holidayCodes = new short[c];
+            weatherMainCodes = new short[c];
+            weatherDescriptionCodes = new short[c];
+        }
+
+        public Builder add(TrafficRecord r) {
+            return add(epochHour(r.dateTime()), r.trafficVolume(), r.tempK(), r.rain1hMm(),
+                    r.snow1hMm(), r.cloudsAllPct(), r.holiday(), r.weatherMain(), r.weatherDescription());
+        }
+
+        public Builder add(int epochHour, int trafficVolume, double tempK, double rain1hMm,
+                           double snow1hMm, int cloudsAllPct, String holiday,
+                           String weatherMain, String weatherDescription) {
+            if (size == epochHours.length) grow();
+
+            epochHours[size] = epochHour;
+            volumes[size] = trafficVolume;
+            this.tempK[size] = (float) tempK;
+            this.rain1hMm[size] = (float) rain1hMm;
+            this.snow1hMm[size] = (float) snow1hMm;
+            this.cloudsAllPct[size] = (byte) cloudsAllPct;
+            holidayCodes[size] = holidays.code(holiday);
+            weatherMainCodes[size] = weatherMains.code(weatherMain);
+            weatherDescriptionCodes[size] = weatherDescriptions.code(weatherDescription);
+            size++;
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        // Drops the rows but keeps the allocated columns and the dictionaries, so a
+        // batch loop can refill the same builder
+        void clear() {
+            size = 0;
+        }
+
+        public TrafficDataset build() {
+            return new TrafficDataset(this);
+        }
+
+        private void grow() {
+            int c = epochHours.length + (epochHours.length >> 1);
+            epochHours = Arrays.copyOf(epochHours, c);
+            volumes = Arrays.copyOf(volumes, c);
+            tempK = Arrays.copyOf(tempK, c);
+            rain1hMm = Arrays.copyOf(rain1hMm, c);
+            snow1hMm = Arrays.copyOf(snow1hMm, c);
+            cloudsAllPct = Arrays.copyOf(cloudsAllPct, c);
+            holidayCodes = Arrays.copyOf(holidayCodes, c);
+            weatherMainCodes = Arrays.copyOf(weatherMainCodes, c);
+            weatherDescriptionCodes = Arrays.copyOf(weatherDescriptionCodes, c);
+        }
+    }
+
+    // Assigns dense short codes to distinct strings in first-seen order
+    private static final class Dictionary {
+        private final String column;
+        private final Map<String, Short> codes = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+
+        Dictionary(String column) {
+            this.column = column;
+        }
+
+        short code(String value) {
+            Short c = codes.get(value);
+            if (c != null) return c;
+
+            if (names.size() > Short.MAX_VALUE) {
+                throw new IllegalStateException("Too many distinct " + column + " values");
+            }
+            short next = (short) names.size();
+            codes.put(value, next);
+            names.add(value);
+            return next;
+        }
+
+        String[] names() {
+            return names.toArray(new String[0]);
+        }
+    }
+}
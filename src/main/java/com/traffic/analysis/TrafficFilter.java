@@ -0,0 +1,238 @@
+package com.traffic.analysis;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+// Composable row predicate for TrafficIndex.select. Each filter reports the range
+// of time-ordered positions it can possibly match and fills a bitmap for a window
+// of 64-position words; and() narrows the window before any bitmap is combined.
+//
+//   TrafficFilter rainyWeekdayEvenings =
+//           TrafficFilter.between(LocalDateTime.of(2016, 3, 1, 0, 0), LocalDateTime.of(2016, 7, 1, 0, 0))
+//                   .and(TrafficFilter.weatherMain("Rain", "Drizzle", "Thunderstorm"))
+//                   .and(TrafficFilter.weekdays())
+//                   .and(TrafficFilter.hours(17, 21));
+public abstract class TrafficFilter {
+
+    TrafficFilter() {}
+
+    // Smallest / one past the largest position that can match
+    int lowerPosition(TrafficIndex idx) {
+        return 0;
+    }
+
+    int upperPosition(TrafficIndex idx) {
+        return idx.size();
+    }
+
+    // Writes the match bits of words [fromWord, toWord) into out[0 .. toWord - fromWord)
+    abstract void evaluate(TrafficIndex idx, int fromWord, int toWord, long[] out);
+
+    /* =======================
+       Combinators
+       ======================= */
+
+    public TrafficFilter and(TrafficFilter other) {
+        TrafficFilter a = this;
+        return new TrafficFilter() {
+            @Override
+            int lowerPosition(TrafficIndex idx) {
+                return Math.max(a.lowerPosition(idx), other.lowerPosition(idx));
+            }
+
+            @Override
+            int upperPosition(TrafficIndex idx) {
+                return Math.min(a.upperPosition(idx), other.upperPosition(idx));
+            }
+
+            @Override
+            void evaluate(TrafficIndex idx, int fromWord, int toWord, long[] out) {
+                a.evaluate(idx, fromWord, toWord, out);
+                long[] tmp = new long[toWord - fromWord];
+                other.evaluate(idx, fromWord, toWord, tmp);
+                for (int i = 0; i < tmp.length; i++) out[i] &= tmp[i];
+            }
+        };
+    }
+
+    public TrafficFilter or(TrafficFilter other) {
+        TrafficFilter a = this;
+        return new TrafficFilter() {
+            @Override
+            int lowerPosition(TrafficIndex idx) {
+                return Math.min(a.lowerPosition(idx), other.lowerPosition(idx));
+            }
+
+            @Override
+            int upperPosition(TrafficIndex idx) {
+                return Math.max(a.upperPosition(idx), other.upperPosition(idx));
+            }
+
+            @Override
+            void evaluate(TrafficIndex idx, int fromWord, int toWord, long[] out) {
+                // Each side is only true inside its own bounds, so clip before merging
+                clipped(a, idx, fromWord, toWord, out);
+                long[] tmp = new long[toWord - fromWord];
+                clipped(other, idx, fromWord, toWord, tmp);
+                for (int i = 0; i < tmp.length; i++) out[i] |= tmp[i];
+            }
+        };
+    }
+
+    public TrafficFilter negate() {
+        TrafficFilter a = this;
+        return new TrafficFilter() {
+            @Override
+            void evaluate(TrafficIndex idx, int fromWord, int toWord, long[] out) {
+                clipped(a, idx, fromWord, toWord, out);
+                for (int i = 0; i < out.length; i++) out[i] = ~out[i];
+            }
+        };
+    }
+
+    /* =======================
+       Leaf filters
+       ======================= */
+
+    public static TrafficFilter all() {
+        return new TrafficFilter() {
+            @Override
+            void evaluate(TrafficIndex idx, int fromWord, int toWord, long[] out) {
+                Arrays.fill(out, -1L);
+            }
+        };
+    }
+
+    // Rows with from <= dateTime < toExclusive
+    public static TrafficFilter between(LocalDateTime from, LocalDateTime toExclusive) {
+        int fromHour = ceilEpochHour(from);
+        int toHour = ceilEpochHour(toExclusive);
+        return new TrafficFilter() {
+            @Override
+            int lowerPosition(TrafficIndex idx) {
+                return idx.lowerBound(fromHour);
+            }
+
+            @Override
+            int upperPosition(TrafficIndex idx) {
+                return idx.lowerBound(toHour);
+            }
+
+            @Override
+            void evaluate(TrafficIndex idx, int fromWord, int toWord, long[] out) {
+                Arrays.fill(out, -1L);
+            }
+        };
+    }
+
+    public static TrafficFilter weatherMain(String... names) {
+        List<String> wanted = trimmed(names);
+        return new TrafficFilter() {
+            @Override
+            void evaluate(TrafficIndex idx, int fromWord, int toWord, long[] out) {
+                String[] dict = idx.dataset().weatherMainNames();
+                for (int c = 0; c < dict.length; c++) {
+                    if (dict[c] != null && wanted.contains(dict[c].trim())) {
+                        orInto(idx.weatherMainBits(c), fromWord, out);
+                    }
+                }
+            }
+        };
+    }
+
+    public static TrafficFilter holiday(String... names) {
+        List<String> wanted = trimmed(names);
+        return new TrafficFilter() {
+            @Override
+            void evaluate(TrafficIndex idx, int fromWord, int toWord, long[] out) {
+                String[] dict = idx.dataset().holidayNames();
+                for (int c = 0; c < dict.length; c++) {
+                    if (dict[c] != null && wanted.contains(dict[c].trim())) {
+                        orInto(idx.holidayBits(c), fromWord, out);
+                    }
+                }
+            }
+        };
+    }
+
+    // Any holiday other than "None"
+    public static TrafficFilter isHoliday() {
+        return holiday("None").negate();
+    }
+
+    public static TrafficFilter dayOfWeek(DayOfWeek... days) {
+        return new TrafficFilter() {
+            @Override
+            void evaluate(TrafficIndex idx, int fromWord, int toWord, long[] out) {
+                for (DayOfWeek d : days) orInto(idx.dayOfWeekBits(d.getValue() - 1), fromWord, out);
+            }
+        };
+    }
+
+    public static TrafficFilter weekdays() {
+        return dayOfWeek(DayOfWeek.MONDAY, DayOfWeek.TUESDAY, DayOfWeek.WEDNESDAY,
+                DayOfWeek.THURSDAY, DayOfWeek.FRIDAY);
+    }
+
+    public static TrafficFilter weekends() {
+        return dayOfWeek(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY);
+    }
+
+    // Hours of day in [fromHour, toHourExclusive); wraps past midnight when from > to.
+    // hours(0, 24) is every hour; an empty range such as hours(5, 5) is rejected
+    public static TrafficFilter hours(int fromHour, int toHourExclusive) {
+        if (fromHour < 0 || fromHour > 23 || toHourExclusive < 0 || toHourExclusive > 24) {
+            throw new IllegalArgumentException("Hours must be within 0-24");
+        }
+        if (fromHour == toHourExclusive) {
+            throw new IllegalArgumentException("Empty hour range: " + fromHour + "-" + toHourExclusive);
+        }
+        return new TrafficFilter() {
+            @Override
+            void evaluate(TrafficIndex idx, int fromWord, int toWord, long[] out) {
+                int h = fromHour;
+                do {
+                    orInto(idx.hourBits(h), fromWord, out);
+                    h = (h + 1) % 24;
+                } while (h != toHourExclusive % 24);
+            }
+        };
+    }
+
+    /* =======================
+       Helpers
+       ======================= */
+
+    private static void orInto(long[] bits, int fromWord, long[] out) {
+        for (int i = 0; i < out.length; i++) out[i] |= bits[fromWord + i];
+    }
+
+    // Evaluates f and clears the positions outside its own [lower, upper) bound
+    private static void clipped(TrafficFilter f, TrafficIndex idx, int fromWord, int toWord, long[] out) {
+        f.evaluate(idx, fromWord, toWord, out);
+
+        int lo = f.lowerPosition(idx);
+        int hi = f.upperPosition(idx);
+        for (int i = 0; i < out.length; i++) {
+            int first = (fromWord + i) << 6;
+            if (first + 64 <= lo || first >= hi) {
+                out[i] = 0;
+                continue;
+            }
+            if (lo > first) out[i] &= -1L << (lo - first);
+            if (hi < first + 64) out[i] &= -1L >>> (64 - (hi - first));
+        }
+    }
+
+    private static List<String> trimmed(String... names) {
+        return Arrays.stream(names).map(String::trim).toList();
+    }
+
+    private static int ceilEpochHour(LocalDateTime dt) {
+        int h = TrafficDataset.epochHour(dt);
+        boolean partial = dt.getMinute() != 0 || dt.getSecond() != 0 || dt.getNano() != 0;
+        return partial ? h + 1 : h;
+    }
+}
@@ -0,0 +1,132 @@
+package com.traffic.analysis;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Per-station cache of fitted forecast models. A station's models are fitted once from
+// its history; afterwards new hours are fed to the cached models, which update in
+// place instead of refitting. Forecasts are memoized per method and horizon until the
+// station's next observation or holiday.
+//
+// Holidays start as the dates of the history's holiday rows. Forecasts are for future
+// hours, so the holiday terms only apply to them once their dates are known: observed
+// rows naming a holiday add their date, and callers can add announced holidays ahead
+// of time (addHolidays, or the forecast overload that takes them).
+public final class TrafficForecaster {
+
+    private final Map<String, Station> stations = new ConcurrentHashMap<>();
+
+    private static final class Station {
+        final Set<LocalDate> holidays;
+        final Map<ForecastModel.Method, ForecastModel> models = new EnumMap<>(ForecastModel.Method.class);
+        final Map<Long, TimeSeries> forecasts = new HashMap<>();
+
+        Station(Set<LocalDate> holidays) {
+            this.holidays = new HashSet<>(holidays);
+            for (ForecastModel.Method m : ForecastModel.Method.values()) models.put(m, m.create(holidays));
+        }
+
+        // Caller holds the station's lock
+        void addHoliday(LocalDate date) {
+            if (!holidays.add(date)) return;
+            for (ForecastModel model : models.values()) model.addHoliday(date);
+            forecasts.clear();
+        }
+    }
+
+    // Fits (or refits) every method for the station from its full history
+    public void fit(String stationId, TrafficDataset history) {
+        TimeSeries hourly = TrafficWindows.hourly(history);
+        Station s = new Station(ForecastModel.holidaysOf(history));
+        for (ForecastModel model : s.models.values()) model.observe(hourly);
+        stations.put(stationId, s);
+    }
+
+    // Fits every station of a network, one station at a time
+    public void fit(TrafficNetwork network) throws IOException {
+        for (String id : network.stationIds()) fit(id, TrafficDataset.of(network.load(id)));
+    }
+
+    public Set<String> stationIds() {
+        return Collections.unmodifiableSet(stations.keySet());
+    }
+
+    // Feeds one new hour to the station's models. Returns false (and changes nothing)
+    // when the hour is not after the last one seen, e.g. a second row for the same
+    // hour; callers with several rows per hour should pass their average.
+    public boolean observe(String stationId, int epochHour, double volume) {
+        Station s = station(stationId);
+        synchronized (s) {
+            ForecastModel any = s.models.get(ForecastModel.Method.SEASONAL_NAIVE);
+            if (any.hasObservations() && epochHour < any.nextEpochHour()) return false;
+
+            for (ForecastModel model : s.models.values()) model.observe(epochHour, volume);
+            s.forecasts.clear();
+            return true;
+        }
+    }
+
+    // Same, and a row naming a holiday makes its date a holiday for the station (kept
+    // even when the hour itself is rejected)
+    public boolean observe(String stationId, TrafficRecord r) {
+        if (HourCalendar.isHolidayName(r.holiday())) {
+            addHolidays(stationId, Set.of(r.dateTime().toLocalDate()));
+        }
+        return observe(stationId, TrafficDataset.epochHour(r.dateTime()), r.trafficVolume());
+    }
+
+    // Holiday dates the station's models should use from now on, typically announced
+    // holidays inside an upcoming forecast horizon
+    public void addHolidays(String stationId, Collection<LocalDate> dates) {
+        Station s = station(stationId);
+        synchronized (s) {
+            for (LocalDate d : dates) s.addHoliday(d);
+        }
+    }
+
+    // Forecast of the horizon hours after the station's last observation
+    public TimeSeries forecast(String stationId, ForecastModel.Method method, int horizonHours) {
+        if (horizonHours <= 0) throw new IllegalArgumentException("Horizon must be positive: " + horizonHours);
+        Station s = station(stationId);
+        synchronized (s) {
+            long key = ((long) method.ordinal() << 32) | horizonHours;
+            return s.forecasts.computeIfAbsent(key, k -> s.models.get(method).forecast(horizonHours));
+        }
+    }
+
+    // Same, with the given upcoming holidays added to the station first
+    public TimeSeries forecast(String stationId, ForecastModel.Method method, int horizonHours,
+                               Collection<LocalDate> upcomingHolidays) {
+        addHolidays(stationId, upcomingHolidays);
+        return forecast(stationId, method, horizonHours);
+    }
+
+    public TimeSeries forecastNextDay(String stationId, ForecastModel.Method method) {
+        return forecast(stationId, method, 24);
+    }
+
+    public TimeSeries forecastNextWeek(String stationId, ForecastModel.Method method) {
+        return forecast(stationId, method, ForecastModel.HOURS_PER_WEEK);
+    }
+
+    public Set<LocalDate> holidays(String stationId) {
+        Station s = station(stationId);
+        synchronized (s) {
+            return Set.copyOf(s.holidays);
+        }
+    }
+
+    private Station station(String stationId) {
+        Station s = stations.get(stationId);
+        if (s == null) throw new IllegalArgumentException("Station has not been fitted: " + stationId);
+        return s;
+    }
+}
@@ -0,0 +1,221 @@
+package com.traffic.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Query index over a TrafficDataset. Rows are ordered by timestamp so a time range
+// is a contiguous run of positions found by binary search, and each weather_main,
+// holiday, day-of-week and hour value has a bitmap over those positions.
+// TrafficFilters are evaluated as bitmap intersections restricted to the words their
+// time bounds allow; rows are only touched for the positions that end up matching.
+public final class TrafficIndex {
+
+    private final TrafficDataset ds;
+    private final int size;
+
+    // position -> row id, and the (ascending) epoch-hour at each position
+    private final int[] rowAt;
+    private final int[] hourAt;
+
+    private final long[][] weatherMainBits;
+    private final long[][] holidayBits;
+    private final long[][] dayOfWeekBits = new long[7][];
+    private final long[][] hourBits = new long[24][];
+
+    private TrafficIndex(TrafficDataset ds) {
+        this.ds = ds;
+        this.size = ds.size();
+
+        int[] hours = ds.epochHourColumn();
+        this.rowAt = sortedOrder(hours, size);
+        this.hourAt = new int[size];
+        for (int p = 0; p < size; p++) hourAt[p] = hours[rowAt[p]];
+
+        int words = (size + 63) >>> 6;
+        this.weatherMainBits = new long[ds.weatherMainNames().length][words];
+        this.holidayBits = new long[ds.holidayNames().length][words];
+        for (int d = 0; d < 7; d++) dayOfWeekBits[d] = new long[words];
+        for (int h = 0; h < 24; h++) hourBits[h] = new long[words];
+
+        short[] mains = ds.weatherMainCodeColumn();
+        short[] holidays = ds.holidayCodeColumn();
+        for (int p = 0; p < size; p++) {
+            int row = rowAt[p];
+            int w = p >>> 6;
+            long bit = 1L << p;
+            weatherMainBits[mains[row]][w] |= bit;
+            holidayBits[holidays[row]][w] |= bit;
+            dayOfWeekBits[TrafficDataset.dayOfWeekIndex(hourAt[p])][w] |= bit;
+            hourBits[TrafficDataset.hourOf(hourAt[p])][w] |= bit;
+        }
+    }
+
+    public static TrafficIndex build(TrafficDataset ds) {
+        return new TrafficIndex(ds);
+    }
+
+    public TrafficDataset dataset() {
+        return ds;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Selection select(TrafficFilter filter) {
+        int lo = Math.max(0, filter.lowerPosition(this));
+        int hi = Math.min(size, filter.upperPosition(this));
+        if (lo >= hi) return new Selection(0, new long[0]);
+
+        int fromWord = lo >>> 6;
+        int toWord = ((hi - 1) >>> 6) + 1;
+        long[] words = new long[toWord - fromWord];
+        filter.evaluate(this, fromWord, toWord, words);
+
+        // Trim partial edge words to the [lo, hi) bound
+        words[0] &= -1L << (lo & 63);
+        if ((hi & 63) != 0) words[words.length - 1] &= -1L >>> (64 - (hi & 63));
+        return new Selection(fromWord, words);
+    }
+
+    /* =======================
+       Package access for TrafficFilter
+       ======================= */
+
+    // First position whose epoch-hour is >= epochHour
+    int lowerBound(int epochHour) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (hourAt[mid] < epochHour) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    long[] weatherMainBits(int code) {
+        return weatherMainBits[code];
+    }
+
+    long[] holidayBits(int code) {
+        return holidayBits[code];
+    }
+
+    long[] dayOfWeekBits(int dayIndex) {
+        return dayOfWeekBits[dayIndex];
+    }
+
+    long[] hourBits(int hour) {
+        return hourBits[hour];
+    }
+
+    // Stable sort of row ids by epoch-hour; already-sorted input (the usual case) is detected
+    private static int[] sortedOrder(int[] hours, int n) {
+        boolean sorted = true;
+        for (int i = 1; i < n && sorted; i++) sorted = hours[i - 1] <= hours[i];
+
+        if (sorted) {
+            int[] order = new int[n];
+            for (int i = 0; i < n; i++) order[i] = i;
+            return order;
+        }
+
+        // Pack (hour, row) into a long so a primitive sort keeps rows stable within an hour
+        long[] keyed = new long[n];
+        for (int i = 0; i < n; i++) keyed[i] = ((long) hours[i] << 32) | i;
+        Arrays.sort(keyed);
+
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) order[i] = (int) keyed[i];
+        return order;
+    }
+
+    /* =======================
+       Query results
+       ======================= */
+
+    // Matching positions as a bitmap window; iteration visits only set bits
+    public final class Selection {
+        private final int fromWord;
+        private final long[] words;
+
+        private Selection(int fromWord, long[] words) {
+            this.fromWord = fromWord;
+            this.words = words;
+        }
+
+        public int count() {
+            int n = 0;
+            for (long w : words) n += Long.bitCount(w);
+            return n;
+        }
+
+        // Matching row ids (indexes into the dataset) in timestamp order
+        public int[] rowIds() {
+            int[] out = new int[count()];
+            int k = 0;
+            for (int i = 0; i < words.length; i++) {
+                long w = words[i];
+                while (w != 0) {
+                    int p = ((fromWord + i) << 6) + Long.numberOfTrailingZeros(w);
+                    out[k++] = rowAt[p];
+                    w &= w - 1;
+                }
+            }
+            return out;
+        }
+
+        public List<TrafficRecord> records() {
+            int[] ids = rowIds();
+            List<TrafficRecord> out = new ArrayList<>(ids.length);
+            for (int id : ids) out.add(ds.record(id));
+            return out;
+        }
+
+        public long totalVolume() {
+            int[] volumes = ds.volumeColumn();
+            long sum = 0;
+            for (int i = 0; i < words.length; i++) {
+                long w = words[i];
+                while (w != 0) {
+                    sum += volumes[rowAt[((fromWord + i) << 6) + Long.numberOfTrailingZeros(w)]];
+                    w &= w - 1;
+                }
+            }
+            return sum;
+        }
+
+        // NaN when nothing matches
+        public double averageVolume() {
+            int n = count();
+            return n == 0 ? Double.NaN : (double) totalVolume() / n;
+        }
+
+        public Map<Integer, Double> averageVolumeByHour() {
+            int[] volumes = ds.volumeColumn();
+            long[] sum = new long[24];
+            int[] count = new int[24];
+
+            for (int i = 0; i < words.length; i++) {
+                long w = words[i];
+                while (w != 0) {
+                    int p = ((fromWord + i) << 6) + Long.numberOfTrailingZeros(w);
+                    int h = TrafficDataset.hourOf(hourAt[p]);
+                    sum[h] += volumes[rowAt[p]];
+                    count[h]++;
+                    w &= w - 1;
+                }
+            }
+
+            Map<Integer, Double> out = new TreeMap<>();
+            for (int h = 0; h < 24; h++) {
+                if (count[h] > 0) out.put(h, (double) sum[h] / count[h]);
+            }
+            return out;
+        }
+    }
+}
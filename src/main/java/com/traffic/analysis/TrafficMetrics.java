@@ -0,0 +1,474 @@
+package com.traffic.analysis;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Process-wide instrumentation of the three pipeline stages:
+//
+//   load       rows, bytes and time per loader (rows/s and bytes/s)
+//   aggregate  latency histogram per TrafficAnalysis aggregate and input kind
+//   chart      draw time, encode time and output bytes per chart and format
+//
+// Every stage also emits a JFR event (category "Traffic Analysis"), which costs
+// nothing unless a recording enables it. The counters are LongAdders updated once
+// per load / aggregate call / chart, so they stay on by default; -Dtraffic.metrics=false
+// turns them off. Results are exposed over JMX (registerMBean) and as Prometheus
+// text exposition (prometheusText / writePrometheus).
+public final class TrafficMetrics {
+
+    public static final String OBJECT_NAME = "com.traffic.analysis:type=TrafficMetrics";
+
+    private static final boolean ENABLED = !"false".equals(System.getProperty("traffic.metrics"));
+
+    private static final Map<String, LoadStats> LOADS = new ConcurrentHashMap<>();
+    private static final Map<String, LatencyHistogram> AGGREGATES = new ConcurrentHashMap<>();
+    private static final Map<String, ChartStats> CHARTS = new ConcurrentHashMap<>();
+
+    private TrafficMetrics() {}
+
+    /* =======================
+       JFR events
+       ======================= */
+
+    @Name("com.traffic.analysis.Load")
+    @Label("Traffic Data Load")
+    @Category("Traffic Analysis")
+    static final class LoadEvent extends Event {
+        @Label("Loader")
+        String loader;
+
+        @Label("File")
+        String file;
+
+        @Label("Rows")
+        int rows;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        transient long startNanos;
+    }
+
+    @Name("com.traffic.analysis.Aggregate")
+    @Label("Traffic Aggregate")
+    @Category("Traffic Analysis")
+    static final class AggregateEvent extends Event {
+        @Label("Aggregate")
+        String aggregate;
+
+        @Label("Input")
+        String input;
+    }
+
+    @Name("com.traffic.analysis.ChartEncode")
+    @Label("Traffic Chart Encode")
+    @Category("Traffic Analysis")
+    static final class ChartEvent extends Event {
+        @Label("Chart")
+        String chart;
+
+        @Label("Format")
+        String format;
+
+        @Label("Draw Time")
+        @Timespan
+        long drawNanos;
+
+        @Label("Encode Time")
+        @Timespan
+        long encodeNanos;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        transient long startNanos;
+        transient long drawnNanos;
+    }
+
+    /* =======================
+       Stage hooks
+       ======================= */
+
+    static LoadEvent startLoad(String loader, Path file) {
+        LoadEvent e = new LoadEvent();
+        e.begin();
+        e.loader = loader;
+        e.file = file.toString();
+        e.bytes = file.toFile().length();
+        e.startNanos = System.nanoTime();
+        return e;
+    }
+
+    static void endLoad(LoadEvent e, int rows) {
+        long nanos = System.nanoTime() - e.startNanos;
+        e.end();
+        if (e.shouldCommit()) {
+            e.rows = rows;
+            e.commit();
+        }
+        if (ENABLED) LOADS.computeIfAbsent(e.loader, k -> new LoadStats()).add(rows, e.bytes, nanos);
+    }
+
+    // Latency handle for one aggregate and input kind, registered under "aggregate/input".
+    // Callers resolve it once into a static final, so a timed call builds no key and
+    // does no map lookup.
+    static AggregateTimer aggregateTimer(String aggregate, String input) {
+        return new AggregateTimer(aggregate, input,
+                AGGREGATES.computeIfAbsent(aggregate + "/" + input, k -> new LatencyHistogram()));
+    }
+
+    static final class AggregateTimer {
+        private final String aggregate;
+        private final String input;
+        private final LatencyHistogram histogram;
+
+        private AggregateTimer(String aggregate, String input, LatencyHistogram histogram) {
+            this.aggregate = aggregate;
+            this.input = input;
+            this.histogram = histogram;
+        }
+
+        // Runs one aggregate and records its latency
+        <T> T time(Supplier<T> body) {
+            AggregateEvent e = new AggregateEvent();
+            e.begin();
+            long t0 = System.nanoTime();
+
+            T result = body.get();
+
+            long nanos = System.nanoTime() - t0;
+            e.end();
+            if (e.shouldCommit()) {
+                e.aggregate = aggregate;
+                e.input = input;
+                e.commit();
+            }
+            if (ENABLED) histogram.record(nanos);
+            return result;
+        }
+    }
+
+    // Call startChart before drawing, chartDrawn between drawing and encoding, and
+    // endChart with the encoded size
+    static ChartEvent startChart(String chart, String format) {
+        ChartEvent e = new ChartEvent();
+        e.begin();
+        e.chart = chart;
+        e.format = format;
+        e.startNanos = System.nanoTime();
+        e.drawnNanos = e.startNanos;
+        return e;
+    }
+
+    static void chartDrawn(ChartEvent e) {
+        e.drawnNanos = System.nanoTime();
+    }
+
+    static void endChart(ChartEvent e, long bytes) {
+        long end = System.nanoTime();
+        e.end();
+        e.drawNanos = e.drawnNanos - e.startNanos;
+        e.encodeNanos = end - e.drawnNanos;
+        e.bytes = bytes;
+        if (e.shouldCommit()) e.commit();
+        if (ENABLED) {
+            CHARTS.computeIfAbsent(e.chart + "/" + e.format, k -> new ChartStats()).add(e.drawNanos, e.encodeNanos, bytes);
+        }
+    }
+
+    /* =======================
+       Stats
+       ======================= */
+
+    private static final class LoadStats {
+        final LongAdder loads = new LongAdder();
+        final LongAdder rows = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+
+        void add(int r, long b, long n) {
+            loads.increment();
+            rows.add(r);
+            bytes.add(b);
+            nanos.add(n);
+        }
+
+        double perSecond(LongAdder amount) {
+            long n = nanos.sum();
+            return n == 0 ? 0.0 : amount.sum() * 1e9 / n;
+        }
+    }
+
+    private static final class ChartStats {
+        final LongAdder count = new LongAdder();
+        final LongAdder drawNanos = new LongAdder();
+        final LongAdder encodeNanos = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+
+        void add(long draw, long encode, long b) {
+            count.increment();
+            drawNanos.add(draw);
+            encodeNanos.add(encode);
+            bytes.add(b);
+        }
+    }
+
+    // Latencies in power-of-two microsecond buckets: bucket k counts samples of at most
+    // 2^k us (1 us .. ~18 min), the last bucket everything above
+    static final class LatencyHistogram {
+        static final int BUCKETS = 31;
+
+        private final LongAdder[] counts = new LongAdder[BUCKETS + 1];
+        private final LongAdder sumNanos = new LongAdder();
+
+        LatencyHistogram() {
+            for (int i = 0; i < counts.length; i++) counts[i] = new LongAdder();
+        }
+
+        void record(long nanos) {
+            long us = Math.max(0, (nanos + 999) / 1000);
+            int k = us <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(us - 1);
+            counts[Math.min(k, BUCKETS)].increment();
+            sumNanos.add(nanos);
+        }
+
+        void clear() {
+            for (LongAdder c : counts) c.reset();
+            sumNanos.reset();
+        }
+
+        long[] snapshot() {
+            long[] out = new long[counts.length];
+            for (int i = 0; i < out.length; i++) out[i] = counts[i].sum();
+            return out;
+        }
+
+        static double upperBoundSeconds(int bucket) {
+            return (1L << bucket) / 1e6;
+        }
+
+        long count() {
+            long n = 0;
+            for (long c : snapshot()) n += c;
+            return n;
+        }
+
+        double meanMillis() {
+            long n = count();
+            return n == 0 ? 0.0 : sumNanos.sum() / 1e6 / n;
+        }
+
+        // Upper bound of the bucket holding the q-quantile (within a factor of two)
+        double quantileMillis(double q) {
+            long[] c = snapshot();
+            long n = 0;
+            for (long v : c) n += v;
+            if (n == 0) return 0.0;
+
+            long rank = (long) Math.ceil(q * n);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += c[i];
+                if (seen >= rank) return upperBoundSeconds(i) * 1e3;
+            }
+            return Double.POSITIVE_INFINITY;
+        }
+    }
+
+    /* =======================
+       Exposition
+       ======================= */
+
+    public static void reset() {
+        LOADS.clear();
+        // Zeroed in place: the aggregates hold their histograms in static finals
+        AGGREGATES.values().forEach(LatencyHistogram::clear);
+        CHARTS.clear();
+    }
+
+    // Registers the MXBean with the platform MBean server (once per process)
+    public static void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MXBean(), new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // already registered
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register " + OBJECT_NAME, e);
+        }
+    }
+
+    // Prometheus text exposition format (version 0.0.4)
+    public static String prometheusText() {
+        StringBuilder sb = new StringBuilder(4096);
+
+        Map<String, LoadStats> loads = new TreeMap<>(LOADS);
+        header(sb, "traffic_loads_total", "counter", "Completed loads");
+        loads.forEach((k, s) -> sample(sb, "traffic_loads_total", "loader=\"" + k + "\"", s.loads.sum()));
+        header(sb, "traffic_load_rows_total", "counter", "Rows returned by the loaders");
+        loads.forEach((k, s) -> sample(sb, "traffic_load_rows_total", "loader=\"" + k + "\"", s.rows.sum()));
+        header(sb, "traffic_load_bytes_total", "counter", "Input bytes read by the loaders");
+        loads.forEach((k, s) -> sample(sb, "traffic_load_bytes_total", "loader=\"" + k + "\"", s.bytes.sum()));
+        header(sb, "traffic_load_seconds_total", "counter", "Time spent loading");
+        loads.forEach((k, s) -> sample(sb, "traffic_load_seconds_total", "loader=\"" + k + "\"", s.nanos.sum() / 1e9));
+
+        header(sb, "traffic_aggregate_seconds", "histogram", "Latency of the TrafficAnalysis aggregates");
+        new TreeMap<>(AGGREGATES).forEach((k, h) -> {
+            int slash = k.lastIndexOf('/');
+            String labels = "aggregate=\"" + k.substring(0, slash) + "\",input=\"" + k.substring(slash + 1) + "\"";
+            long[] c = h.snapshot();
+            long cumulative = 0;
+            for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+                cumulative += c[i];
+                sample(sb, "traffic_aggregate_seconds_bucket",
+                        labels + ",le=\"" + LatencyHistogram.upperBoundSeconds(i) + "\"", cumulative);
+            }
+            cumulative += c[LatencyHistogram.BUCKETS];
+            sample(sb, "traffic_aggregate_seconds_bucket", labels + ",le=\"+Inf\"", cumulative);
+            sample(sb, "traffic_aggregate_seconds_sum", labels, h.sumNanos.sum() / 1e9);
+            sample(sb, "traffic_aggregate_seconds_count", labels, cumulative);
+        });
+
+        Map<String, ChartStats> charts = new TreeMap<>(CHARTS);
+        header(sb, "traffic_chart_renders_total", "counter", "Charts written");
+        charts.forEach((k, s) -> sample(sb, "traffic_chart_renders_total", chartLabels(k), s.count.sum()));
+        header(sb, "traffic_chart_draw_seconds_total", "counter", "Time spent drawing charts");
+        charts.forEach((k, s) -> sample(sb, "traffic_chart_draw_seconds_total", chartLabels(k), s.drawNanos.sum() / 1e9));
+        header(sb, "traffic_chart_encode_seconds_total", "counter", "Time spent encoding and writing charts");
+        charts.forEach((k, s) -> sample(sb, "traffic_chart_encode_seconds_total", chartLabels(k), s.encodeNanos.sum() / 1e9));
+        header(sb, "traffic_chart_bytes_total", "counter", "Encoded chart output bytes");
+        charts.forEach((k, s) -> sample(sb, "traffic_chart_bytes_total", chartLabels(k), s.bytes.sum()));
+
+        return sb.toString();
+    }
+
+    // Writes prometheusText() through a temp file and a rename, so a scraper (e.g. the
+    // node_exporter textfile collector) never reads a partial file
+    public static void writePrometheus(Path file) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            Files.writeString(tmp, prometheusText(), StandardCharsets.UTF_8);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static String chartLabels(String key) {
+        int slash = key.lastIndexOf('/');
+        return "chart=\"" + key.substring(0, slash) + "\",format=\"" + key.substring(slash + 1) + "\"";
+    }
+
+    private static void header(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder sb, String name, String labels, double value) {
+        sb.append(name).append('{').append(labels).append("} ");
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            sb.append((long) value);
+        } else {
+            sb.append(value);
+        }
+        sb.append('\n');
+    }
+
+    private static final class MXBean implements TrafficMetricsMXBean {
+
+        @Override
+        public Map<String, Long> getLoadRows() {
+            Map<String, Long> out = new TreeMap<>();
+            LOADS.forEach((k, s) -> out.put(k, s.rows.sum()));
+            return out;
+        }
+
+        @Override
+        public Map<String, Long> getLoadBytes() {
+            Map<String, Long> out = new TreeMap<>();
+            LOADS.forEach((k, s) -> out.put(k, s.bytes.sum()));
+            return out;
+        }
+
+        @Override
+        public Map<String, Double> getLoadRowsPerSecond() {
+            Map<String, Double> out = new TreeMap<>();
+            LOADS.forEach((k, s) -> out.put(k, s.perSecond(s.rows)));
+            return out;
+        }
+
+        @Override
+        public Map<String, Double> getLoadBytesPerSecond() {
+            Map<String, Double> out = new TreeMap<>();
+            LOADS.forEach((k, s) -> out.put(k, s.perSecond(s.bytes)));
+            return out;
+        }
+
+        @Override
+        public Map<String, Long> getAggregateCalls() {
+            Map<String, Long> out = new TreeMap<>();
+            AGGREGATES.forEach((k, h) -> out.put(k, h.count()));
+            return out;
+        }
+
+        @Override
+        public Map<String, Double> getAggregateMeanMillis() {
+            Map<String, Double> out = new TreeMap<>();
+            AGGREGATES.forEach((k, h) -> out.put(k, h.meanMillis()));
+            return out;
+        }
+
+        @Override
+        public Map<String, Double> getAggregateP99Millis() {
+            Map<String, Double> out = new TreeMap<>();
+            AGGREGATES.forEach((k, h) -> out.put(k, h.quantileMillis(0.99)));
+            return out;
+        }
+
+        @Override
+        public Map<String, Long> getChartBytes() {
+            Map<String, Long> out = new TreeMap<>();
+            CHARTS.forEach((k, s) -> out.put(k, s.bytes.sum()));
+            return out;
+        }
+
+        @Override
+        public Map<String, Double> getChartEncodeMillis() {
+            Map<String, Double> out = new TreeMap<>();
+            CHARTS.forEach((k, s) -> out.put(k, s.encodeNanos.sum() / 1e6));
+            return out;
+        }
+
+        @Override
+        public String getPrometheusText() {
+            return prometheusText();
+        }
+
+        @Override
+        public void reset() {
+            TrafficMetrics.reset();
+        }
+    }
+}
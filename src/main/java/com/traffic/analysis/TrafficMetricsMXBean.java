@@ -0,0 +1,31 @@
+package com.traffic.analysis;
+
+import java.util.Map;
+
+// JMX view of TrafficMetrics, registered as "com.traffic.analysis:type=TrafficMetrics".
+// Keys are the loader, "aggregate/input" and "chart/format" names used in the
+// Prometheus dump.
+public interface TrafficMetricsMXBean {
+
+    Map<String, Long> getLoadRows();
+
+    Map<String, Long> getLoadBytes();
+
+    Map<String, Double> getLoadRowsPerSecond();
+
+    Map<String, Double> getLoadBytesPerSecond();
+
+    Map<String, Long> getAggregateCalls();
+
+    Map<String, Double> getAggregateMeanMillis();
+
+    Map<String, Double> getAggregateP99Millis();
+
+    Map<String, Long> getChartBytes();
+
+    Map<String, Double> getChartEncodeMillis();
+
+    String getPrometheusText();
+
+    void reset();
+}
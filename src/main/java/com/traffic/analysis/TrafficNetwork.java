@@ -0,0 +1,223 @@
+package com.traffic.analysis;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// A set of per-station CSVs (one file per interstate sensor) keyed by station ID,
+// the file name without ".csv" or ".csv.gz" / ".csv.zst". Files are only read when a station is processed,
+// and analyze() keeps just each station's aggregates, so memory stays proportional
+// to the stations being loaded at the same time rather than to the whole network.
+public final class TrafficNetwork {
+
+    private final Map<String, Path> stations;
+
+    private TrafficNetwork(Map<String, Path> stations) {
+        this.stations = Collections.unmodifiableMap(stations);
+    }
+
+    // dirOrGlob is a directory (every CSV in it, compressed or not) or a glob on the
+    // file name, e.g. data/stations/station-*.csv
+    public static TrafficNetwork open(Path dirOrGlob) throws IOException {
+        Path dir;
+        DirectoryStream.Filter<Path> filter;
+        if (Files.isDirectory(dirOrGlob)) {
+            dir = dirOrGlob;
+            filter = f -> Files.isRegularFile(f) && CsvInputs.isCsvName(f);
+        } else {
+            dir = dirOrGlob.toAbsolutePath().getParent();
+            PathMatcher glob = dir == null ? null
+                    : dir.getFileSystem().getPathMatcher("glob:" + dirOrGlob.getFileName());
+            filter = f -> Files.isRegularFile(f) && glob.matches(f.getFileName());
+        }
+
+        if (dir == null || !Files.isDirectory(dir)) {
+            throw new IOException("Station directory not found: " + dirOrGlob.toAbsolutePath());
+        }
+
+        Map<String, Path> stations = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, filter)) {
+            for (Path f : files) {
+                Path other = stations.put(stationIdOf(f), f);
+                if (other != null) {
+                    throw new IOException("Station files " + other + " and " + f
+                            + " have the same station ID: " + stationIdOf(f));
+                }
+            }
+        }
+
+        if (stations.isEmpty()) {
+            throw new IOException("No station CSVs match " + dirOrGlob.toAbsolutePath());
+        }
+        return new TrafficNetwork(stations);
+    }
+
+    public Set<String> stationIds() {
+        return stations.keySet();
+    }
+
+    public Path csvOf(String stationId) {
+        Path p = stations.get(stationId);
+        if (p == null) throw new IllegalArgumentException("Unknown station: " + stationId);
+        return p;
+    }
+
+    public List<TrafficRecord> load(String stationId) throws IOException {
+        return MappedTrafficDataLoader.load(csvOf(stationId));
+    }
+
+    // Loads one station, reduces it to its aggregates and lets the rows go
+    public TrafficAggregates aggregate(String stationId) throws IOException {
+        return TrafficAggregates.compute(load(stationId));
+    }
+
+    /* =======================
+       Network-wide analysis
+       ======================= */
+
+    public Summary analyze() throws IOException {
+        return analyze(ForkJoinPool.commonPool());
+    }
+
+    // Aggregates every station on the pool. Stations are split recursively so idle
+    // workers steal the remaining halves, which keeps uneven file sizes balanced.
+    public Summary analyze(ForkJoinPool pool) throws IOException {
+        String[] ids = stations.keySet().toArray(new String[0]);
+        TrafficAggregates[] results = new TrafficAggregates[ids.length];
+
+        try {
+            pool.invoke(new AggregateStations(ids, results, 0, ids.length));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        Map<String, TrafficAggregates> byStation = new TreeMap<>();
+        for (int i = 0; i < ids.length; i++) byStation.put(ids[i], results[i]);
+        return new Summary(byStation);
+    }
+
+    // Same, with each station streamed through the out-of-core analysis, so no station
+    // is ever held as a whole and the heap stays within its memory budget
+    public Summary analyze(OutOfCoreAnalysis outOfCore) throws IOException {
+        List<Path> files = List.copyOf(stations.values());
+        Map<String, TrafficAggregates> byStation = new TreeMap<>();
+        try (OutOfCoreAnalysis.Result r = outOfCore.run(files)) {
+            for (var e : stations.entrySet()) byStation.put(e.getKey(), r.aggregates(e.getValue()));
+        }
+        return new Summary(byStation);
+    }
+
+    private final class AggregateStations extends RecursiveTask<Void> {
+        private static final long serialVersionUID = 1L;
+
+        private final String[] ids;
+        private final TrafficAggregates[] results;
+        private final int lo;
+        private final int hi;
+
+        AggregateStations(String[] ids, TrafficAggregates[] results, int lo, int hi) {
+            this.ids = ids;
+            this.results = results;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected Void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new AggregateStations(ids, results, lo, mid),
+                        new AggregateStations(ids, results, mid, hi));
+                return null;
+            }
+            if (hi > lo) {
+                try {
+                    results[lo] = aggregate(ids[lo]);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return null;
+        }
+    }
+
+    // Per-station aggregates plus cross-station roll-ups
+    public static final class Summary {
+        private final Map<String, TrafficAggregates> byStation;
+        private final TrafficAggregates pooled;
+
+        private Summary(Map<String, TrafficAggregates> byStation) {
+            this.byStation = Collections.unmodifiableMap(byStation);
+
+            TrafficAggregates all = TrafficAggregates.empty();
+            for (TrafficAggregates a : byStation.values()) all.merge(a);
+            this.pooled = all;
+        }
+
+        public Map<String, TrafficAggregates> byStation() {
+            return byStation;
+        }
+
+        public TrafficAggregates station(String stationId) {
+            TrafficAggregates a = byStation.get(stationId);
+            if (a == null) throw new IllegalArgumentException("Unknown station: " + stationId);
+            return a;
+        }
+
+        // All stations' rows pooled together (every row weighs the same)
+        public TrafficAggregates pooled() {
+            return pooled;
+        }
+
+        // Hour -> sum over stations of each station's average volume at that hour,
+        // i.e. the expected total flow across the network in that hour
+        public Map<Integer, Double> networkVolumeByHour() {
+            Map<Integer, Double> out = new TreeMap<>();
+            for (TrafficAggregates a : byStation.values()) {
+                for (var e : a.averageVolumeByHour().entrySet()) {
+                    out.merge(e.getKey(), e.getValue(), Double::sum);
+                }
+            }
+            return out;
+        }
+
+        public TrafficAnalysis.PeakHour networkPeakHour() {
+            return TrafficAnalysis.peakOf(networkVolumeByHour());
+        }
+
+        // Station ID -> that station's own peak hour; stations without rows have none
+        // and are left out (see emptyStations)
+        public Map<String, TrafficAnalysis.PeakHour> peakHourByStation() {
+            Map<String, TrafficAnalysis.PeakHour> out = new TreeMap<>();
+            for (var e : byStation.entrySet()) {
+                if (e.getValue().rowCount() > 0) out.put(e.getKey(), e.getValue().peakHourByAverage());
+            }
+            return out;
+        }
+
+        // Stations whose CSV has no data rows (e.g. only a header)
+        public Set<String> emptyStations() {
+            Set<String> out = new TreeSet<>();
+            for (var e : byStation.entrySet()) {
+                if (e.getValue().rowCount() == 0) out.add(e.getKey());
+            }
+            return out;
+        }
+    }
+
+    private static String stationIdOf(Path csv) {
+        String id = CsvInputs.csvBaseName(csv);
+        return id != null ? id : csv.getFileName().toString();
+    }
+}
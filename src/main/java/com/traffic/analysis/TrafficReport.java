@@ -0,0 +1,283 @@
+package com.traffic.analysis;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Formatter;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// The headless report (text sections plus rendered figures) as a ReportPipeline.
+// Aggregates, quantiles, every text section and every figure are cached under cacheDir,
+// so re-running on unchanged data reads them back without loading the CSV, and a
+// changed CSV only re-renders the figures whose numbers actually moved.
+//
+// The section formatters are shared with App's interactive path, so both print the same text.
+public final class TrafficReport {
+
+    // Bump when a step's output changes for the same input, so old cache entries are not reused
+    private static final int VERSION = 1;
+
+    // A figure on disk: caption without its number, LaTeX label and the written files
+    record RenderedFigure(String caption, String label, List<Path> files) {}
+
+    private static final ReportPipeline.Codec<TrafficAggregates> AGGREGATES = new ReportPipeline.Codec<>() {
+        @Override
+        public void write(TrafficAggregates value, DataOutput out) throws IOException {
+            value.writeTo(out);
+        }
+
+        @Override
+        public TrafficAggregates read(DataInput in) throws IOException {
+            return TrafficAggregates.readFrom(in);
+        }
+    };
+
+    private static final ReportPipeline.Codec<VolumeQuantiles> QUANTILES = new ReportPipeline.Codec<>() {
+        @Override
+        public void write(VolumeQuantiles value, DataOutput out) throws IOException {
+            value.writeTo(out);
+        }
+
+        @Override
+        public VolumeQuantiles read(DataInput in) throws IOException {
+            return VolumeQuantiles.readFrom(in);
+        }
+    };
+
+    // Stale once any of the figure's files has been deleted
+    private static final ReportPipeline.Codec<RenderedFigure> FIGURE = new ReportPipeline.Codec<>() {
+        @Override
+        public void write(RenderedFigure value, DataOutput out) throws IOException {
+            out.writeUTF(value.caption());
+            out.writeUTF(value.label());
+            out.writeInt(value.files().size());
+            for (Path p : value.files()) out.writeUTF(p.toString());
+        }
+
+        @Override
+        public RenderedFigure read(DataInput in) throws IOException {
+            String caption = in.readUTF();
+            String label = in.readUTF();
+            int n = in.readInt();
+            List<Path> files = new ArrayList<>(n);
+            boolean present = true;
+            for (int i = 0; i < n; i++) {
+                Path p = Path.of(in.readUTF());
+                present &= Files.exists(p);
+                files.add(p);
+            }
+            return present ? new RenderedFigure(caption, label, files) : null;
+        }
+    };
+
+    private final ReportPipeline.Run run;
+    private final List<ReportPipeline.Node<String>> sections;
+    private final List<ReportPipeline.Node<RenderedFigure>> figures;
+
+    private TrafficReport(ReportPipeline.Run run,
+                          List<ReportPipeline.Node<String>> sections,
+                          List<ReportPipeline.Node<RenderedFigure>> figures) {
+        this.run = run;
+        this.sections = sections;
+        this.figures = figures;
+    }
+
+    public static TrafficReport run(Path csv, Path outDir, Path cacheDir,
+                                    Set<ChartBatchRenderer.Format> formats, int... scales) throws IOException {
+        ReportPipeline.Builder b = ReportPipeline.builder()
+                .cacheDir(cacheDir)
+                .settings("v" + VERSION + " " + outDir.toAbsolutePath().normalize()
+                        + " " + formats + " " + Arrays.toString(scales));
+
+        var rows = b.input("rows", csv, in -> TrafficDataLoader.loadCached(csv));
+        var dataset = b.node("dataset", in -> TrafficDataset.of(in.get(rows)), rows);
+        var agg = b.cached("aggregates", AGGREGATES, in -> TrafficAggregates.compute(in.get(rows)), rows);
+        var quantiles = b.cached("quantiles", QUANTILES, in -> VolumeQuantiles.compute(in.get(rows)), rows);
+
+        List<ReportPipeline.Node<String>> sections = List.of(
+                b.cached("loaded-rows", ReportPipeline.TEXT, in -> loadedRows(in.get(rows).size()), rows),
+                b.cached("peak-hours", ReportPipeline.TEXT, in -> peakHours(in.get(agg)), agg),
+                b.cached("anomalies", ReportPipeline.TEXT, in -> anomalies(in.get(dataset)), dataset),
+                b.cached("percentiles", ReportPipeline.TEXT,
+                        in -> percentiles(in.get(agg), in.get(quantiles)), agg, quantiles),
+                b.cached("weather", ReportPipeline.TEXT,
+                        in -> weatherRanking(in.get(agg)) + weatherRelativeToClear(in.get(agg)), agg),
+                b.cached("regression", ReportPipeline.TEXT, in -> regression(in.get(rows)), rows),
+                b.cached("backtest", ReportPipeline.TEXT, in -> backtest(in.get(dataset)), dataset));
+
+        // Declared in the order App shows them interactively, which fixes their numbers
+        List<ReportPipeline.Node<RenderedFigure>> figures = List.of(
+                b.figure("hourly-curves", FIGURE, in -> {
+                    var curves = in.get(agg).averageVolumeByHourWeekdayVsWeekend();
+                    return render(ChartBatchRenderer.hourlyCurves(in.get(agg)),
+                            TrafficCharts.hourlyCurvesCaption(curves.get("Weekday"), curves.get("Weekend")),
+                            "fig:hourly-curves", outDir, formats, scales);
+                }, agg),
+                b.figure("traffic-volume", FIGURE, in -> {
+                    var peak = in.get(agg).peakHourByAverage();
+                    return render(ChartBatchRenderer.trafficVolume(in.get(agg)),
+                            TrafficCharts.avgVolumeByHourCaption(peak.hour(), peak.averageVolume()),
+                            "fig:traffic-volume-hour", outDir, formats, scales);
+                }, agg),
+                b.figure("volume-percentiles", FIGURE, in -> render(
+                        ChartBatchRenderer.volumePercentiles(in.get(agg), in.get(quantiles)),
+                        TrafficCharts.percentilesByHourCaption(in.get(agg).averageVolumeByHour(),
+                                in.get(quantiles).percentilesByHour(VolumeQuantiles.REPORT_QUANTILES)),
+                        "fig:volume-percentiles", outDir, formats, scales), agg, quantiles),
+                b.figure("weather-impact", FIGURE, in -> render(
+                        ChartBatchRenderer.weatherImpact(in.get(agg)),
+                        TrafficCharts.avgVolumeByWeatherMainCaption(in.get(agg).averageVolumeByWeatherMain()),
+                        "fig:weather-impact", outDir, formats, scales), agg),
+                b.figure("weekday-vs-weekend", FIGURE, in -> render(
+                        ChartBatchRenderer.weekdayVsWeekend(in.get(agg)),
+                        TrafficCharts.weekdayVsWeekendCaption(in.get(agg).averageWeekdayVsWeekend()),
+                        "fig:weekday-vs-weekend", outDir, formats, scales), agg));
+
+        return new TrafficReport(b.build().run(), sections, figures);
+    }
+
+    private static RenderedFigure render(ChartBatchRenderer.Figure figure, String caption, String label,
+                                         Path outDir, Set<ChartBatchRenderer.Format> formats, int... scales)
+            throws IOException {
+        List<Path> files = ChartBatchRenderer.renderInline(figure, outDir, formats, scales);
+        return new RenderedFigure(caption, label, files);
+    }
+
+    // Text sections, saved figures, then each figure's caption and LaTeX block in figure order
+    public void print(PrintStream out) {
+        for (var s : sections) out.print(run.get(s));
+
+        for (var f : figures) {
+            for (Path p : run.get(f).files()) out.println("Saved chart to: " + p.toAbsolutePath());
+        }
+        for (var f : figures) {
+            RenderedFigure fig = run.get(f);
+            String caption = TrafficCharts.captionLine(f.figureNumber(), fig.caption());
+            out.println("\nCaption:\n" + caption);
+            out.println("\nLaTeX figure:");
+            out.println(TrafficCharts.latexFigureBlock(fig.files().get(0).toString(), caption, fig.label()));
+        }
+
+        out.printf("%nReport steps: %d computed, %d from cache, %d skipped%n",
+                run.computed().size(), run.fromCache().size(), run.skipped().size());
+    }
+
+    ReportPipeline.Run pipelineRun() {
+        return run;
+    }
+
+    /* =======================
+       Sections
+       ======================= */
+
+    static String loadedRows(int rows) {
+        return "Loaded rows: " + rows + "\n";
+    }
+
+    static String peakHours(TrafficAggregates agg) {
+        var peakOverall = agg.peakHourByAverage();
+        var peakWeekday = agg.peakHourWeekday();
+        var peakWeekend = agg.peakHourWeekend();
+
+        Formatter f = new Formatter();
+        f.format("Peak hour (overall):  %02d:00  avg=%.0f%n", peakOverall.hour(), peakOverall.averageVolume());
+        f.format("Peak hour (weekday):  %02d:00  avg=%.0f%n", peakWeekday.hour(), peakWeekday.averageVolume());
+        f.format("Peak hour (weekend):  %02d:00  avg=%.0f%n", peakWeekend.hour(), peakWeekend.averageVolume());
+        return f.toString();
+    }
+
+    // Outage / incident hours, and the peak once they are left out
+    static String anomalies(TrafficDataset ds) {
+        var anomalies = AnomalyDetector.detect(ds);
+        long drops = anomalies.anomalies().stream().filter(AnomalyDetector.Anomaly::isDrop).count();
+        var clean = TrafficAggregates.compute(ds, EnumSet.of(TrafficAggregates.Aggregate.PEAK_HOUR), anomalies.flaggedRows());
+        var peakClean = clean.peakHourByAverage();
+
+        Formatter f = new Formatter();
+        f.format("Anomalous rows: %d (%d below expected)%n", anomalies.anomalies().size(), drops);
+        f.format("Peak hour (excluding anomalies):  %02d:00  avg=%.0f%n", peakClean.hour(), peakClean.averageVolume());
+        return f.toString();
+    }
+
+    // Tails behind the averages: percentiles per hour (sketch error <= 1%)
+    static String percentiles(TrafficAggregates agg, VolumeQuantiles quantiles) {
+        var avgByHour = agg.averageVolumeByHour();
+        var percentiles = quantiles.percentilesByHour(VolumeQuantiles.REPORT_QUANTILES);
+
+        Formatter f = new Formatter();
+        f.format("%nVolume percentiles by hour:%n");
+        for (int h : avgByHour.keySet()) {
+            f.format("  %02d:00  mean=%5.0f", h, avgByHour.get(h));
+            percentiles.forEach((label, byHour) -> f.format("  %s=%5.0f", label, byHour.get(h)));
+            f.format("%n");
+        }
+        return f.toString();
+    }
+
+    // Sorted by highest avg volume
+    static String weatherRanking(TrafficAggregates agg) {
+        Formatter f = new Formatter();
+        f.format("%nAverage Volume by weather_main (highest to lowest):%n");
+        sortedByVolume(agg.averageVolumeByWeatherMain())
+                .forEach(e -> f.format("  %-12s  %.0f%n", e.getKey(), e.getValue()));
+        return f.toString();
+    }
+
+    // Empty when there are no Clear hours to compare with
+    static String weatherRelativeToClear(TrafficAggregates agg) {
+        var avgByWeather = agg.averageVolumeByWeatherMain();
+        Double clear = avgByWeather.get("Clear");
+        if (clear == null) return "";
+
+        Formatter f = new Formatter();
+        f.format("%nRelative to Clear (percent change):%n");
+        sortedByVolume(avgByWeather).forEach(e -> {
+            double pct = 100.0 * (e.getValue() - clear) / clear;
+            f.format("  %-12s  %+6.1f%%%n", e.getKey(), pct);
+        });
+        return f.toString();
+    }
+
+    private static List<Map.Entry<String, Double>> sortedByVolume(Map<String, Double> avgByWeather) {
+        return avgByWeather.entrySet().stream()
+                .sorted((a, b) -> Double.compare(b.getValue(), a.getValue()))
+                .toList();
+    }
+
+    // Weather effects holding hour of day and weekday fixed
+    static String regression(List<TrafficRecord> rows) {
+        var fit = WeatherRegression.accumulate(rows).fit();
+
+        Formatter f = new Formatter();
+        f.format("%nWeather regression (n=%d, R^2=%.3f), controlling for hour and weekday:%n",
+                fit.rows(), fit.rSquared());
+        for (String feature : WeatherRegression.WEATHER_FEATURES) {
+            f.format("  %-10s  coef=%+9.3f  se=%8.3f  t=%+7.2f  partial r=%+.3f%n",
+                    feature, fit.coefficient(feature), fit.standardError(feature),
+                    fit.tStatistic(feature), fit.partialCorrelation(feature));
+        }
+        return f.toString();
+    }
+
+    // Next-day forecasts, scored by a daily rolling-origin backtest (4 weeks minimum training)
+    static String backtest(TrafficDataset ds) {
+        TimeSeries hourly = TrafficWindows.hourly(ds);
+        var holidays = ForecastModel.holidaysOf(ds);
+
+        Formatter f = new Formatter();
+        f.format("%nNext-day forecast backtest:%n");
+        for (ForecastModel.Method m : ForecastModel.Method.values()) {
+            var r = ForecastBacktest.run(hourly, holidays, m, 24, 24, 4 * ForecastModel.HOURS_PER_WEEK);
+            f.format("  %-16s  origins=%d  MAE=%.0f  MAPE=%.1f%%%n", m, r.origins(), r.mae(), r.mape());
+        }
+        return f.toString();
+    }
+}
@@ -0,0 +1,437 @@
+package com.traffic.analysis;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Embedded JSON query service on the JDK HttpServer (GET only):
+//
+//   /api/status                 rows, load time, cache counters
+//   /api/metrics                TrafficMetrics in Prometheus text format
+//   /api/hourly-averages        hour -> average volume
+//   /api/peak-hours             overall / weekday / weekend peak hour
+//   /api/weekday-vs-weekend     day type -> average volume
+//   /api/hourly-curves          day type -> hour -> average volume
+//   /api/weather-impact         weather_main -> average volume
+//   /api/range                  count / total / average / by-hour for a selection:
+//                               from, to (ISO date or date-time, to exclusive),
+//                               weather=Rain,Snow  holiday=...  days=weekdays|weekends|MONDAY,...
+//                               hours=17-21 (from-to exclusive, may wrap past midnight)
+//   /api/rollup                 count / average / min / max / std dev per group from the
+//                               RollupCube: by=hour|day|weather|holiday|month|year,
+//                               from, to (year-month, to exclusive), holiday=true|false,
+//                               weather, days and hours as for /api/range
+//
+// Everything but /api/range is answered from the snapshot's RollupCube (the holder's,
+// or one built from the dataset), so it costs a walk over the cube's
+// cells rather than over the rows.
+//
+// Responses are cached (LRU + TTL) by path and query. reload() publishes a new dataset
+// as one immutable snapshot and invalidates the cache; requests in flight finish on
+// the snapshot they started with. A server started on a DatasetHolder reloads whenever
+// the holder does and reports its load metrics under /api/status; close() detaches it.
+//
+// Launch with -Dsun.net.httpserver.nodelay=true: small JSON responses otherwise wait on
+// Nagle + delayed ACK (~40 ms each). It is JVM-wide, so it is left to the launcher.
+public final class TrafficServer implements AutoCloseable {
+
+    // Everything derived from one dataset; built once per reload. version is also the
+    // cache generation its responses are stored under.
+    private static final class Snapshot {
+        final TrafficDataset ds;
+        final long version;
+        final RollupCube cube;
+        final TrafficIndex index;
+        final Instant loadedAt = Instant.now();
+
+        Snapshot(TrafficDataset ds, long version, RollupCube cube) {
+            this.ds = ds;
+            this.version = version;
+            if (cube == null) {
+                cube = RollupCube.build(ds);
+                cube.buildViews();
+            }
+            this.cube = cube;
+            this.index = TrafficIndex.build(ds);
+        }
+    }
+
+    private final HttpServer http;
+    private final ExecutorService workers;
+    private final ResultCache<String, byte[]> cache;
+    private final DatasetHolder holder;
+    private final Consumer<DatasetHolder.Snapshot> listener = this::follow;
+    private volatile Snapshot snapshot;
+
+    // Version of the last DatasetHolder snapshot published; guarded by this
+    private long holderVersion = Long.MIN_VALUE;
+
+    private TrafficServer(Builder b, TrafficDataset ds, DatasetHolder holder) throws IOException {
+        this.holder = holder;
+        this.cache = new ResultCache<>(b.cacheEntries, b.cacheTtl);
+        this.workers = Executors.newFixedThreadPool(b.threads, r -> {
+            Thread t = new Thread(r, "traffic-http");
+            t.setDaemon(true);
+            return t;
+        });
+
+        try {
+            if (holder != null) {
+                // Listen before reading, so a reload in between is not lost; follow() drops
+                // whichever of the two arrives second if it is the older snapshot
+                holder.onReload(listener);
+                follow(holder.current());
+            } else {
+                reload(ds);
+            }
+
+            this.http = HttpServer.create(b.address, b.backlog);
+            http.setExecutor(workers);
+            http.createContext("/api/", this::handle);
+            http.start();
+        } catch (IOException | RuntimeException e) {
+            if (holder != null) holder.removeReloadListener(listener);
+            workers.shutdownNow();
+            throw e;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        private InetSocketAddress address = new InetSocketAddress(8080);
+        private int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        private int backlog = 256;
+        private int cacheEntries = 1024;
+        private Duration cacheTtl = Duration.ofMinutes(5);
+
+        private Builder() {}
+
+        // Port 0 picks a free port (see port())
+        public Builder port(int port) {
+            this.address = new InetSocketAddress(port);
+            return this;
+        }
+
+        public Builder address(InetSocketAddress address) {
+            this.address = address;
+            return this;
+        }
+
+        public Builder threads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        public Builder backlog(int backlog) {
+            this.backlog = backlog;
+            return this;
+        }
+
+        public Builder cache(int maxEntries, Duration ttl) {
+            this.cacheEntries = maxEntries;
+            this.cacheTtl = ttl;
+            return this;
+        }
+
+        public TrafficServer start(TrafficDataset ds) throws IOException {
+            return new TrafficServer(this, ds, null);
+        }
+
+        public TrafficServer start(DatasetHolder holder) throws IOException {
+            return new TrafficServer(this, null, holder);
+        }
+    }
+
+    public int port() {
+        return http.getAddress().getPort();
+    }
+
+    // Swaps in a new dataset; cached responses for the old one are dropped
+    public synchronized void reload(TrafficDataset ds) {
+        reload(ds, null);
+    }
+
+    private synchronized void reload(TrafficDataset ds, RollupCube cube) {
+        Snapshot next = new Snapshot(ds, snapshot == null ? 1 : snapshot.version + 1, cube);
+        snapshot = next;
+        cache.invalidate(next.version);
+    }
+
+    private synchronized void follow(DatasetHolder.Snapshot s) {
+        if (s.version() <= holderVersion) return;
+        holderVersion = s.version();
+        reload(s.dataset(), s.cube());
+    }
+
+    @Override
+    public void close() {
+        if (holder != null) holder.removeReloadListener(listener);
+        http.stop(0);
+        workers.shutdown();
+        try {
+            workers.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /* =======================
+       Request handling
+       ======================= */
+
+    private void handle(HttpExchange ex) throws IOException {
+        try (ex) {
+            if (!ex.getRequestMethod().equals("GET")) {
+                send(ex, 405, error("Only GET is supported"));
+                return;
+            }
+
+            String path = ex.getRequestURI().getPath();
+            String query = ex.getRequestURI().getRawQuery();
+            if (path.equals("/api/status")) {
+                send(ex, 200, Json.write(status()).getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            if (path.equals("/api/metrics")) {
+                ex.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                byte[] text = TrafficMetrics.prometheusText().getBytes(StandardCharsets.UTF_8);
+                ex.sendResponseHeaders(200, text.length);
+                try (OutputStream os = ex.getResponseBody()) {
+                    os.write(text);
+                }
+                return;
+            }
+
+            Snapshot s = snapshot;
+            String key = query == null ? path : path + '?' + query;
+            byte[] body;
+            try {
+                body = cache.get(key, s.version, k -> render(s, path, query));
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                send(ex, 400, error(e.getMessage()));
+                return;
+            }
+            if (body == null) {
+                send(ex, 404, error("Unknown endpoint: " + path));
+                return;
+            }
+            send(ex, 200, body);
+        }
+    }
+
+    // JSON for an analysis endpoint, or null for an unknown path
+    private static byte[] render(Snapshot s, String path, String query) {
+        Object result = switch (path) {
+            case "/api/hourly-averages" -> s.cube.averageVolumeByHour();
+            case "/api/peak-hours" -> peakHours(s.cube);
+            case "/api/weekday-vs-weekend" -> s.cube.averageWeekdayVsWeekend();
+            case "/api/hourly-curves" -> hourlyCurves(s.cube);
+            case "/api/weather-impact" -> s.cube.averageVolumeByWeatherMain();
+            case "/api/range" -> range(s, parseQuery(query));
+            case "/api/rollup" -> rollup(s.cube, parseQuery(query));
+            default -> null;
+        };
+        return result == null ? null : Json.write(result).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, Object> peakHours(RollupCube cube) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("overall", peak(cube.peakHourByAverage(RollupCube.Slice.all())));
+        out.put("weekday", peak(cube.peakHourByAverage(RollupCube.Slice.all().weekdays())));
+        out.put("weekend", peak(cube.peakHourByAverage(RollupCube.Slice.all().weekends())));
+        return out;
+    }
+
+    // Every hour of both day types, 0.0 where a day type has no rows (as in TrafficAnalysis)
+    private static Map<String, Map<Integer, Double>> hourlyCurves(RollupCube cube) {
+        Map<String, Map<Integer, Double>> byDayType = cube.averageVolumeByHourWeekdayVsWeekend();
+        Map<String, Map<Integer, Double>> out = new LinkedHashMap<>();
+        for (String dayType : List.of("Weekday", "Weekend")) {
+            Map<Integer, Double> curve = new TreeMap<>();
+            for (int h = 0; h < 24; h++) curve.put(h, byDayType.get(dayType).getOrDefault(h, 0.0));
+            out.put(dayType, curve);
+        }
+        return out;
+    }
+
+    private static Map<String, Object> peak(TrafficAnalysis.PeakHour p) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("hour", p.hour());
+        out.put("averageVolume", p.averageVolume());
+        return out;
+    }
+
+    private static Map<String, Object> range(Snapshot s, Map<String, String> q) {
+        TrafficFilter f = TrafficFilter.all();
+
+        String from = q.get("from");
+        String to = q.get("to");
+        if (from != null || to != null) {
+            f = f.and(TrafficFilter.between(
+                    from == null ? LocalDateTime.of(1, 1, 1, 0, 0) : parseTime(from),
+                    to == null ? LocalDateTime.of(9999, 1, 1, 0, 0) : parseTime(to)));
+        }
+        if (q.containsKey("weather")) f = f.and(TrafficFilter.weatherMain(q.get("weather").split(",")));
+        if (q.containsKey("holiday")) f = f.and(TrafficFilter.holiday(q.get("holiday").split(",")));
+        if (q.containsKey("days")) f = f.and(days(q.get("days")));
+        if (q.containsKey("hours")) {
+            int[] h = hourRange(q.get("hours"));
+            f = f.and(TrafficFilter.hours(h[0], h[1]));
+        }
+
+        TrafficIndex.Selection sel = s.index.select(f);
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("count", sel.count());
+        out.put("totalVolume", sel.totalVolume());
+        out.put("averageVolume", sel.averageVolume());
+        out.put("averageVolumeByHour", sel.averageVolumeByHour());
+        return out;
+    }
+
+    private static Map<String, Object> rollup(RollupCube cube, Map<String, String> q) {
+        RollupCube.Slice slice = RollupCube.Slice.all();
+
+        String from = q.get("from");
+        String to = q.get("to");
+        if (from != null || to != null) {
+            slice = slice.months(
+                    from == null ? YearMonth.of(1, 1) : YearMonth.parse(from),
+                    to == null ? YearMonth.of(9999, 1) : YearMonth.parse(to));
+        }
+        if (q.containsKey("weather")) slice = slice.weatherMain(q.get("weather").split(","));
+        if (q.containsKey("holiday")) {
+            String h = q.get("holiday");
+            if (!h.equals("true") && !h.equals("false")) throw new IllegalArgumentException("holiday must be true or false");
+            slice = slice.holiday(h.equals("true"));
+        }
+        if (q.containsKey("days")) {
+            String d = q.get("days");
+            if (d.equalsIgnoreCase("weekdays")) slice = slice.weekdays();
+            else if (d.equalsIgnoreCase("weekends")) slice = slice.weekends();
+            else slice = slice.days(dayList(d));
+        }
+        if (q.containsKey("hours")) {
+            int[] h = hourRange(q.get("hours"));
+            slice = slice.hours(h[0], h[1]);
+        }
+
+        Map<?, RollupCube.Stats> groups = switch (q.getOrDefault("by", "hour")) {
+            case "hour" -> cube.byHour(slice);
+            case "day" -> cube.byDayOfWeek(slice);
+            case "weather" -> cube.byWeatherMain(slice);
+            case "holiday" -> cube.byHoliday(slice);
+            case "month" -> cube.byYearMonth(slice);
+            case "year" -> cube.byYear(slice);
+            default -> throw new IllegalArgumentException("by must be one of hour, day, weather, holiday, month, year");
+        };
+
+        Map<String, Object> byGroup = new LinkedHashMap<>();
+        groups.forEach((k, st) -> byGroup.put(String.valueOf(k), stats(st)));
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("total", stats(cube.total(slice)));
+        out.put("groups", byGroup);
+        return out;
+    }
+
+    private static Map<String, Object> stats(RollupCube.Stats st) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("count", st.count());
+        out.put("averageVolume", st.mean());
+        out.put("minVolume", st.count() == 0 ? null : st.min());
+        out.put("maxVolume", st.count() == 0 ? null : st.max());
+        out.put("stdDev", st.stdDev());
+        return out;
+    }
+
+    private static TrafficFilter days(String spec) {
+        if (spec.equalsIgnoreCase("weekdays")) return TrafficFilter.weekdays();
+        if (spec.equalsIgnoreCase("weekends")) return TrafficFilter.weekends();
+        return TrafficFilter.dayOfWeek(dayList(spec));
+    }
+
+    private static DayOfWeek[] dayList(String spec) {
+        List<DayOfWeek> days = new ArrayList<>();
+        for (String d : spec.split(",")) days.add(DayOfWeek.valueOf(d.trim().toUpperCase()));
+        return days.toArray(new DayOfWeek[0]);
+    }
+
+    // "17-21" -> {17, 21}
+    private static int[] hourRange(String spec) {
+        String[] h = spec.split("-");
+        if (h.length != 2) throw new IllegalArgumentException("hours must look like 17-21");
+        return new int[]{Integer.parseInt(h[0].trim()), Integer.parseInt(h[1].trim())};
+    }
+
+    private static LocalDateTime parseTime(String s) {
+        return s.length() == 10 ? LocalDate.parse(s).atStartOfDay() : LocalDateTime.parse(s);
+    }
+
+    private static Map<String, String> parseQuery(String raw) {
+        Map<String, String> out = new HashMap<>();
+        if (raw == null || raw.isEmpty()) return out;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String k = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String v = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            out.put(k, v);
+        }
+        return out;
+    }
+
+    private Map<String, Object> status() {
+        Snapshot s = snapshot;
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("rows", s.ds.size());
+        out.put("loadedAt", s.loadedAt.toString());
+        out.put("cacheEntries", cache.size());
+        out.put("cacheHits", cache.hits());
+        out.put("cacheMisses", cache.misses());
+        if (holder != null) {
+            DatasetHolder.Metrics m = holder.metrics();
+            out.put("source", holder.source().toString());
+            out.put("version", m.version());
+            out.put("reloads", m.reloads());
+            out.put("failedReloads", m.failedReloads());
+            out.put("lastLoadMillis", m.lastLoadDuration().toMillis());
+            out.put("lastError", m.lastError());
+        }
+        return out;
+    }
+
+    private static byte[] error(String message) {
+        return Json.write(Map.of("error", String.valueOf(message))).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void send(HttpExchange ex, int status, byte[] body) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(status, body.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(body);
+        }
+    }
+}
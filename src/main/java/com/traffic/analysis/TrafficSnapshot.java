@@ -0,0 +1,358 @@
+package com.traffic.analysis;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+// Binary snapshot of loaded records: fixed-width columns plus a string dictionary
+// for the holiday / weather text, stamped with the size, mtime and CRC32C of the
+// CSV it was built from. Layout (big-endian):
+//
+//   int magic, int version, long sourceSize, long sourceMtimeMillis, int sourceCrc,
+//   int rowCount, int crc (CRC32C of the header fields before it, then the payload)
+//   payload: 3 dictionaries (int count, then int byteLength (-1 = null) + UTF-8 bytes each),
+//            int[] epochMinutes, int[] volume, double[] temp, double[] rain, double[] snow,
+//            int[] clouds, short[] holiday, short[] weatherMain, short[] weatherDescription
+public final class TrafficSnapshot {
+
+    private static final int MAGIC = 0x54565331; // "TVS1"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 4 + 4 + 4;
+
+    // What the snapshot knows about its source CSV
+    public record SourceStamp(long size, long mtimeMillis, int crc) {}
+
+    private TrafficSnapshot() {}
+
+    /* =======================
+       Source stamps
+       ======================= */
+
+    public static SourceStamp stampOf(Path csvPath) throws IOException {
+        long size = Files.size(csvPath);
+        long mtime = Files.getLastModifiedTime(csvPath).toMillis();
+        return new SourceStamp(size, mtime, crcOf(csvPath));
+    }
+
+    // Stored stamp of an existing snapshot, or null if it is missing or not a readable snapshot
+    public static SourceStamp readStamp(Path snapshotPath) throws IOException {
+        if (!Files.exists(snapshotPath)) return null;
+        try (FileChannel ch = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            if (ch.size() < HEADER_BYTES) return null;
+            ByteBuffer head = ByteBuffer.allocate(HEADER_BYTES);
+            ch.read(head, 0);
+            head.flip();
+            if (head.getInt() != MAGIC || head.getInt() != VERSION) return null;
+            return new SourceStamp(head.getLong(), head.getLong(), head.getInt());
+        }
+    }
+
+    // True when the snapshot was built from the CSV as it is now. Size and mtime are
+    // checked first; when only the mtime moved, the content CRC decides.
+    public static boolean isCurrent(Path snapshotPath, Path csvPath) throws IOException {
+        SourceStamp stored = readStamp(snapshotPath);
+        return stored != null && matches(stored, csvPath);
+    }
+
+    // Same check for a stamp stored elsewhere (e.g. in a RollupCube file)
+    static boolean matches(SourceStamp stored, Path csvPath) throws IOException {
+        long size = Files.size(csvPath);
+        if (stored.size() != size) return false;
+
+        long mtime = Files.getLastModifiedTime(csvPath).toMillis();
+        if (stored.mtimeMillis() == mtime) return true;
+
+        return stored.crc() == crcOf(csvPath);
+    }
+
+    // True when the CSV is the stamped file with whole lines appended: it is longer, the
+    // stamped length ends on a newline and those bytes still have the stamped CRC
+    static boolean isAppendOf(SourceStamp stored, Path csvPath) throws IOException {
+        if (stored.size() == 0 || Files.size(csvPath) <= stored.size()) return false;
+        try (FileChannel ch = FileChannel.open(csvPath, StandardOpenOption.READ)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            ch.read(last, stored.size() - 1);
+            if (last.get(0) != '\n') return false;
+        }
+        return stored.crc() == crcOf(csvPath, stored.size());
+    }
+
+    private static int crcOf(Path file) throws IOException {
+        return crcOf(file, Long.MAX_VALUE);
+    }
+
+    // CRC32C of the first length bytes (all of them when the file is shorter)
+    private static int crcOf(Path file, long length) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = Math.min(ch.size(), length);
+            long pos = 0;
+            while (pos < size) {
+                long len = Math.min(Integer.MAX_VALUE, size - pos);
+                crc.update(ch.map(FileChannel.MapMode.READ_ONLY, pos, len));
+                pos += len;
+            }
+        }
+        return (int) crc.getValue();
+    }
+
+    /* =======================
+       Write
+       ======================= */
+
+    public static void write(List<TrafficRecord> rows, SourceStamp source, Path snapshotPath)
+            throws IOException {
+        int n = rows.size();
+
+        Dict holidays = new Dict();
+        Dict mains = new Dict();
+        Dict descriptions = new Dict();
+        short[] holidayCodes = new short[n];
+        short[] mainCodes = new short[n];
+        short[] descriptionCodes = new short[n];
+        for (int i = 0; i < n; i++) {
+            TrafficRecord r = rows.get(i);
+            holidayCodes[i] = holidays.code(r.holiday());
+            mainCodes[i] = mains.code(r.weatherMain());
+            descriptionCodes[i] = descriptions.code(r.weatherDescription());
+        }
+
+        long payloadBytes = holidays.bytes() + mains.bytes() + descriptions.bytes()
+                + (long) n * (4 + 4 + 8 + 8 + 8 + 4 + 2 + 2 + 2);
+        if (HEADER_BYTES + payloadBytes > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot would exceed 2 GB (" + n + " rows)");
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate((int) (HEADER_BYTES + payloadBytes));
+        buf.position(HEADER_BYTES);
+
+        holidays.writeTo(buf);
+        mains.writeTo(buf);
+        descriptions.writeTo(buf);
+
+        for (TrafficRecord r : rows) buf.putInt(epochMinute(r.dateTime()));
+        for (TrafficRecord r : rows) buf.putInt(r.trafficVolume());
+        for (TrafficRecord r : rows) buf.putDouble(r.tempK());
+        for (TrafficRecord r : rows) buf.putDouble(r.rain1hMm());
+        for (TrafficRecord r : rows) buf.putDouble(r.snow1hMm());
+        for (TrafficRecord r : rows) buf.putInt(r.cloudsAllPct());
+        for (short c : holidayCodes) buf.putShort(c);
+        for (short c : mainCodes) buf.putShort(c);
+        for (short c : descriptionCodes) buf.putShort(c);
+
+        int end = buf.position();
+        buf.position(0);
+        buf.putInt(MAGIC)
+                .putInt(VERSION)
+                .putLong(source.size())
+                .putLong(source.mtimeMillis())
+                .putInt(source.crc())
+                .putInt(n);
+
+        // The checksum covers the header fields before it as well as the payload
+        CRC32C crc = new CRC32C();
+        crc.update(buf.array(), 0, HEADER_BYTES - 4);
+        crc.update(buf.array(), HEADER_BYTES, end - HEADER_BYTES);
+        buf.putInt((int) crc.getValue());
+
+        // Write beside the target and move into place so readers never see a partial file
+        Path dir = snapshotPath.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, snapshotPath.getFileName().toString(), ".tmp");
+        try {
+            Files.write(tmp, buf.array());
+            Files.move(tmp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /* =======================
+       Read
+       ======================= */
+
+    public static List<TrafficRecord> read(Path snapshotPath) throws IOException {
+        TrafficMetrics.LoadEvent ev = TrafficMetrics.startLoad("snapshot", snapshotPath);
+        Columns c = readColumns(snapshotPath);
+        List<TrafficRecord> out = new ArrayList<>(c.rows);
+        for (int i = 0; i < c.rows; i++) {
+            out.add(new TrafficRecord(
+                    c.holidays[c.holidayCodes[i]],
+                    c.temp[i],
+                    c.rain[i],
+                    c.snow[i],
+                    c.clouds[i],
+                    c.mains[c.mainCodes[i]],
+                    c.descriptions[c.descriptionCodes[i]],
+                    dateTimeOf(c.epochMinutes[i]),
+                    c.volumes[i]
+            ));
+        }
+        TrafficMetrics.endLoad(ev, out.size());
+        return out;
+    }
+
+    // Builds the columnar form straight from the snapshot columns, without records
+    public static TrafficDataset readDataset(Path snapshotPath) throws IOException {
+        TrafficMetrics.LoadEvent ev = TrafficMetrics.startLoad("snapshot-dataset", snapshotPath);
+        Columns c = readColumns(snapshotPath);
+        TrafficDataset.Builder b = TrafficDataset.builder();
+        for (int i = 0; i < c.rows; i++) {
+            b.add(Math.floorDiv(c.epochMinutes[i], 60), c.volumes[i], c.temp[i], c.rain[i], c.snow[i],
+                    c.clouds[i], c.holidays[c.holidayCodes[i]], c.mains[c.mainCodes[i]],
+                    c.descriptions[c.descriptionCodes[i]]);
+        }
+        TrafficDataset ds = b.build();
+        TrafficMetrics.endLoad(ev, ds.size());
+        return ds;
+    }
+
+    private static Columns readColumns(Path snapshotPath) throws IOException {
+        try (FileChannel ch = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a traffic snapshot: " + snapshotPath);
+            }
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            if (buf.getInt() != MAGIC) throw new IOException("Not a traffic snapshot: " + snapshotPath);
+            int version = buf.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + ": " + snapshotPath);
+            }
+            buf.position(buf.position() + 8 + 8 + 4);
+            int n = buf.getInt();
+            int expectedCrc = buf.getInt();
+
+            CRC32C crc = new CRC32C();
+            crc.update(buf.duplicate().position(0).limit(HEADER_BYTES - 4));
+            crc.update(buf.duplicate());
+            if ((int) crc.getValue() != expectedCrc) {
+                throw new IOException("Snapshot checksum mismatch: " + snapshotPath);
+            }
+
+            Columns c = new Columns(n);
+            c.holidays = Dict.readFrom(buf);
+            c.mains = Dict.readFrom(buf);
+            c.descriptions = Dict.readFrom(buf);
+
+            buf.asIntBuffer().get(c.epochMinutes);
+            buf.position(buf.position() + n * 4);
+            buf.asIntBuffer().get(c.volumes);
+            buf.position(buf.position() + n * 4);
+            buf.asDoubleBuffer().get(c.temp);
+            buf.position(buf.position() + n * 8);
+            buf.asDoubleBuffer().get(c.rain);
+            buf.position(buf.position() + n * 8);
+            buf.asDoubleBuffer().get(c.snow);
+            buf.position(buf.position() + n * 8);
+            buf.asIntBuffer().get(c.clouds);
+            buf.position(buf.position() + n * 4);
+            buf.asShortBuffer().get(c.holidayCodes);
+            buf.position(buf.position() + n * 2);
+            buf.asShortBuffer().get(c.mainCodes);
+            buf.position(buf.position() + n * 2);
+            buf.asShortBuffer().get(c.descriptionCodes);
+            return c;
+        } catch (RuntimeException e) {
+            // Truncated or inconsistent payload that still passed the magic check
+            throw new IOException("Corrupt traffic snapshot: " + snapshotPath, e);
+        }
+    }
+
+    private static int epochMinute(LocalDateTime dt) {
+        return Math.toIntExact(dt.toEpochSecond(ZoneOffset.UTC) / 60);
+    }
+
+    private static LocalDateTime dateTimeOf(int epochMinute) {
+        return LocalDateTime.ofEpochSecond(epochMinute * 60L, 0, ZoneOffset.UTC);
+    }
+
+    private static final class Columns {
+        final int rows;
+        final int[] epochMinutes;
+        final int[] volumes;
+        final double[] temp;
+        final double[] rain;
+        final double[] snow;
+        final int[] clouds;
+        final short[] holidayCodes;
+        final short[] mainCodes;
+        final short[] descriptionCodes;
+        String[] holidays;
+        String[] mains;
+        String[] descriptions;
+
+        Columns(int n) {
+            rows = n;
+            epochMinutes = new int[n];
+            volumes = new int[n];
+            temp = new double[n];
+            rain = new double[n];
+            snow = new double[n];
+            clouds = new int[n];
+            holidayCodes = new short[n];
+            mainCodes = new short[n];
+            descriptionCodes = new short[n];
+        }
+    }
+
+    // String dictionary with first-seen codes; null is stored as its own entry
+    private static final class Dict {
+        private final Map<String, Short> codes = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+        private final List<byte[]> encoded = new ArrayList<>();
+
+        short code(String value) {
+            Short c = codes.get(value);
+            if (c != null) return c;
+            if (names.size() > Short.MAX_VALUE) {
+                throw new IllegalStateException("Too many distinct values for a snapshot dictionary");
+            }
+            short next = (short) names.size();
+            codes.put(value, next);
+            names.add(value);
+            encoded.add(value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+            return next;
+        }
+
+        long bytes() {
+            long total = 4;
+            for (byte[] b : encoded) total += 4 + (b == null ? 0 : b.length);
+            return total;
+        }
+
+        void writeTo(ByteBuffer buf) {
+            buf.putInt(encoded.size());
+            for (byte[] b : encoded) {
+                buf.putInt(b == null ? -1 : b.length);
+                if (b != null) buf.put(b);
+            }
+        }
+
+        static String[] readFrom(ByteBuffer buf) {
+            String[] out = new String[buf.getInt()];
+            for (int i = 0; i < out.length; i++) {
+                int len = buf.getInt();
+                if (len < 0) continue;
+                byte[] b = new byte[len];
+                buf.get(b);
+                out[i] = new String(b, StandardCharsets.UTF_8);
+            }
+            return out;
+        }
+    }
+}
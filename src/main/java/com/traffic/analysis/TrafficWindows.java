@@ -0,0 +1,218 @@
+package com.traffic.analysis;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Time-windowed views of the traffic data. Everything starts from an hourly series
+// in which duplicate timestamps (the source repeats an hour once per weather
+// description) are collapsed to their mean and missing hours are NaN. Rolling
+// windows then cost O(1) per step via prefix sums or a monotonic deque.
+public class TrafficWindows {
+
+    /* =======================
+       Hourly series
+       ======================= */
+
+    public static TimeSeries hourly(TrafficDataset ds) {
+        return hourly(ds.epochHourColumn(), ds.volumeColumn(), ds.size());
+    }
+
+    public static TimeSeries hourly(List<TrafficRecord> rows) {
+        int[] hours = new int[rows.size()];
+        int[] volumes = new int[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            TrafficRecord r = rows.get(i);
+            hours[i] = TrafficDataset.epochHour(r.dateTime());
+            volumes[i] = r.trafficVolume();
+        }
+        return hourly(hours, volumes, rows.size());
+    }
+
+    private static TimeSeries hourly(int[] hours, int[] volumes, int n) {
+        if (n == 0) return new TimeSeries(0, 1, new double[0]);
+
+        int first = Integer.MAX_VALUE;
+        int last = Integer.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            first = Math.min(first, hours[i]);
+            last = Math.max(last, hours[i]);
+        }
+
+        int len = last - first + 1;
+        long[] sum = new long[len];
+        int[] count = new int[len];
+        for (int i = 0; i < n; i++) {
+            int k = hours[i] - first;
+            sum[k] += volumes[i];
+            count[k]++;
+        }
+
+        double[] values = new double[len];
+        for (int k = 0; k < len; k++) {
+            values[k] = count[k] == 0 ? Double.NaN : (double) sum[k] / count[k];
+        }
+        return new TimeSeries(first, 1, values);
+    }
+
+    /* =======================
+       Sliding windows
+       ======================= */
+
+    public static TimeSeries rolling24HourMean(TimeSeries hourly) {
+        return rollingMean(hourly, 24);
+    }
+
+    public static TimeSeries rolling7DayMean(TimeSeries hourly) {
+        return rollingMean(hourly, 24 * 7);
+    }
+
+    // Mean of the observed points in the trailing window (t - window, t]; NaN when
+    // the whole window is a gap.
+    public static TimeSeries rollingMean(TimeSeries series, int window) {
+        if (window < 1) throw new IllegalArgumentException("window must be >= 1");
+
+        double[] v = series.values();
+        int n = v.length;
+
+        double[] prefixSum = new double[n + 1];
+        int[] prefixCount = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            boolean observed = !Double.isNaN(v[i]);
+            prefixSum[i + 1] = prefixSum[i] + (observed ? v[i] : 0.0);
+            prefixCount[i + 1] = prefixCount[i] + (observed ? 1 : 0);
+        }
+
+        double[] out = new double[n];
+        for (int i = 0; i < n; i++) {
+            int from = Math.max(0, i + 1 - window);
+            int c = prefixCount[i + 1] - prefixCount[from];
+            out[i] = c == 0 ? Double.NaN : (prefixSum[i + 1] - prefixSum[from]) / c;
+        }
+        return new TimeSeries(series.startEpochHour(), series.strideHours(), out);
+    }
+
+    // Maximum of the observed points in the trailing window, kept with a monotonic
+    // deque of indices so each step is amortized O(1).
+    public static TimeSeries rollingMax(TimeSeries series, int window) {
+        if (window < 1) throw new IllegalArgumentException("window must be >= 1");
+
+        double[] v = series.values();
+        int n = v.length;
+        int[] deque = new int[n];
+        int head = 0;
+        int tail = 0;
+
+        double[] out = new double[n];
+        for (int i = 0; i < n; i++) {
+            if (!Double.isNaN(v[i])) {
+                while (tail > head && v[deque[tail - 1]] <= v[i]) tail--;
+                deque[tail++] = i;
+            }
+            while (tail > head && deque[head] <= i - window) head++;
+            out[i] = tail > head ? v[deque[head]] : Double.NaN;
+        }
+        return new TimeSeries(series.startEpochHour(), series.strideHours(), out);
+    }
+
+    /* =======================
+       Tumbling windows
+       ======================= */
+
+    // Total volume per calendar day (buckets start at 00:00)
+    public static TimeSeries dailyTotals(TimeSeries hourly) {
+        int start = Math.floorDiv(hourly.startEpochHour(), 24) * 24;
+        return totals(hourly, start, 24);
+    }
+
+    // Total volume per ISO week (buckets start Monday 00:00)
+    public static TimeSeries weeklyTotals(TimeSeries hourly) {
+        int day = Math.floorDiv(hourly.startEpochHour(), 24);
+        int monday = day - TrafficDataset.dayOfWeekIndex(day * 24);
+        return totals(hourly, monday * 24, 24 * 7);
+    }
+
+    // Sums the observed hours of each bucket; buckets that are entirely gap are NaN.
+    // Partially observed buckets are summed as-is, so compare them with coverage().
+    private static TimeSeries totals(TimeSeries hourly, int alignedStart, int stride) {
+        requireHourly(hourly);
+        double[] v = hourly.values();
+        int offset = hourly.startEpochHour() - alignedStart;
+        int buckets = v.length == 0 ? 0 : (offset + v.length - 1) / stride + 1;
+
+        double[] out = new double[buckets];
+        Arrays.fill(out, Double.NaN);
+        for (int i = 0; i < v.length; i++) {
+            if (Double.isNaN(v[i])) continue;
+            int b = (offset + i) / stride;
+            out[b] = Double.isNaN(out[b]) ? v[i] : out[b] + v[i];
+        }
+        return new TimeSeries(alignedStart, stride, out);
+    }
+
+    // Fraction of hours observed in each bucket of a daily or weekly totals series
+    public static TimeSeries coverage(TimeSeries hourly, TimeSeries totals) {
+        requireHourly(hourly);
+        double[] v = hourly.values();
+        int stride = totals.strideHours();
+        int offset = hourly.startEpochHour() - totals.startEpochHour();
+
+        int[] observed = new int[totals.size()];
+        for (int i = 0; i < v.length; i++) {
+            if (!Double.isNaN(v[i])) observed[(offset + i) / stride]++;
+        }
+
+        double[] out = new double[observed.length];
+        for (int b = 0; b < out.length; b++) out[b] = (double) observed[b] / stride;
+        return new TimeSeries(totals.startEpochHour(), stride, out);
+    }
+
+    /* =======================
+       Per-month profiles
+       ======================= */
+
+    // Year-month -> (hour -> average volume) over the de-duplicated hourly series
+    public static Map<YearMonth, Map<Integer, Double>> monthlyHourProfiles(TimeSeries hourly) {
+        requireHourly(hourly);
+        Map<YearMonth, Map<Integer, Double>> out = new TreeMap<>();
+
+        double[] v = hourly.values();
+        int i = 0;
+        while (i < v.length) {
+            int eh = hourly.epochHourAt(i);
+            LocalDate date = LocalDate.ofEpochDay(Math.floorDiv(eh, 24));
+            YearMonth month = YearMonth.from(date);
+
+            // Hours until the first hour of the next month
+            int monthEndHour = Math.toIntExact(month.plusMonths(1).atDay(1).toEpochDay() * 24);
+            int end = Math.min(v.length, i + (monthEndHour - eh));
+
+            double[] sum = new double[24];
+            int[] count = new int[24];
+            for (int k = i; k < end; k++) {
+                if (Double.isNaN(v[k])) continue;
+                int h = TrafficDataset.hourOf(hourly.epochHourAt(k));
+                sum[h] += v[k];
+                count[h]++;
+            }
+
+            Map<Integer, Double> profile = new TreeMap<>();
+            for (int h = 0; h < 24; h++) {
+                if (count[h] > 0) profile.put(h, sum[h] / count[h]);
+            }
+            if (!profile.isEmpty()) out.put(month, profile);
+
+            i = end;
+        }
+        return out;
+    }
+
+    private static void requireHourly(TimeSeries s) {
+        if (s.strideHours() != 1) {
+            throw new IllegalArgumentException("Expected an hourly series, got stride " + s.strideHours());
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.traffic.analysis;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.Arrays;
+
+// jdk.incubator.vector versions of the AggregationKernels loops; only loaded when
+// AggregationKernels.VECTOR is set, so the module is needed only then.
+//
+// The columns are in time order, so one vector of consecutive rows holds as many
+// distinct hours as it has lanes; reducing it once per key it contains costs more than
+// the scalar loop. Two layouts avoid that:
+//  - up to SWEEP_GROUPS groups (a filtered aggregate is one), each block of rows is
+//    swept once per group, with lane-wise accumulators under the group's mask that are
+//    reduced once per block;
+//  - wider groupings (hour x day type, weather) keep one accumulator slot per group and
+//    lane, updated by gather / scatter at group * lanes + lane. No two lanes of a
+//    vector share a slot, so repeated keys within a vector cannot lose an update, and
+//    the lanes are folded together once at the end.
+final class VectorAggregationKernels {
+
+    // Above this many groups a sweep per group costs more than the per-lane slots
+    static final int SWEEP_GROUPS = 8;
+
+    // At least 256 bits, so one vector's keys still fill a 64-bit byte vector
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED.vectorBitSize() >= 256
+            ? IntVector.SPECIES_PREFERRED : IntVector.SPECIES_256;
+    private static final VectorSpecies<Float> FLOATS = VectorSpecies.of(float.class, INTS.vectorShape());
+
+    // Key bytes for one vector of ints or floats
+    private static final VectorSpecies<Byte> KEYS =
+            VectorSpecies.of(byte.class, VectorShape.forBitSize(INTS.vectorBitSize() / 4));
+
+    // Rows per sweep; small enough that a block's keys and values stay in L1/L2
+    private static final int BLOCK = 4096;
+
+    private VectorAggregationKernels() {}
+
+    static void groupInts(byte[] keys, int[] values, int from, int to, AggregationKernels.IntGroups out) {
+        if (out.groups() <= SWEEP_GROUPS) {
+            sweepInts(keys, values, from, to, out);
+        } else {
+            slotInts(keys, values, from, to, out);
+        }
+    }
+
+    static void groupFloats(byte[] keys, float[] values, int from, int to, AggregationKernels.FloatGroups out) {
+        if (out.groups() <= SWEEP_GROUPS) {
+            sweepFloats(keys, values, from, to, out);
+        } else {
+            slotFloats(keys, values, from, to, out);
+        }
+    }
+
+    /* =======================
+       One masked sweep per group
+       ======================= */
+
+    private static void sweepInts(byte[] keys, int[] values, int from, int to, AggregationKernels.IntGroups out) {
+        int groups = out.groups();
+        int lanes = INTS.length();
+        int upper = from + INTS.loopBound(to - from);
+
+        // Each lane adds at most BLOCK / lanes values before the block is reduced; the
+        // lanes are then added up as longs (reduceLanesToLong adds them in int first)
+        int safe = Integer.MAX_VALUE / (BLOCK / lanes);
+        int[] laneSums = new int[lanes];
+
+        IntVector zero = IntVector.zero(INTS);
+        IntVector maxInt = IntVector.broadcast(INTS, Integer.MAX_VALUE);
+        IntVector minInt = IntVector.broadcast(INTS, Integer.MIN_VALUE);
+
+        for (int i = from; i < upper; ) {
+            int blockEnd = Math.min(upper, i + BLOCK);
+            if (!fitsLaneSums(values, i, blockEnd, safe)) {
+                AggregationKernels.groupIntsScalar(keys, values, i, blockEnd, out);
+                i = blockEnd;
+                continue;
+            }
+
+            for (int g = 0; g < groups; g++) {
+                IntVector sum = zero;
+                IntVector lo = maxInt;
+                IntVector hi = minInt;
+                long count = 0;
+                for (int j = i; j < blockEnd; j += lanes) {
+                    IntVector k = (IntVector) ByteVector.fromArray(KEYS, keys, j).castShape(INTS, 0);
+                    VectorMask<Integer> m = k.compare(VectorOperators.EQ, g);
+                    IntVector v = IntVector.fromArray(INTS, values, j);
+                    count += m.trueCount();
+                    sum = sum.add(v, m);
+                    lo = lo.lanewise(VectorOperators.MIN, v, m);
+                    hi = hi.lanewise(VectorOperators.MAX, v, m);
+                }
+                if (count == 0) continue;
+                out.count[g] += count;
+                sum.intoArray(laneSums, 0);
+                for (int s : laneSums) out.sum[g] += s;
+                out.min[g] = Math.min(out.min[g], lo.reduceLanes(VectorOperators.MIN));
+                out.max[g] = Math.max(out.max[g], hi.reduceLanes(VectorOperators.MAX));
+            }
+            i = blockEnd;
+        }
+        AggregationKernels.groupIntsScalar(keys, values, upper, to, out);
+    }
+
+    private static void sweepFloats(byte[] keys, float[] values, int from, int to, AggregationKernels.FloatGroups out) {
+        int groups = out.groups();
+        int lanes = FLOATS.length();
+        int upper = from + FLOATS.loopBound(to - from);
+
+        FloatVector posInf = FloatVector.broadcast(FLOATS, Float.POSITIVE_INFINITY);
+        FloatVector negInf = FloatVector.broadcast(FLOATS, Float.NEGATIVE_INFINITY);
+
+        for (int i = from; i < upper; i += BLOCK) {
+            int blockEnd = Math.min(upper, i + BLOCK);
+            for (int g = 0; g < groups; g++) {
+                FloatVector lo = posInf;
+                FloatVector hi = negInf;
+                long count = 0;
+                for (int j = i; j < blockEnd; j += lanes) {
+                    IntVector k = (IntVector) ByteVector.fromArray(KEYS, keys, j).castShape(INTS, 0);
+                    VectorMask<Integer> m = k.compare(VectorOperators.EQ, g);
+                    FloatVector v = FloatVector.fromArray(FLOATS, values, j);
+                    VectorMask<Float> fm = m.cast(FLOATS);
+                    count += m.trueCount();
+                    lo = lo.lanewise(VectorOperators.MIN, v, fm);
+                    hi = hi.lanewise(VectorOperators.MAX, v, fm);
+                }
+                if (count == 0) continue;
+                out.count[g] += count;
+                out.min[g] = Math.min(out.min[g], lo.reduceLanes(VectorOperators.MIN));
+                out.max[g] = Math.max(out.max[g], hi.reduceLanes(VectorOperators.MAX));
+            }
+        }
+        AggregationKernels.groupFloatsScalar(keys, values, upper, to, out);
+    }
+
+    /* =======================
+       One slot per group and lane
+       ======================= */
+
+    private static void slotInts(byte[] keys, int[] values, int from, int to, AggregationKernels.IntGroups out) {
+        int groups = out.groups();
+        int lanes = INTS.length();
+        int upper = from + INTS.loopBound(to - from);
+        int safe = Integer.MAX_VALUE / (BLOCK / lanes);
+
+        // Slots of group `groups` take the rows whose key is out of range
+        int slots = (groups + 1) * lanes;
+        int[] count = new int[slots];
+        int[] sum = new int[slots];
+        int[] lo = new int[slots];
+        int[] hi = new int[slots];
+        Arrays.fill(lo, Integer.MAX_VALUE);
+        Arrays.fill(hi, Integer.MIN_VALUE);
+        int[] index = new int[lanes];
+        IntVector lane = IntVector.zero(INTS).addIndex(1);
+
+        for (int i = from; i < upper; ) {
+            int blockEnd = Math.min(upper, i + BLOCK);
+            if (!fitsLaneSums(values, i, blockEnd, safe)) {
+                AggregationKernels.groupIntsScalar(keys, values, i, blockEnd, out);
+                i = blockEnd;
+                continue;
+            }
+
+            for (int j = i; j < blockEnd; j += lanes) {
+                slotIndex(keys, j, groups, lane).intoArray(index, 0);
+                IntVector v = IntVector.fromArray(INTS, values, j);
+                IntVector.fromArray(INTS, count, 0, index, 0).add(1).intoArray(count, 0, index, 0);
+                IntVector.fromArray(INTS, sum, 0, index, 0).add(v).intoArray(sum, 0, index, 0);
+                IntVector.fromArray(INTS, lo, 0, index, 0).min(v).intoArray(lo, 0, index, 0);
+                IntVector.fromArray(INTS, hi, 0, index, 0).max(v).intoArray(hi, 0, index, 0);
+            }
+
+            // Each slot took at most BLOCK / lanes values; move the sums into the longs
+            for (int s = 0; s < groups * lanes; s++) {
+                out.sum[s / lanes] += sum[s];
+                sum[s] = 0;
+            }
+            i = blockEnd;
+        }
+
+        for (int s = 0; s < groups * lanes; s++) {
+            int g = s / lanes;
+            out.count[g] += count[s];
+            out.min[g] = Math.min(out.min[g], lo[s]);
+            out.max[g] = Math.max(out.max[g], hi[s]);
+        }
+        AggregationKernels.groupIntsScalar(keys, values, upper, to, out);
+    }
+
+    private static void slotFloats(byte[] keys, float[] values, int from, int to, AggregationKernels.FloatGroups out) {
+        int groups = out.groups();
+        int lanes = FLOATS.length();
+        int upper = from + FLOATS.loopBound(to - from);
+
+        int slots = (groups + 1) * lanes;
+        int[] count = new int[slots];
+        float[] lo = new float[slots];
+        float[] hi = new float[slots];
+        Arrays.fill(lo, Float.POSITIVE_INFINITY);
+        Arrays.fill(hi, Float.NEGATIVE_INFINITY);
+        int[] index = new int[lanes];
+        IntVector lane = IntVector.zero(INTS).addIndex(1);
+
+        for (int j = from; j < upper; j += lanes) {
+            slotIndex(keys, j, groups, lane).intoArray(index, 0);
+            FloatVector v = FloatVector.fromArray(FLOATS, values, j);
+            IntVector.fromArray(INTS, count, 0, index, 0).add(1).intoArray(count, 0, index, 0);
+            FloatVector.fromArray(FLOATS, lo, 0, index, 0).min(v).intoArray(lo, 0, index, 0);
+            FloatVector.fromArray(FLOATS, hi, 0, index, 0).max(v).intoArray(hi, 0, index, 0);
+        }
+
+        for (int s = 0; s < groups * lanes; s++) {
+            int g = s / lanes;
+            out.count[g] += count[s];
+            out.min[g] = Math.min(out.min[g], lo[s]);
+            out.max[g] = Math.max(out.max[g], hi[s]);
+        }
+        AggregationKernels.groupFloatsScalar(keys, values, upper, to, out);
+    }
+
+    // group * lanes + lane for one vector of keys, out-of-range keys to group `groups`
+    private static IntVector slotIndex(byte[] keys, int i, int groups, IntVector lane) {
+        IntVector k = (IntVector) ByteVector.fromArray(KEYS, keys, i).castShape(INTS, 0);
+        VectorMask<Integer> outside = k.compare(VectorOperators.LT, 0).or(k.compare(VectorOperators.GE, groups));
+        return k.blend(groups, outside).mul(lane.length()).add(lane);
+    }
+
+    // True when every value in [from, to) is within (-limit, limit)
+    private static boolean fitsLaneSums(int[] values, int from, int to, int limit) {
+        IntVector lo = IntVector.broadcast(INTS, Integer.MAX_VALUE);
+        IntVector hi = IntVector.broadcast(INTS, Integer.MIN_VALUE);
+        for (int i = from; i < to; i += INTS.length()) {
+            IntVector v = IntVector.fromArray(INTS, values, i);
+            lo = lo.min(v);
+            hi = hi.max(v);
+        }
+        return lo.reduceLanes(VectorOperators.MIN) > -limit && hi.reduceLanes(VectorOperators.MAX) < limit;
+    }
+}
@@ -0,0 +1,268 @@
+package com.traffic.analysis;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Volume percentiles by hour of day, day type and weather_main, the distribution-side
+// companion of TrafficAggregates. Each group keeps a QuantileSketch, so memory is
+// bounded per group (a few KB) whatever the row count, partial results from threads
+// or stations merge exactly, and every percentile is within the sketch's relative
+// accuracy (1% by default) of the exact order statistic.
+public final class VolumeQuantiles {
+
+    // The percentiles shown in the report
+    public static final double[] REPORT_QUANTILES = {0.50, 0.90, 0.95, 0.99};
+
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private final double relativeAccuracy;
+
+    // cell = hour * 2 + (weekend ? 1 : 0), created on first use
+    private final QuantileSketch[] cells = new QuantileSketch[48];
+
+    // trimmed weather_main -> sketch, plus raw value -> sketch (null for blank values)
+    private final Map<String, QuantileSketch> byWeather = new TreeMap<>();
+    private final Map<String, QuantileSketch> weatherOfRaw = new HashMap<>();
+
+    public VolumeQuantiles() {
+        this(QuantileSketch.DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    public VolumeQuantiles(double relativeAccuracy) {
+        this.relativeAccuracy = relativeAccuracy;
+    }
+
+    public static VolumeQuantiles compute(List<TrafficRecord> rows) {
+        VolumeQuantiles q = new VolumeQuantiles();
+        for (TrafficRecord r : rows) q.add(r);
+        return q;
+    }
+
+    public static VolumeQuantiles compute(TrafficDataset ds) {
+        VolumeQuantiles q = new VolumeQuantiles();
+        q.addRows(ds, 0, ds.size());
+        return q;
+    }
+
+    public static VolumeQuantiles computeParallel(TrafficDataset ds) {
+        return computeParallel(ds, ForkJoinPool.commonPool());
+    }
+
+    // Sketches row ranges on the pool and merges the partial results; the result is
+    // identical to compute(ds)
+    public static VolumeQuantiles computeParallel(TrafficDataset ds, ForkJoinPool pool) {
+        return pool.invoke(new SketchRows(ds, 0, ds.size()));
+    }
+
+    private static final class SketchRows extends RecursiveTask<VolumeQuantiles> {
+        private static final long serialVersionUID = 1L;
+
+        private final TrafficDataset ds;
+        private final int from;
+        private final int to;
+
+        SketchRows(TrafficDataset ds, int from, int to) {
+            this.ds = ds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected VolumeQuantiles compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                VolumeQuantiles q = new VolumeQuantiles();
+                q.addRows(ds, from, to);
+                return q;
+            }
+            int mid = (from + to) >>> 1;
+            SketchRows right = new SketchRows(ds, mid, to);
+            right.fork();
+            VolumeQuantiles left = new SketchRows(ds, from, mid).compute();
+            return left.merge(right.join());
+        }
+    }
+
+    public void add(TrafficRecord r) {
+        DayOfWeek d = r.dateTime().getDayOfWeek();
+        boolean weekend = (d == DayOfWeek.SATURDAY || d == DayOfWeek.SUNDAY);
+        cell(r.dateTime().getHour(), weekend).add(r.trafficVolume());
+
+        QuantileSketch w = weatherSketch(r.weatherMain());
+        if (w != null) w.add(r.trafficVolume());
+    }
+
+    private void addRows(TrafficDataset ds, int from, int to) {
+        int[] hours = ds.epochHourColumn();
+        int[] volumes = ds.volumeColumn();
+        short[] codes = ds.weatherMainCodeColumn();
+        HourCalendar cal = ds.calendar();
+
+        // Resolve each dictionary code to its sketch once
+        String[] names = ds.weatherMainNames();
+        QuantileSketch[] sketchOfCode = new QuantileSketch[names.length];
+        for (int c = 0; c < names.length; c++) sketchOfCode[c] = weatherSketch(names[c]);
+
+        for (int i = from; i < to; i++) {
+            int f = cal.fields(hours[i]);
+            cell(HourCalendar.hour(f), HourCalendar.isWeekend(f)).add(volumes[i]);
+            QuantileSketch w = sketchOfCode[codes[i]];
+            if (w != null) w.add(volumes[i]);
+        }
+    }
+
+    // Folds other's sketches into this one
+    public VolumeQuantiles merge(VolumeQuantiles other) {
+        for (int k = 0; k < cells.length; k++) {
+            if (other.cells[k] != null) cell(k >> 1, (k & 1) == 1).merge(other.cells[k]);
+        }
+        for (var e : other.byWeather.entrySet()) {
+            weatherSketch(e.getKey()).merge(e.getValue());
+        }
+        return this;
+    }
+
+    // Sketches only; the raw-value cache is rebuilt as rows arrive
+    void writeTo(DataOutput out) throws IOException {
+        out.writeDouble(relativeAccuracy);
+        for (QuantileSketch c : cells) {
+            out.writeBoolean(c != null);
+            if (c != null) c.writeTo(out);
+        }
+        out.writeInt(byWeather.size());
+        for (var e : byWeather.entrySet()) {
+            out.writeUTF(e.getKey());
+            e.getValue().writeTo(out);
+        }
+    }
+
+    static VolumeQuantiles readFrom(DataInput in) throws IOException {
+        VolumeQuantiles q = new VolumeQuantiles(in.readDouble());
+        for (int k = 0; k < q.cells.length; k++) {
+            if (in.readBoolean()) q.cells[k] = QuantileSketch.readFrom(in);
+        }
+        int weathers = in.readInt();
+        for (int i = 0; i < weathers; i++) q.byWeather.put(in.readUTF(), QuantileSketch.readFrom(in));
+        return q;
+    }
+
+    long estimatedBytes() {
+        long bytes = 256;
+        for (QuantileSketch c : cells) if (c != null) bytes += c.estimatedBytes();
+        for (QuantileSketch w : byWeather.values()) bytes += 64 + w.estimatedBytes();
+        return bytes + 64L * weatherOfRaw.size();
+    }
+
+    private QuantileSketch cell(int hour, boolean weekend) {
+        int k = hour * 2 + (weekend ? 1 : 0);
+        QuantileSketch s = cells[k];
+        if (s == null) {
+            s = newSketch();
+            cells[k] = s;
+        }
+        return s;
+    }
+
+    // Sketch for a raw weather_main value, or null for null/blank values (which the
+    // grouped averages skip as well)
+    private QuantileSketch weatherSketch(String raw) {
+        if (raw == null) return null;
+        if (weatherOfRaw.containsKey(raw)) return weatherOfRaw.get(raw);
+
+        QuantileSketch s = raw.isBlank() ? null : byWeather.computeIfAbsent(raw.trim(), k -> newSketch());
+        weatherOfRaw.put(raw, s);
+        return s;
+    }
+
+    private QuantileSketch newSketch() {
+        return new QuantileSketch(relativeAccuracy, QuantileSketch.DEFAULT_MAX_BUCKETS);
+    }
+
+    /* =======================
+       Results
+       ======================= */
+
+    public double relativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    // Hour -> q-quantile of volume; hours with no rows are left out
+    public Map<Integer, Double> quantileByHour(double q) {
+        return quantileByHour(q, true, true);
+    }
+
+    public Map<String, Map<Integer, Double>> quantileByHourWeekdayVsWeekend(double q) {
+        return Map.of(
+                "Weekday", quantileByHour(q, true, false),
+                "Weekend", quantileByHour(q, false, true)
+        );
+    }
+
+    public Map<String, Double> quantileWeekdayVsWeekend(double q) {
+        return Map.of(
+                "Weekday", sketchFor(true, false).quantile(q),
+                "Weekend", sketchFor(false, true).quantile(q)
+        );
+    }
+
+    public Map<String, Double> quantileByWeatherMain(double q) {
+        Map<String, Double> out = new TreeMap<>();
+        for (var e : byWeather.entrySet()) {
+            if (e.getValue().count() > 0) out.put(e.getKey(), e.getValue().quantile(q));
+        }
+        return out;
+    }
+
+    // Label ("p50", "p99.9", ...) -> hour -> quantile, in the order given; the series
+    // TrafficCharts.percentilesByHourChart draws
+    public Map<String, Map<Integer, Double>> percentilesByHour(double... qs) {
+        Map<String, Map<Integer, Double>> out = new LinkedHashMap<>();
+        for (double q : qs) out.put(label(q), quantileByHour(q));
+        return out;
+    }
+
+    // Merged sketch for one hour over the chosen day types
+    public QuantileSketch sketchForHour(int hour, boolean weekdays, boolean weekends) {
+        QuantileSketch s = newSketch();
+        if (weekdays && cells[hour * 2] != null) s.merge(cells[hour * 2]);
+        if (weekends && cells[hour * 2 + 1] != null) s.merge(cells[hour * 2 + 1]);
+        return s;
+    }
+
+    // Sketch for one weather_main value (empty when it has not been seen)
+    public QuantileSketch sketchForWeatherMain(String weatherMain) {
+        QuantileSketch s = weatherMain == null ? null : byWeather.get(weatherMain.trim());
+        return s != null ? s : newSketch();
+    }
+
+    public static String label(double q) {
+        String pct = Double.toString(Math.round(q * 1000.0) / 10.0);
+        return "p" + (pct.endsWith(".0") ? pct.substring(0, pct.length() - 2) : pct);
+    }
+
+    private Map<Integer, Double> quantileByHour(double q, boolean weekdays, boolean weekends) {
+        Map<Integer, Double> out = new TreeMap<>();
+        for (int h = 0; h < 24; h++) {
+            QuantileSketch s = sketchForHour(h, weekdays, weekends);
+            if (s.count() > 0) out.put(h, s.quantile(q));
+        }
+        return out;
+    }
+
+    private QuantileSketch sketchFor(boolean weekdays, boolean weekends) {
+        QuantileSketch s = newSketch();
+        for (int h = 0; h < 24; h++) {
+            if (weekdays && cells[h * 2] != null) s.merge(cells[h * 2]);
+            if (weekends && cells[h * 2 + 1] != null) s.merge(cells[h * 2 + 1]);
+        }
+        return s;
+    }
+}
@@ -0,0 +1,337 @@
+package com.traffic.analysis;
+
+import java.time.DayOfWeek;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Ordinary least squares of traffic volume on the numeric weather columns (temp,
+// rain_1h, snow_1h, clouds_all) with hour-of-day and day-of-week dummies, fitted
+// from streamed normal equations. Rows are folded into X'X and X'y as they arrive,
+// so memory is O(features^2) whatever the row count and accumulators from different
+// threads or files merge by addition. Each row has at most 7 non-zero features
+// (intercept, 4 weather values, one hour dummy, one weekday dummy), so only those
+// products are accumulated.
+//
+// Baselines are 00:00 and Monday. temp is entered as Kelvin - 273.15 (the slopes are
+// the same; the intercept is the 0 °C, midnight, Monday level) which keeps X'X better
+// conditioned than raw Kelvin would.
+public final class WeatherRegression {
+
+    static final int INTERCEPT = 0;
+    static final int TEMP = 1;
+    static final int RAIN = 2;
+    static final int SNOW = 3;
+    static final int CLOUDS = 4;
+    private static final int HOUR_1 = 5;
+    private static final int TUESDAY = HOUR_1 + 23;
+    static final int FEATURE_COUNT = TUESDAY + 6;
+
+    private static final double KELVIN_OFFSET = 273.15;
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    // Pivots below this fraction of their diagonal are treated as aliased columns
+    private static final double ALIAS_TOLERANCE = 1e-10;
+
+    public static final List<String> FEATURES = featureNames();
+
+    // The numeric weather features, whose effects are the point of the model
+    public static final List<String> WEATHER_FEATURES = FEATURES.subList(TEMP, CLOUDS + 1);
+
+    // Upper triangle (i <= j) of X'X, row-major over FEATURE_COUNT columns
+    private final double[] xtx = new double[FEATURE_COUNT * FEATURE_COUNT];
+    private final double[] xty = new double[FEATURE_COUNT];
+    private double yy;
+    private long n;
+
+    // Scratch for the non-zero features of one row
+    private final int[] idx = new int[7];
+    private final double[] val = new double[7];
+
+    public static WeatherRegression accumulate(List<TrafficRecord> rows) {
+        WeatherRegression reg = new WeatherRegression();
+        for (TrafficRecord r : rows) reg.add(r);
+        return reg;
+    }
+
+    public static WeatherRegression accumulate(TrafficDataset ds) {
+        WeatherRegression reg = new WeatherRegression();
+        reg.addRows(ds, 0, ds.size());
+        return reg;
+    }
+
+    public static WeatherRegression accumulateParallel(TrafficDataset ds) {
+        return accumulateParallel(ds, ForkJoinPool.commonPool());
+    }
+
+    // Accumulates row ranges on the pool and merges the partial normal equations
+    public static WeatherRegression accumulateParallel(TrafficDataset ds, ForkJoinPool pool) {
+        return pool.invoke(new AccumulateRows(ds, 0, ds.size()));
+    }
+
+    private static final class AccumulateRows extends RecursiveTask<WeatherRegression> {
+        private static final long serialVersionUID = 1L;
+
+        private final TrafficDataset ds;
+        private final int from;
+        private final int to;
+
+        AccumulateRows(TrafficDataset ds, int from, int to) {
+            this.ds = ds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected WeatherRegression compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                WeatherRegression reg = new WeatherRegression();
+                reg.addRows(ds, from, to);
+                return reg;
+            }
+            int mid = (from + to) >>> 1;
+            AccumulateRows right = new AccumulateRows(ds, mid, to);
+            right.fork();
+            WeatherRegression left = new AccumulateRows(ds, from, mid).compute();
+            return left.merge(right.join());
+        }
+    }
+
+    public void add(TrafficRecord r) {
+        DayOfWeek d = r.dateTime().getDayOfWeek();
+        addRow(r.dateTime().getHour(), d.getValue() - 1,
+                r.tempK(), r.rain1hMm(), r.snow1hMm(), r.cloudsAllPct(), r.trafficVolume());
+    }
+
+    private void addRows(TrafficDataset ds, int from, int to) {
+        int[] hours = ds.epochHourColumn();
+        int[] volumes = ds.volumeColumn();
+        float[] temps = ds.tempColumn();
+        float[] rain = ds.rainColumn();
+        float[] snow = ds.snowColumn();
+        byte[] clouds = ds.cloudsColumn();
+        HourCalendar cal = ds.calendar();
+
+        for (int i = from; i < to; i++) {
+            int f = cal.fields(hours[i]);
+            addRow(HourCalendar.hour(f), HourCalendar.dayOfWeek(f),
+                    temps[i], rain[i], snow[i], clouds[i], volumes[i]);
+        }
+    }
+
+    // dayIndex: 0 = Monday .. 6 = Sunday
+    private void addRow(int hour, int dayIndex, double tempK, double rain, double snow, double clouds, double y) {
+        int k = 0;
+        idx[k] = INTERCEPT;
+        val[k++] = 1.0;
+        idx[k] = TEMP;
+        val[k++] = tempK - KELVIN_OFFSET;
+        idx[k] = RAIN;
+        val[k++] = rain;
+        idx[k] = SNOW;
+        val[k++] = snow;
+        idx[k] = CLOUDS;
+        val[k++] = clouds;
+        if (hour > 0) {
+            idx[k] = HOUR_1 + hour - 1;
+            val[k++] = 1.0;
+        }
+        if (dayIndex > 0) {
+            idx[k] = TUESDAY + dayIndex - 1;
+            val[k++] = 1.0;
+        }
+
+        // idx is ascending, so (a, b >= a) stays in the upper triangle
+        for (int a = 0; a < k; a++) {
+            int row = idx[a] * FEATURE_COUNT;
+            double va = val[a];
+            xty[idx[a]] += va * y;
+            for (int b = a; b < k; b++) xtx[row + idx[b]] += va * val[b];
+        }
+        yy += y * y;
+        n++;
+    }
+
+    // Folds other's normal equations into this one
+    public WeatherRegression merge(WeatherRegression other) {
+        for (int i = 0; i < xtx.length; i++) xtx[i] += other.xtx[i];
+        for (int i = 0; i < xty.length; i++) xty[i] += other.xty[i];
+        yy += other.yy;
+        n += other.n;
+        return this;
+    }
+
+    public long count() {
+        return n;
+    }
+
+    /* =======================
+       Results
+       ======================= */
+
+    // Coefficients, standard errors and fit statistics. Features that carry no
+    // information in the data seen so far (e.g. snow_1h when it never snowed, or an
+    // hour that never occurs) are aliased: their coefficient and error are NaN.
+    public record Fit(List<String> features,
+                      double[] coefficients,
+                      double[] standardErrors,
+                      long rows,
+                      int degreesOfFreedom,
+                      double rSquared,
+                      double residualStandardError) {
+
+        public double coefficient(String feature) {
+            return coefficients[indexOf(feature)];
+        }
+
+        public double standardError(String feature) {
+            return standardErrors[indexOf(feature)];
+        }
+
+        public double tStatistic(String feature) {
+            int i = indexOf(feature);
+            return coefficients[i] / standardErrors[i];
+        }
+
+        // Correlation of volume with the feature once every other feature is held
+        // fixed; for OLS this is t / sqrt(t^2 + df)
+        public double partialCorrelation(String feature) {
+            double t = tStatistic(feature);
+            return t / Math.sqrt(t * t + degreesOfFreedom);
+        }
+
+        private int indexOf(String feature) {
+            int i = features.indexOf(feature);
+            if (i < 0) throw new IllegalArgumentException("Unknown feature: " + feature);
+            return i;
+        }
+    }
+
+    public Fit fit() {
+        int p = FEATURE_COUNT;
+        double[] a = symmetric();
+
+        // Cholesky factor a = L L', skipping columns that are (numerically) linear
+        // combinations of earlier ones
+        double[] l = new double[p * p];
+        boolean[] aliased = new boolean[p];
+        int rank = 0;
+        for (int j = 0; j < p; j++) {
+            double d = a[j * p + j];
+            for (int k = 0; k < j; k++) d -= l[j * p + k] * l[j * p + k];
+            if (a[j * p + j] == 0 || d <= ALIAS_TOLERANCE * a[j * p + j]) {
+                aliased[j] = true;
+                continue;
+            }
+            double ljj = Math.sqrt(d);
+            l[j * p + j] = ljj;
+            for (int i = j + 1; i < p; i++) {
+                double s = a[i * p + j];
+                for (int k = 0; k < j; k++) s -= l[i * p + k] * l[j * p + k];
+                l[i * p + j] = s / ljj;
+            }
+            rank++;
+        }
+        if (rank == 0 || n <= rank) {
+            throw new IllegalStateException("Not enough rows to fit the model: " + n);
+        }
+
+        double[] beta = solve(l, aliased, xty);
+
+        double rss = yy;
+        for (int j = 0; j < p; j++) if (!aliased[j]) rss -= beta[j] * xty[j];
+        rss = Math.max(rss, 0.0);
+
+        int df = (int) Math.min(Integer.MAX_VALUE, n - rank);
+        double sigma2 = rss / df;
+        double tss = yy - xty[INTERCEPT] * xty[INTERCEPT] / n;
+
+        // Standard errors from the diagonal of (X'X)^-1
+        double[] se = new double[p];
+        double[] unit = new double[p];
+        for (int j = 0; j < p; j++) {
+            if (aliased[j]) {
+                beta[j] = Double.NaN;
+                se[j] = Double.NaN;
+                continue;
+            }
+            unit[j] = 1.0;
+            se[j] = Math.sqrt(sigma2 * solve(l, aliased, unit)[j]);
+            unit[j] = 0.0;
+        }
+
+        return new Fit(FEATURES, beta, se, n, df, tss > 0 ? 1.0 - rss / tss : Double.NaN, Math.sqrt(sigma2));
+    }
+
+    // Weather feature -> partial correlation with volume, controlling for the other
+    // weather features and the hour / weekday dummies
+    public Map<String, Double> partialCorrelationsWithVolume() {
+        Fit fit = fit();
+        Map<String, Double> out = new LinkedHashMap<>();
+        for (String f : WEATHER_FEATURES) out.put(f, fit.partialCorrelation(f));
+        return out;
+    }
+
+    // Weather feature -> plain Pearson correlation with volume (no controls)
+    public Map<String, Double> correlationsWithVolume() {
+        double sy = xty[INTERCEPT];
+        double vy = yy - sy * sy / n;
+
+        Map<String, Double> out = new LinkedHashMap<>();
+        for (int j = TEMP; j <= CLOUDS; j++) {
+            double sx = xtx[INTERCEPT * FEATURE_COUNT + j];
+            double vx = xtx[j * FEATURE_COUNT + j] - sx * sx / n;
+            double cov = xty[j] - sx * sy / n;
+            out.put(FEATURES.get(j), vx > 0 && vy > 0 ? cov / Math.sqrt(vx * vy) : Double.NaN);
+        }
+        return out;
+    }
+
+    private double[] symmetric() {
+        int p = FEATURE_COUNT;
+        double[] a = new double[p * p];
+        for (int i = 0; i < p; i++) {
+            for (int j = i; j < p; j++) {
+                a[i * p + j] = xtx[i * p + j];
+                a[j * p + i] = xtx[i * p + j];
+            }
+        }
+        return a;
+    }
+
+    // Solves L L' x = b over the non-aliased columns (aliased entries come back as 0)
+    private static double[] solve(double[] l, boolean[] aliased, double[] b) {
+        int p = aliased.length;
+        double[] z = new double[p];
+        for (int i = 0; i < p; i++) {
+            if (aliased[i]) continue;
+            double s = b[i];
+            for (int k = 0; k < i; k++) s -= l[i * p + k] * z[k];
+            z[i] = s / l[i * p + i];
+        }
+        double[] x = new double[p];
+        for (int i = p - 1; i >= 0; i--) {
+            if (aliased[i]) continue;
+            double s = z[i];
+            for (int k = i + 1; k < p; k++) s -= l[k * p + i] * x[k];
+            x[i] = s / l[i * p + i];
+        }
+        return x;
+    }
+
+    private static List<String> featureNames() {
+        List<String> names = new ArrayList<>(FEATURE_COUNT);
+        names.add("intercept");
+        names.add("temp");
+        names.add("rain_1h");
+        names.add("snow_1h");
+        names.add("clouds_all");
+        for (int h = 1; h < 24; h++) names.add(String.format("hour_%02d", h));
+        for (int d = 2; d <= 7; d++) names.add("dow_" + DayOfWeek.of(d));
+        return Collections.unmodifiableList(names);
+    }
+}
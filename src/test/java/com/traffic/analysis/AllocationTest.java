@@ -0,0 +1,107 @@
+package com.traffic.analysis;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The columnar paths allocate nothing per row: an aggregation pass costs the same
+// bytes on N and 2N rows, and loadDataset allocates only the columns themselves.
+// Measured with the per-thread allocation counter, after warm-up.
+class AllocationTest {
+
+    // Column storage is 27 bytes per row; the builder's presized columns plus the copy
+    // in build() stay under this, a LocalDateTime per row alone would not
+    private static final long MAX_LOAD_BYTES_PER_ROW = 3 * 27;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @TempDir
+    static Path dir;
+
+    static Path single;
+    static Path doubled;
+
+    @BeforeAll
+    static void writeInputs() throws IOException {
+        String bundled = Files.readString(LoaderParityTest.BUNDLED, StandardCharsets.UTF_8);
+        String rows = bundled.substring(bundled.indexOf('\n') + 1);
+        single = Files.writeString(dir.resolve("n.csv"), bundled, StandardCharsets.UTF_8);
+        doubled = Files.writeString(dir.resolve("2n.csv"), bundled + rows, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void aggregatesDoNotAllocatePerRow() throws IOException {
+        TrafficDataset n = MappedTrafficDataLoader.loadDataset(single);
+        TrafficDataset twoN = MappedTrafficDataLoader.loadDataset(doubled);
+        assertEquals(2 * n.size(), twoN.size());
+
+        Map<String, Consumer<TrafficDataset>> aggregates = new LinkedHashMap<>();
+        aggregates.put("averageVolumeByHour", TrafficAnalysis::averageVolumeByHour);
+        aggregates.put("averageWeekdayVsWeekend", TrafficAnalysis::averageWeekdayVsWeekend);
+        aggregates.put("averageVolumeByHourWeekdayVsWeekend", TrafficAnalysis::averageVolumeByHourWeekdayVsWeekend);
+        aggregates.put("averageVolumeByWeatherMain", TrafficAnalysis::averageVolumeByWeatherMain);
+        aggregates.put("peakHourWeekday", TrafficAnalysis::peakHourWeekday);
+        aggregates.put("TrafficAggregates", TrafficAggregates::compute);
+        aggregates.put("WeatherRegression", WeatherRegression::accumulate);
+        aggregates.put("VolumeQuantiles", VolumeQuantiles::compute);
+
+        // Warm-up also builds each dataset's calendar and key columns, which are kept
+        for (int i = 0; i < 5; i++) {
+            for (Consumer<TrafficDataset> a : aggregates.values()) {
+                a.accept(n);
+                a.accept(twoN);
+            }
+        }
+
+        for (var e : aggregates.entrySet()) {
+            long onN = allocated(() -> e.getValue().accept(n));
+            long onTwoN = allocated(() -> e.getValue().accept(twoN));
+            assertTrue(Math.abs(onTwoN - onN) <= 1024,
+                    e.getKey() + " allocated " + onN + " bytes on " + n.size() + " rows but " + onTwoN + " on " + twoN.size());
+        }
+    }
+
+    @Test
+    void loadDatasetAllocatesOnlyColumns() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            MappedTrafficDataLoader.loadDataset(single);
+            MappedTrafficDataLoader.loadDataset(doubled);
+        }
+
+        int rows = MappedTrafficDataLoader.loadDataset(single).size();
+        long onN = allocated(() -> load(single));
+        long onTwoN = allocated(() -> load(doubled));
+
+        long perRow = onN / rows;
+        assertTrue(perRow <= MAX_LOAD_BYTES_PER_ROW, "loadDataset allocated " + perRow + " bytes per row");
+        assertEquals(perRow, onTwoN / (2L * rows), 2, "bytes per row differ between N and 2N rows");
+    }
+
+    private static long allocated(Runnable body) {
+        long tid = Thread.currentThread().getId();
+        long before = THREADS.getThreadAllocatedBytes(tid);
+        body.run();
+        return THREADS.getThreadAllocatedBytes(tid) - before;
+    }
+
+    private static void load(Path csv) {
+        try {
+            MappedTrafficDataLoader.loadDataset(csv);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.traffic.analysis;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// LoadValidator's rules, its rejected-row limit and the quarantine file, through both loaders
+class LoadValidatorTest {
+
+    private static final String HEADER =
+            "traffic_volume,holiday,temp,rain_1h,snow_1h,clouds_all,weather_main,weather_description,date_time";
+
+    // Row 2 has a malformed date_time, row 3 an out-of-range volume, row 4 repeats row 1's hour
+    private static final List<String> ROWS = List.of(
+            "5545,None,288.28,0,0,40,Clouds,scattered clouds,02-10-2012 09:00",
+            "4516,None,289.36,0,0,75,Clouds,broken clouds,02-10-2012 1O:00",
+            "99999,None,289.58,0,0,90,Clouds,overcast clouds,02-10-2012 11:00",
+            "5545,None,288.28,0,0,40,Mist,mist,02-10-2012 09:00",
+            "5026,None,290.13,0,0,90,Clouds,overcast clouds,02-10-2012 12:00",
+            "4918,None,291.14,0,0,75,Clouds,broken clouds,02-10-2012 13:00");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void rulesRejectAndCount() throws IOException {
+        List<String> rows = new ArrayList<>(ROWS);
+        rows.set(4, "5026,None,290.13,,0,90,Clouds,overcast clouds,02-10-2012 12:00");
+        Path csv = write("rules.csv", rows);
+
+        for (boolean mapped : new boolean[]{false, true}) {
+            try (LoadValidator v = LoadValidator.defaults()) {
+                List<TrafficRecord> out = mapped ? MappedTrafficDataLoader.load(csv, v) : TrafficDataLoader.load(csv, v);
+                LoadValidator.Report r = v.report();
+
+                String loader = mapped ? "mapped" : "commons-csv";
+                assertEquals(2, out.size(), loader);
+                assertEquals(6, r.rowsRead(), loader);
+                assertEquals(4, r.rowsRejected(), loader);
+                assertEquals(1, r.rejectedByRule().get(LoadValidator.Rule.MALFORMED_DATE_TIME), loader);
+                assertEquals(1, r.rejectedByRule().get(LoadValidator.Rule.VOLUME_OUT_OF_RANGE), loader);
+                assertEquals(1, r.rejectedByRule().get(LoadValidator.Rule.DUPLICATE_HOUR), loader);
+                assertEquals(1, r.rejectedByRule().get(LoadValidator.Rule.MISSING_VALUE), loader);
+                // 09:00 then 13:00
+                assertEquals(3, r.missingHours(), loader);
+            }
+        }
+    }
+
+    @Test
+    void quarantineFileKeepsQuotedFields() throws IOException {
+        List<String> rows = new ArrayList<>(ROWS);
+        rows.set(4, "5026,\"Day \"\"One\"\"\",999.0,0,0,90,Rain,\"rain, heavy\",02-10-2012 12:00");
+        Path csv = write("quoted.csv", rows);
+        Path quarantine = dir.resolve("quarantine.csv");
+
+        try (LoadValidator v = LoadValidator.builder().quarantineTo(quarantine).build()) {
+            TrafficDataLoader.load(csv, v);
+        }
+
+        List<CSVRecord> written;
+        try (CSVParser p = CSVFormat.DEFAULT.builder().setHeader().setSkipHeaderRecord(true).build()
+                .parse(Files.newBufferedReader(quarantine, StandardCharsets.UTF_8))) {
+            written = p.getRecords();
+        }
+        assertEquals(List.of("2", "3", "4", "5"), written.stream().map(r -> r.get("row")).toList());
+        assertEquals("TEMP_OUT_OF_RANGE", written.get(3).get("rule"));
+
+        // The line parses back to the original fields
+        try (CSVParser p = CSVFormat.DEFAULT.parse(new StringReader(written.get(3).get("line")))) {
+            CSVRecord line = p.getRecords().get(0);
+            assertEquals(9, line.size());
+            assertEquals("Day \"One\"", line.get(1));
+            assertEquals("rain, heavy", line.get(7));
+        }
+    }
+
+    @Test
+    void failAfterAbortsTheLoad() throws IOException {
+        Path csv = write("limit.csv", ROWS);
+        try (LoadValidator v = LoadValidator.builder().failAfter(3).build()) {
+            assertEquals(3, TrafficDataLoader.load(csv, v).size());
+        }
+        try (LoadValidator v = LoadValidator.builder().failAfter(2).build()) {
+            IOException e = assertThrows(IOException.class, () -> MappedTrafficDataLoader.load(csv, v));
+            assertTrue(e.getMessage().startsWith("Too many rejected rows: 3"), e.getMessage());
+        }
+    }
+
+    private Path write(String name, List<String> rows) throws IOException {
+        return Files.writeString(dir.resolve(name), HEADER + "\n" + String.join("\n", rows) + "\n",
+                StandardCharsets.UTF_8);
+    }
+}
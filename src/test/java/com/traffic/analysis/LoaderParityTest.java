@@ -0,0 +1,129 @@
+package com.traffic.analysis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// MappedTrafficDataLoader.load / loadParallel must return exactly what the commons-csv
+// TrafficDataLoader.load returns, record by record.
+class LoaderParityTest {
+
+    static final Path BUNDLED = Path.of("src/main/resources/Metro_Interstate_Traffic_Volume.csv");
+
+    private static final String HEADER =
+            "traffic_volume,holiday,temp,rain_1h,snow_1h,clouds_all,weather_main,weather_description,date_time";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void bundledCsv() throws IOException {
+        assertParity(BUNDLED);
+    }
+
+    @Test
+    void crlfLineEndings() throws IOException {
+        String body = String.join("\r\n",
+                HEADER,
+                "5545,None,288.28,0,0,40,Clouds,scattered clouds,02-10-2012 09:00",
+                "4516,Columbus Day,289.36,0.25,0,75,Rain,light rain,02-10-2012 10:00",
+                "4767,None,289.58,0,0,90,Clouds,overcast clouds,02-10-2012 11:00") + "\r\n";
+        assertParity(write("crlf.csv", body));
+    }
+
+    @Test
+    void noFinalNewline() throws IOException {
+        String body = String.join("\n",
+                HEADER,
+                "5545,None,288.28,0,0,40,Clouds,scattered clouds,02-10-2012 09:00",
+                "4516,None,289.36,0,0,75,Clouds,broken clouds,02-10-2012 10:00");
+        assertParity(write("no-final-newline.csv", body));
+        assertParity(write("no-final-newline-crlf.csv", body.replace("\n", "\r\n")));
+    }
+
+    @Test
+    void blankFields() throws IOException {
+        String body = String.join("\n",
+                HEADER,
+                // Blank holiday reads as "None", blank numbers as 0, blank text as ""
+                "5545,,288.28,,,40,Clouds,,02-10-2012 09:00",
+                "4516,None,289.36,0,,,,broken clouds,02-10-2012 10:00",
+                "4767, None ,289.58 , 0,0,90,Clouds, overcast clouds ,02-10-2012 11:00",
+                "");
+        assertParity(write("blank-fields.csv", body));
+    }
+
+    // UTF-8 bytes are >= 0x80 and must not be trimmed as whitespace at a field's edges
+    @Test
+    void nonAsciiFields() throws IOException {
+        String body = String.join("\n",
+                HEADER,
+                "5545,Día de la Raza,288.28,0,0,40,Clouds,nubes dispersas é,02-10-2012 09:00",
+                "4516, Ünity Day ,289.36,0,0,75,Rain,ligera lluvia ☔,02-10-2012 10:00",
+                "4767,None,289.58,0,0,90,Clouds,éclaircies,02-10-2012 11:00",
+                "");
+        assertParity(write("non-ascii.csv", body));
+    }
+
+    // The bundled rows repeated until the file spans several parallel chunks, whose
+    // nominal boundaries fall inside a line and are snapped to the next line start
+    @Test
+    void chunkBoundaryMidLine() throws IOException {
+        String bundled = Files.readString(BUNDLED, StandardCharsets.UTF_8);
+        String rows = bundled.substring(bundled.indexOf('\n') + 1);
+        Path big = write("big.csv", bundled + rows + rows + rows);
+
+        long chunk = 4L << 20;
+        try (FileChannel ch = FileChannel.open(big, StandardOpenOption.READ)) {
+            long dataStart = MappedTrafficDataLoader.nextLineStart(ch, 0, ch.size());
+            long[] bounds = MappedTrafficDataLoader.chunkBounds(ch, dataStart, ch.size(), chunk);
+            assertTrue(bounds.length > 2, "expected several chunks");
+
+            byte[] bytes = Files.readAllBytes(big);
+            long nominal = dataStart + chunk;
+            assertFalse(bytes[(int) nominal - 1] == '\n', "nominal boundary should fall mid-line");
+            for (int i = 1; i < bounds.length - 1; i++) {
+                assertEquals('\n', bytes[(int) bounds[i] - 1], "chunk " + i + " does not start a line");
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<TrafficRecord> expected = TrafficDataLoader.load(big);
+            assertSameRecords(expected, MappedTrafficDataLoader.load(big));
+            assertSameRecords(expected, MappedTrafficDataLoader.loadParallel(big, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private Path write(String name, String body) throws IOException {
+        return Files.writeString(dir.resolve(name), body, StandardCharsets.UTF_8);
+    }
+
+    private static void assertParity(Path csv) throws IOException {
+        List<TrafficRecord> expected = TrafficDataLoader.load(csv);
+        assertFalse(expected.isEmpty());
+        assertSameRecords(expected, MappedTrafficDataLoader.load(csv));
+        assertSameRecords(expected, MappedTrafficDataLoader.loadParallel(csv));
+    }
+
+    private static void assertSameRecords(List<TrafficRecord> expected, List<TrafficRecord> actual) {
+        assertEquals(expected.size(), actual.size(), "row count");
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), actual.get(i), "row " + i);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.traffic.analysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ResultCacheTest {
+
+    @Test
+    void hitWithinGeneration() {
+        ResultCache<String, String> cache = new ResultCache<>(8, Duration.ofMinutes(1));
+        cache.invalidate(1);
+        assertEquals("a1", cache.get("a", 1, k -> "a1"));
+        assertEquals("a1", cache.get("a", 1, k -> "recomputed"));
+        assertEquals(1, cache.hits());
+    }
+
+    // A request that read the old snapshot, then a reload (new snapshot + invalidate),
+    // then the request's computation finishing: its result must not be kept
+    @Test
+    void resultOfOldGenerationIsNotStored() {
+        ResultCache<String, String> cache = new ResultCache<>(8, Duration.ofMinutes(1));
+        cache.invalidate(1);
+
+        String stale = cache.get("a", 1, k -> {
+            cache.invalidate(2);
+            return "old data";
+        });
+        assertEquals("old data", stale);
+        assertEquals(0, cache.size());
+        assertEquals("new data", cache.get("a", 2, k -> "new data"));
+    }
+
+    // A request on the new snapshot that starts before the cache is invalidated
+    @Test
+    void resultOfNewerGenerationIsNotStoredEarly() {
+        ResultCache<String, String> cache = new ResultCache<>(8, Duration.ofMinutes(1));
+        cache.invalidate(1);
+
+        cache.get("a", 2, k -> "new data");
+        assertEquals(0, cache.size());
+        cache.invalidate(2);
+        assertEquals("new data", cache.get("a", 2, k -> "new data"));
+        assertEquals(1, cache.size());
+        assertEquals("old data", cache.get("a", 1, k -> "old data"));
+    }
+}
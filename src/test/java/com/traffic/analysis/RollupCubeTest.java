@@ -0,0 +1,80 @@
+package com.traffic.analysis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RollupCubeTest {
+
+    @TempDir
+    Path dir;
+
+    // The server's endpoints read the cube in place of the TrafficAnalysis aggregates
+    @Test
+    void matchesTrafficAnalysis() throws IOException {
+        TrafficDataset ds = MappedTrafficDataLoader.loadDataset(LoaderParityTest.BUNDLED);
+        RollupCube cube = RollupCube.build(ds);
+
+        assertEquals(TrafficAnalysis.averageVolumeByHour(ds), cube.averageVolumeByHour());
+        assertEquals(TrafficAnalysis.averageWeekdayVsWeekend(ds), cube.averageWeekdayVsWeekend());
+        assertEquals(TrafficAnalysis.averageVolumeByHourWeekdayVsWeekend(ds), cube.averageVolumeByHourWeekdayVsWeekend());
+        assertEquals(TrafficAnalysis.averageVolumeByWeatherMain(ds), cube.averageVolumeByWeatherMain());
+        assertEquals(TrafficAnalysis.peakHourWeekday(ds), cube.peakHourByAverage(RollupCube.Slice.all().weekdays()));
+        assertEquals(TrafficAnalysis.peakHourWeekend(ds), cube.peakHourByAverage(RollupCube.Slice.all().weekends()));
+    }
+
+    @Test
+    void appendedRowsAreFoldedIn() throws IOException {
+        List<String> lines = Files.readAllLines(LoaderParityTest.BUNDLED, StandardCharsets.UTF_8);
+        Path csv = dir.resolve("feed.csv");
+        Files.write(csv, lines.subList(0, 5001), StandardCharsets.UTF_8);
+        RollupCube.loadCached(csv);
+
+        Files.write(csv, lines.subList(5001, lines.size()), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        // A rebuild goes through TrafficDataLoader.loadCached, which rewrites the snapshot
+        Path snapshot = TrafficDataLoader.snapshotPathFor(csv);
+        Files.delete(snapshot);
+
+        RollupCube updated = RollupCube.loadCached(csv);
+        assertFalse(Files.exists(snapshot), "cube was rebuilt instead of updated");
+        assertSameCube(RollupCube.build(TrafficDataLoader.load(csv)), updated);
+        assertSameCube(updated, RollupCube.read(RollupCube.cubePathFor(csv)));
+    }
+
+    @Test
+    void editedFileIsRebuilt() throws IOException {
+        List<String> lines = Files.readAllLines(LoaderParityTest.BUNDLED, StandardCharsets.UTF_8);
+        Path csv = dir.resolve("feed.csv");
+        Files.write(csv, lines.subList(0, 5001), StandardCharsets.UTF_8);
+        RollupCube.loadCached(csv);
+
+        // Same rows with the first volume changed, plus the rest appended
+        String first = lines.get(1);
+        lines.set(1, "1" + first);
+        Files.write(csv, lines, StandardCharsets.UTF_8);
+
+        RollupCube updated = RollupCube.loadCached(csv);
+        assertTrue(Files.exists(TrafficDataLoader.snapshotPathFor(csv)));
+        assertSameCube(RollupCube.build(TrafficDataLoader.load(csv)), updated);
+    }
+
+    private static void assertSameCube(RollupCube expected, RollupCube actual) {
+        RollupCube.Slice all = RollupCube.Slice.all();
+        assertEquals(expected.cellCount(), actual.cellCount());
+        assertEquals(expected.total(all), actual.total(all));
+        assertEquals(expected.byYearMonth(all), actual.byYearMonth(all));
+        assertEquals(expected.byHoliday(all), actual.byHoliday(all));
+        assertEquals(expected.byWeatherMain(all), actual.byWeatherMain(all));
+        assertEquals(expected.byHourWeekdayVsWeekend(all), actual.byHourWeekdayVsWeekend(all));
+    }
+}
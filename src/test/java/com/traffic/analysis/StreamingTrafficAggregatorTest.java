@@ -0,0 +1,97 @@
+package com.traffic.analysis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StreamingTrafficAggregatorTest {
+
+    private static final String HEADER =
+            "traffic_volume,holiday,temp,rain_1h,snow_1h,clouds_all,weather_main,weather_description,date_time\n";
+    private static final String ROW_1 = "1000,None,288.28,0,0,40,Clouds,scattered clouds,02-10-2012 09:00\n";
+    private static final String ROW_2 = "2000,None,289.36,0,0,75,Clouds,broken clouds,02-10-2012 10:00\n";
+    private static final String ROW_1_CORRECTED = "1500,None,288.28,0,0,40,Clouds,scattered clouds,02-10-2012 09:00\n";
+    private static final String ROW_3 = "3000,None,289.58,0,0,90,Clouds,overcast clouds,02-10-2012 11:00\n";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void appendedRowsAreFoldedIn() throws Exception {
+        Path csv = Files.writeString(dir.resolve("feed.csv"), HEADER + ROW_1);
+        StreamingTrafficAggregator agg = new StreamingTrafficAggregator();
+        try (var tailer = agg.tail(csv, Duration.ofMillis(10))) {
+            awaitRows(agg::rowCount, 1);
+            Files.writeString(csv, ROW_2, StandardOpenOption.APPEND);
+            awaitRows(agg::rowCount, 2);
+        }
+    }
+
+    // A larger re-export (with a corrected row) moved over the file: its rows replace,
+    // not add to, the old ones
+    @Test
+    void replacedFileIsReadAfresh() throws Exception {
+        Path csv = Files.writeString(dir.resolve("feed.csv"), HEADER + ROW_1 + ROW_2);
+        StreamingTrafficAggregator agg = new StreamingTrafficAggregator();
+        try (var tailer = agg.tail(csv, Duration.ofMillis(10))) {
+            awaitRows(agg::rowCount, 2);
+
+            Path export = Files.writeString(dir.resolve("export.tmp"), HEADER + ROW_1_CORRECTED + ROW_2 + ROW_3);
+            Files.move(export, csv, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            awaitRows(agg::rowCount, 3);
+            Thread.sleep(100);
+            assertEquals(3, agg.rowCount());
+            assertEquals(1500.0, agg.averageVolumeByHour().get(9));
+            assertEquals(2000.0, agg.averageVolumeByHour().get(10));
+        }
+    }
+
+    @Test
+    void truncatedFileIsReadAfresh() throws Exception {
+        Path csv = Files.writeString(dir.resolve("feed.csv"), HEADER + ROW_1 + ROW_2);
+        StreamingTrafficAggregator agg = new StreamingTrafficAggregator();
+        try (var tailer = agg.tail(csv, Duration.ofMillis(10))) {
+            awaitRows(agg::rowCount, 2);
+
+            Files.writeString(csv, HEADER + ROW_3, StandardCharsets.UTF_8, StandardOpenOption.TRUNCATE_EXISTING);
+
+            awaitRows(agg::rowCount, 1);
+            assertEquals(3000.0, agg.averageVolumeByHour().get(11));
+        }
+    }
+
+    // Overwritten without truncation (same inode, larger size): not an append, even
+    // though the file only grew
+    @Test
+    void rewrittenFileIsReadAfresh() throws Exception {
+        Path csv = Files.writeString(dir.resolve("feed.csv"), HEADER + ROW_1 + ROW_2);
+        StreamingTrafficAggregator agg = new StreamingTrafficAggregator();
+        try (var tailer = agg.tail(csv, Duration.ofMillis(10))) {
+            awaitRows(agg::rowCount, 2);
+
+            Files.writeString(csv, HEADER + ROW_1_CORRECTED + ROW_2 + ROW_3, StandardCharsets.UTF_8,
+                    StandardOpenOption.WRITE);
+
+            awaitRows(agg::rowCount, 3);
+            Thread.sleep(100);
+            assertEquals(3, agg.rowCount());
+            assertEquals(1500.0, agg.averageVolumeByHour().get(9));
+        }
+    }
+
+    private static void awaitRows(LongSupplier rows, long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (rows.getAsLong() != expected && System.nanoTime() < deadline) Thread.sleep(5);
+        assertEquals(expected, rows.getAsLong());
+    }
+}
@@ -0,0 +1,43 @@
+package com.traffic.analysis;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TrafficFilterTest {
+
+    private static TrafficDataset ds;
+    private static TrafficIndex index;
+
+    @BeforeAll
+    static void load() throws IOException {
+        ds = MappedTrafficDataLoader.loadDataset(LoaderParityTest.BUNDLED);
+        index = TrafficIndex.build(ds);
+    }
+
+    @Test
+    void hourRanges() {
+        assertEquals(ds.size(), index.select(TrafficFilter.hours(0, 24)).count());
+        assertEquals(rowsInHours(22, 23, 0, 1), index.select(TrafficFilter.hours(22, 2)).count());
+        assertEquals(rowsInHours(7, 8), index.select(TrafficFilter.hours(7, 9)).count());
+    }
+
+    @Test
+    void emptyHourRangeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> TrafficFilter.hours(5, 5));
+        assertThrows(IllegalArgumentException.class, () -> RollupCube.Slice.all().hours(0, 0));
+    }
+
+    private static long rowsInHours(int... hours) {
+        long n = 0;
+        for (int i = 0; i < ds.size(); i++) {
+            int h = ds.dateTime(i).getHour();
+            for (int wanted : hours) if (h == wanted) n++;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,50 @@
+package com.traffic.analysis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrafficSnapshotTest {
+
+    // Header offsets: magic, version, sourceSize, sourceMtimeMillis, sourceCrc, rowCount
+    private static final int SOURCE_MTIME_AT = 16;
+    private static final int ROW_COUNT_AT = 28;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTrip() throws IOException {
+        List<TrafficRecord> rows = TrafficDataLoader.load(LoaderParityTest.BUNDLED);
+        Path snapshot = dir.resolve("feed.snap");
+        TrafficSnapshot.write(rows, TrafficSnapshot.stampOf(LoaderParityTest.BUNDLED), snapshot);
+
+        assertEquals(rows, TrafficSnapshot.read(snapshot));
+        assertTrue(TrafficSnapshot.isCurrent(snapshot, LoaderParityTest.BUNDLED));
+    }
+
+    // The checksum covers the header, so a damaged row count or source stamp is caught
+    @Test
+    void corruptHeaderIsRejected() throws IOException {
+        List<TrafficRecord> rows = TrafficDataLoader.load(LoaderParityTest.BUNDLED).subList(0, 100);
+        Path snapshot = dir.resolve("feed.snap");
+        TrafficSnapshot.write(rows, TrafficSnapshot.stampOf(LoaderParityTest.BUNDLED), snapshot);
+        byte[] good = Files.readAllBytes(snapshot);
+
+        for (int at : new int[] {SOURCE_MTIME_AT, ROW_COUNT_AT + 3}) {
+            byte[] bad = good.clone();
+            bad[at] ^= 1;
+            Files.write(snapshot, bad);
+            IOException e = assertThrows(IOException.class, () -> TrafficSnapshot.read(snapshot));
+            assertTrue(e.getMessage().startsWith("Snapshot checksum mismatch"), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.traffic.analysis;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+// The Vector API kernels give exactly the scalar results, for both layouts (a sweep per
+// group up to SWEEP_GROUPS, per-lane slots above). Needs --add-modules
+// jdk.incubator.vector, which the surefire configuration passes.
+class VectorKernelParityTest {
+
+    static TrafficDataset ds;
+
+    @BeforeAll
+    static void load() throws IOException {
+        ds = MappedTrafficDataLoader.loadDataset(LoaderParityTest.BUNDLED);
+    }
+
+    @Test
+    void kernelsMatchScalar() {
+        byte[] hourDayType = ds.hourDayTypeKeyColumn();
+        byte[] weather = ds.weatherMainKeyColumn();
+        byte[] quarter = new byte[ds.size()];
+        byte[] rain = new byte[ds.size()];
+        for (int i = 0; i < ds.size(); i++) {
+            quarter[i] = (byte) (hourDayType[i] / 12);
+            rain[i] = (byte) ("Rain".equals(ds.weatherMain(i)) ? 0 : -1);
+        }
+
+        // Keys outside [0, groups) are skipped by both
+        byte[] holes = hourDayType.clone();
+        for (int i = 0; i < holes.length; i += 7) holes[i] = (byte) (i % 2 == 0 ? -1 : 100);
+
+        assertSameAllColumns(hourDayType, 48);
+        assertSameAllColumns(weather, ds.weatherMainNames().length);
+        assertSameAllColumns(quarter, 4);
+        assertSameAllColumns(rain, 1);
+        assertSameAllColumns(holes, 48);
+    }
+
+    @Test
+    void largeValuesMatchScalar() {
+        // Lane sums that could overflow an int take the scalar path within the kernel
+        int[] values = ds.volumeColumn().clone();
+        for (int i = 0; i < values.length; i += 3) values[i] = Integer.MAX_VALUE - i;
+        for (int i = 1; i < values.length; i += 3) values[i] = Integer.MIN_VALUE + i;
+        assertSame(ds.hourDayTypeKeyColumn(), values, 48, 0, values.length);
+        assertSame(ds.weatherMainKeyColumn(), values, 1, 0, values.length);
+    }
+
+    @Test
+    void blockSumsBeyondIntMatchScalar() {
+        // Each lane sum fits in an int but a block's total does not (4096 x 1e6 > 2^31)
+        int[] values = new int[3 * 4096 + 7];
+        byte[] keys = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 1_000_000 + i % 1000;
+            keys[i] = (byte) (i % 9 == 0 ? 1 : 0);
+        }
+        assertSame(keys, values, 1, 0, values.length);
+        assertSame(keys, values, 2, 0, values.length);
+        assertSame(keys, values, VectorAggregationKernels.SWEEP_GROUPS, 1, values.length);
+        assertSame(keys, values, 48, 0, values.length);
+    }
+
+    // With -Dtraffic.simd=true (the surefire "simd" execution) the real aggregates run on
+    // the vector kernels; the List versions do not use the kernels at all
+    @Test
+    void aggregatesMatchOnVectorKernels() throws IOException {
+        assumeTrue(AggregationKernels.VECTOR, "traffic.simd is off");
+        List<TrafficRecord> rows = TrafficDataLoader.load(LoaderParityTest.BUNDLED);
+
+        assertEquals(TrafficAnalysis.averageVolumeByHour(rows), TrafficAnalysis.averageVolumeByHour(ds));
+        assertEquals(TrafficAnalysis.averageWeekdayVsWeekend(rows), TrafficAnalysis.averageWeekdayVsWeekend(ds));
+        assertEquals(TrafficAnalysis.averageVolumeByHourWeekdayVsWeekend(rows), TrafficAnalysis.averageVolumeByHourWeekdayVsWeekend(ds));
+        assertEquals(TrafficAnalysis.averageVolumeByWeatherMain(rows), TrafficAnalysis.averageVolumeByWeatherMain(ds));
+        assertEquals(TrafficAnalysis.peakHourWeekday(rows), TrafficAnalysis.peakHourWeekday(ds));
+        assertEquals(TrafficAnalysis.peakHourWeekend(rows), TrafficAnalysis.peakHourWeekend(ds));
+    }
+
+    // Whole columns and an unaligned range, so the scalar tails are covered too
+    private static void assertSameAllColumns(byte[] keys, int groups) {
+        assertSame(keys, ds.volumeColumn(), groups, 0, ds.size());
+        assertSame(keys, ds.volumeColumn(), groups, 3, ds.size() - 5);
+        assertSame(keys, ds.tempColumn(), groups, 0, ds.size());
+        assertSame(keys, ds.tempColumn(), groups, 3, ds.size() - 5);
+    }
+
+    private static void assertSame(byte[] keys, int[] values, int groups, int from, int to) {
+        AggregationKernels.IntGroups scalar = new AggregationKernels.IntGroups(groups);
+        AggregationKernels.IntGroups vector = new AggregationKernels.IntGroups(groups);
+        AggregationKernels.groupIntsScalar(keys, values, from, to, scalar);
+        VectorAggregationKernels.groupInts(keys, values, from, to, vector);
+
+        String at = groups + " groups, rows " + from + ".." + to;
+        assertArrayEquals(scalar.count, vector.count, "count, " + at);
+        assertArrayEquals(scalar.sum, vector.sum, "sum, " + at);
+        assertArrayEquals(scalar.min, vector.min, "min, " + at);
+        assertArrayEquals(scalar.max, vector.max, "max, " + at);
+    }
+
+    private static void assertSame(byte[] keys, float[] values, int groups, int from, int to) {
+        AggregationKernels.FloatGroups scalar = new AggregationKernels.FloatGroups(groups);
+        AggregationKernels.FloatGroups vector = new AggregationKernels.FloatGroups(groups);
+        AggregationKernels.groupFloatsScalar(keys, values, from, to, scalar);
+        VectorAggregationKernels.groupFloats(keys, values, from, to, vector);
+
+        String at = groups + " groups, rows " + from + ".." + to;
+        assertArrayEquals(scalar.count, vector.count, "count, " + at);
+        assertArrayEquals(scalar.min, vector.min, "min, " + at);
+        assertArrayEquals(scalar.max, vector.max, "max, " + at);
+    }
+}